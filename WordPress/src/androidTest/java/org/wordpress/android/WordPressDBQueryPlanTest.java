@@ -0,0 +1,95 @@
+package org.wordpress.android;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.test.InstrumentationTestCase;
+import android.test.RenamingDelegatingContext;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Fails when a frequent WordPressDB query doesn't use an index anymore and scans a whole table
+ */
+public class WordPressDBQueryPlanTest extends InstrumentationTestCase {
+    private Context mTargetContext;
+    private SQLiteDatabase mDb;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        // Run tests in an isolated context, on a database created by the migrations of a new install
+        mTargetContext = new RenamingDelegatingContext(getInstrumentation().getTargetContext(), "test_");
+        TestUtils.dropDB(mTargetContext);
+        mDb = new WordPressDB(mTargetContext).getDatabase();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mDb.close();
+        TestUtils.dropDB(mTargetContext);
+        super.tearDown();
+    }
+
+    public void testPostsListQueriesUseIndex() {
+        assertNoTableScan(WordPressDB.POSTS_LIST_FIRST_PAGE_QUERY, "1", "0", "1", "50");
+        assertNoTableScan(WordPressDB.POSTS_LIST_NEXT_PAGE_QUERY, "1", "0", "0", "1420070400000", "1420070400000",
+                "42", "50");
+        assertNoTableScan(WordPressDB.REMOTE_POSTS_COUNT_QUERY, "1", "0");
+    }
+
+    public void testMediaFilesForBlogQueryUsesIndex() {
+        assertNoTableScan(WordPressDB.MEDIA_FILES_FOR_BLOG_QUERY, "1", "uploading");
+    }
+
+    public void testMediaFileQueryUsesIndex() {
+        assertNoTableScan(WordPressDB.MEDIA_FILE_QUERY, "1", "42");
+    }
+
+    public void testMediaFileForPostQueryUsesIndex() {
+        assertNoTableScan(WordPressDB.MEDIA_FILE_FOR_POST_QUERY, "1", "/sdcard/image.jpg");
+    }
+
+    public void testMediaUploadQueueQueryUsesIndex() {
+        assertNoTableScan(WordPressDB.MEDIA_UPLOAD_QUEUE_QUERY, "queued", "1");
+    }
+
+    public void testMediaSearchQueryUsesFullTextIndex() {
+        assertNoTableScan(WordPressDB.MEDIA_SEARCH_QUERY, "sun*", "1", "title:sun*", "uploading");
+    }
+
+    public void testPostsSearchQueryUsesFullTextIndex() {
+        assertNoTableScan(WordPressDB.POSTS_SEARCH_QUERY, "<b>", "</b>", "...", "holi*", "1", "0", "20", "0");
+    }
+
+    public void testCategoriesForBlogQueryUsesIndex() {
+        assertNoTableScan(WordPressDB.CATEGORIES_FOR_BLOG_QUERY, "1");
+    }
+
+    private void assertNoTableScan(String query, String... args) {
+        List<String> plan = getQueryPlan(query, args);
+        assertFalse("Empty query plan: " + query, plan.isEmpty());
+        for (String step : plan) {
+            // "SCAN TABLE posts" on older SQLite versions, "SCAN posts" on newer ones. Full-text tables are
+            // "scanned" through their own index, and the rows of a subquery (a page of results) aren't a table.
+            boolean isTableScan = step.startsWith("SCAN") && !step.contains("VIRTUAL TABLE INDEX")
+                    && !step.contains("SUBQUERY") && !step.equals("SCAN page");
+            assertFalse("Full table scan: " + step + " in " + query, isTableScan);
+        }
+    }
+
+    private List<String> getQueryPlan(String query, String[] args) {
+        List<String> plan = new ArrayList<String>();
+        Cursor c = mDb.rawQuery("EXPLAIN QUERY PLAN " + query, args);
+        try {
+            int detailColumn = c.getColumnIndex("detail");
+            while (c.moveToNext()) {
+                plan.add(c.getString(detailColumn));
+            }
+        } finally {
+            c.close();
+        }
+        return plan;
+    }
+}
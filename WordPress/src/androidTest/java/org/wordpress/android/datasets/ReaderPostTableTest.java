@@ -0,0 +1,53 @@
+package org.wordpress.android.datasets;
+
+import android.test.InstrumentationTestCase;
+
+import org.wordpress.android.models.ReaderPost;
+import org.wordpress.android.models.ReaderPostList;
+import org.wordpress.android.ui.reader.models.ReaderPostChanges;
+
+public class ReaderPostTableTest extends InstrumentationTestCase {
+    // a blog id no real post uses, so the test doesn't touch the posts already stored
+    private static final long BLOG_ID = -1234567;
+
+    @Override
+    protected void tearDown() throws Exception {
+        ReaderPostTable.deletePostsInBlog(BLOG_ID);
+        super.tearDown();
+    }
+
+    public void testEditedPostsArePersisted() {
+        ReaderPostList posts = new ReaderPostList();
+        posts.add(getPost(1, "Title", "<p>Text</p>"));
+        posts.add(getPost(2, "Other title", "<p>Other text</p>"));
+        posts.add(getPost(3, "Unchanged", "<p>Unchanged</p>"));
+        ReaderPostTable.addOrUpdatePosts(null, posts);
+
+        // same posts, only the title of the first one and the text of the second one were edited
+        ReaderPostList editedPosts = new ReaderPostList();
+        editedPosts.add(getPost(1, "Edited title", "<p>Text</p>"));
+        editedPosts.add(getPost(2, "Other title", "<p>Edited text</p>"));
+        editedPosts.add(getPost(3, "Unchanged", "<p>Unchanged</p>"));
+
+        ReaderPostChanges changes = ReaderPostTable.comparePosts(editedPosts);
+        assertFalse(changes.isUnchanged(BLOG_ID, 1));
+        assertFalse(changes.isUnchanged(BLOG_ID, 2));
+        assertTrue(changes.isUnchanged(BLOG_ID, 3));
+
+        ReaderPostTable.addOrUpdatePosts(null, editedPosts, changes);
+        assertEquals("Edited title", ReaderPostTable.getPost(BLOG_ID, 1, false).getTitle());
+        assertEquals("<p>Edited text</p>", ReaderPostTable.getPost(BLOG_ID, 2, false).getText());
+    }
+
+    private static ReaderPost getPost(long postId, String title, String text) {
+        ReaderPost post = new ReaderPost();
+        post.blogId = BLOG_ID;
+        post.postId = postId;
+        post.setPseudoId("reader-post-table-test-" + postId);
+        post.setTitle(title);
+        post.setText(text);
+        post.numLikes = 3;
+        post.numReplies = 2;
+        return post;
+    }
+}
@@ -7,6 +7,7 @@ import org.wordpress.android.TestUtils;
 import org.wordpress.android.util.AppLog;
 import org.wordpress.android.util.AppLog.T;
 import org.xmlrpc.android.LoggedInputStream;
+import org.xmlrpc.android.XMLRPCAsyncCall;
 import org.xmlrpc.android.XMLRPCCallback;
 import org.xmlrpc.android.XMLRPCException;
 
@@ -82,6 +83,15 @@ public class XMLRPCClientCustomizableJSONMock extends XMLRPCClientCustomizableMo
         return 0;
     }
 
+    public long callAsync(XMLRPCCallback listener, String methodName, Object[] params,
+                          XMLRPCAsyncCall.Priority priority) {
+        return 0;
+    }
+
+    public boolean cancelAsync(long id) {
+        return false;
+    }
+
     public String getResponse() {
         if (mLoggedInputStream == null) {
             return "";
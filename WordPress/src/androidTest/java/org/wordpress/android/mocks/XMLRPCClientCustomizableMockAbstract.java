@@ -2,7 +2,14 @@ package org.wordpress.android.mocks;
 
 import android.content.Context;
 
+import org.xmlpull.v1.XmlPullParserException;
+import org.xmlrpc.android.XMLRPCCall;
 import org.xmlrpc.android.XMLRPCClientInterface;
+import org.xmlrpc.android.XMLRPCException;
+import org.xmlrpc.android.XMLRPCResponseVisitor;
+
+import java.io.IOException;
+import java.util.List;
 
 public abstract class XMLRPCClientCustomizableMockAbstract implements XMLRPCClientInterface {
     protected Context mContext;
@@ -20,4 +27,19 @@ public abstract class XMLRPCClientCustomizableMockAbstract implements XMLRPCClie
     public void setContext(Context context) {
         mContext = context;
     }
+
+    public void callStreaming(String method, Object[] params, XMLRPCResponseVisitor visitor)
+            throws XMLRPCException, IOException, XmlPullParserException {
+        visitor.visit(call(method, params));
+    }
+
+    public void callBatch(List<XMLRPCCall> calls) throws XMLRPCException, IOException, XmlPullParserException {
+        for (XMLRPCCall xmlrpcCall : calls) {
+            try {
+                xmlrpcCall.setResult(call(xmlrpcCall.getMethod(), xmlrpcCall.getParams()));
+            } catch (XMLRPCException e) {
+                xmlrpcCall.setError(e);
+            }
+        }
+    }
 }
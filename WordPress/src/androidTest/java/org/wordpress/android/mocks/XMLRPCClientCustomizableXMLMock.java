@@ -4,6 +4,7 @@ import org.wordpress.android.util.AppLog;
 import org.wordpress.android.util.AppLog.T;
 import org.xmlpull.v1.XmlPullParserException;
 import org.xmlrpc.android.LoggedInputStream;
+import org.xmlrpc.android.XMLRPCAsyncCall;
 import org.xmlrpc.android.XMLRPCCallback;
 import org.xmlrpc.android.XMLRPCClient;
 import org.xmlrpc.android.XMLRPCException;
@@ -46,7 +47,7 @@ public class XMLRPCClientCustomizableXMLMock extends XMLRPCClientCustomizableMoc
     public Object call(String method, Object[] params) throws XMLRPCException, IOException, XmlPullParserException {
         mLoggedInputStream = null;
         try {
-            mXmlRpcClient.preparePostMethod(method, params, null);
+            mXmlRpcClient.preparePostMethod(method, params);
         } catch (IOException e) {
             // unexpected error, test must fail
             throw new XMLRPCException("preparePostMethod failed");
@@ -82,6 +83,15 @@ public class XMLRPCClientCustomizableXMLMock extends XMLRPCClientCustomizableMoc
         return 0;
     }
 
+    public long callAsync(XMLRPCCallback listener, String methodName, Object[] params,
+                          XMLRPCAsyncCall.Priority priority) {
+        return 0;
+    }
+
+    public boolean cancelAsync(long id) {
+        return false;
+    }
+
     public String getResponse() {
         if (mLoggedInputStream == null) {
             return "";
@@ -1,11 +1,15 @@
 package org.wordpress.android.mocks;
 
+import org.xmlrpc.android.XMLRPCAsyncCall;
+import org.xmlrpc.android.XMLRPCCall;
 import org.xmlrpc.android.XMLRPCCallback;
 import org.xmlrpc.android.XMLRPCClientInterface;
 import org.xmlrpc.android.XMLRPCException;
+import org.xmlrpc.android.XMLRPCResponseVisitor;
 
 import java.io.File;
 import java.net.URI;
+import java.util.List;
 
 public class XMLRPCClientEmptyMock implements XMLRPCClientInterface {
     public XMLRPCClientEmptyMock(URI uri, String httpUser, String httpPassword) {
@@ -29,6 +33,16 @@ public class XMLRPCClientEmptyMock implements XMLRPCClientInterface {
         return null;
     }
 
+    public void callStreaming(String method, Object[] params, XMLRPCResponseVisitor visitor) throws XMLRPCException {
+        visitor.visit(null);
+    }
+
+    public void callBatch(List<XMLRPCCall> calls) throws XMLRPCException {
+        for (XMLRPCCall xmlrpcCall : calls) {
+            xmlrpcCall.setResult(null);
+        }
+    }
+
     public long callAsync(XMLRPCCallback listener, String methodName, Object[] params) {
         return 0;
     }
@@ -37,6 +51,15 @@ public class XMLRPCClientEmptyMock implements XMLRPCClientInterface {
         return 0;
     }
 
+    public long callAsync(XMLRPCCallback listener, String methodName, Object[] params,
+                          XMLRPCAsyncCall.Priority priority) {
+        return 0;
+    }
+
+    public boolean cancelAsync(long id) {
+        return false;
+    }
+
     public String getResponse() {
         return null;
     }
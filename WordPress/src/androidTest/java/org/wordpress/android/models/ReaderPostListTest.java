@@ -0,0 +1,241 @@
+package org.wordpress.android.models;
+
+import android.test.InstrumentationTestCase;
+
+import com.google.gson.stream.JsonReader;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.wordpress.android.util.AppLog;
+import org.wordpress.android.util.AppLog.T;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+
+/**
+ * Checks the streaming parser of reader posts against the JSONObject one, and compares their speed on a
+ * response of 50 posts
+ */
+public class ReaderPostListTest extends InstrumentationTestCase {
+    private static final int NUM_POSTS = 50;
+    private static final int NUM_RUNS = 5;
+
+    public void testStreamingParserReadsSamePosts() throws JSONException, IOException {
+        byte[] response = getResponse(NUM_POSTS);
+
+        ReaderPostList expectedPosts = parseJsonObject(response);
+        ReaderPostList posts = parseStream(response);
+
+        assertEquals(NUM_POSTS, expectedPosts.size());
+        assertEquals(expectedPosts.size(), posts.size());
+        for (int i = 0; i < posts.size(); i++) {
+            assertSamePost(expectedPosts.get(i), posts.get(i));
+        }
+    }
+
+    public void testStreamingParserBenchmark() throws JSONException, IOException {
+        byte[] response = getResponse(NUM_POSTS);
+        // warm up both parsers
+        parseJsonObject(response);
+        parseStream(response);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < NUM_RUNS; i++) {
+            parseJsonObject(response);
+        }
+        long jsonObjectMs = (System.nanoTime() - start) / 1000000 / NUM_RUNS;
+
+        start = System.nanoTime();
+        for (int i = 0; i < NUM_RUNS; i++) {
+            parseStream(response);
+        }
+        long streamMs = (System.nanoTime() - start) / 1000000 / NUM_RUNS;
+
+        AppLog.i(T.TESTS, NUM_POSTS + " posts, " + (response.length / 1024) + " KB: JSONObject " + jsonObjectMs
+                + " ms, JsonReader " + streamMs + " ms");
+    }
+
+    private static ReaderPostList parseJsonObject(byte[] response) throws JSONException, IOException {
+        return ReaderPostList.fromJson(new JSONObject(new String(response, "UTF-8")));
+    }
+
+    private static ReaderPostList parseStream(byte[] response) throws IOException {
+        JsonReader reader = new JsonReader(new InputStreamReader(new ByteArrayInputStream(response), "UTF-8"));
+        try {
+            return ReaderPostList.fromJson(reader);
+        } finally {
+            reader.close();
+        }
+    }
+
+    private static void assertSamePost(ReaderPost expected, ReaderPost post) {
+        assertEquals(expected.postId, post.postId);
+        assertEquals(expected.blogId, post.blogId);
+        assertEquals(expected.feedId, post.feedId);
+        assertEquals(expected.authorId, post.authorId);
+        assertEquals(expected.getPseudoId(), post.getPseudoId());
+        assertEquals(expected.getTitle(), post.getTitle());
+        assertEquals(expected.getText(), post.getText());
+        assertEquals(expected.getExcerpt(), post.getExcerpt());
+        assertEquals(expected.getAuthorName(), post.getAuthorName());
+        assertEquals(expected.getBlogName(), post.getBlogName());
+        assertEquals(expected.getBlogUrl(), post.getBlogUrl());
+        assertEquals(expected.getPostAvatar(), post.getPostAvatar());
+        assertEquals(expected.getPrimaryTag(), post.getPrimaryTag());
+        assertEquals(expected.getSecondaryTag(), post.getSecondaryTag());
+        assertEquals(expected.timestamp, post.timestamp);
+        assertEquals(expected.getPublished(), post.getPublished());
+        assertEquals(expected.getUrl(), post.getUrl());
+        assertEquals(expected.getShortUrl(), post.getShortUrl());
+        assertEquals(expected.getFeaturedImage(), post.getFeaturedImage());
+        assertEquals(expected.getFeaturedVideo(), post.getFeaturedVideo());
+        assertEquals(expected.numReplies, post.numReplies);
+        assertEquals(expected.numLikes, post.numLikes);
+        assertEquals(expected.isLikedByCurrentUser, post.isLikedByCurrentUser);
+        assertEquals(expected.isFollowedByCurrentUser, post.isFollowedByCurrentUser);
+        assertEquals(expected.isRebloggedByCurrentUser, post.isRebloggedByCurrentUser);
+        assertEquals(expected.isCommentsOpen, post.isCommentsOpen);
+        assertEquals(expected.isExternal, post.isExternal);
+        assertEquals(expected.isPrivate, post.isPrivate);
+        assertEquals(expected.isJetpack, post.isJetpack);
+        assertEquals(expected.isLikesEnabled, post.isLikesEnabled);
+        assertEquals(expected.isSharingEnabled, post.isSharingEnabled);
+        assertEquals(expected.getAttachmentsJson(), post.getAttachmentsJson());
+        // a post read by the other parser must not be seen as changed
+        assertEquals(expected.getContentHash(), post.getContentHash());
+    }
+
+    /*
+     * a response like the ones of read/tags/.../posts and sites/.../posts?meta=site,likes,
+     * with the variations the parsers handle
+     */
+    private static byte[] getResponse(int numPosts) throws JSONException, IOException {
+        JSONArray jsonPosts = new JSONArray();
+        for (int i = 0; i < numPosts; i++) {
+            jsonPosts.put(getPost(i));
+        }
+        JSONObject json = new JSONObject();
+        json.put("found", numPosts * 10);
+        json.put("posts", jsonPosts);
+        return json.toString().getBytes("UTF-8");
+    }
+
+    private static JSONObject getPost(int i) throws JSONException {
+        JSONObject post = new JSONObject();
+        post.put("ID", 1000 + i);
+        post.put("site_ID", String.valueOf(2000 + (i % 7)));
+        post.put("feed_ID", i % 3 == 0 ? JSONObject.NULL : 3000 + i);
+        if (i % 2 == 0) {
+            post.put("pseudo_ID", "pseudo-" + i);
+        } else {
+            post.put("global_ID", "global-" + i);
+        }
+        post.put("title", i % 5 == 0 ? "" : "Post &#8220;" + i + "&#8221; <em>title</em>");
+        post.put("excerpt", "<p>An excerpt for post " + i + " with a few words that go on for a while.</p>");
+        post.put("content", getContent(i));
+        post.put("URL", "http://blog" + i + ".example.com/2015/04/post-" + i);
+        post.put("short_URL", "http://wp.me/p" + i);
+        post.put("date", "2015-04-" + (10 + i % 18) + "T10:00:00+00:00");
+        if (i % 9 == 0) {
+            post.put("date_liked", "2015-05-01T12:00:00+00:00");
+        }
+        post.put("like_count", i * 3);
+        post.put("i_like", i % 4 == 0 ? "0" : "1");
+        post.put("is_following", i % 2 == 0);
+        post.put("is_reblogged", false);
+        post.put("site_is_private", i % 11 == 0);
+        post.put("likes_enabled", true);
+        post.put("sharing_enabled", "true");
+        if (i % 3 == 0) {
+            post.put("comments_open", true);
+            post.put("comment_count", i);
+        } else {
+            JSONObject discussion = new JSONObject();
+            discussion.put("comments_open", i % 2 == 0);
+            discussion.put("comment_count", String.valueOf(i * 2));
+            post.put("discussion", discussion);
+        }
+
+        JSONObject author = new JSONObject();
+        author.put("ID", 4000 + i);
+        author.put("name", "Author " + i);
+        author.put("avatar_URL", "http://gravatar.com/avatar/" + i);
+        author.put("URL", "http://author" + i + ".example.com");
+        post.put("author", author);
+        if (i % 4 != 0) {
+            post.put("site_URL", "http://blog" + i + ".example.com");
+        }
+
+        if (i % 10 == 0) {
+            JSONObject editorial = new JSONObject();
+            editorial.put("blog_id", 5000 + i);
+            editorial.put("blog_name", "Editorial &amp; blog");
+            editorial.put("image", "http://example.com/fp.jpg?w=300");
+            editorial.put("highlight_topic_title", "Photography");
+            editorial.put("displayed_on", "2015-04-02T08:00:00+00:00");
+            post.put("editorial", editorial);
+        } else {
+            post.put("site_name", "Blog &amp; " + i);
+            post.put("featured_image", i % 3 == 1 ? "http://example.com/featured" + i + ".jpg" : "");
+        }
+
+        JSONObject tags = new JSONObject();
+        for (int t = 0; t < i % 4; t++) {
+            JSONObject tag = new JSONObject();
+            tag.put("name", "Tag " + t);
+            tag.put("post_count", (t * 7 + i) % 5);
+            tags.put("tag-" + t, tag);
+        }
+        post.put("tags", tags);
+
+        JSONObject attachments = new JSONObject();
+        if (i % 2 == 1) {
+            JSONObject attachment = new JSONObject();
+            attachment.put("URL", "http://example.com/attachment" + i + ".jpg");
+            attachment.put("mime_type", "image/jpeg");
+            attachment.put("width", 800 + i);
+            attachment.put("height", 600);
+            attachments.put(String.valueOf(6000 + i), attachment);
+        }
+        post.put("attachments", attachments);
+
+        if (i % 6 == 0) {
+            JSONObject media = new JSONObject();
+            media.put("uri", "http://www.youtube.com/embed/video" + i);
+            media.put("type", i % 12 == 0 ? "video" : "image");
+            post.put("featured_media", media);
+        } else {
+            post.put("featured_media", new JSONArray());
+        }
+
+        if (i % 2 == 0) {
+            JSONObject site = new JSONObject();
+            site.put("ID", 2000 + (i % 7));
+            site.put("name", "Site " + i);
+            site.put("URL", "http://site" + i + ".example.com");
+            site.put("is_private", false);
+            site.put("jetpack", i % 8 == 0);
+            JSONObject data = new JSONObject();
+            data.put("site", site);
+            data.put("likes", new JSONObject().put("found", i));
+            post.put("meta", new JSONObject().put("data", data));
+        }
+        return post;
+    }
+
+    private static String getContent(int i) {
+        StringBuilder sb = new StringBuilder();
+        for (int p = 0; p < 40; p++) {
+            sb.append("<p>Paragraph ").append(p).append(" of post ").append(i)
+              .append(", with <a href=\"http://example.com/").append(p).append("\">a link</a> and some text")
+              .append(" long enough to look like the content of a real post &amp; its entities.</p>\n");
+            if (p % 10 == 5) {
+                sb.append("<img src=\"http://example.com/image").append(i).append('-').append(p)
+                  .append(".jpg\" width=\"").append(400 + p * 20).append("\" height=\"300\" />\n");
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -10,6 +10,10 @@ import org.wordpress.android.TestUtils;
 import org.wordpress.android.WordPress;
 import org.wordpress.android.WordPressDB;
 import org.wordpress.android.models.CategoryNode;
+import org.wordpress.android.util.helpers.MediaFile;
+
+import java.util.ArrayList;
+import java.util.List;
 
 public class WordPressDB_Test extends InstrumentationTestCase {
     protected Context testContext;
@@ -21,4 +25,176 @@ public class WordPressDB_Test extends InstrumentationTestCase {
         targetContext = new RenamingDelegatingContext(getInstrumentation().getTargetContext(), "test_");
         testContext = getInstrumentation().getContext();
     }
+
+    public void testMediaSearchFollowsMediaChanges() {
+        TestUtils.dropDB(targetContext);
+        WordPressDB wpDB = new WordPressDB(targetContext);
+
+        MediaFile mediaFile = new MediaFile();
+        mediaFile.setBlogId("1");
+        mediaFile.setMediaId("10");
+        mediaFile.setPostID(0);
+        mediaFile.setFilePath("");
+        mediaFile.setFileName("IMG_2042.jpg");
+        mediaFile.setTitle("Sunset on the beach");
+        mediaFile.setCaption("");
+        wpDB.saveMediaFile(mediaFile);
+
+        assertEquals(1, getCount(wpDB.getMediaFilesForBlog("1", "sun")));
+        assertEquals(1, getCount(wpDB.getMediaFilesForBlog("1", "BEACH sunset")));
+        assertEquals(1, getCount(wpDB.getMediaFilesForBlog("1", "img_2042")));
+        assertEquals(0, getCount(wpDB.getMediaFilesForBlog("2", "sun")));
+        assertEquals(0, getCount(wpDB.getMediaFilesForBlog("1", "mountain")));
+
+        wpDB.updateMediaFile("1", "10", "Mountain", "", "Snow");
+        assertEquals(0, getCount(wpDB.getMediaFilesForBlog("1", "sun")));
+        assertEquals(1, getCount(wpDB.getMediaFilesForBlog("1", "mount")));
+        assertEquals(1, getCount(wpDB.getMediaFilesForBlog("1", "snow")));
+
+        wpDB.deleteMediaFile("1", "10");
+        assertEquals(0, getCount(wpDB.getMediaFilesForBlog("1", "mount")));
+
+        wpDB.getDatabase().close();
+        TestUtils.dropDB(targetContext);
+    }
+
+    public void testMediaSearchFindsNonAsciiTitles() {
+        TestUtils.dropDB(targetContext);
+        WordPressDB wpDB = new WordPressDB(targetContext);
+
+        MediaFile mediaFile = new MediaFile();
+        mediaFile.setBlogId("1");
+        mediaFile.setMediaId("10");
+        mediaFile.setPostID(0);
+        mediaFile.setFilePath("");
+        mediaFile.setFileName("IMG_2043.jpg");
+        mediaFile.setTitle("École d'été");
+        mediaFile.setCaption("");
+        wpDB.saveMediaFile(mediaFile);
+
+        // found as typed whatever the tokenizer, ASCII letters of the search are folded
+        assertEquals(1, getCount(wpDB.getMediaFilesForBlog("1", "École")));
+        assertEquals(1, getCount(wpDB.getMediaFilesForBlog("1", "ÉCOLE D")));
+        assertEquals(1, getCount(wpDB.getMediaFilesForBlog("1", "été")));
+        assertEquals(0, getCount(wpDB.getMediaFilesForBlog("1", "collège")));
+
+        wpDB.getDatabase().close();
+        TestUtils.dropDB(targetContext);
+    }
+
+    public void testPostSearchFollowsPostChanges() {
+        TestUtils.dropDB(targetContext);
+        WordPressDB wpDB = new WordPressDB(targetContext);
+
+        Post post = new Post(1, false);
+        post.setLocalDraft(true);
+        post.setTitle("Holiday plans");
+        post.setDescription("<p>Renting a <strong>kayak</strong> by the lake</p>");
+        post.setKeywords("travel, summer");
+        wpDB.savePost(post);
+
+        assertEquals(1, wpDB.searchPostsListPosts(1, false, "holi", 20, 0).size());
+        assertEquals(1, wpDB.searchPostsListPosts(1, false, "KAYAK lake", 20, 0).size());
+        assertEquals(1, wpDB.searchPostsListPosts(1, false, "summer", 20, 0).size());
+        assertEquals(0, wpDB.searchPostsListPosts(1, true, "holi", 20, 0).size());
+        assertEquals(0, wpDB.searchPostsListPosts(2, false, "holi", 20, 0).size());
+        assertEquals(0, wpDB.searchPostsListPosts(1, false, "holi", 20, 1).size());
+        // only the text of the post is indexed, not its tags
+        assertEquals(0, wpDB.searchPostsListPosts(1, false, "strong", 20, 0).size());
+        assertEquals("Renting a <b>kayak</b> by the lake",
+                wpDB.searchPostsListPosts(1, false, "kayak", 20, 0).get(0).getSearchSnippet());
+
+        post.setTitle("Work plans");
+        post.setDescription("");
+        wpDB.updatePost(post);
+        assertEquals(0, wpDB.searchPostsListPosts(1, false, "kayak", 20, 0).size());
+        assertEquals(1, wpDB.searchPostsListPosts(1, false, "work", 20, 0).size());
+
+        wpDB.deletePost(post);
+        assertEquals(0, wpDB.searchPostsListPosts(1, false, "work", 20, 0).size());
+
+        wpDB.getDatabase().close();
+        TestUtils.dropDB(targetContext);
+    }
+
+    public void testPostsListPagesFollowEachOther() {
+        TestUtils.dropDB(targetContext);
+        WordPressDB wpDB = new WordPressDB(targetContext);
+
+        // 3 local drafts and 4 remote posts, two of them with the same date
+        long[] dates = {1000, 3000, 2000, 5000, 4000, 4000, 6000};
+        for (int i = 0; i < dates.length; i++) {
+            Post post = new Post(1, false);
+            post.setLocalDraft(i < 3);
+            post.setDate_created_gmt(dates[i]);
+            wpDB.savePost(post);
+        }
+
+        List<PostsListPost> allPosts = new ArrayList<PostsListPost>();
+        List<PostsListPost> page = wpDB.getPostsListPosts(1, false, null, 2);
+        while (page.size() > 0) {
+            assertTrue(page.size() <= 2);
+            allPosts.addAll(page);
+            page = wpDB.getPostsListPosts(1, false, page.get(page.size() - 1), 2);
+        }
+
+        assertEquals(dates.length, allPosts.size());
+        long[] expectedDates = {3000, 2000, 1000, 6000, 5000, 4000, 4000};
+        for (int i = 0; i < allPosts.size(); i++) {
+            assertEquals(i < 3, allPosts.get(i).isLocalDraft());
+            assertEquals(expectedDates[i], allPosts.get(i).getDateCreatedGmt());
+        }
+        assertEquals(4, wpDB.getRemotePostCount(1, false));
+        assertEquals(0, wpDB.getPostsListPosts(1, true, null, 2).size());
+
+        wpDB.getDatabase().close();
+        TestUtils.dropDB(targetContext);
+    }
+
+    public void testCategoriesFollowTheSync() {
+        TestUtils.dropDB(targetContext);
+        WordPressDB wpDB = new WordPressDB(targetContext);
+
+        List<CategoryNode> categories = new ArrayList<CategoryNode>();
+        categories.add(new CategoryNode(3, 2, "Kayak"));
+        categories.add(new CategoryNode(2, 0, "Sports"));
+        categories.add(new CategoryNode(1, 0, "Uncategorized"));
+        wpDB.saveCategories(1, categories);
+
+        assertEquals(3, wpDB.getCategoryId(1, "Kayak"));
+        assertEquals(2, wpDB.getCategoryParentId(1, "Kayak"));
+        assertEquals(0, wpDB.getCategoryId(2, "Kayak"));
+        CategoryNode root = wpDB.getCategoryIndex(1).copyTree();
+        assertEquals(2, root.getChildren().size());
+        assertEquals(3, root.getChildren().get("sports").getChildren().get("Kayak").getCategoryId());
+
+        // renamed, moved to the root, removed
+        categories.clear();
+        categories.add(new CategoryNode(3, 0, "Canoe"));
+        categories.add(new CategoryNode(2, 0, "Sports"));
+        wpDB.saveCategories(1, categories);
+
+        assertEquals(0, wpDB.getCategoryId(1, "Kayak"));
+        assertEquals(0, wpDB.getCategoryId(1, "Uncategorized"));
+        assertEquals(0, wpDB.getCategoryParentId(1, "Canoe"));
+        // the database has the same categories as the index
+        WordPressDB reopenedDB = new WordPressDB(targetContext);
+        assertEquals(2, reopenedDB.getCategoryIndex(1).size());
+        assertEquals(3, reopenedDB.getCategoryId(1, "Canoe"));
+        reopenedDB.getDatabase().close();
+        root = wpDB.getCategoryIndex(1).copyTree();
+        assertEquals(2, root.getChildren().size());
+        assertEquals(0, root.getChildren().get("sports").getChildren().size());
+
+        wpDB.getDatabase().close();
+        TestUtils.dropDB(targetContext);
+    }
+
+    private int getCount(Cursor cursor) {
+        try {
+            return cursor.getCount();
+        } finally {
+            cursor.close();
+        }
+    }
 }
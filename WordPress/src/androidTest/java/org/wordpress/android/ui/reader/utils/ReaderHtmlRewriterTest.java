@@ -0,0 +1,120 @@
+package org.wordpress.android.ui.reader.utils;
+
+import android.test.InstrumentationTestCase;
+
+import org.wordpress.android.util.AppLog;
+import org.wordpress.android.util.AppLog.T;
+
+/**
+ * Checks the edits applied by the rewriter, and compares it with replacing each tag in a StringBuilder on gallery
+ * posts of growing size - the rewriter's time should grow with the number of images, the StringBuilder's with its
+ * square
+ */
+public class ReaderHtmlRewriterTest extends InstrumentationTestCase {
+    private static final int[] NUM_IMAGES = {125, 250, 500};
+    private static final int NUM_RUNS = 5;
+
+    public void testAppliesEdits() {
+        ReaderHtmlRewriter rewriter = new ReaderHtmlRewriter("<p><img src='1'></p><p>text</p><img src='2'>");
+        assertEquals("<p><img src='1'></p><p>text</p><img src='2'>", rewriter.toString());
+
+        rewriter.replace(3, 16, "<img class='a'>");
+        rewriter.replace(20, 31, null);
+        rewriter.replace(31, 44, "[2]");
+        assertEquals(3, rewriter.getEditCount());
+        assertEquals("<p><img class='a'></p>[2]", rewriter.toString());
+
+        // edits can't go back or overlap
+        try {
+            rewriter.replace(10, 12, "");
+            fail("edit before the previous one was accepted");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        try {
+            rewriter.replace(44, 50, "");
+            fail("edit past the end of the content was accepted");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    public void testRewriterBenchmark() {
+        // warm up both
+        String warmUp = getGalleryContent(NUM_IMAGES[0]);
+        rewriteWithBuilder(warmUp);
+        rewriteWithRewriter(warmUp);
+
+        for (int numImages : NUM_IMAGES) {
+            String content = getGalleryContent(numImages);
+            assertEquals(rewriteWithBuilder(content), rewriteWithRewriter(content));
+
+            long start = System.nanoTime();
+            for (int i = 0; i < NUM_RUNS; i++) {
+                rewriteWithBuilder(content);
+            }
+            long builderMicros = (System.nanoTime() - start) / 1000 / NUM_RUNS;
+
+            start = System.nanoTime();
+            for (int i = 0; i < NUM_RUNS; i++) {
+                rewriteWithRewriter(content);
+            }
+            long rewriterMicros = (System.nanoTime() - start) / 1000 / NUM_RUNS;
+
+            AppLog.i(T.TESTS, numImages + " images, " + (content.length() / 1024) + " KB: StringBuilder.replace "
+                    + builderMicros + " us, rewriter " + rewriterMicros + " us");
+        }
+    }
+
+    /*
+     * resizes images the way ReaderPostRenderer did before the rewriter: find each tag in the builder, then
+     * replace it there
+     */
+    private static String rewriteWithBuilder(String content) {
+        StringBuilder sb = new StringBuilder(content);
+        ReaderHtmlTagScanner scanner = new ReaderHtmlTagScanner(content, ReaderHtmlTagScanner.TAG_IMG);
+        while (scanner.next()) {
+            String tag = scanner.getTag();
+            int start = sb.indexOf(tag);
+            sb.replace(start, start + tag.length(), getResizedTag(scanner));
+        }
+        return sb.toString();
+    }
+
+    private static String rewriteWithRewriter(String content) {
+        ReaderHtmlRewriter rewriter = new ReaderHtmlRewriter(content);
+        ReaderHtmlTagScanner scanner = new ReaderHtmlTagScanner(content, ReaderHtmlTagScanner.TAG_IMG);
+        while (scanner.next()) {
+            rewriter.replace(scanner.getTagStart(), scanner.getTagEnd(), getResizedTag(scanner));
+        }
+        return rewriter.toString();
+    }
+
+    private static String getResizedTag(ReaderHtmlTagScanner scanner) {
+        return "<img class='size-full' src='" + scanner.getAttributeValue("src") + "?w=720' width='360' height='"
+                + (scanner.getIntAttributeValue("height") / 2) + "' />";
+    }
+
+    /*
+     * a tiled gallery like the ones photo blogs publish, with a caption and a bit of text every few images
+     */
+    private static String getGalleryContent(int numImages) {
+        StringBuilder sb = new StringBuilder("<div class=\"tiled-gallery type-rectangular\">\n");
+        for (int i = 0; i < numImages; i++) {
+            if (i % 3 == 0) {
+                sb.append("<div class=\"gallery-row\" style=\"width: 640px; height: 213px;\">\n");
+            }
+            sb.append("<div class=\"gallery-group images-1\"><div class=\"tiled-gallery-item tiled-gallery-item-small\">")
+              .append("<a href=\"http://photos.example.com/2015/05/gallery/photo-").append(i).append("/\">")
+              .append("<img data-attachment-id=\"").append(10000 + i).append("\" data-orig-size=\"4000,3000\"")
+              .append(" src=\"http://photos.files.wordpress.com/2015/05/photo-").append(i).append(".jpg?w=213&#038;h=160\"")
+              .append(" width=\"213\" height=\"").append(160 + i % 7).append("\" align=\"left\" title=\"Photo ")
+              .append(i).append("\" /></a>")
+              .append("<div class=\"tiled-gallery-caption\">Caption of photo ").append(i).append("</div></div></div>\n");
+            if (i % 3 == 2) {
+                sb.append("</div>\n<p>A few words about the photos above, written by the author of the blog.</p>\n");
+            }
+        }
+        return sb.append("</div>\n").toString();
+    }
+}
@@ -0,0 +1,199 @@
+package org.wordpress.android.ui.reader.utils;
+
+import android.test.InstrumentationTestCase;
+
+import org.wordpress.android.util.AppLog;
+import org.wordpress.android.util.AppLog.T;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Checks the attributes read by the tag scanner, and compares its speed with the regular expressions the reader
+ * scanners used before on large posts
+ */
+public class ReaderHtmlTagScannerTest extends InstrumentationTestCase {
+    private static final int NUM_POSTS = 20;
+    private static final int NUM_RUNS = 5;
+
+    // the patterns ReaderImageScanner, ReaderIframeScanner and ReaderHtmlUtils used before the tag scanner
+    private static final Pattern IMG_TAG_PATTERN = Pattern.compile(
+            "<img(\\s+.*?)(?:src\\s*=\\s*(?:'|\")(.*?)(?:'|\"))(.*?)>",
+            Pattern.DOTALL | Pattern.CASE_INSENSITIVE);
+    private static final Pattern IFRAME_TAG_PATTERN = Pattern.compile(
+            "<iframe(\\s+.*?)(?:src\\s*=\\s*(?:'|\")(.*?)(?:'|\"))(.*?)>",
+            Pattern.DOTALL | Pattern.CASE_INSENSITIVE);
+    private static final Pattern SRC_ATTR_PATTERN = Pattern.compile(
+            "src\\s*=\\s*(?:'|\")(.*?)(?:'|\")",
+            Pattern.DOTALL | Pattern.CASE_INSENSITIVE);
+    private static final Pattern WIDTH_ATTR_PATTERN = Pattern.compile(
+            "width\\s*=\\s*(?:'|\")(.*?)(?:'|\")",
+            Pattern.DOTALL | Pattern.CASE_INSENSITIVE);
+
+    public void testFindsTagsAndAttributes() {
+        String content = "<p>text <IMG class='a' SRC=\"http://example.com/1.jpg\" width=640 height='480' /></p>"
+                + "<!-- <img src='http://example.com/comment.jpg'> -->"
+                + "<image src='http://example.com/not-an-img.jpg'>"
+                + "<a href='http://example.com' title='1 > 0'>link</a>"
+                + "<iframe src = 'http://example.com/embed' width='100%'></iframe>"
+                + "<video controls src=\"http://example.com/v.mp4\"></video>";
+
+        ReaderHtmlTagScanner scanner = new ReaderHtmlTagScanner(content);
+
+        assertTrue(scanner.next());
+        assertTrue(scanner.isTag(ReaderHtmlTagScanner.TAG_IMG));
+        assertEquals("http://example.com/1.jpg", scanner.getAttributeValue("src"));
+        assertEquals(640, scanner.getIntAttributeValue("width"));
+        assertEquals(480, scanner.getIntAttributeValue("height"));
+        assertNull(scanner.getAttributeValue("alt"));
+        assertEquals(content.indexOf("<IMG"), scanner.getTagStart());
+        assertTrue(scanner.getTag().endsWith("/>"));
+
+        assertTrue(scanner.next());
+        assertTrue(scanner.isTag(ReaderHtmlTagScanner.TAG_A));
+        assertEquals("1 > 0", scanner.getAttributeValue("title"));
+
+        assertTrue(scanner.next());
+        assertTrue(scanner.isTag(ReaderHtmlTagScanner.TAG_IFRAME));
+        assertEquals("http://example.com/embed", scanner.getAttributeValue("src"));
+        assertEquals(0, scanner.getIntAttributeValue("width"));
+
+        assertTrue(scanner.next());
+        assertTrue(scanner.isTag(ReaderHtmlTagScanner.TAG_VIDEO));
+        assertTrue(scanner.hasAttribute("controls"));
+        assertEquals("", scanner.getAttributeValue("controls"));
+        assertEquals("http://example.com/v.mp4", scanner.getAttributeValue("src"));
+
+        assertFalse(scanner.next());
+    }
+
+    public void testMalformedTags() {
+        // attribute names must match exactly, and the first one wins
+        ReaderHtmlTagScanner scanner = new ReaderHtmlTagScanner(
+                "<img data-src='lazy.jpg' src='1.jpg' src='2.jpg' width='-1' height='12px'>",
+                ReaderHtmlTagScanner.TAG_IMG);
+        assertTrue(scanner.next());
+        assertEquals("1.jpg", scanner.getAttributeValue("src"));
+        assertEquals(-1, scanner.getIntAttributeValue("width"));
+        assertEquals(0, scanner.getIntAttributeValue("height"));
+
+        // tags with an unterminated quote or never closed are skipped, the scan goes on after them
+        scanner = new ReaderHtmlTagScanner("<img src='1.jpg'> <img src='2.jpg> <img src=\"3.jpg\"> <img src=4.jpg",
+                ReaderHtmlTagScanner.TAG_IMG);
+        assertTrue(scanner.next());
+        assertEquals("1.jpg", scanner.getAttributeValue("src"));
+        assertTrue(scanner.next());
+        assertEquals("3.jpg", scanner.getAttributeValue("src"));
+        assertFalse(scanner.next());
+        assertFalse(new ReaderHtmlTagScanner("<img src='1.jpg'").next());
+        assertFalse(new ReaderHtmlTagScanner(null).next());
+
+        assertEquals("1.jpg", ReaderHtmlUtils.getSrcAttrValue("<img src=\"1.jpg\">"));
+        assertEquals(300, ReaderHtmlUtils.getWidthAttrValue("<iframe width='300'>"));
+        assertEquals(0, ReaderHtmlUtils.getHeightAttrValue("no tag"));
+    }
+
+    public void testScannersFindSameImagesAsPatterns() {
+        String content = getContent(0);
+        int numImages = 0;
+        Matcher matcher = IMG_TAG_PATTERN.matcher(content);
+        while (matcher.find()) {
+            numImages++;
+        }
+
+        assertEquals(numImages, new ReaderImageScanner(content, false).getImageList().size());
+    }
+
+    public void testScannerBenchmark() {
+        String[] posts = new String[NUM_POSTS];
+        int totalLength = 0;
+        for (int i = 0; i < NUM_POSTS; i++) {
+            posts[i] = getContent(i);
+            totalLength += posts[i].length();
+        }
+        // warm up both
+        scanWithPatterns(posts[0]);
+        scanWithTagScanner(posts[0]);
+
+        long start = System.nanoTime();
+        int patternCount = 0;
+        for (int run = 0; run < NUM_RUNS; run++) {
+            for (String post : posts) {
+                patternCount += scanWithPatterns(post);
+            }
+        }
+        long patternMs = (System.nanoTime() - start) / 1000000 / NUM_RUNS;
+
+        start = System.nanoTime();
+        int scannerCount = 0;
+        for (int run = 0; run < NUM_RUNS; run++) {
+            for (String post : posts) {
+                scannerCount += scanWithTagScanner(post);
+            }
+        }
+        long scannerMs = (System.nanoTime() - start) / 1000000 / NUM_RUNS;
+
+        assertEquals(patternCount, scannerCount);
+        AppLog.i(T.TESTS, NUM_POSTS + " posts, " + (totalLength / 1024) + " KB: patterns " + patternMs
+                + " ms, tag scanner " + scannerMs + " ms");
+    }
+
+    /*
+     * finds images and iframes the way the reader did before the tag scanner: one pass per tag type, and one
+     * more match per attribute
+     */
+    private static int scanWithPatterns(String content) {
+        int widths = 0;
+        Pattern[] tagPatterns = {IMG_TAG_PATTERN, IFRAME_TAG_PATTERN};
+        for (Pattern tagPattern : tagPatterns) {
+            Matcher matcher = tagPattern.matcher(content);
+            while (matcher.find()) {
+                String tag = content.substring(matcher.start(), matcher.end());
+                Matcher srcMatcher = SRC_ATTR_PATTERN.matcher(tag);
+                Matcher widthMatcher = WIDTH_ATTR_PATTERN.matcher(tag);
+                if (srcMatcher.find() && widthMatcher.find()) {
+                    widths += Integer.valueOf(tag.substring(widthMatcher.start() + 7, widthMatcher.end() - 1));
+                }
+            }
+        }
+        return widths;
+    }
+
+    private static int scanWithTagScanner(String content) {
+        int widths = 0;
+        ReaderHtmlTagScanner scanner = new ReaderHtmlTagScanner(content,
+                ReaderHtmlTagScanner.TAG_IMG, ReaderHtmlTagScanner.TAG_IFRAME);
+        while (scanner.next()) {
+            if (scanner.getAttributeValue("src") != null) {
+                widths += scanner.getIntAttributeValue("width");
+            }
+        }
+        return widths;
+    }
+
+    /*
+     * a long post like the ones the reader shows: paragraphs full of links, captioned images, galleries and
+     * embeds - about 200 KB each
+     */
+    private static String getContent(int i) {
+        StringBuilder sb = new StringBuilder();
+        for (int p = 0; p < 600; p++) {
+            sb.append("<p>Paragraph ").append(p).append(" of post ").append(i)
+              .append(", with <a href=\"http://example.com/").append(p).append("\" rel=\"nofollow\">a link</a>,")
+              .append(" <strong>some emphasis</strong> and text long enough to look like a real post.</p>\n");
+            if (p % 6 == 0) {
+                sb.append("<div id=\"attachment_").append(p).append("\" class=\"wp-caption aligncenter\">")
+                  .append("<img class=\"size-large wp-image-").append(p).append("\" alt=\"Image ").append(p)
+                  .append("\" src=\"http://example.files.wordpress.com/2015/05/image").append(i).append('-')
+                  .append(p).append(".jpg?w=1024&#038;h=768\" width=\"").append(600 + p).append("\" height=\"450\" />")
+                  .append("<p class=\"wp-caption-text\">Caption of image ").append(p).append("</p></div>\n");
+            }
+            if (p % 50 == 25) {
+                sb.append("<iframe class=\"youtube-player\" type=\"text/html\" width=\"640\" height=\"390\"")
+                  .append(" src=\"http://www.youtube.com/embed/video").append(p)
+                  .append("?version=3&#038;rel=1\" frameborder=\"0\" allowfullscreen=\"true\"></iframe>\n");
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -10,9 +10,10 @@ import org.wordpress.android.mocks.RestClientFactoryTest;
 import org.wordpress.android.mocks.XMLRPCFactoryTest;
 import org.wordpress.android.models.Blog;
 import org.wordpress.android.util.AppLog.T;
-import org.xmlrpc.android.ApiHelper;
 import org.xmlrpc.android.ApiHelper.ErrorType;
 import org.xmlrpc.android.ApiHelper.GenericCallback;
+import org.xmlrpc.android.BlogRefreshScheduler;
+import org.xmlrpc.android.BlogRefreshScheduler.Priority;
 
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
@@ -51,7 +52,7 @@ public class ApiHelperTest extends InstrumentationTestCase {
         XMLRPCFactoryTest.setPrefixAllInstances("malformed-software-version");
         final CountDownLatch countDownLatch = new CountDownLatch(1);
         Blog dummyBlog = new Blog("", "", "");
-        new ApiHelper.RefreshBlogContentTask(dummyBlog, new GenericCallback() {
+        BlogRefreshScheduler.refreshBlog(dummyBlog, Priority.HIGH, new GenericCallback() {
             @Override
             public void onSuccess() {
                 assertTrue(true);
@@ -63,7 +64,7 @@ public class ApiHelperTest extends InstrumentationTestCase {
                 assertTrue(false);
                 countDownLatch.countDown();
             }
-        }).execute(false);
+        });
         countDownLatch.await(5000, TimeUnit.SECONDS);
     }
 
@@ -72,7 +73,7 @@ public class ApiHelperTest extends InstrumentationTestCase {
         XMLRPCFactoryTest.setPrefixAllInstances("empty");
         final CountDownLatch countDownLatch = new CountDownLatch(1);
         Blog dummyBlog = new Blog("", "", "");
-        new ApiHelper.RefreshBlogContentTask(dummyBlog, new GenericCallback() {
+        BlogRefreshScheduler.refreshBlog(dummyBlog, Priority.HIGH, new GenericCallback() {
             @Override
             public void onSuccess() {
                 assertTrue(false);
@@ -84,7 +85,7 @@ public class ApiHelperTest extends InstrumentationTestCase {
                 assertTrue(true);
                 countDownLatch.countDown();
             }
-        }).execute(false);
+        });
         countDownLatch.await(5000, TimeUnit.SECONDS);
     }
 }
@@ -31,6 +31,7 @@ import org.wordpress.android.analytics.AnalyticsTracker;
 import org.wordpress.android.analytics.AnalyticsTracker.Stat;
 import org.wordpress.android.analytics.AnalyticsTrackerMixpanel;
 import org.wordpress.android.analytics.AnalyticsTrackerNosara;
+import org.wordpress.android.datasets.DatabaseExecutor;
 import org.wordpress.android.datasets.ReaderDatabase;
 import org.wordpress.android.datasets.SuggestionTable;
 import org.wordpress.android.models.Blog;
@@ -44,6 +45,7 @@ import org.wordpress.android.ui.accounts.helpers.UpdateBlogListTask.GenericUpdat
 import org.wordpress.android.ui.notifications.utils.NotificationsUtils;
 import org.wordpress.android.ui.notifications.utils.SimperiumUtils;
 import org.wordpress.android.ui.prefs.AppPrefs;
+import org.wordpress.android.ui.reader.ReaderHtmlCache;
 import org.wordpress.android.util.ABTestingUtils;
 import org.wordpress.android.util.ABTestingUtils.Feature;
 import org.wordpress.android.util.AccountHelper;
@@ -61,7 +63,8 @@ import org.wordpress.android.util.RateLimitedTask;
 import org.wordpress.android.util.VolleyUtils;
 import org.wordpress.passcodelock.AbstractAppLock;
 import org.wordpress.passcodelock.AppLockManager;
-import org.xmlrpc.android.ApiHelper;
+import org.xmlrpc.android.BlogRefreshScheduler;
+import org.xmlrpc.android.BlogRefreshScheduler.Priority;
 
 import java.io.File;
 import java.io.IOException;
@@ -91,6 +94,8 @@ public class WordPress extends Application {
 
     private static final int SECONDS_BETWEEN_OPTIONS_UPDATE = 10 * 60;
     private static final int SECONDS_BETWEEN_BLOGLIST_UPDATE = 6 * 60 * 60;
+    private static final int SECONDS_BETWEEN_BLOGS_REFRESH = 60 * 60;
+    private static final long REFRESH_BLOGS_TIME_BUDGET_MS = 60 * 1000;
 
     private static Context mContext;
     private static BitmapLruCache mBitmapCache;
@@ -102,8 +107,21 @@ public class WordPress extends Application {
         protected boolean run() {
             Blog currentBlog = WordPress.getCurrentBlog();
             if (currentBlog != null) {
-                new ApiHelper.RefreshBlogContentTask(currentBlog, null).executeOnExecutor(
-                        AsyncTask.THREAD_POOL_EXECUTOR, false);
+                BlogRefreshScheduler.refreshBlog(currentBlog, Priority.HIGH, null);
+                return true;
+            }
+            return false;
+        }
+    };
+
+    /**
+     *  Refresh all the visible blogs in background, the current blog first.
+     */
+    public static RateLimitedTask sRefreshVisibleBlogs = new RateLimitedTask(SECONDS_BETWEEN_BLOGS_REFRESH) {
+        protected boolean run() {
+            if (wpDB.getNumVisibleBlogs() > 1) {
+                BlogRefreshScheduler.refreshVisibleBlogs(WordPress.getCurrentBlog(), REFRESH_BLOGS_TIME_BUDGET_MS,
+                        null);
                 return true;
             }
             return false;
@@ -148,6 +166,8 @@ public class WordPress extends Application {
 
         versionName = PackageUtils.getVersionName(this);
         HelpshiftHelper.init(this);
+        // flag the database queries run on the main thread, they should use DatabaseExecutor
+        DatabaseExecutor.setMainThreadCheckEnabled(PackageUtils.isDebugBuild());
         initWpDb();
         enableHttpResponseCache(mContext);
 
@@ -166,6 +186,9 @@ public class WordPress extends Application {
         // Volley networking setup
         setupVolleyQueue();
 
+        // drop the least recently read posts from the cache of rendered reader posts
+        ReaderHtmlCache.trimInBackground();
+
         // Refresh account informations
         if (AccountHelper.getDefaultAccount().hasAccessToken()) {
             AccountHelper.getDefaultAccount().fetchAccountDetails();
@@ -290,6 +313,7 @@ public class WordPress extends Application {
                 .detectDiskReads()
                 .detectDiskWrites()
                 .detectNetwork()
+                .detectCustomSlowCalls() // <-- database queries on the main thread, see DatabaseExecutor
                 .penaltyLog()
                 .penaltyFlashScreen()
                 .build());
@@ -763,6 +787,9 @@ public class WordPress extends Application {
 
                 // Rate limited blog options Update
                 sUpdateCurrentBlogOption.runIfNotLimited();
+
+                // Rate limited refresh of the other blogs
+                sRefreshVisibleBlogs.runIfNotLimited();
             }
         }
 
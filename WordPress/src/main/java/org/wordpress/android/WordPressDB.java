@@ -7,6 +7,8 @@ import android.content.SharedPreferences;
 import android.database.Cursor;
 import android.database.DatabaseUtils;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteException;
+import android.database.sqlite.SQLiteStatement;
 import android.preference.PreferenceManager;
 import android.text.TextUtils;
 import android.util.Base64;
@@ -15,9 +17,12 @@ import org.apache.commons.lang.ArrayUtils;
 import org.json.JSONArray;
 import org.wordpress.android.datasets.AccountTable;
 import org.wordpress.android.datasets.CommentTable;
+import org.wordpress.android.datasets.DatabaseExecutor;
 import org.wordpress.android.datasets.SuggestionTable;
 import org.wordpress.android.models.Account;
 import org.wordpress.android.models.Blog;
+import org.wordpress.android.models.CategoryIndex;
+import org.wordpress.android.models.CategoryNode;
 import org.wordpress.android.util.helpers.MediaFile;
 import org.wordpress.android.models.Post;
 import org.wordpress.android.models.PostLocation;
@@ -28,19 +33,28 @@ import org.wordpress.android.ui.prefs.AppPrefs;
 import org.wordpress.android.util.AppLog;
 import org.wordpress.android.util.AppLog.T;
 import org.wordpress.android.util.BlogUtils;
+import org.wordpress.android.util.HtmlUtils;
 import org.wordpress.android.util.MapUtils;
 import org.wordpress.android.util.SqlUtils;
 import org.wordpress.android.util.StringUtils;
 
+import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.math.BigInteger;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -74,7 +88,7 @@ public class WordPressDB {
     public static final String COLUMN_NAME_VIDEO_PRESS_SHORTCODE = "videoPressShortcode";
     public static final String COLUMN_NAME_UPLOAD_STATE          = "uploadState";
 
-    private static final int DATABASE_VERSION = 30;
+    private static final int DATABASE_VERSION = 37;
 
     private static final String CREATE_TABLE_BLOGS = "create table if not exists accounts (id integer primary key autoincrement, "
             + "url text, blogName text, username text, password text, imagePlacement text, centerThumbnail boolean, fullSizeImage boolean, maxImageWidth text, maxImageWidthId integer);";
@@ -163,6 +177,110 @@ public class WordPressDB {
     private static final String ADD_MEDIA_UPLOAD_STATE = "alter table media add uploadState default '';";
     private static final String ADD_MEDIA_VIDEOPRESS_SHORTCODE = "alter table media add videoPressShortcode text default '';";
 
+    // add last modification date of posts, to only download the posts modified since the last sync
+    private static final String ADD_POSTS_DATE_MODIFIED_GMT = "alter table posts add date_modified_gmt date;";
+
+    // add a hash of the synced content of posts, to skip the posts that didn't change since the last sync
+    private static final String ADD_POSTS_CONTENT_HASH = "alter table posts add content_hash text;";
+
+    // indexes for the most frequent queries, see the *_QUERY constants below
+    private static final String[] CREATE_INDEXES_V33 = {
+            "create index if not exists idx_posts_list on posts(blogID, isPage, localDraft, date_created_gmt);",
+            "create index if not exists idx_posts_postid on posts(blogID, postid);",
+            "create index if not exists idx_media_blog_media on media(blogId, mediaId);",
+            "create index if not exists idx_media_blog_upload_state on media(blogId, uploadState);",
+            "create index if not exists idx_media_post_file on media(postID, filePath);",
+            "create index if not exists idx_cats_blog_name on cats(blog_id, category_name);"};
+
+    // full-text index of the media library, kept in sync with the media table by triggers so every write (save,
+    // update, delete, purge...) updates it. docid is the id of the media row.
+    private static final String[] CREATE_MEDIA_FTS_V34 = {
+            "create virtual table if not exists media_fts using fts4(title, caption, description, fileName);",
+            "create trigger if not exists media_fts_insert after insert on media begin"
+                    + " insert into media_fts(docid, title, caption, description, fileName)"
+                    + " values (new.id, new.title, new.caption, new.description, new.fileName); end;",
+            "create trigger if not exists media_fts_update after update of title, caption, description, fileName"
+                    + " on media when old.title is not new.title or old.caption is not new.caption"
+                    + " or old.description is not new.description or old.fileName is not new.fileName begin"
+                    + " update media_fts set title=new.title, caption=new.caption, description=new.description,"
+                    + " fileName=new.fileName where docid=old.id; end;",
+            "create trigger if not exists media_fts_delete after delete on media begin"
+                    + " delete from media_fts where docid=old.id; end;",
+            "insert into media_fts(docid, title, caption, description, fileName)"
+                    + " select id, title, caption, description, fileName from media;"};
+
+    // media_fts is created again with the unicode61 tokenizer where SQLite has it: it folds the case of every letter
+    // and ignores diacritics ("ecole" finds "École"), the simple tokenizer only folds ASCII letters. The triggers
+    // are kept, the last statement of CREATE_MEDIA_FTS_V34 fills the new index.
+    private static final String DROP_MEDIA_FTS_V37 = "drop table if exists media_fts;";
+    private static final String CREATE_MEDIA_FTS_UNICODE61_V37 = "create virtual table if not exists media_fts"
+            + " using fts4(title, caption, description, fileName, tokenize=unicode61);";
+
+    // full-text index of the local posts and pages. Posts are HTML, so the index is filled by
+    // updatePostsSearchIndex() with their text only - tag and attribute names don't match searches, and snippets
+    // don't cut tags. content is the body of the post followed by its "more" text, tags are the comma separated
+    // mt_keywords.
+    private static final String[] CREATE_POSTS_FTS_V35 = {
+            "create virtual table if not exists posts_fts using fts4(title, content, excerpt, tags);",
+            "create trigger if not exists posts_fts_delete after delete on posts begin"
+                    + " delete from posts_fts where docid=old.id; end;"};
+
+    // the first posts_fts indexed the raw HTML columns from triggers, drop them before indexing the text again
+    private static final String[] DROP_POSTS_FTS_TRIGGERS_V36 = {
+            "drop trigger if exists posts_fts_insert;",
+            "drop trigger if exists posts_fts_update;",
+            "delete from posts_fts;"};
+
+    private static final String POSTS_FTS_DELETE = "DELETE FROM posts_fts WHERE docid=?1";
+    private static final String POSTS_FTS_INSERT =
+            "INSERT INTO posts_fts(docid, title, content, excerpt, tags) VALUES (?1,?2,?3,?4,?5)";
+
+    // size of the search snippets in words, and markers of the matches in the snippets built by SQLite
+    private static final int POSTS_SEARCH_SNIPPET_TOKENS = 12;
+    private static final String SNIPPET_MATCH_START = "\u0002";
+    private static final String SNIPPET_MATCH_END = "\u0003";
+    private static final String SNIPPET_ELLIPSIS = "\u2026";
+
+    // Frequent queries, checked against full table scans by WordPressDBQueryPlanTest
+    // The posts list shows local drafts first, then the other posts, newest first. It's read a page at a time, each
+    // page starting after the (localDraft, date_created_gmt, id) key of the last post of the previous one, so a page
+    // costs the same whatever its position in the list.
+    private static final String POSTS_LIST_COLUMNS = "SELECT id, blogID, title, date_created_gmt, post_status, "
+            + "isUploading, localDraft, isLocalChange FROM posts";
+    static final String POSTS_LIST_FIRST_PAGE_QUERY = POSTS_LIST_COLUMNS + " WHERE blogID=? AND isPage=? "
+            + "AND localDraft=? AND NOT (localDraft=1 AND uploaded=1) ORDER BY date_created_gmt DESC, id DESC LIMIT ?";
+    static final String POSTS_LIST_NEXT_PAGE_QUERY = POSTS_LIST_COLUMNS + " WHERE blogID=? AND isPage=? "
+            + "AND localDraft=? AND date_created_gmt<=? AND (date_created_gmt<? OR id<?) "
+            + "AND NOT (localDraft=1 AND uploaded=1) ORDER BY date_created_gmt DESC, id DESC LIMIT ?";
+    static final String REMOTE_POSTS_COUNT_QUERY = "SELECT COUNT(*) FROM posts WHERE blogID=? AND isPage=? "
+            + "AND localDraft=0";
+    static final String MEDIA_FILES_FOR_BLOG_QUERY = "SELECT id as _id, * FROM media WHERE blogId=? AND mediaId <> '' "
+            + "AND (uploadState IS NULL OR uploadState IN ('uploaded', 'queued', 'failed', 'uploading')) "
+            + "ORDER BY (uploadState=?) DESC, date_created_gmt DESC";
+    static final String MEDIA_FILE_QUERY = "SELECT * FROM media WHERE blogId=? AND mediaId=?";
+    static final String MEDIA_FILE_FOR_POST_QUERY = "SELECT * FROM media WHERE postID=? AND filePath=?";
+    static final String MEDIA_UPLOAD_QUEUE_QUERY = "SELECT * FROM media WHERE uploadState=? AND blogId=? "
+            + "ORDER BY id";
+    // media matching the search (?1) first if their title matches it (?3)
+    static final String MEDIA_SEARCH_QUERY = "SELECT media.id as _id, media.* FROM media_fts"
+            + " JOIN media ON media.id=media_fts.docid WHERE media_fts MATCH ?1 AND media.blogId=?2"
+            + " AND media.mediaId <> '' AND (media.uploadState IS NULL OR media.uploadState='uploaded')"
+            + " ORDER BY (media.id IN (SELECT docid FROM media_fts WHERE media_fts MATCH ?3)) DESC,"
+            + " (media.uploadState=?4) DESC, media.date_created_gmt DESC";
+    // page (?7 rows from ?8) of the posts matching the search (?4) in the order of the posts list, with a snippet of
+    // the matching text between the ?1 and ?2 markers. The full-text index drives the inner query (CROSS JOIN keeps
+    // SQLite from walking every post of the blog instead), and snippets are only built for the rows of the page.
+    // The outer query sorts the page again, the order of a subquery isn't kept by the join.
+    static final String POSTS_SEARCH_QUERY = "SELECT page.*, snippet(posts_fts, ?1, ?2, ?3, -1, "
+            + POSTS_SEARCH_SNIPPET_TOKENS + ") AS snippet FROM (SELECT posts.id, posts.blogID, posts.title,"
+            + " posts.date_created_gmt, posts.post_status, posts.isUploading, posts.localDraft, posts.isLocalChange"
+            + " FROM posts_fts CROSS JOIN posts ON posts.id=posts_fts.docid WHERE posts_fts MATCH ?4"
+            + " AND posts.blogID=?5 AND posts.isPage=?6 AND NOT (posts.localDraft=1 AND posts.uploaded=1)"
+            + " ORDER BY posts.localDraft DESC, posts.date_created_gmt DESC, posts.id DESC LIMIT ?7 OFFSET ?8) AS page"
+            + " CROSS JOIN posts_fts ON posts_fts.docid=page.id WHERE posts_fts MATCH ?4"
+            + " ORDER BY page.localDraft DESC, page.date_created_gmt DESC, page.id DESC";
+    static final String CATEGORIES_FOR_BLOG_QUERY = "SELECT wp_id, parent_id, category_name FROM cats WHERE blog_id=?";
+
     // add hidden flag to blog settings (accounts)
     private static final String ADD_BLOGS_HIDDEN_FLAG = "alter table accounts add isHidden boolean default 0;";
 
@@ -172,12 +290,25 @@ public class WordPressDB {
 
     private SQLiteDatabase db;
 
+    // Blogs are read far more often than they're written (current blog, list binding, upload services...): the
+    // blogs read are kept in memory, passwords decrypted, and dropped by any write to the blogs table. Copies are
+    // returned so callers can still change their Blog before saving it.
+    private final Object blogCacheLock = new Object();
+    private final Map<Integer, Blog> blogCache = new HashMap<Integer, Blog>();
+    private final Map<Integer, Boolean> dotComBlogVisibilityCache = new HashMap<Integer, Boolean>();
+    private long blogCacheGeneration;
+
+    // Categories of the blogs, loaded once per blog and then kept up to date by the category writes below
+    private final Map<Integer, CategoryIndex> categoryIndexes = new HashMap<Integer, CategoryIndex>();
+
     protected static final String PASSWORD_SECRET = BuildConfig.DB_SECRET;
     private Context context;
 
     public WordPressDB(Context ctx) {
         this.context = ctx;
-        db = ctx.openOrCreateDatabase(DATABASE_NAME, 0, null);
+        db = ctx.openOrCreateDatabase(DATABASE_NAME, 0, DatabaseExecutor.getCursorFactory());
+        // reads (see DatabaseExecutor) don't wait for a write in progress, and writes don't wait for them
+        db.enableWriteAheadLogging();
 
         // Create tables if they don't exist
         db.execSQL(CREATE_TABLE_BLOGS);
@@ -289,6 +420,69 @@ public class WordPressDB {
                 AccountTable.createTables(db);
                 migratePreferencesToAccountTable(context);
                 currentVersion++;
+            case 30:
+                db.execSQL(ADD_POSTS_DATE_MODIFIED_GMT);
+                currentVersion++;
+            case 31:
+                db.execSQL(ADD_POSTS_CONTENT_HASH);
+                currentVersion++;
+            case 32:
+                for (String createIndex : CREATE_INDEXES_V33) {
+                    db.execSQL(createIndex);
+                }
+                currentVersion++;
+            case 33:
+                db.beginTransaction();
+                try {
+                    for (String sql : CREATE_MEDIA_FTS_V34) {
+                        db.execSQL(sql);
+                    }
+                    db.setTransactionSuccessful();
+                } finally {
+                    db.endTransaction();
+                }
+                currentVersion++;
+            case 34:
+                db.beginTransaction();
+                try {
+                    for (String sql : CREATE_POSTS_FTS_V35) {
+                        db.execSQL(sql);
+                    }
+                    db.setTransactionSuccessful();
+                } finally {
+                    db.endTransaction();
+                }
+                currentVersion++;
+            case 35:
+                db.beginTransaction();
+                try {
+                    for (String sql : DROP_POSTS_FTS_TRIGGERS_V36) {
+                        db.execSQL(sql);
+                    }
+                    updatePostsSearchIndex(null, null);
+                    db.setTransactionSuccessful();
+                } finally {
+                    db.endTransaction();
+                }
+                currentVersion++;
+            case 36:
+                db.beginTransaction();
+                try {
+                    db.execSQL(DROP_MEDIA_FTS_V37);
+                    try {
+                        db.execSQL(CREATE_MEDIA_FTS_UNICODE61_V37);
+                    } catch (SQLiteException e) {
+                        AppLog.w(T.DB, "unicode61 tokenizer not available, media search folds ASCII letters only");
+                    }
+                    // creates media_fts with the simple tokenizer if unicode61 failed, then fills it
+                    for (String sql : CREATE_MEDIA_FTS_V34) {
+                        db.execSQL(sql);
+                    }
+                    db.setTransactionSuccessful();
+                } finally {
+                    db.endTransaction();
+                }
+                currentVersion++;
         }
         db.setVersion(DATABASE_VERSION);
     }
@@ -318,6 +512,10 @@ public class WordPressDB {
 
     public static void deleteDatabase(Context ctx) {
         ctx.deleteDatabase(DATABASE_NAME);
+        // older Android versions don't delete the write-ahead log, it would be replayed in the new database
+        String path = ctx.getDatabasePath(DATABASE_NAME).getPath();
+        new File(path + "-wal").delete();
+        new File(path + "-shm").delete();
     }
 
     private void migrateWPComAccount() {
@@ -359,7 +557,9 @@ public class WordPressDB {
         }
         values.put("isAdmin", blog.isAdmin());
         values.put("isHidden", blog.isHidden());
-        return db.insert(BLOGS_TABLE, null, values) > -1;
+        boolean result = db.insert(BLOGS_TABLE, null, values) > -1;
+        invalidateBlogCache();
+        return result;
     }
 
     public List<Integer> getAllBlogsIDs() {
@@ -471,19 +671,37 @@ public class WordPressDB {
     public int setAllDotComBlogsVisibility(boolean visible) {
         ContentValues values = new ContentValues();
         values.put("isHidden", !visible);
-        return db.update(BLOGS_TABLE, values, "dotcomFlag=1", null);
+        int result = db.update(BLOGS_TABLE, values, "dotcomFlag=1", null);
+        invalidateBlogCache();
+        return result;
     }
 
     public int setDotComBlogsVisibility(int id, boolean visible) {
         ContentValues values = new ContentValues();
         values.put("isHidden", !visible);
-        return db.update(BLOGS_TABLE, values, "dotcomFlag=1 AND id=" + id, null);
+        int result = db.update(BLOGS_TABLE, values, "dotcomFlag=1 AND id=" + id, null);
+        invalidateBlogCache(id);
+        return result;
     }
 
     public boolean isDotComBlogVisible(int blogId) {
+        long generation;
+        synchronized (blogCacheLock) {
+            Boolean isVisible = dotComBlogVisibilityCache.get(blogId);
+            if (isVisible != null) {
+                return isVisible;
+            }
+            generation = blogCacheGeneration;
+        }
         String[] args = {Integer.toString(blogId)};
-        return SqlUtils.boolForQuery(db, "SELECT 1 FROM " + BLOGS_TABLE +
+        boolean isVisible = SqlUtils.boolForQuery(db, "SELECT 1 FROM " + BLOGS_TABLE +
                 " WHERE isHidden = 0 AND blogId=?", args);
+        synchronized (blogCacheLock) {
+            if (generation == blogCacheGeneration) {
+                dotComBlogVisibilityCache.put(blogId, isVisible);
+            }
+        }
+        return isVisible;
     }
 
     public boolean isBlogInDatabase(int blogId, String xmlRpcUrl) {
@@ -535,6 +753,7 @@ public class WordPressDB {
         }
         boolean returnValue = db.update(BLOGS_TABLE, values, "id=" + blog.getLocalTableBlogId(),
                 null) > 0;
+        invalidateBlogCache(blog.getLocalTableBlogId());
         if (blog.isDotcomFlag()) {
             returnValue = updateWPComCredentials(blog.getUsername(), blog.getPassword());
         }
@@ -547,12 +766,15 @@ public class WordPressDB {
         ContentValues userPass = new ContentValues();
         userPass.put("username", username);
         userPass.put("password", encryptPassword(password));
-        return db.update(BLOGS_TABLE, userPass, "username=\""
+        boolean result = db.update(BLOGS_TABLE, userPass, "username=\""
                 + username + "\" AND dotcomFlag=1", null) > 0;
+        invalidateBlogCache();
+        return result;
     }
 
     public boolean deleteBlog(Context ctx, int id) {
         int rowsAffected = db.delete(BLOGS_TABLE, "id=?", new String[]{Integer.toString(id)});
+        invalidateBlogCache(id);
         deleteQuickPressShortcutsForBlog(ctx, id);
         deleteAllPostsForLocalTableBlogId(id);
         return (rowsAffected > 0);
@@ -563,9 +785,13 @@ public class WordPressDB {
      */
     public void dangerouslyDeleteAllContent() {
         db.delete(BLOGS_TABLE, null, null);
+        invalidateBlogCache();
         db.delete(POSTS_TABLE, null, null);
         db.delete(MEDIA_TABLE, null, null);
         db.delete(CATEGORIES_TABLE, null, null);
+        synchronized (categoryIndexes) {
+            categoryIndexes.clear();
+        }
         db.delete(CommentTable.COMMENTS_TABLE, null, null);
     }
 
@@ -583,6 +809,28 @@ public class WordPressDB {
         }
     }
 
+    /**
+     * Drop the cached blog with this local id, and the cached visibility of all blogs
+     */
+    private void invalidateBlogCache(int localId) {
+        synchronized (blogCacheLock) {
+            blogCache.remove(localId);
+            dotComBlogVisibilityCache.clear();
+            blogCacheGeneration++;
+        }
+    }
+
+    /**
+     * Drop all the cached blogs, call it after any change to several rows of the blogs table
+     */
+    private void invalidateBlogCache() {
+        synchronized (blogCacheLock) {
+            blogCache.clear();
+            dotComBlogVisibilityCache.clear();
+            blogCacheGeneration++;
+        }
+    }
+
     /**
      * Instantiate a new Blog object from it's local id
      *
@@ -590,6 +838,28 @@ public class WordPressDB {
      * @return a new Blog instance or null if the localId was not found
      */
     public Blog instantiateBlogByLocalId(int localId) {
+        long generation;
+        synchronized (blogCacheLock) {
+            Blog cachedBlog = blogCache.get(localId);
+            if (cachedBlog != null) {
+                return new Blog(cachedBlog);
+            }
+            generation = blogCacheGeneration;
+        }
+
+        Blog blog = loadBlogByLocalId(localId);
+        if (blog != null) {
+            synchronized (blogCacheLock) {
+                // don't cache the blog if it was written while it was read
+                if (generation == blogCacheGeneration) {
+                    blogCache.put(localId, new Blog(blog));
+                }
+            }
+        }
+        return blog;
+    }
+
+    private Blog loadBlogByLocalId(int localId) {
         String[] fields =
                 new String[]{"url", "blogName", "username", "password", "httpuser", "httppassword", "imagePlacement",
                              "centerThumbnail", "fullSizeImage", "maxImageWidth", "maxImageWidthId",
@@ -837,152 +1107,454 @@ public class WordPressDB {
         return (Object[]) array;
     }
 
+    // Columns written by savePosts(), in the order of the statement parameters. Optional values (not returned by
+    // every API method) are bound to null and keep their current value on update.
+    private static final String[] SYNCED_POST_COLUMNS = {
+            "blogID", "postid", "isPage", "title", "dateCreated", "date_created_gmt", "date_modified_gmt",
+            "description", "link", "permaLink", "categories", "custom_fields", "longitude", "latitude", "mt_excerpt",
+            "mt_text_more", "mt_allow_comments", "mt_allow_pings", "wp_slug", "wp_password", "wp_author_id",
+            "wp_author_display_name", "post_status", "userid", "wp_page_parent_id", "wp_page_parent_title",
+            "mt_keywords", "wp_post_format", "content_hash"};
+    private static final String[] OPTIONAL_SYNCED_POST_COLUMNS = {
+            "date_modified_gmt", "longitude", "latitude", "wp_author_display_name", "wp_page_parent_id",
+            "wp_page_parent_title", "mt_keywords", "wp_post_format"};
+    // Optional columns with a '' default value
+    private static final String[] OPTIONAL_TEXT_SYNCED_POST_COLUMNS = {
+            "wp_author_display_name", "mt_keywords", "wp_post_format"};
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
     /**
      * Saves a list of posts to the db
+     *
+     * A hash of the content received is stored with each post: posts that didn't change since the last sync are
+     * skipped, the others are written with compiled statements.
+     *
      * @param postsList: list of post objects
      * @param localBlogId: the posts table blog id
      * @param isPage: boolean to save as pages
+     * @param shouldOverwrite: overwrite the posts with local changes
      */
     public void savePosts(List<?> postsList, int localBlogId, boolean isPage, boolean shouldOverwrite) {
-        if (postsList != null && postsList.size() != 0) {
-            db.beginTransaction();
-            try {
-                for (Object post : postsList) {
-                    ContentValues values = new ContentValues();
-
-                    // Sanity checks
-                    if (!(post instanceof Map)) {
-                        continue;
-                    }
-                    Map<?, ?> postMap = (Map<?, ?>) post;
-                    String postID = MapUtils.getMapStr(postMap, (isPage) ? "page_id" : "postid");
-                    if (TextUtils.isEmpty(postID)) {
-                        // If we don't have a post or page ID, move on
-                        continue;
-                    }
+        if (postsList == null || postsList.size() == 0) {
+            return;
+        }
 
-                    values.put("blogID", localBlogId);
-                    values.put("postid", postID);
-                    values.put("title", MapUtils.getMapStr(postMap, "title"));
-                    Date dateCreated = MapUtils.getMapDate(postMap, "dateCreated");
-                    if (dateCreated != null) {
-                        values.put("dateCreated", dateCreated.getTime());
-                    } else {
-                        Date now = new Date();
-                        values.put("dateCreated", now.getTime());
-                    }
+        Map<String, String> storedHashes = new HashMap<String, String>();
+        Map<String, Long> storedIds = new HashMap<String, Long>();
+        Set<String> locallyChangedPostIds = new HashSet<String>();
+        Cursor c = db.query(POSTS_TABLE, new String[]{"postid", "content_hash", "isLocalChange", "id"},
+                "blogID=? AND isPage=? AND postid IS NOT NULL",
+                new String[]{String.valueOf(localBlogId), String.valueOf(SqlUtils.boolToSql(isPage))},
+                null, null, null);
+        try {
+            while (c.moveToNext()) {
+                String postID = c.getString(0);
+                storedHashes.put(postID, c.getString(1));
+                storedIds.put(postID, c.getLong(3));
+                if (SqlUtils.sqlToBool(c.getInt(2))) {
+                    locallyChangedPostIds.add(postID);
+                }
+            }
+        } finally {
+            c.close();
+        }
 
-                    Date dateCreatedGmt = MapUtils.getMapDate(postMap, "date_created_gmt");
-                    if (dateCreatedGmt != null) {
-                        values.put("date_created_gmt", dateCreatedGmt.getTime());
-                    } else {
-                        dateCreatedGmt = new Date((Long) values.get("dateCreated"));
-                        values.put("date_created_gmt", dateCreatedGmt.getTime() + (dateCreatedGmt.getTimezoneOffset() * 60000));
-                    }
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            AppLog.e(T.DB, e);
+            digest = null;
+        }
 
-                    values.put("description", MapUtils.getMapStr(postMap, "description"));
-                    values.put("link", MapUtils.getMapStr(postMap, "link"));
-                    values.put("permaLink", MapUtils.getMapStr(postMap, "permaLink"));
+        StringBuilder insertSql = new StringBuilder("INSERT INTO " + POSTS_TABLE + " (");
+        StringBuilder insertValues = new StringBuilder();
+        StringBuilder updateSql = new StringBuilder("UPDATE " + POSTS_TABLE + " SET ");
+        List<String> optionalColumns = Arrays.asList(OPTIONAL_SYNCED_POST_COLUMNS);
+        List<String> optionalTextColumns = Arrays.asList(OPTIONAL_TEXT_SYNCED_POST_COLUMNS);
+        for (int i = 0; i < SYNCED_POST_COLUMNS.length; i++) {
+            String column = SYNCED_POST_COLUMNS[i];
+            String param = "?" + (i + 1);
+            if (i > 0) {
+                insertSql.append(",");
+                insertValues.append(",");
+                updateSql.append(",");
+            }
+            insertSql.append(column);
+            if (optionalTextColumns.contains(column)) {
+                insertValues.append("COALESCE(").append(param).append(",'')");
+            } else {
+                insertValues.append(param);
+            }
+            updateSql.append(column).append("=");
+            if (optionalColumns.contains(column)) {
+                updateSql.append("COALESCE(").append(param).append(",").append(column).append(")");
+            } else {
+                updateSql.append(param);
+            }
+        }
+        insertSql.append(") VALUES (").append(insertValues).append(")");
+        updateSql.append(" WHERE blogID=?1 AND postid=?2 AND isPage=?3");
+        if (!shouldOverwrite) {
+            updateSql.append(" AND NOT isLocalChange=1");
+        }
 
-                    Object[] postCategories = (Object[]) postMap.get("categories");
-                    JSONArray jsonCategoriesArray = new JSONArray();
-                    if (postCategories != null) {
-                        for (Object postCategory : postCategories) {
-                            jsonCategoriesArray.put(postCategory.toString());
-                        }
-                    }
-                    values.put("categories", jsonCategoriesArray.toString());
-
-                    Object[] custom_fields = (Object[]) postMap.get("custom_fields");
-                    JSONArray jsonCustomFieldsArray = new JSONArray();
-                    if (custom_fields != null) {
-                        for (Object custom_field : custom_fields) {
-                            jsonCustomFieldsArray.put(custom_field.toString());
-                            // Update geo_long and geo_lat from custom fields
-                            if (!(custom_field instanceof Map))
-                                continue;
-                            Map<?, ?> customField = (Map<?, ?>) custom_field;
-                            if (customField.get("key") != null && customField.get("value") != null) {
-                                if (customField.get("key").equals("geo_longitude"))
-                                    values.put("longitude", customField.get("value").toString());
-                                if (customField.get("key").equals("geo_latitude"))
-                                    values.put("latitude", customField.get("value").toString());
-                            }
-                        }
-                    }
-                    values.put("custom_fields", jsonCustomFieldsArray.toString());
-
-                    values.put("mt_excerpt", MapUtils.getMapStr(postMap, (isPage) ? "excerpt" : "mt_excerpt"));
-                    values.put("mt_text_more", MapUtils.getMapStr(postMap, (isPage) ? "text_more" : "mt_text_more"));
-                    values.put("mt_allow_comments", MapUtils.getMapInt(postMap, "mt_allow_comments", 0));
-                    values.put("mt_allow_pings", MapUtils.getMapInt(postMap, "mt_allow_pings", 0));
-                    values.put("wp_slug", MapUtils.getMapStr(postMap, "wp_slug"));
-                    values.put("wp_password", MapUtils.getMapStr(postMap, "wp_password"));
-                    values.put("wp_author_id", MapUtils.getMapStr(postMap, "wp_author_id"));
-                    values.put("wp_author_display_name", MapUtils.getMapStr(postMap, "wp_author_display_name"));
-                    values.put("post_status", MapUtils.getMapStr(postMap, (isPage) ? "page_status" : "post_status"));
-                    values.put("userid", MapUtils.getMapStr(postMap, "userid"));
-
-                    if (isPage) {
-                        values.put("isPage", true);
-                        values.put("wp_page_parent_id", MapUtils.getMapStr(postMap, "wp_page_parent_id"));
-                        values.put("wp_page_parent_title", MapUtils.getMapStr(postMap, "wp_page_parent_title"));
-                    } else {
-                        values.put("mt_keywords", MapUtils.getMapStr(postMap, "mt_keywords"));
-                        values.put("wp_post_format", MapUtils.getMapStr(postMap, "wp_post_format"));
-                    }
+        int skippedCount = 0;
+        db.beginTransaction();
+        SQLiteStatement insertStmt = db.compileStatement(insertSql.toString());
+        SQLiteStatement updateStmt = db.compileStatement(updateSql.toString());
+        SQLiteStatement ftsDeleteStmt = db.compileStatement(POSTS_FTS_DELETE);
+        SQLiteStatement ftsInsertStmt = db.compileStatement(POSTS_FTS_INSERT);
+        try {
+            for (Object post : postsList) {
+                // Sanity checks
+                if (!(post instanceof Map)) {
+                    continue;
+                }
+                Map<?, ?> postMap = (Map<?, ?>) post;
+                String postID = MapUtils.getMapStr(postMap, (isPage) ? "page_id" : "postid");
+                if (TextUtils.isEmpty(postID)) {
+                    // If we don't have a post or page ID, move on
+                    continue;
+                }
 
-                    String whereClause = "blogID=? AND postID=? AND isPage=?";
-                    if (!shouldOverwrite) {
-                        whereClause += " AND NOT isLocalChange=1";
-                    }
+                boolean isStored = storedHashes.containsKey(postID);
+                boolean isLocallyChanged = locallyChangedPostIds.contains(postID);
+                if (isLocallyChanged && !shouldOverwrite) {
+                    skippedCount++;
+                    continue;
+                }
+                String contentHash = getContentHash(digest, postMap);
+                if (isStored && !isLocallyChanged && contentHash != null
+                        && contentHash.equals(storedHashes.get(postID))) {
+                    skippedCount++;
+                    continue;
+                }
 
-                    int result = db.update(POSTS_TABLE, values, whereClause,
-                            new String[]{String.valueOf(localBlogId), postID, String.valueOf(SqlUtils.boolToSql(isPage))});
-                    if (result == 0)
-                        db.insert(POSTS_TABLE, null, values);
+                SQLiteStatement stmt = isStored ? updateStmt : insertStmt;
+                bindSyncedPost(stmt, postMap, localBlogId, postID, isPage, contentHash);
+                if (isStored) {
+                    stmt.executeUpdateDelete();
+                } else {
+                    // the same post could be listed twice
+                    storedIds.put(postID, stmt.executeInsert());
+                    storedHashes.put(postID, contentHash);
                 }
+                // index the same values bindSyncedPost just wrote rather than reading the row back (pages
+                // have no mt_keywords)
+                indexPostText(ftsDeleteStmt, ftsInsertStmt, storedIds.get(postID),
+                        MapUtils.getMapStr(postMap, "title"),
+                        MapUtils.getMapStr(postMap, "description"),
+                        MapUtils.getMapStr(postMap, (isPage) ? "text_more" : "mt_text_more"),
+                        MapUtils.getMapStr(postMap, (isPage) ? "excerpt" : "mt_excerpt"),
+                        (isPage) ? "" : MapUtils.getMapStr(postMap, "mt_keywords"));
+            }
+
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            SqlUtils.closeStatement(insertStmt);
+            SqlUtils.closeStatement(updateStmt);
+            SqlUtils.closeStatement(ftsDeleteStmt);
+            SqlUtils.closeStatement(ftsInsertStmt);
+        }
+        AppLog.d(T.DB, "Saved " + (postsList.size() - skippedCount) + " posts, " + skippedCount + " unchanged");
+    }
+
+    private void bindSyncedPost(SQLiteStatement stmt, Map<?, ?> postMap, int localBlogId, String postID,
+                                boolean isPage, String contentHash) {
+        stmt.clearBindings();
+        stmt.bindLong(1, localBlogId);
+        stmt.bindString(2, postID);
+        stmt.bindLong(3, SqlUtils.boolToSql(isPage));
+        stmt.bindString(4, MapUtils.getMapStr(postMap, "title"));
+
+        Date dateCreated = MapUtils.getMapDate(postMap, "dateCreated");
+        if (dateCreated == null) {
+            dateCreated = new Date();
+        }
+        stmt.bindLong(5, dateCreated.getTime());
+
+        Date dateCreatedGmt = MapUtils.getMapDate(postMap, "date_created_gmt");
+        if (dateCreatedGmt != null) {
+            stmt.bindLong(6, dateCreatedGmt.getTime());
+        } else {
+            stmt.bindLong(6, dateCreated.getTime() + (dateCreated.getTimezoneOffset() * 60000));
+        }
+
+        Date dateModifiedGmt = MapUtils.getMapDate(postMap, "date_modified_gmt");
+        if (dateModifiedGmt != null) {
+            stmt.bindLong(7, dateModifiedGmt.getTime());
+        }
 
-                db.setTransactionSuccessful();
-            } finally {
-                db.endTransaction();
+        stmt.bindString(8, MapUtils.getMapStr(postMap, "description"));
+        stmt.bindString(9, MapUtils.getMapStr(postMap, "link"));
+        stmt.bindString(10, MapUtils.getMapStr(postMap, "permaLink"));
+
+        Object[] postCategories = (Object[]) postMap.get("categories");
+        JSONArray jsonCategoriesArray = new JSONArray();
+        if (postCategories != null) {
+            for (Object postCategory : postCategories) {
+                jsonCategoriesArray.put(postCategory.toString());
+            }
+        }
+        stmt.bindString(11, jsonCategoriesArray.toString());
+
+        Object[] custom_fields = (Object[]) postMap.get("custom_fields");
+        JSONArray jsonCustomFieldsArray = new JSONArray();
+        if (custom_fields != null) {
+            for (Object custom_field : custom_fields) {
+                jsonCustomFieldsArray.put(custom_field.toString());
+                // Update geo_long and geo_lat from custom fields
+                if (!(custom_field instanceof Map))
+                    continue;
+                Map<?, ?> customField = (Map<?, ?>) custom_field;
+                if (customField.get("key") != null && customField.get("value") != null) {
+                    if (customField.get("key").equals("geo_longitude"))
+                        stmt.bindString(13, customField.get("value").toString());
+                    if (customField.get("key").equals("geo_latitude"))
+                        stmt.bindString(14, customField.get("value").toString());
+                }
+            }
+        }
+        stmt.bindString(12, jsonCustomFieldsArray.toString());
+
+        stmt.bindString(15, MapUtils.getMapStr(postMap, (isPage) ? "excerpt" : "mt_excerpt"));
+        stmt.bindString(16, MapUtils.getMapStr(postMap, (isPage) ? "text_more" : "mt_text_more"));
+        stmt.bindLong(17, MapUtils.getMapInt(postMap, "mt_allow_comments", 0));
+        stmt.bindLong(18, MapUtils.getMapInt(postMap, "mt_allow_pings", 0));
+        stmt.bindString(19, MapUtils.getMapStr(postMap, "wp_slug"));
+        stmt.bindString(20, MapUtils.getMapStr(postMap, "wp_password"));
+        stmt.bindString(21, MapUtils.getMapStr(postMap, "wp_author_id"));
+        // wp.getPosts doesn't return the author display name nor the page parent title, keep the ones we have
+        if (postMap.containsKey("wp_author_display_name")) {
+            stmt.bindString(22, MapUtils.getMapStr(postMap, "wp_author_display_name"));
+        }
+        stmt.bindString(23, MapUtils.getMapStr(postMap, (isPage) ? "page_status" : "post_status"));
+        stmt.bindString(24, MapUtils.getMapStr(postMap, "userid"));
+
+        if (isPage) {
+            stmt.bindString(25, MapUtils.getMapStr(postMap, "wp_page_parent_id"));
+            if (postMap.containsKey("wp_page_parent_title")) {
+                stmt.bindString(26, MapUtils.getMapStr(postMap, "wp_page_parent_title"));
             }
+        } else {
+            stmt.bindString(27, MapUtils.getMapStr(postMap, "mt_keywords"));
+            stmt.bindString(28, MapUtils.getMapStr(postMap, "wp_post_format"));
+        }
+
+        if (contentHash != null) {
+            stmt.bindString(29, contentHash);
         }
     }
 
-    public List<PostsListPost> getPostsListPosts(int blogId, boolean loadPages) {
+    /*
+     * returns a hash of everything the server sent for a post, or null if it can't be computed
+     */
+    private static String getContentHash(MessageDigest digest, Map<?, ?> postMap) {
+        if (digest == null) {
+            return null;
+        }
+        digest.reset();
+        updateContentHash(digest, postMap);
+        return new BigInteger(1, digest.digest()).toString(16);
+    }
+
+    private static void updateContentHash(MessageDigest digest, Object value) {
+        if (value instanceof Map) {
+            // hash the members in the same order whatever the order of the map
+            Map<?, ?> map = (Map<?, ?>) value;
+            List<String> keys = new ArrayList<String>();
+            for (Object key : map.keySet()) {
+                keys.add(String.valueOf(key));
+            }
+            Collections.sort(keys);
+            digest.update((byte) '{');
+            for (String key : keys) {
+                updateContentHash(digest, key);
+                digest.update((byte) ':');
+                updateContentHash(digest, map.get(key));
+            }
+            digest.update((byte) '}');
+        } else if (value instanceof Object[]) {
+            digest.update((byte) '[');
+            for (Object element : (Object[]) value) {
+                updateContentHash(digest, element);
+                digest.update((byte) ',');
+            }
+            digest.update((byte) ']');
+        } else if (value instanceof Date) {
+            updateContentHash(digest, String.valueOf(((Date) value).getTime()));
+        } else {
+            String string = String.valueOf(value);
+            digest.update(string.getBytes(UTF8));
+            digest.update((byte) 0);
+        }
+    }
+
+    /**
+     * Returns a page of the posts list: local drafts first, then the other posts, newest first
+     *
+     * @param lastPost last post of the previous page, or null for the first page
+     * @param limit maximum number of posts returned, fewer posts means the end of the list
+     */
+    public List<PostsListPost> getPostsListPosts(int blogId, boolean loadPages, PostsListPost lastPost, int limit) {
         List<PostsListPost> posts = new ArrayList<PostsListPost>();
-        Cursor c;
-        c = db.query(POSTS_TABLE,
-                new String[] { "id", "blogID", "title",
-                        "date_created_gmt", "post_status", "isUploading", "localDraft", "isLocalChange" },
-                "blogID=? AND isPage=? AND NOT (localDraft=1 AND uploaded=1)",
-                new String[] {String.valueOf(blogId), (loadPages) ? "1" : "0"}, null, null, "localDraft DESC, date_created_gmt DESC");
-        int numRows = c.getCount();
-        c.moveToFirst();
+        String blogIdArg = String.valueOf(blogId);
+        String isPageArg = (loadPages) ? "1" : "0";
+        if (lastPost == null || lastPost.isLocalDraft()) {
+            Cursor c;
+            if (lastPost == null) {
+                c = db.rawQuery(POSTS_LIST_FIRST_PAGE_QUERY, new String[] {blogIdArg, isPageArg, "1",
+                        String.valueOf(limit)});
+            } else {
+                c = getPostsListNextPage(blogIdArg, isPageArg, lastPost, limit);
+            }
+            addPostsListPosts(c, posts);
+            if (posts.size() == limit) {
+                return posts;
+            }
+            // the drafts are done, go on with the start of the other posts
+            c = db.rawQuery(POSTS_LIST_FIRST_PAGE_QUERY, new String[] {blogIdArg, isPageArg, "0",
+                    String.valueOf(limit - posts.size())});
+            addPostsListPosts(c, posts);
+        } else {
+            addPostsListPosts(getPostsListNextPage(blogIdArg, isPageArg, lastPost, limit), posts);
+        }
+        return posts;
+    }
 
-        for (int i = 0; i < numRows; ++i) {
-            String postTitle = StringUtils.unescapeHTML(c.getString(c.getColumnIndex("title")));
-
-            // Create the PostsListPost and add it to the Array
-            PostsListPost post = new PostsListPost(
-                    c.getInt(c.getColumnIndex("id")),
-                    c.getInt(c.getColumnIndex("blogID")),
-                    postTitle,
-                    c.getLong(c.getColumnIndex("date_created_gmt")),
-                    c.getString(c.getColumnIndex("post_status")),
-                    SqlUtils.sqlToBool(c.getInt(c.getColumnIndex("localDraft"))),
-                    SqlUtils.sqlToBool(c.getInt(c.getColumnIndex("isLocalChange"))),
-                    SqlUtils.sqlToBool(c.getInt(c.getColumnIndex("isUploading")))
-            );
-            posts.add(i, post);
-            c.moveToNext();
+    private Cursor getPostsListNextPage(String blogIdArg, String isPageArg, PostsListPost lastPost, int limit) {
+        String date = String.valueOf(lastPost.getDateCreatedGmt());
+        return db.rawQuery(POSTS_LIST_NEXT_PAGE_QUERY, new String[] {blogIdArg, isPageArg,
+                lastPost.isLocalDraft() ? "1" : "0", date, date, String.valueOf(lastPost.getPostId()),
+                String.valueOf(limit)});
+    }
+
+    private static void addPostsListPosts(Cursor c, List<PostsListPost> posts) {
+        try {
+            while (c.moveToNext()) {
+                posts.add(getPostsListPost(c));
+            }
+        } finally {
+            c.close();
+        }
+    }
+
+    private static PostsListPost getPostsListPost(Cursor c) {
+        return new PostsListPost(
+                c.getInt(c.getColumnIndex("id")),
+                c.getInt(c.getColumnIndex("blogID")),
+                StringUtils.unescapeHTML(c.getString(c.getColumnIndex("title"))),
+                c.getLong(c.getColumnIndex("date_created_gmt")),
+                c.getString(c.getColumnIndex("post_status")),
+                SqlUtils.sqlToBool(c.getInt(c.getColumnIndex("localDraft"))),
+                SqlUtils.sqlToBool(c.getInt(c.getColumnIndex("isLocalChange"))),
+                SqlUtils.sqlToBool(c.getInt(c.getColumnIndex("isUploading")))
+        );
+    }
+
+    /**
+     * @return number of posts (or pages) of the blog that were downloaded from the server
+     */
+    public int getRemotePostCount(int blogId, boolean isPage) {
+        return (int) DatabaseUtils.longForQuery(db, REMOTE_POSTS_COUNT_QUERY,
+                new String[] {String.valueOf(blogId), (isPage) ? "1" : "0"});
+    }
+
+    /**
+     * Searches the local posts (or pages) of a blog, drafts included, in their title, content, excerpt and tags.
+     * Words of the search are matched as prefixes, results come in the order of the posts list.
+     *
+     * @param limit maximum number of posts returned
+     * @param offset number of matching posts to skip, for the next pages of results
+     * @return matching posts, with an HTML snippet of the matching text (matches in bold) as their search snippet
+     */
+    public List<PostsListPost> searchPostsListPosts(int blogId, boolean loadPages, String searchTerm, int limit,
+                                                    int offset) {
+        List<PostsListPost> posts = new ArrayList<PostsListPost>();
+        List<String> words = getSearchWords(searchTerm);
+        if (words.size() == 0) {
+            return posts;
+        }
+        StringBuilder match = new StringBuilder();
+        for (String word : words) {
+            match.append(word).append("* ");
+        }
+
+        Cursor c = db.rawQuery(POSTS_SEARCH_QUERY, new String[] {SNIPPET_MATCH_START, SNIPPET_MATCH_END,
+                SNIPPET_ELLIPSIS, match.toString().trim(), String.valueOf(blogId), (loadPages) ? "1" : "0",
+                String.valueOf(limit), String.valueOf(offset)});
+        try {
+            while (c.moveToNext()) {
+                PostsListPost post = getPostsListPost(c);
+                post.setSearchSnippet(getSnippetHtml(c.getString(c.getColumnIndex("snippet"))));
+                posts.add(post);
+            }
+        } finally {
+            c.close();
         }
-        c.close();
 
         return posts;
     }
 
+    /*
+     * the snippet is a piece of the indexed text: escape it, and turn the match markers into bold tags
+     */
+    private static String getSnippetHtml(String snippet) {
+        if (TextUtils.isEmpty(snippet)) {
+            return "";
+        }
+        String text = TextUtils.htmlEncode(snippet.trim());
+        return text.replace(SNIPPET_MATCH_START, "<b>").replace(SNIPPET_MATCH_END, "</b>");
+    }
+
+    private void updatePostSearchIndex(long localTablePostId) {
+        updatePostsSearchIndex("id=?", new String[]{String.valueOf(localTablePostId)});
+    }
+
+    /*
+     * (re)indexes the text of the posts matching the selection - all of them when it's null - in posts_fts, without
+     * their HTML tags. Deleted posts leave the index through the posts_fts_delete trigger.
+     */
+    private void updatePostsSearchIndex(String selection, String[] selectionArgs) {
+        Cursor c = db.query(POSTS_TABLE, new String[]{"id", "title", "description", "mt_text_more", "mt_excerpt",
+                "mt_keywords"}, selection, selectionArgs, null, null, null);
+        SQLiteStatement deleteStmt = db.compileStatement(POSTS_FTS_DELETE);
+        SQLiteStatement insertStmt = db.compileStatement(POSTS_FTS_INSERT);
+        try {
+            while (c.moveToNext()) {
+                indexPostText(deleteStmt, insertStmt, c.getLong(0), c.getString(1), c.getString(2), c.getString(3),
+                        c.getString(4), c.getString(5));
+            }
+        } finally {
+            c.close();
+            SqlUtils.closeStatement(deleteStmt);
+            SqlUtils.closeStatement(insertStmt);
+        }
+    }
+
+    /*
+     * replaces the text of a post in posts_fts, with statements compiled from POSTS_FTS_DELETE and POSTS_FTS_INSERT
+     */
+    private static void indexPostText(SQLiteStatement deleteStmt, SQLiteStatement insertStmt, long id, String title,
+                                      String description, String textMore, String excerpt, String keywords) {
+        deleteStmt.bindLong(1, id);
+        deleteStmt.executeUpdateDelete();
+
+        insertStmt.clearBindings();
+        insertStmt.bindLong(1, id);
+        insertStmt.bindString(2, getSearchIndexText(title));
+        insertStmt.bindString(3, getSearchIndexText(description) + " " + getSearchIndexText(textMore));
+        insertStmt.bindString(4, getSearchIndexText(excerpt));
+        insertStmt.bindString(5, StringUtils.notNullStr(keywords));
+        insertStmt.executeInsert();
+    }
+
+    private static String getSearchIndexText(String html) {
+        return StringUtils.notNullStr(HtmlUtils.fastStripHtml(html)).trim();
+    }
+
     public int clearAllUploadingPosts(int localTableBlogId, boolean isPage) {
         ContentValues values = new ContentValues();
         values.put("isUploading", 0);
@@ -1021,6 +1593,9 @@ public class WordPressDB {
             values.put("mt_excerpt", post.getPostExcerpt());
 
             result = db.insert(POSTS_TABLE, null, values);
+            if (result >= 0) {
+                updatePostSearchIndex(result);
+            }
 
             if (result >= 0 && post.isLocalDraft() && !post.isUploaded()) {
                 post.setLocalTablePostId(result);
@@ -1056,6 +1631,8 @@ public class WordPressDB {
             values.put("isLocalChange", post.isLocalChange());
             values.put("mt_excerpt", post.getPostExcerpt());
             putPostLocation(post, values);
+            // the post no longer matches what the server sent, the next sync must overwrite it
+            values.putNull("content_hash");
 
             result = db.update(POSTS_TABLE, values, "blogID=? AND id=? AND isPage=?",
                     new String[]{
@@ -1063,6 +1640,9 @@ public class WordPressDB {
                         String.valueOf(post.getLocalTablePostId()),
                         String.valueOf(SqlUtils.boolToSql(post.isPage()))
                     });
+            if (result > 0) {
+                updatePostSearchIndex(post.getLocalTablePostId());
+            }
         }
 
         return (result);
@@ -1131,6 +1711,44 @@ public class WordPressDB {
 
     }
 
+    /**
+     * Delete the uploaded posts of a blog, except the ones with the passed remote post ids
+     */
+    public void deleteUploadedPostsExcept(int blogID, boolean isPage, Collection<String> remotePostIds) {
+        if (remotePostIds == null || remotePostIds.size() == 0) {
+            deleteUploadedPosts(blogID, isPage);
+            return;
+        }
+        List<String> args = new ArrayList<String>();
+        args.add(String.valueOf(blogID));
+        args.add(isPage ? "1" : "0");
+        StringBuilder placeholders = new StringBuilder();
+        for (String remotePostId : remotePostIds) {
+            placeholders.append(placeholders.length() == 0 ? "?" : ",?");
+            args.add(remotePostId);
+        }
+        db.delete(POSTS_TABLE, "blogID=? AND localDraft != 1 AND isPage=? AND postid NOT IN (" + placeholders + ")",
+                args.toArray(new String[args.size()]));
+    }
+
+    /**
+     * Returns the last modification date (in ms, 0 if unknown) of the uploaded posts of a blog, by remote post id
+     */
+    public Map<String, Long> getUploadedPostsModifiedDates(int blogID, boolean isPage) {
+        Map<String, Long> modifiedDates = new HashMap<String, Long>();
+        Cursor c = db.query(POSTS_TABLE, new String[]{"postid", "date_modified_gmt"},
+                "blogID=? AND localDraft != 1 AND isPage=?",
+                new String[]{String.valueOf(blogID), isPage ? "1" : "0"}, null, null, null);
+        try {
+            while (c.moveToNext()) {
+                modifiedDates.put(c.getString(0), c.getLong(1));
+            }
+        } finally {
+            c.close();
+        }
+        return modifiedDates;
+    }
+
     public Post getPostForLocalTablePostId(long localTablePostId) {
         Cursor c = db.query(POSTS_TABLE, null, "id=?", new String[]{String.valueOf(localTablePostId)}, null, null, null);
 
@@ -1193,61 +1811,116 @@ public class WordPressDB {
         synchronized (this) {
             returnValue = db.insert(CATEGORIES_TABLE, null, values) > 0;
         }
+        if (returnValue) {
+            getCategoryIndex(id).add(wp_id, parent_id, category_name);
+        }
 
         return (returnValue);
     }
 
-    public List<String> loadCategories(int id) {
-        Cursor c = db.query(CATEGORIES_TABLE, new String[] { "id", "wp_id",
-                "category_name" }, "blog_id=" + id, null, null, null, null);
-        int numRows = c.getCount();
-        c.moveToFirst();
-        List<String> returnVector = new Vector<String>();
-        for (int i = 0; i < numRows; ++i) {
-            String category_name = c.getString(2);
-            if (category_name != null) {
-                returnVector.add(category_name);
+    /**
+     * Replaces the categories of a blog with the synced ones, only writing the categories that changed
+     */
+    public void saveCategories(int id, List<CategoryNode> categories) {
+        CategoryIndex index = getCategoryIndex(id);
+        Map<Integer, CategoryNode> removedCategories = new HashMap<Integer, CategoryNode>();
+        for (CategoryNode category : index.getCategories()) {
+            removedCategories.put(category.getCategoryId(), category);
+        }
+
+        List<CategoryNode> changedCategories = new ArrayList<CategoryNode>();
+        String blogId = String.valueOf(id);
+        db.beginTransaction();
+        SQLiteStatement insert = db.compileStatement("INSERT INTO " + CATEGORIES_TABLE
+                + " (blog_id, wp_id, parent_id, category_name) VALUES (?, ?, ?, ?)");
+        SQLiteStatement update = db.compileStatement("UPDATE " + CATEGORIES_TABLE
+                + " SET parent_id=?, category_name=? WHERE blog_id=? AND wp_id=?");
+        SQLiteStatement delete = db.compileStatement("DELETE FROM " + CATEGORIES_TABLE
+                + " WHERE blog_id=? AND wp_id=?");
+        try {
+            for (CategoryNode category : categories) {
+                CategoryNode current = removedCategories.remove(category.getCategoryId());
+                if (current != null && current.getParentId() == category.getParentId()
+                        && current.getName().equals(category.getName())) {
+                    continue;
+                }
+                changedCategories.add(category);
+                SQLiteStatement statement = current != null ? update : insert;
+                statement.clearBindings();
+                if (current != null) {
+                    update.bindLong(1, category.getParentId());
+                    update.bindString(2, category.getName());
+                    update.bindString(3, blogId);
+                    update.bindLong(4, category.getCategoryId());
+                } else {
+                    insert.bindString(1, blogId);
+                    insert.bindLong(2, category.getCategoryId());
+                    insert.bindLong(3, category.getParentId());
+                    insert.bindString(4, category.getName());
+                }
+                statement.execute();
             }
-            c.moveToNext();
+            for (CategoryNode category : removedCategories.values()) {
+                delete.bindString(1, blogId);
+                delete.bindLong(2, category.getCategoryId());
+                delete.execute();
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            insert.close();
+            update.close();
+            delete.close();
+            db.endTransaction();
         }
-        c.close();
 
-        return returnVector;
+        // the index doesn't change if the transaction failed
+        for (CategoryNode category : changedCategories) {
+            index.add(category.getCategoryId(), category.getParentId(), category.getName());
+        }
+        for (CategoryNode category : removedCategories.values()) {
+            index.remove(category.getCategoryId());
+        }
     }
 
-    public int getCategoryId(int id, String category) {
-        Cursor c = db.query(CATEGORIES_TABLE, new String[] { "wp_id" },
-                "category_name=? AND blog_id=?", new String[] {category, String.valueOf(id)},
-                null, null, null);
-        if (c.getCount() == 0)
-            return 0;
-        c.moveToFirst();
-        int categoryID = 0;
-        categoryID = c.getInt(0);
+    /**
+     * @return the categories of the blog, loaded from the database the first time only
+     */
+    public CategoryIndex getCategoryIndex(int id) {
+        synchronized (categoryIndexes) {
+            CategoryIndex index = categoryIndexes.get(id);
+            if (index == null) {
+                index = loadCategoryIndex(id);
+                categoryIndexes.put(id, index);
+            }
+            return index;
+        }
+    }
 
-        c.close();
+    private CategoryIndex loadCategoryIndex(int id) {
+        CategoryIndex index = new CategoryIndex();
+        Cursor c = db.rawQuery(CATEGORIES_FOR_BLOG_QUERY, new String[] {String.valueOf(id)});
+        try {
+            while (c.moveToNext()) {
+                index.add(c.getInt(0), c.getInt(1), c.getString(2));
+            }
+        } finally {
+            c.close();
+        }
+        return index;
+    }
 
-        return categoryID;
+    public int getCategoryId(int id, String category) {
+        return getCategoryIndex(id).getCategoryId(category);
     }
 
     public int getCategoryParentId(int id, String category) {
-        Cursor c = db.query(CATEGORIES_TABLE, new String[] { "parent_id" },
-                "category_name=? AND blog_id=?", new String[] {category, String.valueOf(id)},
-                null, null, null);
-        if (c.getCount() == 0)
-            return -1;
-        c.moveToFirst();
-        int categoryParentID = c.getInt(0);
-
-        c.close();
-
-        return categoryParentID;
+        return getCategoryIndex(id).getCategoryParentId(category);
     }
 
     public void clearCategories(int id) {
         // clear out the table since we are refreshing the whole enchilada
         db.delete(CATEGORIES_TABLE, "blog_id=" + id, null);
-
+        getCategoryIndex(id).clear();
     }
 
     public boolean addQuickPressShortcut(int blogId, String name) {
@@ -1464,22 +2137,59 @@ public class WordPressDB {
 
     /** For a given blogId, get all the media files **/
     public Cursor getMediaFilesForBlog(String blogId) {
-        return db.rawQuery("SELECT id as _id, * FROM " + MEDIA_TABLE + " WHERE blogId=? AND mediaId <> '' AND "
-                + "(uploadState IS NULL OR uploadState IN ('uploaded', 'queued', 'failed', 'uploading')) ORDER BY (uploadState=?) DESC, date_created_gmt DESC", new String[] { blogId, "uploading" });
+        return db.rawQuery(MEDIA_FILES_FOR_BLOG_QUERY, new String[] { blogId, "uploading" });
     }
 
     /** For a given blogId, get all the media files with searchTerm **/
     public Cursor getMediaFilesForBlog(String blogId, String searchTerm) {
-        // Currently on WordPress.com, the media search engine only searches the title.
-        // We'll match this.
+        // Words of the search are matched as prefixes of the words of the title, caption, description and file
+        // name, media with a matching title come first. Unlike the LIKE '%term%' search this replaced, a word isn't
+        // found in the middle of another ("set" doesn't find "sunset"), and text without spaces (CJK) is a single
+        // word, only found from its start.
+        List<String> words = getSearchWords(searchTerm);
+        if (words.size() > 0) {
+            StringBuilder match = new StringBuilder();
+            StringBuilder titleMatch = new StringBuilder();
+            for (String word : words) {
+                match.append(word).append("* ");
+                titleMatch.append("title:").append(word).append("* ");
+            }
+            return db.rawQuery(MEDIA_SEARCH_QUERY, new String[] { match.toString().trim(), blogId,
+                    titleMatch.toString().trim(), "uploading" });
+        }
 
+        // nothing to match in the full-text index (punctuation only...), search the titles
         String term = searchTerm.toLowerCase(Locale.getDefault());
         return db.rawQuery("SELECT id as _id, * FROM " + MEDIA_TABLE + " WHERE blogId=? AND mediaId <> '' AND title LIKE ? AND (uploadState IS NULL OR uploadState ='uploaded') ORDER BY (uploadState=?) DESC, date_created_gmt DESC", new String[] { blogId, "%" + term + "%", "uploading" });
     }
 
+    /*
+     * splits a search in words the full-text index can match: letters and digits only, so the user can't type
+     * full-text query operators, ASCII letters in lower case so "AND", "OR" or "NEAR" aren't taken as operators
+     * either. Other letters are kept as typed: the simple tokenizer keeps them as they are in the index, unicode61
+     * folds them in the search as in the index.
+     */
+    private static List<String> getSearchWords(String searchTerm) {
+        List<String> words = new ArrayList<String>();
+        if (searchTerm == null) {
+            return words;
+        }
+        StringBuilder word = new StringBuilder();
+        for (int i = 0; i <= searchTerm.length(); i++) {
+            char c = i < searchTerm.length() ? searchTerm.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(c)) {
+                word.append(c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c);
+            } else if (word.length() > 0) {
+                words.add(word.toString());
+                word.setLength(0);
+            }
+        }
+        return words;
+    }
+
     /** For a given blogId, get the media file with the given media_id **/
     public Cursor getMediaFile(String blogId, String mediaId) {
-        return db.rawQuery("SELECT * FROM " + MEDIA_TABLE + " WHERE blogId=? AND mediaId=?", new String[] { blogId, mediaId });
+        return db.rawQuery(MEDIA_FILE_QUERY, new String[] { blogId, mediaId });
     }
 
     public int getMediaCountAll(String blogId) {
@@ -1542,8 +2252,8 @@ public class WordPressDB {
     }
 
     public MediaFile getMediaFile(String src, Post post) {
-        Cursor c = db.query(MEDIA_TABLE, null, "postID=? AND filePath=?",
-                new String[]{String.valueOf(post.getLocalTablePostId()), src}, null, null, null);
+        Cursor c = db.rawQuery(MEDIA_FILE_FOR_POST_QUERY,
+                new String[]{String.valueOf(post.getLocalTablePostId()), src});
 
         try {
             if (c.moveToFirst()) {
@@ -1583,9 +2293,9 @@ public class WordPressDB {
         db.delete(MEDIA_TABLE, "blogId='" + post.getLocalTableBlogId() + "' AND postID=" + post.getLocalTablePostId(), null);
     }
 
-    /** Get the queued media files for upload for a given blogId **/
+    /** Get the queued media files for upload for a given blogId, in the order they were queued **/
     public Cursor getMediaUploadQueue(String blogId) {
-        return db.rawQuery("SELECT * FROM " + MEDIA_TABLE + " WHERE uploadState=? AND blogId=?", new String[] {"queued", blogId});
+        return db.rawQuery(MEDIA_UPLOAD_QUEUE_QUERY, new String[] {"queued", blogId});
     }
 
     /** Update a media file to a new upload state **/
@@ -1842,6 +2552,8 @@ public class WordPressDB {
      */
     protected void copyDatabase() {
         String copyFrom = db.getPath();
+        // move the changes still in the write-ahead log to the database file
+        DatabaseUtils.longForQuery(db, "PRAGMA wal_checkpoint", null);
         String copyTo = WordPress.getContext().getExternalFilesDir(null).getAbsolutePath() + "/" + DATABASE_NAME + ".db";
 
         try {
@@ -0,0 +1,252 @@
+package org.wordpress.android.datasets;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteCursor;
+import android.database.sqlite.SQLiteCursorDriver;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteQuery;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.os.StrictMode;
+import android.util.Log;
+
+import org.wordpress.android.util.AppLog;
+import org.wordpress.android.util.AppLog.T;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs database work off the main thread, for WordPressDB, CommentTable and the reader tables.
+ *
+ * Writes go through a single thread, in the order they were submitted, so a long sync never competes with another
+ * write. Reads run on a small pool: both databases use write-ahead logging, so they can read while a write is in
+ * progress instead of waiting for it. Results are delivered on the main thread.
+ *
+ * The cursor factory returned by getCursorFactory() flags the queries run on the main thread, see
+ * setMainThreadCheckEnabled().
+ */
+public class DatabaseExecutor {
+    private static final int READER_THREADS = 3;
+    private static final long KEEP_ALIVE_SECONDS = 30;
+    private static final int MAX_FLAGGED_QUERIES = 100;
+
+    private static final Handler sMainHandler = new Handler(Looper.getMainLooper());
+    private static final Set<String> sFlaggedQueries = new HashSet<String>();
+    private static volatile boolean sMainThreadCheckEnabled;
+    private static ThreadPoolExecutor sReadExecutor;
+    private static ThreadPoolExecutor sWriteExecutor;
+    private static final ThreadLocal<Boolean> sIsWriterThread = new ThreadLocal<Boolean>();
+
+    public interface Callback<T> {
+        void onResult(T result);
+        void onError(Exception e);
+    }
+
+    private static synchronized ThreadPoolExecutor getReadExecutor() {
+        if (sReadExecutor == null) {
+            sReadExecutor = new ThreadPoolExecutor(READER_THREADS, READER_THREADS, KEEP_ALIVE_SECONDS,
+                    TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new DatabaseThreadFactory("reader", false));
+            sReadExecutor.allowCoreThreadTimeOut(true);
+        }
+        return sReadExecutor;
+    }
+
+    private static synchronized ThreadPoolExecutor getWriteExecutor() {
+        if (sWriteExecutor == null) {
+            sWriteExecutor = new ThreadPoolExecutor(1, 1, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(), new DatabaseThreadFactory("writer", true));
+            sWriteExecutor.allowCoreThreadTimeOut(true);
+        }
+        return sWriteExecutor;
+    }
+
+    /**
+     * Runs a query on a reader thread. A Cursor returned by the query is filled before being passed to the
+     * callback, so using it on the main thread doesn't run the query again.
+     *
+     * @param callback called on the main thread unless the returned future is cancelled, may be null
+     */
+    public static <T> Future<T> read(Callable<T> query, Callback<T> callback) {
+        DatabaseTask<T> task = new DatabaseTask<T>(query, callback);
+        getReadExecutor().execute(task);
+        return task;
+    }
+
+    /**
+     * Runs a change on the writer thread, after the changes submitted before it
+     *
+     * @param callback called on the main thread unless the returned future is cancelled, may be null
+     */
+    public static <T> Future<T> write(Callable<T> change, Callback<T> callback) {
+        DatabaseTask<T> task = new DatabaseTask<T>(change, callback);
+        getWriteExecutor().execute(task);
+        return task;
+    }
+
+    public static Future<Void> write(final Runnable change) {
+        return write(new Callable<Void>() {
+            @Override
+            public Void call() {
+                change.run();
+                return null;
+            }
+        }, null);
+    }
+
+    /**
+     * Runs a change on the writer thread and waits for it. Meant for the syncs, which already run on a background
+     * thread and read their own changes back. Never call it from the main thread.
+     *
+     * @return the result of the change, an exception thrown by the change is rethrown unchecked
+     */
+    public static <T> T writeAndWait(Callable<T> change) {
+        try {
+            if (Boolean.TRUE.equals(sIsWriterThread.get())) {
+                // already on the writer thread, waiting for the queue would deadlock
+                return change.call();
+            }
+            return write(change, null).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new RuntimeException(cause);
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public static void writeAndWait(final Runnable change) {
+        writeAndWait(new Callable<Void>() {
+            @Override
+            public Void call() {
+                change.run();
+                return null;
+            }
+        });
+    }
+
+    /**
+     * When enabled, the queries run on the main thread are logged (once per query) and reported to StrictMode as
+     * slow calls. Meant for debug builds.
+     */
+    public static void setMainThreadCheckEnabled(boolean enabled) {
+        sMainThreadCheckEnabled = enabled;
+    }
+
+    /**
+     * @return a cursor factory for the databases, checking the thread of each query
+     */
+    public static SQLiteDatabase.CursorFactory getCursorFactory() {
+        return sCursorFactory;
+    }
+
+    private static final SQLiteDatabase.CursorFactory sCursorFactory = new SQLiteDatabase.CursorFactory() {
+        @Override
+        public Cursor newCursor(SQLiteDatabase db, SQLiteCursorDriver masterQuery, String editTable,
+                                SQLiteQuery query) {
+            if (sMainThreadCheckEnabled && Looper.myLooper() == Looper.getMainLooper()) {
+                onMainThreadQuery(query.toString());
+            }
+            return new SQLiteCursor(masterQuery, editTable, query);
+        }
+    };
+
+    private static void onMainThreadQuery(String query) {
+        StrictMode.noteSlowCall("Database query on the main thread: " + query);
+        synchronized (sFlaggedQueries) {
+            if (sFlaggedQueries.size() >= MAX_FLAGGED_QUERIES || !sFlaggedQueries.add(query)) {
+                return;
+            }
+        }
+        AppLog.w(T.DB, "Database query on the main thread: " + query + "\n"
+                + Log.getStackTraceString(new Throwable()));
+    }
+
+    private static class DatabaseTask<V> extends FutureTask<V> {
+        private final Callback<V> mCallback;
+
+        DatabaseTask(final Callable<V> callable, Callback<V> callback) {
+            super(new Callable<V>() {
+                @Override
+                public V call() throws Exception {
+                    V result = callable.call();
+                    if (result instanceof Cursor) {
+                        // the query of a cursor only runs when its rows are first accessed
+                        ((Cursor) result).getCount();
+                    }
+                    return result;
+                }
+            });
+            mCallback = callback;
+        }
+
+        @Override
+        protected void done() {
+            if (mCallback == null || isCancelled()) {
+                return;
+            }
+            sMainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    if (isCancelled()) {
+                        return;
+                    }
+                    try {
+                        mCallback.onResult(get());
+                    } catch (InterruptedException e) {
+                        mCallback.onError(e);
+                    } catch (ExecutionException e) {
+                        AppLog.e(T.DB, e.getCause());
+                        mCallback.onError(e.getCause() instanceof Exception ? (Exception) e.getCause() : e);
+                    }
+                }
+            });
+        }
+    }
+
+    private static class DatabaseThreadFactory implements ThreadFactory {
+        private final String mName;
+        private final boolean mIsWriter;
+        private final AtomicInteger mThreadCount = new AtomicInteger(1);
+
+        DatabaseThreadFactory(String name, boolean isWriter) {
+            mName = name;
+            mIsWriter = isWriter;
+        }
+
+        @Override
+        public Thread newThread(final Runnable runnable) {
+            return new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                    if (mIsWriter) {
+                        sIsWriterThread.set(Boolean.TRUE);
+                    }
+                    runnable.run();
+                }
+            }, "Database " + mName + " #" + mThreadCount.getAndIncrement());
+        }
+    }
+}
@@ -19,7 +19,7 @@ import java.io.OutputStream;
  */
 public class ReaderDatabase extends SQLiteOpenHelper {
     protected static final String DB_NAME = "wpreader.db";
-    private static final int DB_VERSION = 100;
+    private static final int DB_VERSION = 101;
 
     /*
      * version history
@@ -52,6 +52,7 @@ public class ReaderDatabase extends SQLiteOpenHelper {
      *   98 - added feed_id to tbl_posts
      *   99 - added feed_url to tbl_blog_info
      *  100 - changed primary key on tbl_blog_info
+     *  101 - added content_hash to tbl_posts
      */
 
     /*
@@ -82,6 +83,10 @@ public class ReaderDatabase extends SQLiteOpenHelper {
     @Override
     public void onOpen(SQLiteDatabase db) {
         super.onOpen(db);
+        // reads (see DatabaseExecutor) don't wait for a write in progress, and writes don't wait for them
+        if (!db.isReadOnly()) {
+            db.enableWriteAheadLogging();
+        }
         //copyDatabase(db);
     }
 
@@ -96,7 +101,7 @@ public class ReaderDatabase extends SQLiteOpenHelper {
     }
 
     public ReaderDatabase(Context context) {
-        super(context, DB_NAME, null, DB_VERSION);
+        super(context, DB_NAME, DatabaseExecutor.getCursorFactory(), DB_VERSION);
     }
 
     @Override
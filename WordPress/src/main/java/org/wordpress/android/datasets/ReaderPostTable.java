@@ -13,13 +13,16 @@ import org.wordpress.android.models.ReaderTag;
 import org.wordpress.android.models.ReaderTagList;
 import org.wordpress.android.models.ReaderTagType;
 import org.wordpress.android.ui.reader.ReaderConstants;
-import org.wordpress.android.ui.reader.actions.ReaderActions;
 import org.wordpress.android.ui.reader.models.ReaderBlogIdPostId;
 import org.wordpress.android.ui.reader.models.ReaderBlogIdPostIdList;
+import org.wordpress.android.ui.reader.models.ReaderPostChanges;
 import org.wordpress.android.util.AppLog;
 import org.wordpress.android.util.CrashlyticsUtils;
 import org.wordpress.android.util.SqlUtils;
 
+import java.util.HashMap;
+import java.util.Map;
+
 /**
  * tbl_posts contains all reader posts
  * tbl_post_tags stores the association between posts and tags (posts can exist in more than one tag)
@@ -59,7 +62,8 @@ public class ReaderPostTable {
           + "secondary_tag,"        // 30
           + "is_likes_enabled,"     // 31
           + "is_sharing_enabled,"   // 32
-          + "attachments_json";     // 33
+          + "attachments_json,"     // 33
+          + "content_hash";         // 34
 
     // used when querying multiple rows and skipping tbl_posts.text
     private static final String COLUMN_NAMES_NO_TEXT =
@@ -96,6 +100,19 @@ public class ReaderPostTable {
           + "tbl_posts.is_sharing_enabled,"   // 31
           + "tbl_posts.attachments_json";     // 32
 
+    // columns compared by ReaderPost.isSamePost(), plus the hash of the post's content
+    private static final String COLUMN_NAMES_COMPARE =
+            "blog_id,"              // 1
+          + "post_id,"              // 2
+          + "num_likes,"            // 3
+          + "num_replies,"          // 4
+          + "is_followed,"          // 5
+          + "is_liked,"             // 6
+          + "is_comments_open,"     // 7
+          + "is_likes_enabled,"     // 8
+          + "is_reblogged,"         // 9
+          + "content_hash";         // 10
+
     protected static void createTables(SQLiteDatabase db) {
         db.execSQL("CREATE TABLE tbl_posts ("
                 + "	post_id		        INTEGER DEFAULT 0,"
@@ -131,6 +148,7 @@ public class ReaderPostTable {
                 + " is_likes_enabled    INTEGER DEFAULT 0,"
                 + " is_sharing_enabled  INTEGER DEFAULT 0,"
                 + " attachments_json    TEXT,"
+                + " content_hash        TEXT,"
                 + " PRIMARY KEY (post_id, blog_id)"
                 + ")");
         db.execSQL("CREATE INDEX idx_posts_timestamp ON tbl_posts(timestamp)");
@@ -271,24 +289,57 @@ public class ReaderPostTable {
     }
 
     /*
-     * returns whether any of the passed posts are new or changed - used after posts are retrieved
+     * compares the passed posts with the stored ones using a single query on the columns checked
+     * by ReaderPost.isSamePost() and the hash of their content - used after posts are retrieved
      */
-    public static ReaderActions.UpdateResult comparePosts(ReaderPostList posts) {
+    public static ReaderPostChanges comparePosts(ReaderPostList posts) {
+        ReaderPostChanges changes = new ReaderPostChanges();
         if (posts == null || posts.size() == 0) {
-            return ReaderActions.UpdateResult.UNCHANGED;
+            return changes;
         }
 
-        boolean hasChanges = false;
+        StringBuilder sb = new StringBuilder(
+                "SELECT " + COLUMN_NAMES_COMPARE + " FROM tbl_posts WHERE post_id IN (");
+        boolean isFirst = true;
         for (ReaderPost post: posts) {
-            ReaderPost existingPost = getPost(post.blogId, post.postId, true);
+            if (isFirst) {
+                isFirst = false;
+            } else {
+                sb.append(",");
+            }
+            sb.append(post.postId);
+        }
+        sb.append(")");
+
+        // post ids are only unique within a blog, so the blog ids are matched here
+        Map<String, ReaderPost> existingPosts = new HashMap<String, ReaderPost>();
+        Map<String, String> existingHashes = new HashMap<String, String>();
+        Cursor c = ReaderDatabase.getReadableDb().rawQuery(sb.toString(), null);
+        try {
+            while (c.moveToNext()) {
+                ReaderPost existingPost = getComparedPostFromCursor(c);
+                String key = existingPost.blogId + ":" + existingPost.postId;
+                existingPosts.put(key, existingPost);
+                existingHashes.put(key, c.getString(9));
+            }
+        } finally {
+            SqlUtils.closeCursor(c);
+        }
+
+        for (ReaderPost post: posts) {
+            String key = post.blogId + ":" + post.postId;
+            ReaderPost existingPost = existingPosts.get(key);
             if (existingPost == null) {
-                return ReaderActions.UpdateResult.HAS_NEW;
-            } else if (!hasChanges && !post.isSamePost(existingPost)) {
-                hasChanges = true;
+                changes.addNewPost(post.blogId, post.postId);
+            } else if (post.isSamePost(existingPost)
+                    && post.getContentHash().equals(existingHashes.get(key))) {
+                changes.addUnchangedPost(post.blogId, post.postId);
+            } else {
+                changes.addChangedPost(post.blogId, post.postId);
             }
         }
 
-        return (hasChanges ? ReaderActions.UpdateResult.CHANGED : ReaderActions.UpdateResult.UNCHANGED);
+        return changes;
     }
 
     /*
@@ -499,6 +550,14 @@ public class ReaderPostTable {
     }
 
     public static void addOrUpdatePosts(final ReaderTag tag, ReaderPostList posts) {
+        addOrUpdatePosts(tag, posts, null);
+    }
+
+    /*
+     * same as above, but skips writing the posts the passed changes found unchanged - they're
+     * still added to the passed tag
+     */
+    public static void addOrUpdatePosts(final ReaderTag tag, ReaderPostList posts, ReaderPostChanges changes) {
         if (posts == null || posts.size() == 0) {
             return;
         }
@@ -507,7 +566,7 @@ public class ReaderPostTable {
         SQLiteStatement stmtPosts = db.compileStatement(
                 "INSERT OR REPLACE INTO tbl_posts ("
                 + COLUMN_NAMES
-                + ") VALUES (?1,?2,?3,?4,?5,?6,?7,?8,?9,?10,?11,?12,?13,?14,?15,?16,?17,?18,?19,?20,?21,?22,?23,?24,?25,?26,?27,?28,?29,?30,?31,?32,?33)");
+                + ") VALUES (?1,?2,?3,?4,?5,?6,?7,?8,?9,?10,?11,?12,?13,?14,?15,?16,?17,?18,?19,?20,?21,?22,?23,?24,?25,?26,?27,?28,?29,?30,?31,?32,?33,?34)");
         SQLiteStatement stmtTags = db.compileStatement(
                 "INSERT OR REPLACE INTO tbl_post_tags (post_id, blog_id, feed_id, pseudo_id, tag_name, tag_type) VALUES (?1,?2,?3,?4,?5,?6)");
 
@@ -515,6 +574,9 @@ public class ReaderPostTable {
         try {
             // first insert into tbl_posts
             for (ReaderPost post: posts) {
+                if (changes != null && changes.isUnchanged(post.blogId, post.postId)) {
+                    continue;
+                }
                 stmtPosts.bindLong  (1,  post.postId);
                 stmtPosts.bindLong  (2,  post.blogId);
                 stmtPosts.bindLong  (3,  post.feedId);
@@ -548,6 +610,7 @@ public class ReaderPostTable {
                 stmtPosts.bindLong  (31, SqlUtils.boolToSql(post.isLikesEnabled));
                 stmtPosts.bindLong  (32, SqlUtils.boolToSql(post.isSharingEnabled));
                 stmtPosts.bindString(33, post.getAttachmentsJson());
+                stmtPosts.bindString(34, post.getContentHash());
                 stmtPosts.execute();
             }
 
@@ -707,6 +770,20 @@ public class ReaderPostTable {
         ReaderDatabase.getWritableDb().execSQL(sql, args);
     }
 
+    private static ReaderPost getComparedPostFromCursor(Cursor c) {
+        ReaderPost post = new ReaderPost();
+        post.blogId = c.getLong(0);
+        post.postId = c.getLong(1);
+        post.numLikes = c.getInt(2);
+        post.numReplies = c.getInt(3);
+        post.isFollowedByCurrentUser = SqlUtils.sqlToBool(c.getInt(4));
+        post.isLikedByCurrentUser = SqlUtils.sqlToBool(c.getInt(5));
+        post.isCommentsOpen = SqlUtils.sqlToBool(c.getInt(6));
+        post.isLikesEnabled = SqlUtils.sqlToBool(c.getInt(7));
+        post.isRebloggedByCurrentUser = SqlUtils.sqlToBool(c.getInt(8));
+        return post;
+    }
+
     private static ReaderPost getPostFromCursor(Cursor c) {
         if (c == null) {
             throw new IllegalArgumentException("getPostFromCursor > null cursor");
@@ -45,6 +45,18 @@ public class Blog {
     public Blog() {
     }
 
+    /**
+     * Copy constructor
+     */
+    public Blog(Blog blog) {
+        this(blog.localTableBlogId, blog.url, blog.homeURL, blog.blogName, blog.username, blog.password,
+                blog.imagePlacement, blog.featuredImageCapable, blog.fullSizeImage, blog.scaledImage,
+                blog.scaledImageWidth, blog.maxImageWidth, blog.maxImageWidthId, blog.remoteBlogId,
+                blog.dotcom_username, blog.dotcom_password, blog.api_key, blog.api_blogid, blog.dotcomFlag,
+                blog.wpVersion, blog.httpuser, blog.httppassword, blog.postFormats, blog.blogOptions, blog.isAdmin,
+                blog.isHidden);
+    }
+
     public Blog(int localTableBlogId, String url, String homeURL, String blogName, String username, String password, String imagePlacement, boolean featuredImageCapable, boolean fullSizeImage, boolean scaledImage, int scaledImageWidth, String maxImageWidth, int maxImageWidthId, int remoteBlogId, String dotcom_username, String dotcom_password, String api_key, String api_blogid, boolean dotcomFlag, String wpVersion, String httpuser, String httppassword, String postFormats, String blogOptions, boolean isAdmin, boolean isHidden) {
         this.localTableBlogId = localTableBlogId;
         this.url = url;
@@ -0,0 +1,155 @@
+package org.wordpress.android.models;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * In-memory index of the categories of a blog: categories by id and by name, and their tree, kept up to date as
+ * categories are added and removed so lookups and tree building never go back to the database.
+ *
+ * Categories whose parent isn't known (yet) are shown at the root, like CategoryNode.createCategoryTreeFromDB() always
+ * did, and move under their parent as soon as it's added.
+ */
+public class CategoryIndex {
+    private final CategoryNode mRoot = new CategoryNode(-1, -1, "");
+    private final Map<Integer, CategoryNode> mCategoriesById = new HashMap<Integer, CategoryNode>();
+    private final Map<String, CategoryNode> mCategoriesByName = new HashMap<String, CategoryNode>();
+    // categories at the root because their parent is missing, by parent id
+    private final Map<Integer, Set<CategoryNode>> mOrphansByParentId = new HashMap<Integer, Set<CategoryNode>>();
+
+    /**
+     * Adds a category, or replaces the category with the same id
+     */
+    public synchronized void add(int categoryId, int parentId, String name) {
+        if (name == null) {
+            return;
+        }
+        remove(categoryId);
+
+        CategoryNode category = new CategoryNode(categoryId, parentId, name);
+        mCategoriesById.put(categoryId, category);
+        if (!mCategoriesByName.containsKey(name)) {
+            mCategoriesByName.put(name, category);
+        }
+        attach(category);
+
+        // its children added before it move under it
+        Set<CategoryNode> orphans = mOrphansByParentId.remove(categoryId);
+        if (orphans != null) {
+            for (CategoryNode orphan : orphans) {
+                mRoot.children.remove(orphan.getName());
+                category.children.put(orphan.getName(), orphan);
+            }
+        }
+    }
+
+    public synchronized void remove(int categoryId) {
+        CategoryNode category = mCategoriesById.remove(categoryId);
+        if (category == null) {
+            return;
+        }
+        detach(category);
+        if (mCategoriesByName.get(category.getName()) == category) {
+            mCategoriesByName.remove(category.getName());
+            // another category with the same name, under another parent
+            for (CategoryNode other : mCategoriesById.values()) {
+                if (other.getName().equals(category.getName())) {
+                    mCategoriesByName.put(other.getName(), other);
+                    break;
+                }
+            }
+        }
+
+        // its children go back to the root until it's added again
+        for (CategoryNode child : category.children.values()) {
+            attach(child);
+        }
+        category.children.clear();
+    }
+
+    public synchronized void clear() {
+        mRoot.children.clear();
+        mCategoriesById.clear();
+        mCategoriesByName.clear();
+        mOrphansByParentId.clear();
+    }
+
+    /**
+     * @return id of the category with this name, or 0 if there's none
+     */
+    public synchronized int getCategoryId(String name) {
+        CategoryNode category = name != null ? mCategoriesByName.get(name) : null;
+        return category != null ? category.getCategoryId() : 0;
+    }
+
+    /**
+     * @return parent id of the category with this name (0 at the root), or -1 if there's none
+     */
+    public synchronized int getCategoryParentId(String name) {
+        CategoryNode category = name != null ? mCategoriesByName.get(name) : null;
+        return category != null ? category.getParentId() : -1;
+    }
+
+    public synchronized CategoryNode getCategory(int categoryId) {
+        return mCategoriesById.get(categoryId);
+    }
+
+    public synchronized int size() {
+        return mCategoriesById.size();
+    }
+
+    public synchronized List<CategoryNode> getCategories() {
+        return new ArrayList<CategoryNode>(mCategoriesById.values());
+    }
+
+    /**
+     * @return a copy of the category tree, callers can change it
+     */
+    public synchronized CategoryNode copyTree() {
+        return copy(mRoot);
+    }
+
+    private static CategoryNode copy(CategoryNode node) {
+        CategoryNode copy = new CategoryNode(node.getCategoryId(), node.getParentId(), node.getName());
+        for (CategoryNode child : node.children.values()) {
+            copy.children.put(child.getName(), copy(child));
+        }
+        return copy;
+    }
+
+    private void attach(CategoryNode category) {
+        boolean isRootCategory = category.getParentId() == 0 || category.getParentId() == category.getCategoryId();
+        CategoryNode parent = isRootCategory ? mRoot : mCategoriesById.get(category.getParentId());
+        if (parent == null) {
+            parent = mRoot;
+            Set<CategoryNode> orphans = mOrphansByParentId.get(category.getParentId());
+            if (orphans == null) {
+                orphans = new HashSet<CategoryNode>();
+                mOrphansByParentId.put(category.getParentId(), orphans);
+            }
+            orphans.add(category);
+        }
+        parent.children.put(category.getName(), category);
+    }
+
+    private void detach(CategoryNode category) {
+        CategoryNode parent = mCategoriesById.get(category.getParentId());
+        if (parent != null && parent.children.get(category.getName()) == category) {
+            parent.children.remove(category.getName());
+        }
+        if (mRoot.children.get(category.getName()) == category) {
+            mRoot.children.remove(category.getName());
+        }
+        Set<CategoryNode> orphans = mOrphansByParentId.get(category.getParentId());
+        if (orphans != null) {
+            orphans.remove(category);
+            if (orphans.isEmpty()) {
+                mOrphansByParentId.remove(category.getParentId());
+            }
+        }
+    }
+}
@@ -1,6 +1,5 @@
 package org.wordpress.android.models;
 
-import android.util.SparseArray;
 import org.wordpress.android.WordPress;
 
 import java.util.*;
@@ -60,33 +59,10 @@ public class CategoryNode {
     }
 
     public static CategoryNode createCategoryTreeFromDB(int blogId) {
-        CategoryNode rootCategory = new CategoryNode(-1, -1, "");
         if (WordPress.wpDB == null) {
-            return rootCategory;
+            return new CategoryNode(-1, -1, "");
         }
-        List<String> stringCategories = WordPress.wpDB.loadCategories(blogId);
-
-        // First pass instantiate CategoryNode objects
-        SparseArray<CategoryNode> categoryMap = new SparseArray<CategoryNode>();
-        CategoryNode currentRootNode;
-        for (String name : stringCategories) {
-            int categoryId = WordPress.wpDB.getCategoryId(blogId, name);
-            int parentId = WordPress.wpDB.getCategoryParentId(blogId, name);
-            CategoryNode node = new CategoryNode(categoryId, parentId, name);
-            categoryMap.put(categoryId, node);
-        }
-
-        // Second pass associate nodes to form a tree
-        for(int i = 0; i < categoryMap.size(); i++){
-            CategoryNode category = categoryMap.valueAt(i);
-            if (category.getParentId() == 0) { // root node
-                currentRootNode = rootCategory;
-            } else {
-                currentRootNode = categoryMap.get(category.getParentId(), rootCategory);
-            }
-            currentRootNode.children.put(category.getName(), categoryMap.get(category.getCategoryId()));
-        }
-        return rootCategory;
+        return WordPress.wpDB.getCategoryIndex(blogId).copyTree();
     }
 
     private static void preOrderTreeTraversal(CategoryNode node, int level, ArrayList<CategoryNode> returnValue) {
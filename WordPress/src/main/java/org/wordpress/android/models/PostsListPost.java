@@ -18,6 +18,7 @@ public class PostsListPost {
     private boolean isLocalDraft;
     private boolean hasLocalChanges;
     private boolean mIsUploading;
+    private String mSearchSnippet;
 
     public PostsListPost(int postId, int blogId, String title, long dateCreatedGmt, String status, boolean localDraft,
                          boolean localChanges, boolean uploading) {
@@ -102,4 +103,16 @@ public class PostsListPost {
     public void setIsUploading(boolean uploading) {
         this.mIsUploading = uploading;
     }
+
+    /**
+     * @return HTML text around the words matching a search of the local posts, with the matches in bold, or an
+     * empty string if the post didn't come from a search
+     */
+    public String getSearchSnippet() {
+        return StringUtils.notNullStr(mSearchSnippet);
+    }
+
+    public void setSearchSnippet(String searchSnippet) {
+        this.mSearchSnippet = searchSnippet;
+    }
 }
@@ -2,19 +2,33 @@ package org.wordpress.android.models;
 
 import android.text.TextUtils;
 
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import org.json.JSONException;
 import org.json.JSONObject;
 import org.wordpress.android.ui.reader.ReaderConstants;
 import org.wordpress.android.ui.reader.utils.ImageSizeMap;
 import org.wordpress.android.ui.reader.utils.ReaderImageScanner;
 import org.wordpress.android.ui.reader.utils.ReaderUtils;
+import org.wordpress.android.util.AppLog;
+import org.wordpress.android.util.AppLog.T;
 import org.wordpress.android.util.DateTimeUtils;
 import org.wordpress.android.util.GravatarUtils;
 import org.wordpress.android.util.HtmlUtils;
 import org.wordpress.android.util.JSONUtils;
 import org.wordpress.android.util.StringUtils;
 
+import java.io.IOException;
 import java.text.BreakIterator;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 public class ReaderPost {
     private String pseudoId;
@@ -63,116 +77,108 @@ public class ReaderPost {
         if (json == null) {
             throw new IllegalArgumentException("null json post");
         }
+        return fromFields(new JSONFields(json));
+    }
+
+    /*
+     * same as fromJson(JSONObject), but reads the post from a stream token by token so the whole
+     * response never has to be held as a JSONObject tree - both parsers build the post with
+     * fromFields(), so they assign the same values
+     */
+    public static ReaderPost fromJson(JsonReader reader) throws IOException {
+        return fromFields(StreamedFields.read(reader));
+    }
 
+    private static ReaderPost fromFields(PostFields json) {
         ReaderPost post = new ReaderPost();
 
-        post.postId = json.optLong("ID");
-        post.blogId = json.optLong("site_ID");
-        post.feedId = json.optLong("feed_ID");
+        post.postId = json.getLong("ID");
+        post.blogId = json.getLong("site_ID");
+        post.feedId = json.getLong("feed_ID");
 
         if (json.has("pseudo_ID")) {
-            post.pseudoId = JSONUtils.getString(json, "pseudo_ID");  // read/ endpoint
+            post.pseudoId = json.getString("pseudo_ID");  // read/ endpoint
         } else {
-            post.pseudoId = JSONUtils.getString(json, "global_ID");  // sites/ endpoint
+            post.pseudoId = json.getString("global_ID");  // sites/ endpoint
         }
 
         // remove HTML from the excerpt
-        post.excerpt = HtmlUtils.fastStripHtml(JSONUtils.getString(json, "excerpt"));
+        post.excerpt = HtmlUtils.fastStripHtml(json.getString("excerpt"));
 
-        post.text = JSONUtils.getString(json, "content");
-        post.title = JSONUtils.getStringDecoded(json, "title");
-        post.url = JSONUtils.getString(json, "URL");
-        post.shortUrl = JSONUtils.getString(json, "short_URL");
-        post.setBlogUrl(JSONUtils.getString(json, "site_URL"));
+        post.text = json.getString("content");
+        post.title = HtmlUtils.fastUnescapeHtml(json.getString("title"));
+        post.url = json.getString("URL");
+        post.shortUrl = json.getString("short_URL");
+        post.setBlogUrl(json.getString("site_URL"));
 
-        post.numLikes = json.optInt("like_count");
-        post.isLikedByCurrentUser = JSONUtils.getBool(json, "i_like");
-        post.isFollowedByCurrentUser = JSONUtils.getBool(json, "is_following");
-        post.isRebloggedByCurrentUser = JSONUtils.getBool(json, "is_reblogged");
-        post.isExternal = JSONUtils.getBool(json, "is_external");
-        post.isPrivate = JSONUtils.getBool(json, "site_is_private");
+        post.numLikes = (int) json.getLong("like_count");
+        post.isLikedByCurrentUser = json.getBool("i_like");
+        post.isFollowedByCurrentUser = json.getBool("is_following");
+        post.isRebloggedByCurrentUser = json.getBool("is_reblogged");
+        post.isExternal = json.getBool("is_external");
+        post.isPrivate = json.getBool("site_is_private");
 
-        post.isLikesEnabled = JSONUtils.getBool(json, "likes_enabled");
-        post.isSharingEnabled = JSONUtils.getBool(json, "sharing_enabled");
+        post.isLikesEnabled = json.getBool("likes_enabled");
+        post.isSharingEnabled = json.getBool("sharing_enabled");
 
-        JSONObject jsonDiscussion = json.optJSONObject("discussion");
+        PostFields jsonDiscussion = json.getObject("discussion");
         if (jsonDiscussion != null) {
-            post.isCommentsOpen = JSONUtils.getBool(jsonDiscussion, "comments_open");
-            post.numReplies = jsonDiscussion.optInt("comment_count");
+            post.isCommentsOpen = jsonDiscussion.getBool("comments_open");
+            post.numReplies = (int) jsonDiscussion.getLong("comment_count");
         } else {
-            post.isCommentsOpen = JSONUtils.getBool(json, "comments_open");
-            post.numReplies = json.optInt("comment_count");
+            post.isCommentsOpen = json.getBool("comments_open");
+            post.numReplies = (int) json.getLong("comment_count");
         }
 
         // parse the author section
-        assignAuthorFromJson(post, json.optJSONObject("author"));
+        assignAuthor(post, json.getObject("author"));
 
         // only freshly-pressed posts have the "editorial" section
-        JSONObject jsonEditorial = json.optJSONObject("editorial");
+        PostFields jsonEditorial = json.getObject("editorial");
         if (jsonEditorial != null) {
-            post.blogId = jsonEditorial.optLong("blog_id");
-            post.blogName = JSONUtils.getStringDecoded(jsonEditorial, "blog_name");
+            post.blogId = jsonEditorial.getLong("blog_id");
+            post.blogName = HtmlUtils.fastUnescapeHtml(jsonEditorial.getString("blog_name"));
             post.featuredImage = ReaderImageScanner.getImageUrlFromFPFeaturedImageUrl(
-                    JSONUtils.getString(jsonEditorial, "image"));
-            post.setPrimaryTag(JSONUtils.getString(jsonEditorial, "highlight_topic_title")); //  highlight_topic?
+                    jsonEditorial.getString("image"));
+            post.setPrimaryTag(jsonEditorial.getString("highlight_topic_title")); //  highlight_topic?
             // we want freshly-pressed posts to show & store the date they were chosen rather than the day they were published
-            post.published = JSONUtils.getString(jsonEditorial, "displayed_on");
+            post.published = jsonEditorial.getString("displayed_on");
         } else {
-            post.featuredImage = JSONUtils.getString(json, "featured_image");
-            post.blogName = JSONUtils.getStringDecoded(json, "site_name");
-            post.published = JSONUtils.getString(json, "date");
-        }
-
-        // the date a post was liked is only returned by the read/liked/ endpoint - if this exists,
-        // set it as the timestamp so posts are sorted by the date they were liked rather than the
-        // date they were published (the timestamp is used to sort posts when querying)
-        String likeDate = JSONUtils.getString(json, "date_liked");
-        if (!TextUtils.isEmpty(likeDate)) {
-            post.timestamp = DateTimeUtils.iso8601ToTimestamp(likeDate);
-        } else {
-            post.timestamp = DateTimeUtils.iso8601ToTimestamp(post.published);
-        }
-
-        // if the post is untitled, make up a title from the excerpt
-        if (!post.hasTitle() && post.hasExcerpt()) {
-            post.title = extractTitle(post.excerpt, 50);
+            post.featuredImage = json.getString("featured_image");
+            post.blogName = HtmlUtils.fastUnescapeHtml(json.getString("site_name"));
+            post.published = json.getString("date");
         }
 
-        // remove html from title (rare, but does happen)
-        if (post.hasTitle() && post.title.contains("<") && post.title.contains(">")) {
-            post.title = HtmlUtils.stripHtml(post.title);
-        }
+        assignTimestampAndTitle(post, json.getString("date_liked"));
 
         // parse the tags section
-        assignTagsFromJson(post, json.optJSONObject("tags"));
+        assignTags(post, json.getObject("tags"));
 
         // parse the attachments
-        JSONObject jsonAttachments = json.optJSONObject("attachments");
-        if (jsonAttachments != null && jsonAttachments.length() > 0) {
-            post.attachmentsJson = jsonAttachments.toString();
-        }
+        post.attachmentsJson = json.getObjectJson("attachments");
 
         // site metadata - returned when ?meta=site was added to the request
-        JSONObject jsonSite = JSONUtils.getJSONChild(json, "meta/data/site");
+        PostFields jsonMeta = json.getObject("meta");
+        PostFields jsonData = (jsonMeta != null ? jsonMeta.getObject("data") : null);
+        PostFields jsonSite = (jsonData != null ? jsonData.getObject("site") : null);
         if (jsonSite != null) {
-            post.blogId = jsonSite.optInt("ID");
-            post.blogName = JSONUtils.getString(jsonSite, "name");
-            post.setBlogUrl(JSONUtils.getString(jsonSite, "URL"));
-            post.isPrivate = JSONUtils.getBool(jsonSite, "is_private");
+            post.blogId = (int) jsonSite.getLong("ID");
+            post.blogName = jsonSite.getString("name");
+            post.setBlogUrl(jsonSite.getString("URL"));
+            post.isPrivate = jsonSite.getBool("is_private");
             // TODO: as of 29-Sept-2014, this is broken - endpoint returns false when it should be true
-            post.isJetpack = JSONUtils.getBool(jsonSite, "jetpack");
+            post.isJetpack = jsonSite.getBool("jetpack");
         }
 
         // if there's no featured image, check if featured media has been set - this is sometimes
         // a YouTube or Vimeo video, in which case store it as the featured video so we can treat
         // it as a video
         if (!post.hasFeaturedImage()) {
-            JSONObject jsonMedia = json.optJSONObject("featured_media");
-            if (jsonMedia != null && jsonMedia.length() > 0) {
-                String mediaUrl = JSONUtils.getString(jsonMedia, "uri");
+            PostFields jsonMedia = json.getObject("featured_media");
+            if (jsonMedia != null) {
+                String mediaUrl = jsonMedia.getString("uri");
                 if (!TextUtils.isEmpty(mediaUrl)) {
-                    String type = JSONUtils.getString(jsonMedia, "type");
-                    boolean isVideo = (type != null && type.equals("video"));
+                    boolean isVideo = jsonMedia.getString("type").equals("video");
                     if (isVideo) {
                         post.featuredVideo = mediaUrl;
                     } else {
@@ -181,6 +187,35 @@ public class ReaderPost {
                 }
             }
         }
+        assignFeaturedImageFromContent(post);
+
+        return post;
+    }
+
+    /*
+     * the date a post was liked is only returned by the read/liked/ endpoint - if this exists,
+     * set it as the timestamp so posts are sorted by the date they were liked rather than the
+     * date they were published (the timestamp is used to sort posts when querying)
+     */
+    private static void assignTimestampAndTitle(ReaderPost post, String likeDate) {
+        if (!TextUtils.isEmpty(likeDate)) {
+            post.timestamp = DateTimeUtils.iso8601ToTimestamp(likeDate);
+        } else {
+            post.timestamp = DateTimeUtils.iso8601ToTimestamp(post.published);
+        }
+
+        // if the post is untitled, make up a title from the excerpt
+        if (!post.hasTitle() && post.hasExcerpt()) {
+            post.title = extractTitle(post.excerpt, 50);
+        }
+
+        // remove html from title (rare, but does happen)
+        if (post.hasTitle() && post.title.contains("<") && post.title.contains(">")) {
+            post.title = HtmlUtils.stripHtml(post.title);
+        }
+    }
+
+    private static void assignFeaturedImageFromContent(ReaderPost post) {
         // if the post still doesn't have a featured image but we have attachment data, check whether
         // we can find a suitable featured image from the attachments
         if (!post.hasFeaturedImage() && post.hasAttachments()) {
@@ -193,38 +228,36 @@ public class ReaderPost {
             post.featuredImage = new ReaderImageScanner(post.text, post.isPrivate)
                     .getLargestImage(ReaderConstants.MIN_FEATURED_IMAGE_WIDTH);
         }
-
-        return post;
     }
 
      /*
-      * assigns author-related info to the passed post from the passed JSON "author" object
+      * assigns author-related info to the passed post from the "author" section
       */
-    private static void assignAuthorFromJson(ReaderPost post, JSONObject jsonAuthor) {
+    private static void assignAuthor(ReaderPost post, PostFields jsonAuthor) {
         if (jsonAuthor == null) {
             return;
         }
 
-        post.authorName = JSONUtils.getString(jsonAuthor, "name");
-        post.postAvatar = JSONUtils.getString(jsonAuthor, "avatar_URL");
-        post.authorId = jsonAuthor.optLong("ID");
+        post.authorName = jsonAuthor.getString("name");
+        post.postAvatar = jsonAuthor.getString("avatar_URL");
+        post.authorId = jsonAuthor.getLong("ID");
 
         // site_URL doesn't exist for /sites/ endpoints, so get it from the author
         if (TextUtils.isEmpty(post.blogUrl)) {
-            post.setBlogUrl(JSONUtils.getString(jsonAuthor, "URL"));
+            post.setBlogUrl(jsonAuthor.getString("URL"));
         }
     }
 
     /*
-     * assigns primary/secondary tags to the passed post from the passed JSON "tags" object
+     * assigns primary/secondary tags to the passed post from the "tags" section
      */
-    private static void assignTagsFromJson(ReaderPost post, JSONObject jsonTags) {
+    private static void assignTags(ReaderPost post, PostFields jsonTags) {
         if (jsonTags == null) {
             return;
         }
 
-        Iterator<String> it = jsonTags.keys();
-        if (!it.hasNext()) {
+        List<PostFields> tags = jsonTags.getObjects();
+        if (tags.size() == 0) {
             return;
         }
 
@@ -233,16 +266,14 @@ public class ReaderPost {
         String nextMostPopularTag = null;
         int popularCount = 0;
 
-        while (it.hasNext()) {
-            JSONObject jsonThisTag = jsonTags.optJSONObject(it.next());
-
+        for (PostFields jsonThisTag : tags) {
             // if the number of posts on this blog that use this tag is higher than previous,
             // set this as the most popular tag, and set the second most popular tag to
             // the current most popular tag
-            int postCount = jsonThisTag.optInt("post_count");
+            int postCount = (int) jsonThisTag.getLong("post_count");
             if (postCount > popularCount) {
                 nextMostPopularTag = mostPopularTag;
-                mostPopularTag = JSONUtils.getString(jsonThisTag, "name");
+                mostPopularTag = jsonThisTag.getString("name");
                 popularCount = postCount;
             }
         }
@@ -255,6 +286,200 @@ public class ReaderPost {
         post.setSecondaryTag(nextMostPopularTag);
     }
 
+    /*
+     * the fields of a post, or of one of its sections, read the way JSONUtils reads a JSONObject
+     */
+    private interface PostFields {
+        boolean has(String name);
+        String getString(String name);
+        long getLong(String name);
+        boolean getBool(String name);
+        // the field as a section, null if it's missing or not an object
+        PostFields getObject(String name);
+        // the sections of this object, in their order
+        List<PostFields> getObjects();
+        // the field as JSON written by org.json, null if it's missing, empty or not an object
+        String getObjectJson(String name);
+    }
+
+    private static class JSONFields implements PostFields {
+        private final JSONObject json;
+
+        JSONFields(JSONObject json) {
+            this.json = json;
+        }
+
+        @Override
+        public boolean has(String name) {
+            return json.has(name);
+        }
+
+        @Override
+        public String getString(String name) {
+            return JSONUtils.getString(json, name);
+        }
+
+        @Override
+        public long getLong(String name) {
+            return json.optLong(name);
+        }
+
+        @Override
+        public boolean getBool(String name) {
+            return JSONUtils.getBool(json, name);
+        }
+
+        @Override
+        public PostFields getObject(String name) {
+            JSONObject child = json.optJSONObject(name);
+            return (child != null ? new JSONFields(child) : null);
+        }
+
+        @Override
+        public List<PostFields> getObjects() {
+            List<PostFields> objects = new ArrayList<PostFields>();
+            Iterator<String> it = json.keys();
+            while (it.hasNext()) {
+                JSONObject child = json.optJSONObject(it.next());
+                if (child != null) {
+                    objects.add(new JSONFields(child));
+                }
+            }
+            return objects;
+        }
+
+        @Override
+        public String getObjectJson(String name) {
+            JSONObject child = json.optJSONObject(name);
+            return (child != null && child.length() > 0 ? child.toString() : null);
+        }
+    }
+
+    /*
+     * the fields of an object read from a stream: scalar values as strings, nested objects as
+     * sections, arrays are skipped
+     */
+    private static class StreamedFields implements PostFields {
+        private final Map<String, String> values = new HashMap<String, String>();
+        private final Map<String, StreamedFields> objects = new LinkedHashMap<String, StreamedFields>();
+        private final Map<String, String> objectsJson = new HashMap<String, String>();
+
+        static StreamedFields read(JsonReader reader) throws IOException {
+            StreamedFields fields = new StreamedFields();
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+                    fields.values.put(name, nextString(reader));
+                } else if (name.equals("attachments")) {
+                    fields.objectsJson.put(name, readObjectJson(reader));
+                } else {
+                    fields.objects.put(name, read(reader));
+                }
+            }
+            reader.endObject();
+            return fields;
+        }
+
+        /*
+         * the attachments are stored as JSON, written by org.json like fromJson(JSONObject) does -
+         * Gson writes it differently (it doesn't escape "/" for instance), and the content hash of
+         * the post would change with the parser
+         */
+        private static String readObjectJson(JsonReader reader) throws IOException {
+            JsonObject object = new JsonParser().parse(reader).getAsJsonObject();
+            if (object.entrySet().size() == 0) {
+                return null;
+            }
+            try {
+                return new JSONObject(object.toString()).toString();
+            } catch (JSONException e) {
+                AppLog.e(T.READER, e);
+                return null;
+            }
+        }
+
+        @Override
+        public boolean has(String name) {
+            return values.containsKey(name) || objects.containsKey(name) || objectsJson.containsKey(name);
+        }
+
+        @Override
+        public String getString(String name) {
+            return StringUtils.notNullStr(values.get(name));
+        }
+
+        @Override
+        public long getLong(String name) {
+            return parseLong(values.get(name));
+        }
+
+        @Override
+        public boolean getBool(String name) {
+            return parseBool(values.get(name));
+        }
+
+        @Override
+        public PostFields getObject(String name) {
+            return objects.get(name);
+        }
+
+        @Override
+        public List<PostFields> getObjects() {
+            return new ArrayList<PostFields>(objects.values());
+        }
+
+        @Override
+        public String getObjectJson(String name) {
+            return objectsJson.get(name);
+        }
+    }
+
+    /*
+     * reads any value as a string like JSONUtils.getString() does, nested objects and arrays are
+     * skipped and read as an empty string
+     */
+    private static String nextString(JsonReader reader) throws IOException {
+        switch (reader.peek()) {
+            case STRING:
+            case NUMBER:
+                return reader.nextString();
+            case BOOLEAN:
+                return Boolean.toString(reader.nextBoolean());
+            case NULL:
+                reader.nextNull();
+                return "";
+            default:
+                reader.skipValue();
+                return "";
+        }
+    }
+
+    /*
+     * same as JSONObject.optLong(), 0 for missing or non-numeric values
+     */
+    private static long parseLong(String value) {
+        if (TextUtils.isEmpty(value)) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            try {
+                return (long) Double.parseDouble(value);
+            } catch (NumberFormatException e2) {
+                return 0;
+            }
+        }
+    }
+
+    /*
+     * same as JSONUtils.getBool(), our API sometimes uses "0" to denote false
+     */
+    private static boolean parseBool(String value) {
+        return !TextUtils.isEmpty(value) && !value.equals("0") && !value.equalsIgnoreCase("false");
+    }
+
     /*
      * extracts a title from a post's excerpt - used when the post has no title
      */
@@ -487,6 +712,21 @@ public class ReaderPost {
                 && post.isRebloggedByCurrentUser == this.isRebloggedByCurrentUser;
     }
 
+    /*
+     * hash of the content the user sees when the post is opened, stored with the post so edits
+     * to its title, text, etc. can be detected without reading the stored text
+     */
+    public String getContentHash() {
+        return StringUtils.getMd5Hash(getTitle()
+                + "\n" + getText()
+                + "\n" + getExcerpt()
+                + "\n" + getFeaturedImage()
+                + "\n" + getFeaturedVideo()
+                + "\n" + getPublished()
+                + "\n" + timestamp
+                + "\n" + getAttachmentsJson());
+    }
+
     /****
      * the following are transient variables - not stored in the db or returned in the json - whose
      * sole purpose is to cache commonly-used values for the post that speeds up using them inside
@@ -1,8 +1,12 @@
 package org.wordpress.android.models;
 
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
 import org.json.JSONArray;
 import org.json.JSONObject;
 
+import java.io.IOException;
 import java.util.ArrayList;
 
 public class ReaderPostList extends ArrayList<ReaderPost> {
@@ -23,6 +27,32 @@ public class ReaderPostList extends ArrayList<ReaderPost> {
         return posts;
     }
 
+    /*
+     * same as fromJson(JSONObject), but reads the posts from a stream one at a time - only the
+     * "posts" array is read, the rest of the response is skipped
+     */
+    public static ReaderPostList fromJson(JsonReader reader) throws IOException {
+        ReaderPostList posts = new ReaderPostList();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (reader.nextName().equals("posts") && reader.peek() == JsonToken.BEGIN_ARRAY) {
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    if (reader.peek() == JsonToken.BEGIN_OBJECT) {
+                        posts.add(ReaderPost.fromJson(reader));
+                    } else {
+                        reader.skipValue();
+                    }
+                }
+                reader.endArray();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return posts;
+    }
+
     @Override
     public Object clone() {
         return super.clone();
@@ -7,7 +7,6 @@ import android.content.DialogInterface;
 import android.content.Intent;
 import android.content.res.Configuration;
 import android.net.Uri;
-import android.os.AsyncTask;
 import android.os.Bundle;
 import android.text.Editable;
 import android.text.Html;
@@ -60,7 +59,7 @@ import org.wordpress.android.util.StringUtils;
 import org.wordpress.android.util.ToastUtils;
 import org.wordpress.android.widgets.WPTextView;
 import org.wordpress.emailchecker.EmailChecker;
-import org.xmlrpc.android.ApiHelper;
+import org.xmlrpc.android.BlogRefreshScheduler;
 
 import java.util.EnumSet;
 import java.util.HashMap;
@@ -858,11 +857,11 @@ public class SignInFragment extends AbstractFragment implements TextWatcher {
         }
         int blogLocalId = WordPress.wpDB.getLocalTableBlogIdForRemoteBlogIdAndXmlRpcUrl(intBlogId, xmlRpcUrl);
         Blog firstBlog = WordPress.wpDB.instantiateBlogByLocalId(blogLocalId);
-        new ApiHelper.RefreshBlogContentTask(firstBlog, null).executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR, false);
+        BlogRefreshScheduler.refreshBlog(firstBlog, BlogRefreshScheduler.Priority.HIGH, null);
     }
 
     /**
-     * Get first blog and call RefreshBlogContentTask. First blog will be autoselected when user login.
+     * Get first blog and refresh it. First blog will be autoselected when user login.
      * Also when a user add a new self hosted blog, userBlogList contains only one element.
      * We don't want to refresh the whole list because it can be huge and each blog is refreshed when
      * user selects it.
@@ -13,8 +13,8 @@ import org.wordpress.android.util.CrashlyticsUtils.ExceptionType;
 import org.wordpress.android.util.CrashlyticsUtils.ExtraKey;
 import org.wordpress.android.util.UrlUtils;
 import org.xmlpull.v1.XmlPullParserException;
-import org.xmlrpc.android.ApiHelper;
 import org.xmlrpc.android.XMLRPCClientInterface;
+import org.xmlrpc.android.XMLRPCEndpointDiscovery;
 import org.xmlrpc.android.XMLRPCException;
 import org.xmlrpc.android.XMLRPCFactory;
 import org.xmlrpc.android.XMLRPCFault;
@@ -31,6 +31,7 @@ import javax.net.ssl.SSLPeerUnverifiedException;
 
 public class FetchBlogListWPOrg extends FetchBlogListAbstract {
     private String mSelfHostedUrl;
+    private String mSiteUrl;
     private String mHttpUsername;
     private String mHttpPassword;
     private boolean mHttpAuthRequired;
@@ -69,15 +70,6 @@ public class FetchBlogListWPOrg extends FetchBlogListAbstract {
         (new FetchBlogListTask(callback)).executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
     }
 
-    private String getRsdUrl(String baseUrl) throws SSLHandshakeException {
-        String rsdUrl;
-        rsdUrl = ApiHelper.getRSDMetaTagHrefRegEx(baseUrl);
-        if (rsdUrl == null) {
-            rsdUrl = ApiHelper.getRSDMetaTagHref(baseUrl);
-        }
-        return rsdUrl;
-    }
-
     private boolean isHTTPAuthErrorMessage(Exception e) {
         if (e != null && e.getMessage() != null && e.getMessage().contains("401")) {
             mHttpAuthRequired = true;
@@ -173,6 +165,7 @@ public class FetchBlogListWPOrg extends FetchBlogListAbstract {
     }
 
     // Attempts to retrieve the xmlrpc url for a self-hosted site, in this order:
+    // 0: Use the url found for this site during a recent sign in, if any
     // 1: Try to retrieve it by finding the ?rsd url in the site's header
     // 2: Take whatever URL the user entered to see if that returns a correct response
     // 3: Finally, just guess as to what the xmlrpc url should be
@@ -190,10 +183,16 @@ public class FetchBlogListWPOrg extends FetchBlogListAbstract {
             return null;
         }
 
+        mSiteUrl = url;
+        xmlrpcUrl = XMLRPCEndpointDiscovery.getCachedXmlrpcUrl(url);
+        if (xmlrpcUrl != null) {
+            return xmlrpcUrl;
+        }
+
         // Attempt to get the XMLRPC URL via RSD
         String rsdUrl;
         try {
-            rsdUrl = UrlUtils.addUrlSchemeIfNeeded(getRsdUrl(url), false);
+            rsdUrl = UrlUtils.addUrlSchemeIfNeeded(XMLRPCEndpointDiscovery.getRsdUrl(url), false);
         } catch (SSLHandshakeException e) {
             if (!UrlUtils.getDomainFromUrl(url).endsWith("wordpress.com")) {
                 mErroneousSslCertificate = true;
@@ -204,7 +203,7 @@ public class FetchBlogListWPOrg extends FetchBlogListAbstract {
 
         try {
             if (rsdUrl != null) {
-                xmlrpcUrl = UrlUtils.addUrlSchemeIfNeeded(ApiHelper.getXMLRPCUrl(rsdUrl), false);
+                xmlrpcUrl = UrlUtils.addUrlSchemeIfNeeded(XMLRPCEndpointDiscovery.getXmlrpcUrl(rsdUrl), false);
                 if (xmlrpcUrl == null) {
                     xmlrpcUrl = UrlUtils.addUrlSchemeIfNeeded(rsdUrl.replace("?rsd", ""), false);
                 }
@@ -256,8 +255,11 @@ public class FetchBlogListWPOrg extends FetchBlogListAbstract {
                     // Could happen if the returned server response is truncated
                     mErrorMsgId = org.wordpress.android.R.string.xmlrpc_error;
                     mClientResponse = client.getResponse();
+                    XMLRPCEndpointDiscovery.invalidate(mSiteUrl);
                     return null;
                 }
+                // the endpoint works, don't look it up again if the user signs in to this site again soon
+                XMLRPCEndpointDiscovery.cacheXmlrpcUrl(mSiteUrl, xmlrpcUrl);
                 Arrays.sort(userBlogs, BlogUtils.BlogNameComparator);
                 List<Map<String, Object>> userBlogList = new ArrayList<Map<String, Object>>();
                 for (Object blog : userBlogs) {
@@ -269,11 +271,15 @@ public class FetchBlogListWPOrg extends FetchBlogListAbstract {
                 }
                 return userBlogList;
             } catch (XmlPullParserException parserException) {
+                XMLRPCEndpointDiscovery.invalidate(mSiteUrl);
                 mErrorMsgId = org.wordpress.android.R.string.xmlrpc_error;
                 AppLog.e(T.NUX, "invalid data received from XMLRPC call wp.getUsersBlogs", parserException);
             } catch (XMLRPCFault xmlRpcFault) {
+                // a fault comes from WordPress itself (wrong password...), the endpoint is right
+                XMLRPCEndpointDiscovery.cacheXmlrpcUrl(mSiteUrl, xmlrpcUrl);
                 handleXmlRpcFault(xmlRpcFault);
             } catch (XMLRPCException xmlRpcException) {
+                XMLRPCEndpointDiscovery.invalidate(mSiteUrl);
                 AppLog.e(T.NUX, "XMLRPCException received from XMLRPC call wp.getUsersBlogs", xmlRpcException);
                 mErrorMsgId = org.wordpress.android.R.string.no_site_error;
             } catch (SSLHandshakeException e) {
@@ -282,6 +288,7 @@ public class FetchBlogListWPOrg extends FetchBlogListAbstract {
                 }
                 AppLog.w(T.NUX, "SSLHandshakeException failed. Erroneous SSL certificate detected.");
             } catch (IOException e) {
+                XMLRPCEndpointDiscovery.invalidate(mSiteUrl);
                 AppLog.e(T.NUX, "Exception received from XMLRPC call wp.getUsersBlogs", e);
                 mErrorMsgId = org.wordpress.android.R.string.no_site_error;
             }
@@ -32,6 +32,7 @@ import org.wordpress.android.WordPress;
 import org.wordpress.android.analytics.AnalyticsTracker;
 import org.wordpress.android.analytics.AnalyticsTracker.Stat;
 import org.wordpress.android.datasets.CommentTable;
+import org.wordpress.android.datasets.DatabaseExecutor;
 import org.wordpress.android.datasets.ReaderPostTable;
 import org.wordpress.android.datasets.SuggestionTable;
 import org.wordpress.android.models.Comment;
@@ -585,7 +586,7 @@ public class CommentDetailFragment extends Fragment implements NotificationFragm
     /*
      * displays the passed post title for the current comment, updates stored title if one doesn't exist
      */
-    private void setPostTitle(TextView txtTitle, String postTitle, boolean isHyperlink) {
+    private void setPostTitle(TextView txtTitle, final String postTitle, boolean isHyperlink) {
         if (txtTitle == null || !isAdded())
             return;
         if (TextUtils.isEmpty(postTitle)) {
@@ -596,7 +597,14 @@ public class CommentDetailFragment extends Fragment implements NotificationFragm
         // if comment doesn't have a post title, set it to the passed one and save to comment table
         if (hasComment() && !mComment.hasPostTitle()) {
             mComment.setPostTitle(postTitle);
-            CommentTable.updateCommentPostTitle(getLocalBlogId(), getCommentId(), postTitle);
+            final int localBlogId = getLocalBlogId();
+            final long commentId = getCommentId();
+            DatabaseExecutor.write(new Runnable() {
+                @Override
+                public void run() {
+                    CommentTable.updateCommentPostTitle(localBlogId, commentId, postTitle);
+                }
+            });
         }
 
         // display "on [Post Title]..."
@@ -1100,11 +1108,16 @@ public class CommentDetailFragment extends Fragment implements NotificationFragm
                     if (progress != null) {
                         progress.setVisibility(View.GONE);
                     }
-                    Comment comment = Comment.fromJSON(jsonObject);
+                    final Comment comment = Comment.fromJSON(jsonObject);
                     if (comment != null) {
                         // save comment to local db if localBlogId is valid
                         if (localBlogId > 0) {
-                            CommentTable.addComment(localBlogId, comment);
+                            DatabaseExecutor.write(new Runnable() {
+                                @Override
+                                public void run() {
+                                    CommentTable.addComment(localBlogId, comment);
+                                }
+                            });
                         }
                         // now, at long last, show the comment
                         setComment(localBlogId, comment);
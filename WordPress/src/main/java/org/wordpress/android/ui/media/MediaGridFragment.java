@@ -9,6 +9,7 @@ import android.content.DialogInterface;
 import android.content.Intent;
 import android.database.Cursor;
 import android.os.Bundle;
+import android.text.TextUtils;
 import android.view.ActionMode;
 import android.view.LayoutInflater;
 import android.view.Menu;
@@ -33,6 +34,7 @@ import com.android.volley.toolbox.ImageLoader.ImageListener;
 
 import org.wordpress.android.R;
 import org.wordpress.android.WordPress;
+import org.wordpress.android.datasets.DatabaseExecutor;
 import org.wordpress.android.models.Blog;
 import org.wordpress.android.ui.CheckableFrameLayout;
 import org.wordpress.android.ui.CustomSpinner;
@@ -53,6 +55,7 @@ import java.text.DateFormat;
 import java.util.ArrayList;
 import java.util.GregorianCalendar;
 import java.util.List;
+import java.util.concurrent.Callable;
 
 /**
  * The grid displaying the media items.
@@ -85,6 +88,9 @@ public class MediaGridFragment extends Fragment
     private boolean mHasRetrievedAllMedia;
     private boolean mIsMultiSelect;
     private String mSearchTerm;
+    // filters are applied in the background, only the result of the last one is shown
+    private int mFilterGeneration;
+    private boolean mShouldSyncIfEmpty;
 
     private View mSpinnerContainer;
     private TextView mResultView;
@@ -285,13 +291,29 @@ public class MediaGridFragment extends Fragment
         if (WordPress.currentBlog == null)
             return;
 
-        String blogId = String.valueOf(WordPress.getCurrentBlog().getLocalTableBlogId());
-
-        int countAll = WordPress.wpDB.getMediaCountAll(blogId);
-        int countImages = WordPress.wpDB.getMediaCountImages(blogId);
-        int countUnattached = WordPress.wpDB.getMediaCountUnattached(blogId);
+        final String blogId = String.valueOf(WordPress.getCurrentBlog().getLocalTableBlogId());
+        DatabaseExecutor.read(new Callable<int[]>() {
+            @Override
+            public int[] call() {
+                return new int[]{WordPress.wpDB.getMediaCountAll(blogId),
+                        WordPress.wpDB.getMediaCountImages(blogId),
+                        WordPress.wpDB.getMediaCountUnattached(blogId)};
+            }
+        }, new DatabaseExecutor.Callback<int[]>() {
+            @Override
+            public void onResult(int[] counts) {
+                if (!isAdded()) {
+                    return;
+                }
+                setFiltersText(counts[0], counts[1], counts[2]);
+                updateSpinnerAdapter();
+            }
 
-        setFiltersText(countAll, countImages, countUnattached);
+            @Override
+            public void onError(Exception e) {
+                // keep the previous counts
+            }
+        });
     }
 
     private void setFiltersText(int countAll, int countImages, int countUnattached) {
@@ -327,7 +349,16 @@ public class MediaGridFragment extends Fragment
     }
 
     public void refreshMediaFromDB() {
+        // the media are loaded in the background, they're fetched from the server if there are none
+        mShouldSyncIfEmpty = true;
         setFilter(mFilter);
+    }
+
+    private void syncIfEmpty() {
+        if (!mShouldSyncIfEmpty) {
+            return;
+        }
+        mShouldSyncIfEmpty = false;
         if (isAdded() && mGridAdapter.getDataCount() == 0) {
             if (NetworkUtils.isNetworkAvailable(getActivity())) {
                 if (!mHasRetrievedAllMedia) {
@@ -447,13 +478,32 @@ public class MediaGridFragment extends Fragment
         }
     }
 
-    public void search(String searchTerm) {
+    public void search(final String searchTerm) {
         mSearchTerm = searchTerm;
         Blog blog = WordPress.getCurrentBlog();
         if (blog != null) {
-            String blogId = String.valueOf(blog.getLocalTableBlogId());
-            Cursor cursor = WordPress.wpDB.getMediaFilesForBlog(blogId, searchTerm);
-            mGridAdapter.changeCursor(cursor);
+            final String blogId = String.valueOf(blog.getLocalTableBlogId());
+            DatabaseExecutor.read(new Callable<Cursor>() {
+                @Override
+                public Cursor call() {
+                    return WordPress.wpDB.getMediaFilesForBlog(blogId, searchTerm);
+                }
+            }, new DatabaseExecutor.Callback<Cursor>() {
+                @Override
+                public void onResult(Cursor cursor) {
+                    // results of a previous search can arrive after the user typed more
+                    if (!isAdded() || !TextUtils.equals(searchTerm, mSearchTerm)) {
+                        cursor.close();
+                        return;
+                    }
+                    mGridAdapter.changeCursor(cursor);
+                }
+
+                @Override
+                public void onError(Exception e) {
+                    // keep the results of the previous search
+                }
+            });
         }
     }
 
@@ -516,9 +566,43 @@ public class MediaGridFragment extends Fragment
         }
     }
 
-    public void setFilter(Filter filter) {
+    public void setFilter(final Filter filter) {
         mFilter = filter;
-        Cursor cursor = filterItems(mFilter);
+        final int generation = ++mFilterGeneration;
+        Blog blog = WordPress.getCurrentBlog();
+        if (filter == Filter.CUSTOM_DATE || blog == null) {
+            // the custom date filter may show the date picker, it's applied right away
+            showFilteredItems(filter, filterItems(filter));
+            return;
+        }
+
+        final String blogId = String.valueOf(blog.getLocalTableBlogId());
+        DatabaseExecutor.read(new Callable<Cursor>() {
+            @Override
+            public Cursor call() {
+                return queryMedia(blogId, filter);
+            }
+        }, new DatabaseExecutor.Callback<Cursor>() {
+            @Override
+            public void onResult(Cursor cursor) {
+                // a later filter replaces this one
+                if (!isAdded() || generation != mFilterGeneration) {
+                    if (cursor != null) {
+                        cursor.close();
+                    }
+                    return;
+                }
+                showFilteredItems(filter, cursor);
+            }
+
+            @Override
+            public void onError(Exception e) {
+                // keep the media already shown
+            }
+        });
+    }
+
+    private void showFilteredItems(Filter filter, Cursor cursor) {
         if (filter != Filter.CUSTOM_DATE || cursor == null || cursor.getCount() == 0) {
             mResultView.setVisibility(View.GONE);
         }
@@ -540,6 +624,7 @@ public class MediaGridFragment extends Fragment
         } else {
             updateEmptyView(EmptyViewMessageType.NO_CONTENT_CUSTOM_DATE);
         }
+        syncIfEmpty();
     }
 
     Cursor setDateFilter() {
@@ -586,11 +671,9 @@ public class MediaGridFragment extends Fragment
 
         switch (filter) {
             case ALL:
-                return WordPress.wpDB.getMediaFilesForBlog(blogId);
             case IMAGES:
-                return WordPress.wpDB.getMediaImagesForBlog(blogId);
             case UNATTACHED:
-                return WordPress.wpDB.getMediaUnattachedForBlog(blogId);
+                return queryMedia(blogId, filter);
             case CUSTOM_DATE:
                 // show date picker only when the user clicks on the spinner, not when we are doing syncing
                 if (mIsDateFilterSet) {
@@ -604,6 +687,17 @@ public class MediaGridFragment extends Fragment
         return null;
     }
 
+    private static Cursor queryMedia(String blogId, Filter filter) {
+        switch (filter) {
+            case IMAGES:
+                return WordPress.wpDB.getMediaImagesForBlog(blogId);
+            case UNATTACHED:
+                return WordPress.wpDB.getMediaUnattachedForBlog(blogId);
+            default:
+                return WordPress.wpDB.getMediaFilesForBlog(blogId);
+        }
+    }
+
     void showDatePicker() {
         // Inflate your custom layout containing 2 DatePickers
         LayoutInflater inflater = getActivity().getLayoutInflater();
@@ -4,13 +4,16 @@ import android.app.Service;
 import android.content.Context;
 import android.content.Intent;
 import android.database.Cursor;
+import android.os.AsyncTask;
 import android.os.Handler;
 import android.os.IBinder;
 
 import org.wordpress.android.R;
 import org.wordpress.android.WordPress;
+import org.wordpress.android.models.Blog;
 import org.wordpress.android.util.helpers.MediaFile;
 import org.wordpress.android.WordPressDB;
+import org.wordpress.android.util.AppLog;
 import org.wordpress.android.util.AppLog.T;
 import org.wordpress.android.util.CrashlyticsUtils;
 import org.wordpress.android.util.CrashlyticsUtils.ExceptionType;
@@ -18,22 +21,60 @@ import org.xmlrpc.android.ApiHelper;
 import org.xmlrpc.android.ApiHelper.ErrorType;
 import org.xmlrpc.android.ApiHelper.GetMediaItemTask;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
 
 import de.greenrobot.event.EventBus;
 
 /**
  * A service for uploading media files from the media browser.
- * Only one file is uploaded at a time.
+ *
+ * The queue is the media table itself: files are uploaded in the order they were queued ("queued" upload state),
+ * several at a time but no more than maxUploadsPerHost at once on the same host. A file is "uploading" while its
+ * upload runs, and ends up "uploaded" or "failed". Uploads failing because of a network error are queued again a
+ * few times, waiting longer after each failure.
+ *
+ * MediaUploadEvents are posted in the order the files were queued, whatever the order the uploads complete in.
  */
 public class MediaUploadService extends Service {
-    // time to wait before trying to upload the next file
-    private static final int UPLOAD_WAIT_TIME = 1000;
+    public static final String EXTRA_MAX_UPLOADS_PER_HOST = "maxUploadsPerHost";
+    private static final int DEFAULT_MAX_UPLOADS_PER_HOST = 3;
+
+    private static final int MAX_ATTEMPTS = 3;
+    private static final long RETRY_BASE_DELAY_MS = 2000;
 
     private Context mContext;
     private Handler mHandler = new Handler();
-    private boolean mUploadInProgress;
+    private int mMaxUploadsPerHost = DEFAULT_MAX_UPLOADS_PER_HOST;
+
+    // uploads running or waiting to be retried, by local media id
+    private final Map<String, Upload> mUploads = new HashMap<String, Upload>();
+    private final Map<String, Integer> mRunningUploadsPerHost = new HashMap<String, Integer>();
+
+    // events of completed uploads, waiting for the uploads queued before them to complete
+    private final TreeMap<Long, Object> mPendingEvents = new TreeMap<Long, Object>();
+    private long mNextUploadSequence;
+    private long mNextEventSequence;
+
+    private static class Upload {
+        final long mSequence;
+        final String mHost;
+        int mAttempts;
+        long mRetryTime;
+        boolean mIsRunning;
+
+        Upload(long sequence, String host) {
+            mSequence = sequence;
+            mHost = host;
+        }
+    }
 
     @Override
     public IBinder onBind(Intent intent) {
@@ -45,36 +86,41 @@ public class MediaUploadService extends Service {
         super.onCreate();
 
         mContext = this.getApplicationContext();
-        mUploadInProgress = false;
 
         cancelOldUploads();
     }
 
     @Override
     public void onStart(Intent intent, int startId) {
+        if (intent != null) {
+            mMaxUploadsPerHost = Math.max(1, intent.getIntExtra(EXTRA_MAX_UPLOADS_PER_HOST,
+                    DEFAULT_MAX_UPLOADS_PER_HOST));
+        }
         mHandler.post(mFetchQueueTask);
     }
 
+    @Override
+    public void onDestroy() {
+        mHandler.removeCallbacks(mFetchQueueTask);
+        super.onDestroy();
+    }
+
     private Runnable mFetchQueueTask = new Runnable() {
         @Override
         public void run() {
             Cursor cursor = getQueue();
             try {
-                if ((cursor == null || cursor.getCount() == 0 || mContext == null) && !mUploadInProgress) {
-                    MediaUploadService.this.stopSelf();
-                    return;
-                } else {
-                    if (mUploadInProgress) {
-                        mHandler.postDelayed(this, UPLOAD_WAIT_TIME);
-                    } else {
-                        uploadMediaFile(cursor);
-                    }
+                if (cursor != null && mContext != null) {
+                    startUploads(cursor);
                 }
             } finally {
                 if (cursor != null)
                     cursor.close();
             }
 
+            if (mUploads.isEmpty()) {
+                MediaUploadService.this.stopSelf();
+            }
         }
     };
 
@@ -96,12 +142,61 @@ public class MediaUploadService extends Service {
         return WordPress.wpDB.getMediaUploadQueue(blogId);
     }
 
-    private void uploadMediaFile(Cursor cursor) {
-        if (!cursor.moveToFirst())
+    private static String getHost(Blog blog) {
+        return blog.getUri() != null ? blog.getUri().getHost() : blog.getUrl();
+    }
+
+    /*
+     * starts uploading the queued files, in order, as long as their host accepts more uploads
+     */
+    private void startUploads(Cursor cursor) {
+        Blog blog = WordPress.getCurrentBlog();
+        if (blog == null) {
             return;
+        }
+        String host = getHost(blog);
+        long now = System.currentTimeMillis();
+        Set<String> queuedMediaIds = new HashSet<String>();
+        int mediaIdColumn = cursor.getColumnIndex(WordPressDB.COLUMN_NAME_MEDIA_ID);
+        while (cursor.moveToNext()) {
+            String mediaId = cursor.getString(mediaIdColumn);
+            queuedMediaIds.add(mediaId);
+            Upload upload = mUploads.get(mediaId);
+            if (upload != null && (upload.mIsRunning || upload.mRetryTime > now)) {
+                continue;
+            }
+            if (getRunningUploadCount(host) >= mMaxUploadsPerHost) {
+                continue;
+            }
+            if (upload == null) {
+                upload = new Upload(mNextUploadSequence++, host);
+                mUploads.put(mediaId, upload);
+            }
+            uploadMediaFile(cursor, blog, upload);
+        }
 
-        mUploadInProgress = true;
+        // forget the uploads waiting for a retry that were removed from the queue in the meantime
+        Iterator<Map.Entry<String, Upload>> iterator = mUploads.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Upload> entry = iterator.next();
+            if (!entry.getValue().mIsRunning && !queuedMediaIds.contains(entry.getKey())) {
+                iterator.remove();
+                postEvent(entry.getValue(), null);
+            }
+        }
+    }
+
+    private int getRunningUploadCount(String host) {
+        Integer count = mRunningUploadsPerHost.get(host);
+        return count == null ? 0 : count;
+    }
 
+    private void setUploadRunning(Upload upload, boolean isRunning) {
+        upload.mIsRunning = isRunning;
+        mRunningUploadsPerHost.put(upload.mHost, getRunningUploadCount(upload.mHost) + (isRunning ? 1 : -1));
+    }
+
+    private void uploadMediaFile(Cursor cursor, Blog blog, final Upload upload) {
         final String blogIdStr = cursor.getString((cursor.getColumnIndex(WordPressDB.COLUMN_NAME_BLOG_ID)));
         final String mediaId = cursor.getString(cursor.getColumnIndex(WordPressDB.COLUMN_NAME_MEDIA_ID));
         String fileName = cursor.getString(cursor.getColumnIndex(WordPressDB.COLUMN_NAME_FILE_NAME));
@@ -121,15 +216,27 @@ public class MediaUploadService extends Service {
                 // once the file has been uploaded, delete the local database entry and
                 // download the new one so that we are up-to-date and so that users can edit it.
                 WordPress.wpDB.deleteMediaFile(blogIdStr, mediaId);
-                EventBus.getDefault().post(new MediaUploadEvents.MediaUploadSucceed(mediaId, id));
-                fetchMediaFile(id);
+                postEvent(upload, new MediaUploadEvents.MediaUploadSucceed(mediaId, id));
+                fetchMediaFile(id, mediaId, upload);
             }
 
             @Override
             public void onFailure(ApiHelper.ErrorType errorType, String errorMessage, Throwable throwable) {
+                setUploadRunning(upload, false);
+                if (isTransportError(errorType, throwable) && upload.mAttempts < MAX_ATTEMPTS) {
+                    // queue it again, and give the connection some time before trying again
+                    long delay = RETRY_BASE_DELAY_MS << (upload.mAttempts - 1);
+                    AppLog.w(T.MEDIA, "Upload failed, retrying in " + delay + " ms: " + errorMessage);
+                    upload.mRetryTime = System.currentTimeMillis() + delay;
+                    WordPress.wpDB.updateMediaUploadState(blogIdStr, mediaId, "queued");
+                    mHandler.postDelayed(mFetchQueueTask, delay);
+                    mHandler.post(mFetchQueueTask);
+                    return;
+                }
+
+                mUploads.remove(mediaId);
                 WordPress.wpDB.updateMediaUploadState(blogIdStr, mediaId, "failed");
-                mUploadInProgress = false;
-                EventBus.getDefault().post(new MediaUploadEvents.MediaUploadFailed(mediaId,
+                postEvent(upload, new MediaUploadEvents.MediaUploadFailed(mediaId,
                         getString(R.string.upload_failed)));
                 mHandler.post(mFetchQueueTask);
                 // Only log the error if it's not caused by the network (internal inconsistency)
@@ -139,14 +246,23 @@ public class MediaUploadService extends Service {
             }
         });
 
+        upload.mAttempts++;
+        setUploadRunning(upload, true);
         WordPress.wpDB.updateMediaUploadState(blogIdStr, mediaId, "uploading");
         List<Object> apiArgs = new ArrayList<Object>();
-        apiArgs.add(WordPress.getCurrentBlog());
-        task.execute(apiArgs);
-        mHandler.post(mFetchQueueTask);
+        apiArgs.add(blog);
+        task.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR, apiArgs);
     }
 
-    private void fetchMediaFile(final String id) {
+    /*
+     * NETWORK_XMLRPC also covers the faults returned by the server (bad credentials, missing permission...), which
+     * won't go away by trying again: only I/O errors, timeouts included, are worth a retry
+     */
+    private static boolean isTransportError(ErrorType errorType, Throwable throwable) {
+        return errorType == ErrorType.NETWORK_XMLRPC && throwable instanceof IOException;
+    }
+
+    private void fetchMediaFile(final String id, final String localMediaId, final Upload upload) {
         List<Object> apiArgs = new ArrayList<Object>();
         apiArgs.add(WordPress.getCurrentBlog());
         GetMediaItemTask task = new GetMediaItemTask(Integer.valueOf(id),
@@ -156,20 +272,39 @@ public class MediaUploadService extends Service {
                 String blogId = mediaFile.getBlogId();
                 String mediaId = mediaFile.getMediaId();
                 WordPress.wpDB.updateMediaUploadState(blogId, mediaId, "uploaded");
-                mUploadInProgress = false;
-                mHandler.post(mFetchQueueTask);
+                onUploadDone();
             }
 
             @Override
             public void onFailure(ApiHelper.ErrorType errorType, String errorMessage, Throwable throwable) {
-                mUploadInProgress = false;
-                mHandler.post(mFetchQueueTask);
+                onUploadDone();
                 // Only log the error if it's not caused by the network (internal inconsistency)
                 if (errorType != ErrorType.NETWORK_XMLRPC) {
                     CrashlyticsUtils.logException(throwable, ExceptionType.SPECIFIC, T.MEDIA, errorMessage);
                 }
             }
+
+            private void onUploadDone() {
+                setUploadRunning(upload, false);
+                mUploads.remove(localMediaId);
+                mHandler.post(mFetchQueueTask);
+            }
         });
-        task.execute(apiArgs);
+        task.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR, apiArgs);
+    }
+
+    /*
+     * posts the event of an upload once the events of all the uploads queued before it have been posted, a null
+     * event only lets the next ones through
+     */
+    private void postEvent(Upload upload, Object event) {
+        mPendingEvents.put(upload.mSequence, event);
+        while (!mPendingEvents.isEmpty() && mPendingEvents.firstKey() == mNextEventSequence) {
+            Object nextEvent = mPendingEvents.remove(mNextEventSequence);
+            if (nextEvent != null) {
+                EventBus.getDefault().post(nextEvent);
+            }
+            mNextEventSequence++;
+        }
     }
 }
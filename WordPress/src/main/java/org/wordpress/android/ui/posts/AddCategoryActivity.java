@@ -12,7 +12,6 @@ import android.widget.EditText;
 import android.widget.Spinner;
 
 import org.wordpress.android.R;
-import org.wordpress.android.WordPress;
 import org.wordpress.android.models.CategoryNode;
 
 import java.util.ArrayList;
@@ -45,12 +44,9 @@ public class AddCategoryActivity extends ActionBarActivity {
                 EditText categoryDescET = (EditText) findViewById(R.id.category_desc);
                 String category_desc = categoryDescET.getText().toString();
                 Spinner sCategories = (Spinner) findViewById(R.id.parent_category);
-                String parent_category = "";
-                if (sCategories.getSelectedItem() != null)
-                    parent_category = ((CategoryNode) sCategories.getSelectedItem()).getName().trim();
                 int parent_id = 0;
-                if (sCategories.getSelectedItemPosition() != 0) {
-                    parent_id = WordPress.wpDB.getCategoryId(id, parent_category);
+                if (sCategories.getSelectedItem() != null && sCategories.getSelectedItemPosition() != 0) {
+                    parent_id = ((CategoryNode) sCategories.getSelectedItem()).getCategoryId();
                 }
 
                 if (category_name.replaceAll(" ", "").equals("")) {
@@ -338,15 +338,15 @@ public class PostsListFragment extends ListFragment
 
         updateEmptyView(EmptyViewMessageType.LOADING);
 
-        int postCount = getPostListAdapter().getRemotePostCount() + POSTS_REQUEST_COUNT;
+        int offset = getPostListAdapter().getRemotePostCount();
         if (!loadMore) {
             mCanLoadMorePosts = true;
-            postCount = POSTS_REQUEST_COUNT;
+            offset = 0;
         }
         List<Object> apiArgs = new Vector<Object>();
         apiArgs.add(WordPress.getCurrentBlog());
         apiArgs.add(mIsPage);
-        apiArgs.add(postCount);
+        apiArgs.add(offset);
         apiArgs.add(loadMore);
         if (mProgressFooterView != null && loadMore) {
             mProgressFooterView.setVisibility(View.VISIBLE);
@@ -371,9 +371,7 @@ public class PostsListFragment extends ListFragment
                     mProgressFooterView.setVisibility(View.GONE);
                 }
 
-                if (postCount == 0) {
-                    mCanLoadMorePosts = false;
-                } else if (postCount == getPostListAdapter().getRemotePostCount() && postCount != POSTS_REQUEST_COUNT) {
+                if (postCount < POSTS_REQUEST_COUNT) {
                     mCanLoadMorePosts = false;
                 }
 
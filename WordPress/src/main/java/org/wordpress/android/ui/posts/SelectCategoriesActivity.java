@@ -37,6 +37,7 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 
 public class SelectCategoriesActivity extends ActionBarActivity {
@@ -187,9 +188,7 @@ public class SelectCategoriesActivity extends ActionBarActivity {
         }
 
         if (success) {
-            // wipe out the categories table
-            WordPress.wpDB.clearCategories(blog.getLocalTableBlogId());
-
+            List<CategoryNode> categories = new ArrayList<CategoryNode>();
             for (Object aResult : result) {
                 Map<?, ?> curHash = (Map<?, ?>) aResult;
                 String categoryName = curHash.get("categoryName").toString();
@@ -197,8 +196,10 @@ public class SelectCategoriesActivity extends ActionBarActivity {
                 String categoryParentID = curHash.get("parentId").toString();
                 int convertedCategoryID = Integer.parseInt(categoryID);
                 int convertedCategoryParentID = Integer.parseInt(categoryParentID);
-                WordPress.wpDB.insertCategory(blog.getLocalTableBlogId(), convertedCategoryID, convertedCategoryParentID, categoryName);
+                categories.add(new CategoryNode(convertedCategoryID, convertedCategoryParentID, categoryName));
             }
+            // only writes the categories that changed since the last refresh
+            WordPress.wpDB.saveCategories(blog.getLocalTableBlogId(), categories);
             returnMessage = "gotCategories";
         } else {
             returnMessage = "FAIL";
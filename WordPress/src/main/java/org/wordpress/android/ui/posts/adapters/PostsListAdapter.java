@@ -1,7 +1,6 @@
 package org.wordpress.android.ui.posts.adapters;
 
 import android.content.Context;
-import android.os.AsyncTask;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -10,6 +9,7 @@ import android.widget.TextView;
 
 import org.wordpress.android.R;
 import org.wordpress.android.WordPress;
+import org.wordpress.android.datasets.DatabaseExecutor;
 import org.wordpress.android.models.PostStatus;
 import org.wordpress.android.models.PostsListPost;
 import org.wordpress.android.ui.posts.PostsListFragment;
@@ -17,11 +17,17 @@ import org.wordpress.android.ui.posts.PostsListFragment;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.Callable;
 
 /**
  * Adapter for Posts/Pages list
+ *
+ * Posts are read from the database a page at a time as the list is scrolled, so opening or refreshing the list of a
+ * blog with thousands of posts only reads the posts shown.
  */
 public class PostsListAdapter extends BaseAdapter {
+    private static final int LOCAL_PAGE_SIZE = 50;
+
     public static interface OnLoadMoreListener {
         public void onLoadMore();
     }
@@ -37,7 +43,11 @@ public class PostsListAdapter extends BaseAdapter {
     private LayoutInflater mLayoutInflater;
 
     private List<PostsListPost> mPosts = new ArrayList<PostsListPost>();
-
+    private boolean mHasMoreLocalPosts;
+    private boolean mIsLoadingLocalPage;
+    private int mRemotePostCount;
+    // incremented when the list is reloaded, pages read for a previous list are dropped
+    private int mLoadGeneration;
 
     public PostsListAdapter(Context context, boolean isPage, OnLoadMoreListener onLoadMoreListener, OnPostsLoadedListener onPostsLoadedListener) {
         mContext = context;
@@ -140,8 +150,10 @@ public class PostsListAdapter extends BaseAdapter {
             wrapper.getStatus().setText(formattedStatus);
         }
 
-        // load more posts when we near the end
-        if (mOnLoadMoreListener != null && position >= getCount() - 1
+        // load more posts when we near the end, from the database first
+        if (mHasMoreLocalPosts && position >= getCount() - PostsListFragment.POSTS_REQUEST_COUNT) {
+            loadNextLocalPage();
+        } else if (!mHasMoreLocalPosts && mOnLoadMoreListener != null && position >= getCount() - 1
                 && position >= PostsListFragment.POSTS_REQUEST_COUNT - 1) {
             mOnLoadMoreListener.onLoadMore();
         }
@@ -149,16 +161,99 @@ public class PostsListAdapter extends BaseAdapter {
         return view;
     }
 
+    /**
+     * (Re)loads the posts from the database, as many as currently shown (at least a page)
+     */
     public void loadPosts() {
         if (WordPress.getCurrentBlog() == null) {
             return;
         }
 
         // load posts from db
-        new LoadPostsTask().executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+        final int blogId = WordPress.getCurrentLocalTableBlogId();
+        final int limit = Math.max(LOCAL_PAGE_SIZE, mPosts.size());
+        final int generation = ++mLoadGeneration;
+        final int[] remotePostCount = new int[1];
+        final boolean[] hasMoreLocalPosts = new boolean[1];
+        // the loaded posts are compared with a copy of the shown ones in the background
+        final List<PostsListPost> currentPosts = new ArrayList<PostsListPost>(mPosts);
+        DatabaseExecutor.read(new Callable<List<PostsListPost>>() {
+            @Override
+            public List<PostsListPost> call() {
+                remotePostCount[0] = WordPress.wpDB.getRemotePostCount(blogId, mIsPage);
+                List<PostsListPost> loadedPosts = WordPress.wpDB.getPostsListPosts(blogId, mIsPage, null, limit);
+                hasMoreLocalPosts[0] = loadedPosts.size() == limit;
+                // null when the shown posts are up to date
+                return postsListMatch(currentPosts, loadedPosts) ? null : loadedPosts;
+            }
+        }, new DatabaseExecutor.Callback<List<PostsListPost>>() {
+            @Override
+            public void onResult(List<PostsListPost> loadedPosts) {
+                if (generation != mLoadGeneration) {
+                    return;
+                }
+                mHasMoreLocalPosts = hasMoreLocalPosts[0];
+                mRemotePostCount = remotePostCount[0];
+                if (loadedPosts == null) {
+                    return;
+                }
+                setPosts(loadedPosts);
+                notifyDataSetChanged();
+
+                if (mOnPostsLoadedListener != null && mPosts != null) {
+                    mOnPostsLoadedListener.onPostsLoaded(mPosts.size());
+                }
+            }
+
+            @Override
+            public void onError(Exception e) {
+                // the list keeps the posts it already shows
+            }
+        });
+    }
+
+    /*
+     * appends the next page of posts from the database, starting after the last post shown
+     */
+    private void loadNextLocalPage() {
+        if (mIsLoadingLocalPage || mPosts.size() == 0 || WordPress.getCurrentBlog() == null) {
+            return;
+        }
+
+        mIsLoadingLocalPage = true;
+        final int blogId = WordPress.getCurrentLocalTableBlogId();
+        final PostsListPost lastPost = mPosts.get(mPosts.size() - 1);
+        final int generation = mLoadGeneration;
+        DatabaseExecutor.read(new Callable<List<PostsListPost>>() {
+            @Override
+            public List<PostsListPost> call() {
+                return WordPress.wpDB.getPostsListPosts(blogId, mIsPage, lastPost, LOCAL_PAGE_SIZE);
+            }
+        }, new DatabaseExecutor.Callback<List<PostsListPost>>() {
+            @Override
+            public void onResult(List<PostsListPost> loadedPosts) {
+                mIsLoadingLocalPage = false;
+                if (generation != mLoadGeneration) {
+                    return;
+                }
+                mHasMoreLocalPosts = loadedPosts.size() == LOCAL_PAGE_SIZE;
+                if (loadedPosts.size() > 0) {
+                    mPosts.addAll(loadedPosts);
+                    notifyDataSetChanged();
+                }
+            }
+
+            @Override
+            public void onError(Exception e) {
+                mIsLoadingLocalPage = false;
+            }
+        });
     }
 
     public void clear() {
+        mLoadGeneration++;
+        mHasMoreLocalPosts = false;
+        mRemotePostCount = 0;
         if (mPosts.size() > 0) {
             mPosts.clear();
             notifyDataSetChanged();
@@ -197,39 +292,14 @@ public class PostsListAdapter extends BaseAdapter {
         }
     }
 
-    private class LoadPostsTask extends AsyncTask <Void, Void, Boolean> {
-        List<PostsListPost> loadedPosts;
-
-        @Override
-        protected Boolean doInBackground(Void... nada) {
-            loadedPosts = WordPress.wpDB.getPostsListPosts(WordPress.getCurrentLocalTableBlogId(), mIsPage);
-            if (postsListMatch(loadedPosts)) {
-                return false;
-            }
-
-            return true;
-        }
-
-        @Override
-        protected void onPostExecute(Boolean result) {
-            if (result) {
-                setPosts(loadedPosts);
-                notifyDataSetChanged();
-
-                if (mOnPostsLoadedListener != null && mPosts != null) {
-                    mOnPostsLoadedListener.onPostsLoaded(mPosts.size());
-                }
-            }
-        }
-    }
-
-    public boolean postsListMatch(List<PostsListPost> newPostsList) {
-        if (newPostsList == null || newPostsList.size() == 0 || mPosts == null || mPosts.size() != newPostsList.size())
+    private static boolean postsListMatch(List<PostsListPost> currentPostsList, List<PostsListPost> newPostsList) {
+        if (newPostsList == null || newPostsList.size() == 0 || currentPostsList == null
+                || currentPostsList.size() != newPostsList.size())
             return false;
 
         for (int i = 0; i < newPostsList.size(); i++) {
             PostsListPost newPost = newPostsList.get(i);
-            PostsListPost currentPost = mPosts.get(i);
+            PostsListPost currentPost = currentPostsList.get(i);
 
             if (newPost.getPostId() != currentPost.getPostId())
                 return false;
@@ -250,16 +320,10 @@ public class PostsListAdapter extends BaseAdapter {
         return true;
     }
 
+    /**
+     * @return number of posts downloaded from the server, the offset of the next posts to download
+     */
     public int getRemotePostCount() {
-        if (mPosts == null)
-            return 0;
-
-        int remotePostCount = 0;
-        for (PostsListPost post : mPosts) {
-            if (!post.isLocalDraft())
-                remotePostCount++;
-        }
-
-        return remotePostCount;
+        return mRemotePostCount;
     }
 }
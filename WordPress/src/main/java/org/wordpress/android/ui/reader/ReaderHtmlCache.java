@@ -0,0 +1,258 @@
+package org.wordpress.android.ui.reader;
+
+import android.content.Context;
+import android.os.Process;
+
+import org.wordpress.android.WordPress;
+import org.wordpress.android.models.ReaderPost;
+import org.wordpress.android.models.ReaderPostList;
+import org.wordpress.android.util.AppLog;
+import org.wordpress.android.util.PackageUtils;
+import org.wordpress.android.util.StringUtils;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * disk cache of the HTML rendered by ReaderPostRenderer, so opening a post (or swiping back to
+ * it) shows the rendered HTML without scanning and resizing its content again
+ *
+ * there's one file per post and set of rendering resources (display width, density, margins,
+ * colors and video size), its first line is a key made of the renderer version, the app version,
+ * a hash of the content the HTML was rendered from and a hash of those resources - a cached
+ * file whose key doesn't match the post is ignored and replaced
+ *
+ * pre-rendering and trimming run one at a time on a single background thread
+ */
+public class ReaderHtmlCache {
+    private static final String CACHE_DIR = "reader_html";
+    private static final int MAX_CACHED_FILES = 250;
+    private static final long KEEP_ALIVE_SECONDS = 30;
+
+    private static ThreadPoolExecutor sExecutor;
+
+    private ReaderHtmlCache() {
+        throw new AssertionError();
+    }
+
+    private static File getCacheDir() {
+        File dir = new File(WordPress.getContext().getCacheDir(), CACHE_DIR);
+        if (!dir.exists() && !dir.mkdirs()) {
+            return null;
+        }
+        return dir;
+    }
+
+    private static synchronized ThreadPoolExecutor getExecutor() {
+        if (sExecutor == null) {
+            sExecutor = new ThreadPoolExecutor(1, 1, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                        @Override
+                        public Thread newThread(final Runnable runnable) {
+                            return new Thread(new Runnable() {
+                                @Override
+                                public void run() {
+                                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                                    runnable.run();
+                                }
+                            }, "Reader html cache");
+                        }
+                    });
+            sExecutor.allowCoreThreadTimeOut(true);
+        }
+        return sExecutor;
+    }
+
+    private static String getFileName(ReaderPost post, String resourcesHash) {
+        return post.blogId + "-" + post.postId + "-" + resourcesHash.substring(0, 8) + ".html";
+    }
+
+    /*
+     * hash of the resources the renderer uses - sizes are in px, and converted to dp with the
+     * display density
+     */
+    private static String getResourcesHash(ReaderResourceVars resourceVars) {
+        String resources = resourceVars.fullSizeImageWidthPx
+                + ":" + resourceVars.featuredImageHeightPx
+                + ":" + resourceVars.videoWidthPx
+                + ":" + resourceVars.videoHeightPx
+                + ":" + resourceVars.marginSmallPx
+                + ":" + resourceVars.marginExtraSmallPx
+                + ":" + resourceVars.linkColorStr
+                + ":" + resourceVars.greyMediumDarkStr
+                + ":" + resourceVars.greyLightStr
+                + ":" + resourceVars.greyExtraLightStr
+                + ":" + WordPress.getContext().getResources().getDisplayMetrics().density;
+        return StringUtils.getMd5Hash(resources);
+    }
+
+    /*
+     * changes when anything the rendered HTML depends on changes
+     */
+    private static String getKey(ReaderPost post, String resourcesHash) {
+        String content = post.getText()
+                + "\n" + post.getFeaturedImage()
+                + "\n" + post.getAttachmentsJson()
+                + "\n" + post.isPrivate;
+        return ReaderPostRenderer.RENDERER_VERSION
+                + ":" + PackageUtils.getVersionCode(WordPress.getContext())
+                + ":" + StringUtils.getMd5Hash(content)
+                + ":" + resourcesHash;
+    }
+
+    /*
+     * returns the cached HTML of the passed post rendered with the passed resources, or null if
+     * it isn't cached or was rendered from another version of the post
+     */
+    static String getHtml(ReaderPost post, ReaderResourceVars resourceVars) {
+        File dir = getCacheDir();
+        if (dir == null || post == null) {
+            return null;
+        }
+        String resourcesHash = getResourcesHash(resourceVars);
+        File file = new File(dir, getFileName(post, resourcesHash));
+        if (!file.exists()) {
+            return null;
+        }
+
+        BufferedReader reader = null;
+        try {
+            reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+            if (!getKey(post, resourcesHash).equals(reader.readLine())) {
+                return null;
+            }
+            StringBuilder html = new StringBuilder((int) file.length());
+            char[] buffer = new char[8192];
+            int count;
+            while ((count = reader.read(buffer)) != -1) {
+                html.append(buffer, 0, count);
+            }
+            // keep the posts that are read in the cache when it's trimmed
+            file.setLastModified(System.currentTimeMillis());
+            return html.toString();
+        } catch (IOException e) {
+            AppLog.e(AppLog.T.READER, e);
+            return null;
+        } finally {
+            close(reader);
+        }
+    }
+
+    /*
+     * stores the HTML rendered for the passed post - written to a temporary file first so a
+     * file being read is never half-written
+     */
+    static void putHtml(ReaderPost post, ReaderResourceVars resourceVars, String html) {
+        File dir = getCacheDir();
+        if (dir == null || post == null || html == null) {
+            return;
+        }
+        String resourcesHash = getResourcesHash(resourceVars);
+        File file = new File(dir, getFileName(post, resourcesHash));
+        File tempFile = new File(dir, file.getName() + "." + Thread.currentThread().getId() + ".tmp");
+
+        Writer writer = null;
+        try {
+            writer = new OutputStreamWriter(new FileOutputStream(tempFile), "UTF-8");
+            writer.write(getKey(post, resourcesHash));
+            writer.write('\n');
+            writer.write(html);
+            writer.close();
+            writer = null;
+            if (!tempFile.renameTo(file)) {
+                AppLog.w(AppLog.T.READER, "reader html cache > failed to store " + file.getName());
+            }
+        } catch (IOException e) {
+            AppLog.e(AppLog.T.READER, e);
+        } finally {
+            close(writer);
+            if (tempFile.exists()) {
+                tempFile.delete();
+            }
+        }
+    }
+
+    /*
+     * renders the passed posts in the background at the current display width, so they're
+     * already rendered when they're opened - used after posts are retrieved
+     */
+    public static void preRenderPosts(final ReaderPostList posts) {
+        if (posts == null || posts.size() == 0) {
+            return;
+        }
+
+        getExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                Context context = WordPress.getContext();
+                for (ReaderPost post : posts) {
+                    // renderHtml() does nothing more when the post has already been rendered
+                    new ReaderPostRenderer(context, post).renderHtml();
+                }
+                AppLog.d(AppLog.T.READER, "reader html cache > pre-rendered " + posts.size() + " posts");
+                trim();
+            }
+        });
+    }
+
+    /*
+     * trims the cache in the background - used at startup, so the files left by posts
+     * that are no longer read or by other display settings don't pile up until the next
+     * pre-rendering
+     */
+    public static void trimInBackground() {
+        getExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                trim();
+            }
+        });
+    }
+
+    /*
+     * deletes the least recently used files once there are too many of them
+     */
+    private static void trim() {
+        File dir = getCacheDir();
+        File[] files = (dir != null ? dir.listFiles() : null);
+        if (files == null || files.length <= MAX_CACHED_FILES) {
+            return;
+        }
+
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File file1, File file2) {
+                long modified1 = file1.lastModified();
+                long modified2 = file2.lastModified();
+                return modified1 < modified2 ? 1 : (modified1 == modified2 ? 0 : -1);
+            }
+        });
+        for (int i = MAX_CACHED_FILES; i < files.length; i++) {
+            files[i].delete();
+        }
+    }
+
+    private static void close(Closeable closeable) {
+        if (closeable == null) {
+            return;
+        }
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            // nop
+        }
+    }
+}
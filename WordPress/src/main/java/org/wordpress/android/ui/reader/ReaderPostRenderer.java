@@ -1,16 +1,17 @@
 package org.wordpress.android.ui.reader;
 
 import android.annotation.SuppressLint;
+import android.content.Context;
 import android.net.Uri;
 import android.os.Handler;
+import android.text.TextUtils;
 
 import org.wordpress.android.WordPress;
 import org.wordpress.android.models.ReaderPost;
 import org.wordpress.android.ui.reader.utils.ImageSizeMap;
 import org.wordpress.android.ui.reader.utils.ImageSizeMap.ImageSize;
-import org.wordpress.android.ui.reader.utils.ReaderHtmlUtils;
-import org.wordpress.android.ui.reader.utils.ReaderIframeScanner;
-import org.wordpress.android.ui.reader.utils.ReaderImageScanner;
+import org.wordpress.android.ui.reader.utils.ReaderHtmlRewriter;
+import org.wordpress.android.ui.reader.utils.ReaderHtmlTagScanner;
 import org.wordpress.android.ui.reader.utils.ReaderUtils;
 import org.wordpress.android.ui.reader.views.ReaderWebView;
 import org.wordpress.android.util.AppLog;
@@ -31,13 +32,15 @@ import java.lang.ref.WeakReference;
  */
 class ReaderPostRenderer {
 
+    // bump this whenever the rendered HTML changes so previously cached HTML isn't used
+    static final int RENDERER_VERSION = 2;
+
     private final ReaderResourceVars mResourceVars;
     private final ReaderPost mPost;
     private final int mMinFullSizeWidthDp;
     private final int mMinMidSizeWidthDp;
     private final WeakReference<ReaderWebView> mWeakWebView;
 
-    private StringBuilder mRenderBuilder;
     private String mRenderedHtml;
     private ImageSizeMap mAttachmentSizes;
 
@@ -62,18 +65,29 @@ class ReaderPostRenderer {
         webView.getSettings().setJavaScriptEnabled(canEnableJavaScript());
     }
 
+    /*
+     * renderer without a webView, used to render posts ahead of time
+     */
+    ReaderPostRenderer(Context context, ReaderPost post) {
+        if (post == null) {
+            throw new IllegalArgumentException("ReaderPostRenderer requires a post");
+        }
+
+        mPost = post;
+        mWeakWebView = new WeakReference<ReaderWebView>(null);
+        mResourceVars = new ReaderResourceVars(context);
+
+        mMinFullSizeWidthDp = pxToDp(mResourceVars.fullSizeImageWidthPx / 3);
+        mMinMidSizeWidthDp = mMinFullSizeWidthDp / 2;
+    }
+
     void beginRender() {
         final Handler handler = new Handler();
-        mRenderBuilder = new StringBuilder(getPostContent());
 
         new Thread() {
             @Override
             public void run() {
-                resizeImages();
-                resizeIframes();
-
-                final String htmlContent = formatPostContentForWebView(mRenderBuilder.toString());
-                mRenderBuilder = null;
+                final String htmlContent = renderHtml();
                 handler.post(new Runnable() {
                     @Override
                     public void run() {
@@ -85,39 +99,46 @@ class ReaderPostRenderer {
     }
 
     /*
-     * scan the content for images and make sure they're correctly sized for the device
+     * returns the full HTML for the post, taken from the disk cache when the post has already
+     * been rendered with these resources - must be called in the background
      */
-    void resizeImages() {
-        ReaderHtmlUtils.HtmlScannerListener imageListener = new ReaderHtmlUtils.HtmlScannerListener() {
-            @Override
-            public void onTagFound(String imageTag, String imageUrl, int start, int end) {
-                replaceImageTag(imageTag, imageUrl);
-            }
-            @Override
-            public void onScanCompleted() {
-                // nop
-            }
-        };
-        ReaderImageScanner scanner = new ReaderImageScanner(mRenderBuilder.toString(), mPost.isPrivate);
-        scanner.beginScan(imageListener);
+    String renderHtml() {
+        String htmlContent = ReaderHtmlCache.getHtml(mPost, mResourceVars);
+        if (htmlContent != null) {
+            return htmlContent;
+        }
+
+        htmlContent = formatPostContentForWebView(resizeImagesAndIframes(getPostContent()));
+
+        ReaderHtmlCache.putHtml(mPost, mResourceVars, htmlContent);
+        return htmlContent;
     }
 
     /*
-     * scan the content for iframes and make sure they're correctly sized for the device
+     * scan the content for images and iframes in a single pass and make sure they're correctly
+     * sized for the device - the resized tags are collected by the rewriter, which produces the
+     * resized content in a single copy once the scan is done
      */
-    void resizeIframes() {
-        ReaderHtmlUtils.HtmlScannerListener iframeListener = new ReaderHtmlUtils.HtmlScannerListener() {
-            @Override
-            public void onTagFound(String tag, String src, int start, int end) {
-                replaceIframeTag(tag, src);
+    String resizeImagesAndIframes(final String content) {
+        ReaderHtmlRewriter rewriter = new ReaderHtmlRewriter(content);
+        ReaderHtmlTagScanner scanner = new ReaderHtmlTagScanner(content,
+                ReaderHtmlTagScanner.TAG_IMG, ReaderHtmlTagScanner.TAG_IFRAME);
+        while (scanner.next()) {
+            String src = scanner.getAttributeValue("src");
+            if (TextUtils.isEmpty(src)) {
+                continue;
             }
-            @Override
-            public void onScanCompleted() {
-                // nop
+            int width = scanner.getIntAttributeValue("width");
+            int height = scanner.getIntAttributeValue("height");
+            final String newTag;
+            if (scanner.isTag(ReaderHtmlTagScanner.TAG_IMG)) {
+                newTag = makeResizedImageTag(src, width, height);
+            } else {
+                newTag = makeResizedIframeTag(src, width, height);
             }
-        };
-        ReaderIframeScanner scanner = new ReaderIframeScanner(mRenderBuilder.toString());
-        scanner.beginScan(iframeListener);
+            rewriter.replace(scanner.getTagStart(), scanner.getTagEnd(), newTag);
+        }
+        return rewriter.toString();
     }
 
     /*
@@ -141,36 +162,27 @@ class ReaderPostRenderer {
     }
 
     /*
-     * called when image scanner finds an image, tries to replace the image tag with one that
-     * has height & width attributes set correctly for the current display, if that fails
-     * replaces it with one that has our 'size-none' class
+     * called when the scanner finds an image, returns an image tag that has height & width
+     * attributes set correctly for the current display, if that fails returns one that has
+     * our 'size-none' class
      */
-    private void replaceImageTag(final String imageTag, final String imageUrl) {
-        ImageSize origSize = getImageSize(imageTag, imageUrl);
+    private String makeResizedImageTag(final String imageUrl, int attrWidth, int attrHeight) {
+        ImageSize origSize = getImageSize(imageUrl, attrWidth, attrHeight);
         boolean hasWidth = (origSize != null && origSize.width > 0);
         boolean isFullSize = hasWidth && (origSize.width >= mMinFullSizeWidthDp);
         boolean isMidSize = hasWidth
                 && (origSize.width >= mMinMidSizeWidthDp)
                 && (origSize.width < mMinFullSizeWidthDp);
 
-        final String newImageTag;
         if (isFullSize) {
-            newImageTag = makeFullSizeImageTag(imageUrl, origSize.width, origSize.height);
+            return makeFullSizeImageTag(imageUrl, origSize.width, origSize.height);
         } else if (isMidSize) {
-            newImageTag = makeImageTag(imageUrl, origSize.width, origSize.height, "size-medium");
+            return makeImageTag(imageUrl, origSize.width, origSize.height, "size-medium");
         } else if (hasWidth) {
-            newImageTag = makeImageTag(imageUrl, origSize.width, origSize.height, "size-none");
+            return makeImageTag(imageUrl, origSize.width, origSize.height, "size-none");
         } else {
-            newImageTag = "<img class='size-none' src='" + imageUrl + "' />";
+            return "<img class='size-none' src='" + imageUrl + "' />";
         }
-
-        int start = mRenderBuilder.indexOf(imageTag);
-        if (start == -1) {
-            AppLog.w(AppLog.T.READER, "reader renderer > image not found in builder");
-            return;
-        }
-
-        mRenderBuilder.replace(start, start + imageTag.length(), newImageTag);
     }
 
     private String makeImageTag(final String imageUrl, int width, int height, final String imageClass) {
@@ -255,12 +267,9 @@ class ReaderPostRenderer {
     }
 
     /*
-     * replace the passed iframe tag with one that's correctly sized for the device
+     * returns an iframe tag that's correctly sized for the device
      */
-    private void replaceIframeTag(final String tag, final String src) {
-        int width = ReaderHtmlUtils.getWidthAttrValue(tag);
-        int height = ReaderHtmlUtils.getHeightAttrValue(tag);
-
+    private String makeResizedIframeTag(final String src, int width, int height) {
         int newHeight;
         int newWidth;
         if (width > 0 && height > 0) {
@@ -272,19 +281,11 @@ class ReaderPostRenderer {
             newHeight = mResourceVars.videoHeightPx;
         }
 
-        String newTag = new StringBuilder("<iframe src='").append(src).append("'")
+        return new StringBuilder("<iframe src='").append(src).append("'")
                 .append(" frameborder='0' allowfullscreen='true' allowtransparency='true'")
                 .append(" width='").append(pxToDp(newWidth)).append("'")
                 .append(" height='").append(pxToDp(newHeight)).append("' />")
                 .toString();
-
-        int start = mRenderBuilder.indexOf(tag);
-        if (start == -1) {
-            AppLog.w(AppLog.T.READER, "reader renderer > iframe not found in builder");
-            return;
-        }
-
-        mRenderBuilder.replace(start, start + tag.length(), newTag);
     }
 
     /*
@@ -372,13 +373,16 @@ class ReaderPostRenderer {
         return sbHtml.toString();
     }
 
-    private ImageSize getImageSize(final String imageTag, final String imageUrl) {
+    /*
+     * attrWidth & attrHeight are the values of the image tag's width & height attributes
+     */
+    private ImageSize getImageSize(final String imageUrl, int attrWidth, int attrHeight) {
         ImageSize size = getImageSizeFromAttachments(imageUrl);
         if (size == null && imageUrl.contains("?")) {
             size = getImageSizeFromQueryParams(imageUrl);
         }
-        if (size == null && imageTag.contains("width=")) {
-            size = getImageSizeFromAttributes(imageTag);
+        if (size == null && attrWidth > 0) {
+            size = new ImageSize(attrWidth, attrHeight);
         }
         return size;
     }
@@ -412,12 +416,6 @@ class ReaderPostRenderer {
         return null;
     }
 
-    private ImageSize getImageSizeFromAttributes(final String imageTag) {
-        return new ImageSize(
-                ReaderHtmlUtils.getWidthAttrValue(imageTag),
-                ReaderHtmlUtils.getHeightAttrValue(imageTag));
-    }
-
     private int pxToDp(int px) {
         if (px == 0) {
             return 0;
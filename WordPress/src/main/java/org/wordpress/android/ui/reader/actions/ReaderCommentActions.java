@@ -7,6 +7,7 @@ import com.wordpress.rest.RestRequest;
 
 import org.json.JSONObject;
 import org.wordpress.android.WordPress;
+import org.wordpress.android.datasets.DatabaseExecutor;
 import org.wordpress.android.datasets.ReaderCommentTable;
 import org.wordpress.android.datasets.ReaderLikeTable;
 import org.wordpress.android.datasets.ReaderUserTable;
@@ -21,6 +22,7 @@ import org.wordpress.android.util.VolleyUtils;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.Callable;
 
 public class ReaderCommentActions {
     /*
@@ -88,20 +90,43 @@ public class ReaderCommentActions {
         RestRequest.Listener listener = new RestRequest.Listener() {
             @Override
             public void onResponse(JSONObject jsonObject) {
-                ReaderCommentTable.deleteComment(post, fakeCommentId);
                 AppLog.i(T.READER, "comment succeeded");
-                ReaderComment newComment = ReaderComment.fromJson(jsonObject, post.blogId);
+                final ReaderComment newComment = ReaderComment.fromJson(jsonObject, post.blogId);
                 newComment.pageNumber = pageNumber;
-                ReaderCommentTable.addOrUpdateComment(newComment);
-                if (actionListener != null) {
-                    actionListener.onActionResult(true, newComment);
-                }
+                // replace the fake comment on the database writer, the listener is called once it's done
+                DatabaseExecutor.write(new Callable<ReaderComment>() {
+                    @Override
+                    public ReaderComment call() {
+                        ReaderCommentTable.deleteComment(post, fakeCommentId);
+                        ReaderCommentTable.addOrUpdateComment(newComment);
+                        return newComment;
+                    }
+                }, new DatabaseExecutor.Callback<ReaderComment>() {
+                    @Override
+                    public void onResult(ReaderComment result) {
+                        if (actionListener != null) {
+                            actionListener.onActionResult(true, result);
+                        }
+                    }
+
+                    @Override
+                    public void onError(Exception e) {
+                        if (actionListener != null) {
+                            actionListener.onActionResult(false, null);
+                        }
+                    }
+                });
             }
         };
         RestRequest.ErrorListener errorListener = new RestRequest.ErrorListener() {
             @Override
             public void onErrorResponse(VolleyError volleyError) {
-                ReaderCommentTable.deleteComment(post, fakeCommentId);
+                DatabaseExecutor.write(new Runnable() {
+                    @Override
+                    public void run() {
+                        ReaderCommentTable.deleteComment(post, fakeCommentId);
+                    }
+                });
                 AppLog.w(T.READER, "comment failed");
                 AppLog.e(T.READER, volleyError);
                 if (actionListener != null) {
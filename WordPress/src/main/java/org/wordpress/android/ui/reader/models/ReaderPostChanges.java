@@ -0,0 +1,57 @@
+package org.wordpress.android.ui.reader.models;
+
+import org.wordpress.android.ui.reader.actions.ReaderActions.UpdateResult;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/*
+ * result of comparing retrieved posts with the ones stored in the db: which are new, which
+ * have changed and which are the same
+ */
+public class ReaderPostChanges {
+    private final ReaderBlogIdPostIdList newPosts = new ReaderBlogIdPostIdList();
+    private final ReaderBlogIdPostIdList changedPosts = new ReaderBlogIdPostIdList();
+    private final ReaderBlogIdPostIdList unchangedPosts = new ReaderBlogIdPostIdList();
+    private final Set<String> unchangedKeys = new HashSet<String>();
+
+    public void addNewPost(long blogId, long postId) {
+        newPosts.add(new ReaderBlogIdPostId(blogId, postId));
+    }
+
+    public void addChangedPost(long blogId, long postId) {
+        changedPosts.add(new ReaderBlogIdPostId(blogId, postId));
+    }
+
+    public void addUnchangedPost(long blogId, long postId) {
+        unchangedPosts.add(new ReaderBlogIdPostId(blogId, postId));
+        unchangedKeys.add(getKey(blogId, postId));
+    }
+
+    public ReaderBlogIdPostIdList getNewPosts() {
+        return newPosts;
+    }
+
+    public ReaderBlogIdPostIdList getChangedPosts() {
+        return changedPosts;
+    }
+
+    public ReaderBlogIdPostIdList getUnchangedPosts() {
+        return unchangedPosts;
+    }
+
+    public boolean isUnchanged(long blogId, long postId) {
+        return unchangedKeys.contains(getKey(blogId, postId));
+    }
+
+    public UpdateResult getUpdateResult() {
+        if (newPosts.size() > 0) {
+            return UpdateResult.HAS_NEW;
+        }
+        return (changedPosts.size() > 0 ? UpdateResult.CHANGED : UpdateResult.UNCHANGED);
+    }
+
+    private static String getKey(long blogId, long postId) {
+        return blogId + ":" + postId;
+    }
+}
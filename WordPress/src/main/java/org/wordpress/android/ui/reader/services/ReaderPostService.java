@@ -7,24 +7,32 @@ import android.os.IBinder;
 import android.text.TextUtils;
 
 import com.android.volley.VolleyError;
+import com.google.gson.stream.JsonReader;
 import com.wordpress.rest.RestRequest;
 
 import org.json.JSONObject;
 import org.wordpress.android.WordPress;
+import org.wordpress.android.datasets.DatabaseExecutor;
 import org.wordpress.android.datasets.ReaderPostTable;
 import org.wordpress.android.datasets.ReaderTagTable;
+import org.wordpress.android.models.ReaderPost;
 import org.wordpress.android.models.ReaderPostList;
 import org.wordpress.android.models.ReaderTag;
 import org.wordpress.android.models.ReaderTagType;
 import org.wordpress.android.ui.reader.ReaderConstants;
 import org.wordpress.android.ui.reader.ReaderEvents;
+import org.wordpress.android.ui.reader.ReaderHtmlCache;
 import org.wordpress.android.ui.reader.actions.ReaderActions.UpdateResult;
 import org.wordpress.android.ui.reader.actions.ReaderActions.UpdateResultListener;
+import org.wordpress.android.ui.reader.models.ReaderPostChanges;
 import org.wordpress.android.ui.reader.utils.ReaderUtils;
 import org.wordpress.android.util.AppLog;
 import org.wordpress.android.util.StringUtils;
 import org.wordpress.android.util.UrlUtils;
 
+import java.io.IOException;
+import java.io.Reader;
+
 import de.greenrobot.event.EventBus;
 
 /**
@@ -177,14 +185,20 @@ public class ReaderPostService extends Service {
             }
         }
 
+        final PostListParser parser = new PostListParser();
         com.wordpress.rest.RestRequest.Listener listener = new RestRequest.Listener() {
             @Override
             public void onResponse(JSONObject jsonObject) {
                 // remember when this tag was updated if newer posts were requested
                 if (updateAction == UpdateAction.REQUEST_NEWER) {
-                    ReaderTagTable.setTagLastUpdated(tag);
+                    DatabaseExecutor.write(new Runnable() {
+                        @Override
+                        public void run() {
+                            ReaderTagTable.setTagLastUpdated(tag);
+                        }
+                    });
                 }
-                handleUpdatePostsResponse(tag, jsonObject, resultListener);
+                handleUpdatePostsResponse(tag, parser.getPosts(), resultListener);
             }
         };
         RestRequest.ErrorListener errorListener = new RestRequest.ErrorListener() {
@@ -195,7 +209,7 @@ public class ReaderPostService extends Service {
             }
         };
 
-        WordPress.getRestClientUtilsV1_1().get(sb.toString(), null, null, listener, errorListener);
+        WordPress.getRestClientUtilsV1_1().get(sb.toString(), null, null, parser, listener, errorListener);
     }
 
 
@@ -212,10 +226,11 @@ public class ReaderPostService extends Service {
             }
         }
 
+        final PostListParser parser = new PostListParser();
         com.wordpress.rest.RestRequest.Listener listener = new RestRequest.Listener() {
             @Override
             public void onResponse(JSONObject jsonObject) {
-                handleUpdatePostsResponse(null, jsonObject, resultListener);
+                handleUpdatePostsResponse(null, parser.getPosts(), resultListener);
             }
         };
         RestRequest.ErrorListener errorListener = new RestRequest.ErrorListener() {
@@ -226,7 +241,7 @@ public class ReaderPostService extends Service {
             }
         };
         AppLog.d(AppLog.T.READER, "updating posts in blog " + blogId);
-        WordPress.getRestClientUtilsV1_1().get(path, null, null, listener, errorListener);
+        WordPress.getRestClientUtilsV1_1().get(path, null, null, parser, listener, errorListener);
     }
 
     private static void requestPostsForFeed(final long feedId,
@@ -240,10 +255,11 @@ public class ReaderPostService extends Service {
             }
         }
 
+        final PostListParser parser = new PostListParser();
         com.wordpress.rest.RestRequest.Listener listener = new RestRequest.Listener() {
             @Override
             public void onResponse(JSONObject jsonObject) {
-                handleUpdatePostsResponse(null, jsonObject, resultListener);
+                handleUpdatePostsResponse(null, parser.getPosts(), resultListener);
             }
         };
         RestRequest.ErrorListener errorListener = new RestRequest.ErrorListener() {
@@ -255,16 +271,16 @@ public class ReaderPostService extends Service {
         };
 
         AppLog.d(AppLog.T.READER, "updating posts in feed " + feedId);
-        WordPress.getRestClientUtilsV1_1().get(path, null, null, listener, errorListener);
+        WordPress.getRestClientUtilsV1_1().get(path, null, null, parser, listener, errorListener);
     }
 
     /*
      * called after requesting posts with a specific tag or in a specific blog
      */
     private static void handleUpdatePostsResponse(final ReaderTag tag,
-                                                  final JSONObject jsonObject,
+                                                  final ReaderPostList serverPosts,
                                                   final UpdateResultListener resultListener) {
-        if (jsonObject == null) {
+        if (serverPosts == null) {
             resultListener.onUpdateResult(UpdateResult.FAILED);
             return;
         }
@@ -272,17 +288,51 @@ public class ReaderPostService extends Service {
         new Thread() {
             @Override
             public void run() {
-                ReaderPostList serverPosts = ReaderPostList.fromJson(jsonObject);
-                UpdateResult updateResult = ReaderPostTable.comparePosts(serverPosts);
+                final ReaderPostChanges changes = ReaderPostTable.comparePosts(serverPosts);
+                UpdateResult updateResult = changes.getUpdateResult();
                 if (updateResult.isNewOrChanged()) {
-                    ReaderPostTable.addOrUpdatePosts(tag, serverPosts);
+                    DatabaseExecutor.writeAndWait(new Runnable() {
+                        @Override
+                        public void run() {
+                            ReaderPostTable.addOrUpdatePosts(tag, serverPosts, changes);
+                        }
+                    });
                 }
                 AppLog.d(AppLog.T.READER, "requested posts response = " + updateResult.toString());
                 resultListener.onUpdateResult(updateResult);
+
+                // render the new and changed posts now so they show up right away when opened
+                if (updateResult.isNewOrChanged()) {
+                    ReaderPostList postsToRender = new ReaderPostList();
+                    for (ReaderPost post: serverPosts) {
+                        if (!changes.isUnchanged(post.blogId, post.postId)) {
+                            postsToRender.add(post);
+                        }
+                    }
+                    ReaderHtmlCache.preRenderPosts(postsToRender);
+                }
             }
         }.start();
     }
 
+    /*
+     * reads the posts of a response as a stream on the network thread, so the response is never
+     * held as a string and a JSONObject tree besides the posts - the request's listener is called
+     * once, after the posts have been read (see RestRequest.BodyParser)
+     */
+    private static class PostListParser implements RestRequest.BodyParser {
+        private volatile ReaderPostList mPosts;
+
+        @Override
+        public void parse(Reader body) throws IOException {
+            mPosts = ReaderPostList.fromJson(new JsonReader(body));
+        }
+
+        ReaderPostList getPosts() {
+            return mPosts;
+        }
+    }
+
     /*
      * returns the endpoint to use when requesting posts with the passed tag
      */
@@ -11,6 +11,7 @@ import com.wordpress.rest.RestRequest;
 
 import org.json.JSONObject;
 import org.wordpress.android.WordPress;
+import org.wordpress.android.datasets.DatabaseExecutor;
 import org.wordpress.android.datasets.ReaderBlogTable;
 import org.wordpress.android.datasets.ReaderDatabase;
 import org.wordpress.android.datasets.ReaderPostTable;
@@ -138,7 +139,7 @@ public class ReaderUpdateService extends Service {
             @Override
             public void run() {
                 // get server topics, both default & followed
-                ReaderTagList serverTopics = new ReaderTagList();
+                final ReaderTagList serverTopics = new ReaderTagList();
                 serverTopics.addAll(parseTags(jsonObject, "default", ReaderTagType.DEFAULT));
                 serverTopics.addAll(parseTags(jsonObject, "subscribed", ReaderTagType.FOLLOWED));
 
@@ -151,19 +152,31 @@ public class ReaderUpdateService extends Service {
                     AppLog.d(AppLog.T.READER, "reader service > followed topics changed");
                     // if any local topics have been removed from the server, make sure to delete
                     // them locally (including their posts)
-                    deleteTags(localTopics.getDeletions(serverTopics));
-                    // now replace local topics with the server topics
-                    ReaderTagTable.replaceTags(serverTopics);
+                    final ReaderTagList deletions = localTopics.getDeletions(serverTopics);
+                    DatabaseExecutor.writeAndWait(new Runnable() {
+                        @Override
+                        public void run() {
+                            deleteTags(deletions);
+                            // now replace local topics with the server topics
+                            ReaderTagTable.replaceTags(serverTopics);
+                        }
+                    });
                     // broadcast the fact that there are changes
                     EventBus.getDefault().post(new ReaderEvents.FollowedTagsChanged());
                 }
 
                 // save changes to recommended topics
-                ReaderTagList serverRecommended = parseTags(jsonObject, "recommended", ReaderTagType.RECOMMENDED);
+                final ReaderTagList serverRecommended =
+                        parseTags(jsonObject, "recommended", ReaderTagType.RECOMMENDED);
                 ReaderTagList localRecommended = ReaderTagTable.getRecommendedTags(false);
                 if (!serverRecommended.isSameList(localRecommended)) {
                     AppLog.d(AppLog.T.READER, "reader service > recommended topics changed");
-                    ReaderTagTable.setRecommendedTags(serverRecommended);
+                    DatabaseExecutor.writeAndWait(new Runnable() {
+                        @Override
+                        public void run() {
+                            ReaderTagTable.setRecommendedTags(serverRecommended);
+                        }
+                    });
                     EventBus.getDefault().post(new ReaderEvents.RecommendedTagsChanged());
                 }
 
@@ -246,11 +259,16 @@ public class ReaderUpdateService extends Service {
         new Thread() {
             @Override
             public void run() {
-                ReaderBlogList serverBlogs = ReaderBlogList.fromJson(jsonObject);
+                final ReaderBlogList serverBlogs = ReaderBlogList.fromJson(jsonObject);
                 ReaderBlogList localBlogs = ReaderBlogTable.getFollowedBlogs();
 
                 if (!localBlogs.isSameList(serverBlogs)) {
-                    ReaderBlogTable.setFollowedBlogs(serverBlogs);
+                    DatabaseExecutor.writeAndWait(new Runnable() {
+                        @Override
+                        public void run() {
+                            ReaderBlogTable.setFollowedBlogs(serverBlogs);
+                        }
+                    });
                     AppLog.d(AppLog.T.READER, "reader blogs service > followed blogs changed");
                     EventBus.getDefault().post(new ReaderEvents.FollowedBlogsChanged());
                 }
@@ -288,11 +306,16 @@ public class ReaderUpdateService extends Service {
         new Thread() {
             @Override
             public void run() {
-                ReaderRecommendBlogList serverBlogs = ReaderRecommendBlogList.fromJson(jsonObject);
+                final ReaderRecommendBlogList serverBlogs = ReaderRecommendBlogList.fromJson(jsonObject);
                 ReaderRecommendBlogList localBlogs = ReaderBlogTable.getRecommendedBlogs();
 
                 if (!localBlogs.isSameList(serverBlogs)) {
-                    ReaderBlogTable.setRecommendedBlogs(serverBlogs);
+                    DatabaseExecutor.writeAndWait(new Runnable() {
+                        @Override
+                        public void run() {
+                            ReaderBlogTable.setRecommendedBlogs(serverBlogs);
+                        }
+                    });
                     EventBus.getDefault().post(new ReaderEvents.RecommendedBlogsChanged());
                 }
 
@@ -0,0 +1,74 @@
+package org.wordpress.android.ui.reader.utils;
+
+import java.util.ArrayList;
+
+/**
+ * collects the edits made to html content while it's scanned - each one replaces the range of
+ * the original content between start and end - and applies them all at once when the result
+ * is requested, copying the content a single time. replacing each tag directly in a
+ * StringBuilder shifts the rest of the content on every replacement, which is slow on posts
+ * with hundreds of images such as galleries.
+ *
+ * edits must be added in the order they appear in the content and can't overlap, which is
+ * how ReaderHtmlTagScanner finds tags
+ */
+public class ReaderHtmlRewriter {
+    private final String mContent;
+
+    // start & end offset of each edit in the original content
+    private int[] mOffsets = new int[64];
+    private final ArrayList<String> mReplacements = new ArrayList<String>();
+    private int mReplacementsLength;
+
+    public ReaderHtmlRewriter(String content) {
+        mContent = (content != null ? content : "");
+    }
+
+    /*
+     * replaces the content between start (inclusive) and end (exclusive) with the passed
+     * string - a null replacement removes the range
+     */
+    public void replace(int start, int end, String replacement) {
+        int lastEnd = mReplacements.isEmpty() ? 0 : mOffsets[mReplacements.size() * 2 - 1];
+        if (start < lastEnd || end < start || end > mContent.length()) {
+            throw new IllegalArgumentException("edits must be in order and not overlap");
+        }
+
+        int index = mReplacements.size() * 2;
+        if (index + 2 > mOffsets.length) {
+            int[] offsets = new int[mOffsets.length * 2];
+            System.arraycopy(mOffsets, 0, offsets, 0, mOffsets.length);
+            mOffsets = offsets;
+        }
+        mOffsets[index] = start;
+        mOffsets[index + 1] = end;
+
+        String value = (replacement != null ? replacement : "");
+        mReplacements.add(value);
+        mReplacementsLength += value.length() - (end - start);
+    }
+
+    public int getEditCount() {
+        return mReplacements.size();
+    }
+
+    /*
+     * returns the content with all the edits applied
+     */
+    @Override
+    public String toString() {
+        if (mReplacements.isEmpty()) {
+            return mContent;
+        }
+
+        StringBuilder sb = new StringBuilder(mContent.length() + Math.max(0, mReplacementsLength));
+        int position = 0;
+        for (int i = 0; i < mReplacements.size(); i++) {
+            sb.append(mContent, position, mOffsets[i * 2]);
+            sb.append(mReplacements.get(i));
+            position = mOffsets[i * 2 + 1];
+        }
+        sb.append(mContent, position, mContent.length());
+        return sb.toString();
+    }
+}
@@ -0,0 +1,304 @@
+package org.wordpress.android.ui.reader.utils;
+
+/**
+ * finds img, iframe, video and a tags in html content and reads their attributes in a single
+ * linear pass, without regular expressions - shared by the reader's scanners so they no longer
+ * run a regex per tag type followed by one regex per attribute
+ *
+ * the scanner is a cursor: next() moves it to the next matching tag, and the getters describe
+ * that tag until next() is called again. attributes are kept as offsets into the content, so
+ * no strings are created for attributes that are never asked for. html comments are skipped.
+ */
+public class ReaderHtmlTagScanner {
+    public static final String TAG_IMG = "img";
+    public static final String TAG_IFRAME = "iframe";
+    public static final String TAG_VIDEO = "video";
+    public static final String TAG_A = "a";
+
+    private static final String[] DEFAULT_TAG_NAMES = {TAG_IMG, TAG_IFRAME, TAG_VIDEO, TAG_A};
+
+    private final String mContent;
+    private final int mLength;
+    private final String[] mTagNames;  // null matches any tag
+    private int mPosition;
+
+    private String mTagName;
+    private int mTagStart;
+    private int mTagEnd;
+
+    // name start, name end, value start & value end of each attribute of the current tag
+    private int[] mAttrOffsets = new int[32];
+    private int mNumAttrs;
+
+    public ReaderHtmlTagScanner(String content) {
+        this(content, DEFAULT_TAG_NAMES);
+    }
+
+    /*
+     * scans the content for the passed tags only - tag names must be lowercase, the content's
+     * tags are matched regardless of case
+     */
+    public ReaderHtmlTagScanner(String content, String... tagNames) {
+        mContent = (content != null ? content : "");
+        mLength = mContent.length();
+        mTagNames = tagNames;
+    }
+
+    /*
+     * returns a scanner on the first tag of the passed html whatever its name, or null if
+     * there's no tag - used to read the attributes of a single tag
+     */
+    static ReaderHtmlTagScanner forTag(String tag) {
+        ReaderHtmlTagScanner scanner = new ReaderHtmlTagScanner(tag, (String[]) null);
+        return scanner.next() ? scanner : null;
+    }
+
+    /*
+     * moves to the next matching tag, returns false once there are no more
+     */
+    public boolean next() {
+        while (mPosition < mLength) {
+            int tagStart = mContent.indexOf('<', mPosition);
+            if (tagStart == -1) {
+                break;
+            }
+
+            if (mContent.startsWith("!--", tagStart + 1)) {
+                int commentEnd = mContent.indexOf("-->", tagStart + 4);
+                mPosition = (commentEnd == -1 ? mLength : commentEnd + 3);
+                continue;
+            }
+
+            int nameStart = tagStart + 1;
+            int nameEnd = nameStart;
+            while (nameEnd < mLength && Character.isLetterOrDigit(mContent.charAt(nameEnd))) {
+                nameEnd++;
+            }
+            String tagName = getMatchingTagName(nameStart, nameEnd);
+            if (tagName == null) {
+                mPosition = nameStart;
+                continue;
+            }
+
+            int tagEnd = readAttributes(nameEnd);
+            if (tagEnd == -1) {
+                // tag or one of its quotes is never closed, skip it and look for the next tags
+                mPosition = nameStart;
+                continue;
+            }
+
+            mTagName = tagName;
+            mTagStart = tagStart;
+            mTagEnd = tagEnd;
+            mPosition = tagEnd;
+            return true;
+        }
+
+        mPosition = mLength;
+        mTagName = null;
+        mNumAttrs = 0;
+        return false;
+    }
+
+    /*
+     * returns the tag name (one of the names passed to the constructor) when the content has
+     * one of the tags we're looking for at the passed position
+     */
+    private String getMatchingTagName(int nameStart, int nameEnd) {
+        int nameLength = nameEnd - nameStart;
+        if (nameLength == 0 || !Character.isLetter(mContent.charAt(nameStart))) {
+            return null;
+        }
+        // the name must be followed by whitespace, "/" or ">"
+        if (nameEnd < mLength) {
+            char c = mContent.charAt(nameEnd);
+            if (!isWhitespace(c) && c != '/' && c != '>') {
+                return null;
+            }
+        }
+
+        if (mTagNames == null) {
+            return mContent.substring(nameStart, nameEnd).toLowerCase();
+        }
+        for (String tagName : mTagNames) {
+            if (tagName.length() == nameLength
+                    && mContent.regionMatches(true, nameStart, tagName, 0, nameLength)) {
+                return tagName;
+            }
+        }
+        return null;
+    }
+
+    /*
+     * reads the attributes of a tag up to its closing ">", returns the position right after it
+     * or -1 if the tag isn't closed - quoted values may contain ">"
+     */
+    private int readAttributes(int pos) {
+        mNumAttrs = 0;
+        while (pos < mLength) {
+            char c = mContent.charAt(pos);
+            if (c == '>') {
+                return pos + 1;
+            }
+            if (isWhitespace(c) || c == '/') {
+                pos++;
+                continue;
+            }
+
+            int nameStart = pos;
+            while (pos < mLength) {
+                c = mContent.charAt(pos);
+                if (isWhitespace(c) || c == '=' || c == '>' || c == '/') {
+                    break;
+                }
+                pos++;
+            }
+            int nameEnd = pos;
+            while (pos < mLength && isWhitespace(mContent.charAt(pos))) {
+                pos++;
+            }
+
+            // attributes without a value have an empty one
+            int valueStart = nameEnd;
+            int valueEnd = nameEnd;
+            if (pos < mLength && mContent.charAt(pos) == '=') {
+                pos++;
+                while (pos < mLength && isWhitespace(mContent.charAt(pos))) {
+                    pos++;
+                }
+                if (pos < mLength && (mContent.charAt(pos) == '"' || mContent.charAt(pos) == '\'')) {
+                    char quote = mContent.charAt(pos);
+                    valueStart = pos + 1;
+                    valueEnd = mContent.indexOf(quote, valueStart);
+                    if (valueEnd == -1) {
+                        return -1;
+                    }
+                    pos = valueEnd + 1;
+                } else {
+                    valueStart = pos;
+                    while (pos < mLength && !isWhitespace(mContent.charAt(pos)) && mContent.charAt(pos) != '>') {
+                        pos++;
+                    }
+                    valueEnd = pos;
+                }
+            }
+
+            addAttribute(nameStart, nameEnd, valueStart, valueEnd);
+        }
+        return -1;
+    }
+
+    private void addAttribute(int nameStart, int nameEnd, int valueStart, int valueEnd) {
+        int index = mNumAttrs * 4;
+        if (index + 4 > mAttrOffsets.length) {
+            int[] offsets = new int[mAttrOffsets.length * 2];
+            System.arraycopy(mAttrOffsets, 0, offsets, 0, mAttrOffsets.length);
+            mAttrOffsets = offsets;
+        }
+        mAttrOffsets[index] = nameStart;
+        mAttrOffsets[index + 1] = nameEnd;
+        mAttrOffsets[index + 2] = valueStart;
+        mAttrOffsets[index + 3] = valueEnd;
+        mNumAttrs++;
+    }
+
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\n' || c == '\t' || c == '\r' || c == '\f';
+    }
+
+    /*
+     * returns the index of the first attribute with the passed (lowercase) name, or -1
+     */
+    private int indexOfAttribute(String name) {
+        int nameLength = name.length();
+        for (int i = 0; i < mNumAttrs; i++) {
+            int nameStart = mAttrOffsets[i * 4];
+            int nameEnd = mAttrOffsets[i * 4 + 1];
+            if (nameEnd - nameStart == nameLength
+                    && mContent.regionMatches(true, nameStart, name, 0, nameLength)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /*
+     * name of the current tag, the same instance as the one passed to the constructor
+     */
+    public String getTagName() {
+        return mTagName;
+    }
+
+    public boolean isTag(String tagName) {
+        return mTagName != null && mTagName.equals(tagName);
+    }
+
+    public int getTagStart() {
+        return mTagStart;
+    }
+
+    public int getTagEnd() {
+        return mTagEnd;
+    }
+
+    /*
+     * returns the html of the current tag
+     */
+    public String getTag() {
+        return mContent.substring(mTagStart, mTagEnd);
+    }
+
+    public boolean hasAttribute(String name) {
+        return indexOfAttribute(name) != -1;
+    }
+
+    /*
+     * returns the raw value of the passed (lowercase) attribute of the current tag, or null if
+     * the tag doesn't have it
+     */
+    public String getAttributeValue(String name) {
+        int index = indexOfAttribute(name);
+        if (index == -1) {
+            return null;
+        }
+        return mContent.substring(mAttrOffsets[index * 4 + 2], mAttrOffsets[index * 4 + 3]);
+    }
+
+    /*
+     * returns the integer value of the passed attribute of the current tag, or zero if it
+     * doesn't have it or the value isn't an integer (ex: "100%")
+     */
+    public int getIntAttributeValue(String name) {
+        int index = indexOfAttribute(name);
+        if (index == -1) {
+            return 0;
+        }
+        int pos = mAttrOffsets[index * 4 + 2];
+        int end = mAttrOffsets[index * 4 + 3];
+        if (pos == end) {
+            return 0;
+        }
+
+        boolean isNegative = false;
+        char first = mContent.charAt(pos);
+        if (first == '-' || first == '+') {
+            isNegative = (first == '-');
+            if (++pos == end) {
+                return 0;
+            }
+        }
+        long value = 0;
+        while (pos < end) {
+            char c = mContent.charAt(pos++);
+            if (c < '0' || c > '9') {
+                return 0;
+            }
+            value = value * 10 + (c - '0');
+            if (value > Integer.MAX_VALUE + 1L) {
+                return 0;
+            }
+        }
+        value = isNegative ? -value : value;
+        return (value > Integer.MAX_VALUE ? 0 : (int) value);
+    }
+}
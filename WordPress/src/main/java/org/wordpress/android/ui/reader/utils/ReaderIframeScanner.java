@@ -2,17 +2,10 @@ package org.wordpress.android.ui.reader.utils;
 
 import android.text.TextUtils;
 
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-
 public class ReaderIframeScanner {
 
     private final String mContent;
 
-    private static final Pattern IFRAME_TAG_PATTERN = Pattern.compile(
-            "<iframe(\\s+.*?)(?:src\\s*=\\s*(?:'|\")(.*?)(?:'|\"))(.*?)>",
-            Pattern.DOTALL| Pattern.CASE_INSENSITIVE);
-
     public ReaderIframeScanner(String contentOfPost) {
         mContent = contentOfPost;
     }
@@ -22,12 +15,11 @@ public class ReaderIframeScanner {
             throw new IllegalArgumentException("HtmlScannerListener is required");
         }
 
-        Matcher matcher = IFRAME_TAG_PATTERN.matcher(mContent);
-        while (matcher.find()) {
-            String tag = mContent.substring(matcher.start(), matcher.end());
-            String src = ReaderHtmlUtils.getSrcAttrValue(tag);
+        ReaderHtmlTagScanner scanner = new ReaderHtmlTagScanner(mContent, ReaderHtmlTagScanner.TAG_IFRAME);
+        while (scanner.next()) {
+            String src = scanner.getAttributeValue("src");
             if (!TextUtils.isEmpty(src)) {
-                listener.onTagFound(tag, src, matcher.start(), matcher.end());
+                listener.onTagFound(scanner.getTag(), src, scanner.getTagStart(), scanner.getTagEnd());
             }
         }
 
@@ -7,18 +7,11 @@ import org.wordpress.android.ui.reader.models.ReaderImageList;
 import org.wordpress.android.util.PhotonUtils;
 import org.wordpress.android.util.UrlUtils;
 
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-
 public class ReaderImageScanner {
     private final String mContent;
     private final boolean mIsPrivate;
     private final boolean mContentContainsImages;
 
-    private static final Pattern IMG_TAG_PATTERN = Pattern.compile(
-            "<img(\\s+.*?)(?:src\\s*=\\s*(?:'|\")(.*?)(?:'|\"))(.*?)>",
-            Pattern.DOTALL| Pattern.CASE_INSENSITIVE);
-
     public ReaderImageScanner(String contentOfPost, boolean isPrivate) {
         mContent = contentOfPost;
         mIsPrivate = isPrivate;
@@ -38,12 +31,11 @@ public class ReaderImageScanner {
             return;
         }
 
-        Matcher imgMatcher = IMG_TAG_PATTERN.matcher(mContent);
-        while (imgMatcher.find()) {
-            String imageTag = mContent.substring(imgMatcher.start(), imgMatcher.end());
-            String imageUrl = ReaderHtmlUtils.getSrcAttrValue(imageTag);
+        ReaderHtmlTagScanner scanner = new ReaderHtmlTagScanner(mContent, ReaderHtmlTagScanner.TAG_IMG);
+        while (scanner.next()) {
+            String imageUrl = scanner.getAttributeValue("src");
             if (!TextUtils.isEmpty(imageUrl)) {
-                listener.onTagFound(imageTag, imageUrl, imgMatcher.start(), imgMatcher.end());
+                listener.onTagFound(scanner.getTag(), imageUrl, scanner.getTagStart(), scanner.getTagEnd());
             }
         }
 
@@ -60,10 +52,9 @@ public class ReaderImageScanner {
             return imageList;
         }
 
-        Matcher imgMatcher = IMG_TAG_PATTERN.matcher(mContent);
-        while (imgMatcher.find()) {
-            String imgTag = mContent.substring(imgMatcher.start(), imgMatcher.end());
-            imageList.addImageUrl(ReaderHtmlUtils.getSrcAttrValue(imgTag));
+        ReaderHtmlTagScanner scanner = new ReaderHtmlTagScanner(mContent, ReaderHtmlTagScanner.TAG_IMG);
+        while (scanner.next()) {
+            imageList.addImageUrl(scanner.getAttributeValue("src"));
         }
 
         return imageList;
@@ -81,12 +72,14 @@ public class ReaderImageScanner {
         String currentImageUrl = null;
         int currentMaxWidth = minImageWidth;
 
-        Matcher imgMatcher = IMG_TAG_PATTERN.matcher(mContent);
-        while (imgMatcher.find()) {
-            String imgTag = mContent.substring(imgMatcher.start(), imgMatcher.end());
-            String imageUrl = ReaderHtmlUtils.getSrcAttrValue(imgTag);
+        ReaderHtmlTagScanner scanner = new ReaderHtmlTagScanner(mContent, ReaderHtmlTagScanner.TAG_IMG);
+        while (scanner.next()) {
+            String imageUrl = scanner.getAttributeValue("src");
+            if (imageUrl == null) {
+                continue;
+            }
 
-            int width = Math.max(ReaderHtmlUtils.getWidthAttrValue(imgTag), ReaderHtmlUtils.getIntQueryParam(imageUrl, "w"));
+            int width = Math.max(scanner.getIntAttributeValue("width"), ReaderHtmlUtils.getIntQueryParam(imageUrl, "w"));
             if (width > currentMaxWidth) {
                 currentImageUrl = imageUrl;
                 currentMaxWidth = width;
@@ -44,6 +44,8 @@ import org.wordpress.android.util.helpers.SwipeToRefreshHelper;
 import org.wordpress.android.util.helpers.SwipeToRefreshHelper.RefreshListener;
 import org.wordpress.android.util.widgets.CustomSwipeRefreshLayout;
 import org.xmlrpc.android.ApiHelper;
+import org.xmlrpc.android.BlogRefreshScheduler;
+import org.xmlrpc.android.XMLRPCAsyncCall;
 import org.xmlrpc.android.XMLRPCCallback;
 import org.xmlrpc.android.XMLRPCClientInterface;
 import org.xmlrpc.android.XMLRPCFactory;
@@ -86,6 +88,10 @@ public class StatsActivity extends ActionBarActivity
     private SwipeToRefreshHelper mSwipeToRefreshHelper;
     private TimeframeSpinnerAdapter mTimeframeSpinnerAdapter;
 
+    // wp.getOptions call made after a Jetpack sign in, cancelled if the activity is destroyed before it's done
+    private XMLRPCClientInterface mJetpackOptionsClient;
+    private long mJetpackOptionsCallId;
+
     private final ArrayList<StatsService.StatsEndpointsEnum> fragmentsRefreshList = new ArrayList<>();
     private final Object fragmentsRefreshListSynchObj = new Object();
     private final Handler mUpdateStatsHandler = new Handler();
@@ -216,6 +222,10 @@ public class StatsActivity extends ActionBarActivity
     @Override
     protected void onDestroy() {
         stopStatsService();
+        if (mJetpackOptionsClient != null) {
+            mJetpackOptionsClient.cancelAsync(mJetpackOptionsCallId);
+            mJetpackOptionsClient = null;
+        }
         super.onDestroy();
     }
 
@@ -409,7 +419,8 @@ public class StatsActivity extends ActionBarActivity
                     Object[] params = {
                             currentBlog.getRemoteBlogId(), currentBlog.getUsername(), currentBlog.getPassword(), args
                     };
-                    xmlrpcClient.callAsync(new XMLRPCCallback() {
+                    mJetpackOptionsClient = xmlrpcClient;
+                    mJetpackOptionsCallId = xmlrpcClient.callAsync(new XMLRPCCallback() {
                         @Override
                         public void onSuccess(long id, Object result) {
                             if (result != null && (result instanceof HashMap)) {
@@ -441,7 +452,7 @@ public class StatsActivity extends ActionBarActivity
                                 }
                             });
                         }
-                    }, "wp.getOptions", params);
+                    }, "wp.getOptions", params, XMLRPCAsyncCall.Priority.HIGH);
                 } else {
                     refreshStats(mCurrentTimeframe, StatsUtils.getCurrentDateTZ(mLocalBlogID), true, true);
                 }
@@ -625,8 +636,8 @@ public class StatsActivity extends ActionBarActivity
             // blogId is null at this point.
             if (!currentBlog.isDotcomFlag()) {
                 // Refresh blog settings/options that includes 'jetpack_client_id'needed here
-                new ApiHelper.RefreshBlogContentTask(currentBlog,
-                        new VerifyJetpackSettingsCallback()).execute(false);
+                BlogRefreshScheduler.refreshBlog(currentBlog, BlogRefreshScheduler.Priority.HIGH,
+                        new VerifyJetpackSettingsCallback());
             } else {
                 // blodID cannot be null on dotcom blogs.
                 Toast.makeText(this, R.string.error_refresh_stats, Toast.LENGTH_LONG).show();
@@ -5,11 +5,7 @@ import android.text.format.DateUtils;
 import org.wordpress.android.R;
 import org.wordpress.android.WordPress;
 
-import java.text.DateFormat;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
 import java.util.Date;
-import java.util.Locale;
 import java.util.TimeZone;
 
 public class DateTimeUtils {
@@ -17,16 +13,6 @@ public class DateTimeUtils {
         throw new AssertionError();
     }
 
-    /*
-     * see http://drdobbs.com/java/184405382
-     */
-    private static final ThreadLocal<DateFormat> ISO8601Format = new ThreadLocal<DateFormat>() {
-        @Override
-        protected DateFormat initialValue() {
-            return new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ssZ", Locale.US);
-        }
-    };
-
     /*
      * converts a date to a relative time span ("8h", "3d", etc.) - similar to
      * DateUtils.getRelativeTimeSpanString but returns shorter result
@@ -70,22 +56,14 @@ public class DateTimeUtils {
      * converts an ISO8601 date to a Java date
      */
     public static Date iso8601ToJavaDate(final String strDate) {
-        try {
-            DateFormat formatter = ISO8601Format.get();
-            return formatter.parse(strDate);
-        } catch (ParseException e) {
-            return null;
-        }
+        return Iso8601Utils.parseIso8601(strDate);
     }
 
     /*
      * converts a Java date to ISO8601
      */
     public static String javaDateToIso8601(Date date) {
-        if (date==null)
-            return "";
-        DateFormat formatter = ISO8601Format.get();
-        return formatter.format(date);
+        return Iso8601Utils.formatIso8601(date);
     }
 
     /*
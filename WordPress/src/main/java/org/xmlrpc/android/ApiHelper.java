@@ -2,14 +2,13 @@ package org.xmlrpc.android;
 
 import android.content.Context;
 import android.os.AsyncTask;
-import android.util.Xml;
 
 import com.google.gson.Gson;
 
 import org.wordpress.android.WordPress;
 import org.wordpress.android.datasets.CommentTable;
+import org.wordpress.android.datasets.DatabaseExecutor;
 import org.wordpress.android.models.Blog;
-import org.wordpress.android.models.BlogIdentifier;
 import org.wordpress.android.models.Comment;
 import org.wordpress.android.models.CommentList;
 import org.wordpress.android.models.FeatureSet;
@@ -20,28 +19,18 @@ import org.wordpress.android.util.AppLog;
 import org.wordpress.android.util.AppLog.T;
 import org.wordpress.android.util.DateTimeUtils;
 import org.wordpress.android.util.MapUtils;
-import org.xmlpull.v1.XmlPullParser;
 import org.xmlpull.v1.XmlPullParserException;
 
-import java.io.BufferedReader;
-import java.io.File;
-import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.io.StringReader;
-import java.net.HttpURLConnection;
-import java.net.URL;
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Vector;
+import java.util.concurrent.Callable;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
-import javax.net.ssl.SSLHandshakeException;
 
 public class ApiHelper {
     public enum ErrorType {
@@ -117,15 +106,22 @@ public class ApiHelper {
         }
 
         protected void onPostExecute(Object result) {
-            if (result != null && result instanceof HashMap) {
-                Map<?, ?> postFormats = (HashMap<?, ?>) result;
-                if (postFormats.size() > 0) {
-                    Gson gson = new Gson();
-                    String postFormatsJson = gson.toJson(postFormats);
-                    if (postFormatsJson != null) {
-                        if (mBlog.bsetPostFormats(postFormatsJson)) {
-                            WordPress.wpDB.saveBlog(mBlog);
-                        }
+            updatePostFormats(mBlog, result);
+        }
+    }
+
+    /**
+     * Save the post formats returned by wp.getPostFormats if they changed
+     */
+    public static void updatePostFormats(Blog blog, Object result) {
+        if (result != null && result instanceof HashMap) {
+            Map<?, ?> postFormats = (HashMap<?, ?>) result;
+            if (postFormats.size() > 0) {
+                Gson gson = new Gson();
+                String postFormatsJson = gson.toJson(postFormats);
+                if (postFormatsJson != null) {
+                    if (blog.bsetPostFormats(postFormatsJson)) {
+                        WordPress.wpDB.saveBlog(blog);
                     }
                 }
             }
@@ -174,125 +170,64 @@ public class ApiHelper {
     }
 
     /**
-     * Task to refresh blog level information (WP version number) and stuff
-     * related to the active theme (available post types, recent comments, etc).
+     * Refresh blog level information: options (WP version, blog name...), theme post formats, user role and recent
+     * comments, all fetched in a single system.multicall request. Only the post formats and the user role are
+     * optional, a failure to get anything else is thrown.
      */
-    public static class RefreshBlogContentTask extends HelperAsyncTask<Boolean, Void, Boolean> {
-        private static HashSet<BlogIdentifier> refreshedBlogs = new HashSet<BlogIdentifier>();
-        private Blog mBlog;
-        private BlogIdentifier mBlogIdentifier;
-        private GenericCallback mCallback;
-
-        public RefreshBlogContentTask(Blog blog, GenericCallback callback) {
-            if ( blog == null) {
-                cancel(true);
-                return;
-            }
-
-            mBlogIdentifier = new BlogIdentifier(blog.getUrl(), blog.getRemoteBlogId());
-            if (refreshedBlogs.contains(mBlogIdentifier)) {
-                cancel(true);
-            } else {
-                refreshedBlogs.add(mBlogIdentifier);
-            }
+    public static void refreshBlogContent(Blog blog) throws XMLRPCException, IOException, XmlPullParserException {
+        XMLRPCClientInterface client = XMLRPCFactory.instantiate(blog.getUri(), blog.getHttpuser(),
+                blog.getHttppassword());
 
-            mBlog = blog;
-            mCallback = callback;
+        List<XMLRPCCall> calls = new ArrayList<XMLRPCCall>();
+        XMLRPCCall optionsCall = new XMLRPCCall("wp.getOptions", new Object[]{blog.getRemoteBlogId(),
+                blog.getUsername(), blog.getPassword(), blogOptionsXMLRPCParameters});
+        calls.add(optionsCall);
+        XMLRPCCall postFormatsCall = new XMLRPCCall("wp.getPostFormats", new Object[]{blog.getRemoteBlogId(),
+                blog.getUsername(), blog.getPassword(), "show-supported"});
+        calls.add(postFormatsCall);
+        XMLRPCCall profileCall = new XMLRPCCall("wp.getProfile", new Object[]{blog.getRemoteBlogId(),
+                blog.getUsername(), blog.getPassword()});
+        calls.add(profileCall);
+        Map<String, Object> commentsFilter = new HashMap<String, Object>();
+        commentsFilter.put("number", 30);
+        XMLRPCCall commentsCall = new XMLRPCCall("wp.getComments", new Object[]{blog.getRemoteBlogId(),
+                blog.getUsername(), blog.getPassword(), commentsFilter});
+        calls.add(commentsCall);
+
+        client.callBatch(calls);
+
+        Object blogOptions = optionsCall.getResult();
+        if (blogOptions != null) {
+            updateBlogOptions(blog, (Map<?, ?>) blogOptions);
         }
 
-        private void updateBlogAdmin(Map<String, Object> userInfos) {
-            if (userInfos.containsKey("roles") && ( userInfos.get("roles") instanceof Object[])) {
-                boolean isAdmin = false;
-                Object[] userRoles = (Object[])userInfos.get("roles");
-                for (int i = 0; i < userRoles.length; i++) {
-                    if (userRoles[i].toString().equals("administrator")) {
-                        isAdmin = true;
-                        break;
-                    }
-                }
-                if (mBlog.bsetAdmin(isAdmin)) {
-                    WordPress.wpDB.saveBlog(mBlog);
-                }
-            }
+        if (postFormatsCall.isSuccessful()) {
+            updatePostFormats(blog, postFormatsCall.getResult());
+        } else {
+            AppLog.e(T.API, "wp.getPostFormats error", postFormatsCall.getError());
         }
 
-        @Override
-        protected Boolean doInBackground(Boolean... params) {
-            boolean commentsOnly = params[0];
-            XMLRPCClientInterface client = XMLRPCFactory.instantiate(mBlog.getUri(), mBlog.getHttpuser(),
-                    mBlog.getHttppassword());
-
-            if (!commentsOnly) {
-                // check the WP number if self-hosted
-                Map<String, String> hPost = ApiHelper.blogOptionsXMLRPCParameters;
+        if (profileCall.isSuccessful()) {
+            updateBlogAdmin(blog, (Map<?, ?>) profileCall.getResult());
+        } else {
+            AppLog.e(T.API, "wp.getProfile error", profileCall.getError());
+        }
 
-                Object[] vParams = {mBlog.getRemoteBlogId(),
-                                    mBlog.getUsername(),
-                                    mBlog.getPassword(),
-                                    hPost};
-                Object versionResult = null;
-                try {
-                    versionResult = client.call("wp.getOptions", vParams);
-                } catch (ClassCastException cce) {
-                    setError(ErrorType.INVALID_RESULT, cce.getMessage(), cce);
-                    return false;
-                } catch (Exception e) {
-                    setError(ErrorType.NETWORK_XMLRPC, e.getMessage(), e);
-                    return false;
-                }
+        saveComments(blog, (Object[]) commentsCall.getResult());
+    }
 
-                if (versionResult != null) {
-                    Map<?, ?> blogOptions = (HashMap<?, ?>) versionResult;
-                    ApiHelper.updateBlogOptions(mBlog, blogOptions);
+    private static void updateBlogAdmin(Blog blog, Map<?, ?> userInfos) {
+        if (userInfos != null && userInfos.get("roles") instanceof Object[]) {
+            boolean isAdmin = false;
+            for (Object role : (Object[]) userInfos.get("roles")) {
+                if ("administrator".equals(String.valueOf(role))) {
+                    isAdmin = true;
+                    break;
                 }
-
-                // get theme post formats
-                List<Object> args = new Vector<Object>();
-                args.add(mBlog);
-                new GetPostFormatsTask().execute(args);
-            }
-
-            // Check if user is an admin
-            Object[] userParams = {mBlog.getRemoteBlogId(), mBlog.getUsername(), mBlog.getPassword()};
-            try {
-                Map<String, Object> userInfos = (HashMap<String, Object>) client.call("wp.getProfile", userParams);
-                updateBlogAdmin(userInfos);
-            } catch (ClassCastException cce) {
-                setError(ErrorType.INVALID_RESULT, cce.getMessage(), cce);
-                return false;
-            } catch (XMLRPCException e) {
-                setError(ErrorType.NETWORK_XMLRPC, e.getMessage(), e);
-            } catch (IOException e) {
-                setError(ErrorType.NETWORK_XMLRPC, e.getMessage(), e);
-            } catch (XmlPullParserException e) {
-                setError(ErrorType.NETWORK_XMLRPC, e.getMessage(), e);
             }
-
-            // refresh the comments
-            Map<String, Object> hPost = new HashMap<String, Object>();
-            hPost.put("number", 30);
-            Object[] commentParams = {mBlog.getRemoteBlogId(), mBlog.getUsername(),
-                    mBlog.getPassword(), hPost};
-            try {
-                ApiHelper.refreshComments(mBlog, commentParams);
-            } catch (Exception e) {
-                setError(ErrorType.NETWORK_XMLRPC, e.getMessage(), e);
-                return false;
-            }
-
-            return true;
-        }
-
-        @Override
-        protected void onPostExecute(Boolean success) {
-            if (mCallback != null) {
-                if (success) {
-                    mCallback.onSuccess();
-                } else {
-                    mCallback.onFailure(mErrorType, mErrorMessage, mThrowable);
-                }
+            if (blog.bsetAdmin(isAdmin)) {
+                WordPress.wpDB.saveBlog(blog);
             }
-            refreshedBlogs.remove(mBlogIdentifier);
         }
     }
 
@@ -319,21 +254,28 @@ public class ApiHelper {
                 blog.getPassword(),
                 hPost };
 
-        int numDeleted = 0;
+        final int localBlogId = blog.getLocalTableBlogId();
+        final int[] numDeleted = {0};
         try {
-            Object[] result = (Object[]) client.call("wp.getComments", params);
-            if (result == null || result.length == 0) {
-                return 0;
-            }
-            Map<?, ?> contentHash;
-            for (Object aComment : result) {
-                contentHash = (Map<?, ?>) aComment;
-                long commentId = Long.parseLong(contentHash.get("comment_id").toString());
-                if (CommentTable.deleteComment(blog.getLocalTableBlogId(), commentId))
-                    numDeleted++;
-            }
-            if (numDeleted > 0) {
-                AppLog.d(T.COMMENTS, String.format("removed %d deleted comments", numDeleted));
+            // delete each trashed comment as soon as it's parsed
+            client.callStreaming("wp.getComments", params, new XMLRPCResponseVisitor() {
+                @Override
+                public void onArrayElement(int index, Object element) {
+                    Map<?, ?> contentHash = (Map<?, ?>) element;
+                    final long commentId = Long.parseLong(contentHash.get("comment_id").toString());
+                    boolean isDeleted = DatabaseExecutor.writeAndWait(new Callable<Boolean>() {
+                        @Override
+                        public Boolean call() {
+                            return CommentTable.deleteComment(localBlogId, commentId);
+                        }
+                    });
+                    if (isDeleted) {
+                        numDeleted[0]++;
+                    }
+                }
+            });
+            if (numDeleted[0] > 0) {
+                AppLog.d(T.COMMENTS, String.format("removed %d deleted comments", numDeleted[0]));
             }
         } catch (XMLRPCException e) {
             AppLog.e(T.COMMENTS, e);
@@ -343,7 +285,7 @@ public class ApiHelper {
             AppLog.e(T.COMMENTS, e);
         }
 
-        return numDeleted;
+        return numDeleted[0];
     }
 
     public static CommentList refreshComments(Blog blog, Object[] commentParams)
@@ -353,58 +295,114 @@ public class ApiHelper {
         }
         XMLRPCClientInterface client = XMLRPCFactory.instantiate(blog.getUri(), blog.getHttpuser(),
                 blog.getHttppassword());
-        Object[] result;
-        result = (Object[]) client.call("wp.getComments", commentParams);
+        // comments are built as soon as they're parsed, the raw response is never held in memory
+        final CommentList comments = new CommentList();
+        client.callStreaming("wp.getComments", commentParams, new XMLRPCResponseVisitor() {
+            @Override
+            public void onArrayElement(int index, Object element) {
+                comments.add(commentFromMap((Map<?, ?>) element));
+            }
+        });
+
+        if (comments.size() == 0) {
+            return null;
+        }
+
+        writeComments(blog.getLocalTableBlogId(), comments);
+        return comments;
+    }
+
+    /*
+     * synced comments are saved on the database writer thread, after the writes queued before them
+     */
+    private static void writeComments(final int localBlogId, final CommentList comments) {
+        DatabaseExecutor.writeAndWait(new Runnable() {
+            @Override
+            public void run() {
+                CommentTable.saveComments(localBlogId, comments);
+            }
+        });
+    }
+
+    /*
+     * synced posts are saved on the database writer thread, after the writes queued before them
+     */
+    private static void writePosts(final List<?> postsList, final int localBlogId, final boolean isPage,
+                                   final boolean shouldOverwrite) {
+        DatabaseExecutor.writeAndWait(new Runnable() {
+            @Override
+            public void run() {
+                WordPress.wpDB.savePosts(postsList, localBlogId, isPage, shouldOverwrite);
+            }
+        });
+    }
 
+    /**
+     * Save the comments returned by wp.getComments in the local db
+     */
+    public static CommentList saveComments(Blog blog, Object[] result) {
         if (result.length == 0) {
             return null;
         }
 
-        Map<?, ?> contentHash;
-        long commentID, postID;
-        String authorName, content, status, authorEmail, authorURL, postTitle, pubDate;
-        java.util.Date date;
         CommentList comments = new CommentList();
-
         for (int ctr = 0; ctr < result.length; ctr++) {
-            contentHash = (Map<?, ?>) result[ctr];
-            content = contentHash.get("content").toString();
-            status = contentHash.get("status").toString();
-            postID = Long.parseLong(contentHash.get("post_id").toString());
-            commentID = Long.parseLong(contentHash.get("comment_id").toString());
-            authorName = contentHash.get("author").toString();
-            authorURL = contentHash.get("author_url").toString();
-            authorEmail = contentHash.get("author_email").toString();
-            postTitle = contentHash.get("post_title").toString();
-            date = (java.util.Date) contentHash.get("date_created_gmt");
-            pubDate = DateTimeUtils.javaDateToIso8601(date);
-
-            Comment comment = new Comment(
-                    postID,
-                    commentID,
-                    authorName,
-                    pubDate,
-                    content,
-                    status,
-                    postTitle,
-                    authorURL,
-                    authorEmail,
-                    null);
-
-            comments.add(comment);
+            comments.add(commentFromMap((Map<?, ?>) result[ctr]));
         }
 
-        int localBlogId = blog.getLocalTableBlogId();
-        CommentTable.saveComments(localBlogId, comments);
+        writeComments(blog.getLocalTableBlogId(), comments);
 
         return comments;
     }
 
+    private static Comment commentFromMap(Map<?, ?> contentHash) {
+        String content = contentHash.get("content").toString();
+        String status = contentHash.get("status").toString();
+        long postID = Long.parseLong(contentHash.get("post_id").toString());
+        long commentID = Long.parseLong(contentHash.get("comment_id").toString());
+        String authorName = contentHash.get("author").toString();
+        String authorURL = contentHash.get("author_url").toString();
+        String authorEmail = contentHash.get("author_email").toString();
+        String postTitle = contentHash.get("post_title").toString();
+        java.util.Date date = (java.util.Date) contentHash.get("date_created_gmt");
+        String pubDate = DateTimeUtils.javaDateToIso8601(date);
+
+        return new Comment(
+                postID,
+                commentID,
+                authorName,
+                pubDate,
+                content,
+                status,
+                postTitle,
+                authorURL,
+                authorEmail,
+                null);
+    }
+
+    /**
+     * Fetch a page of posts or pages and save them in the DB.
+     *
+     * Posts are paged with the offset of wp.getPosts. When refreshing the first page, only the modification dates
+     * are downloaded first, then the posts modified since the last sync are fetched in a single batch. Servers
+     * without wp.getPosts (WordPress < 3.4) get the recent posts with a growing number of posts instead.
+     */
     public static class FetchPostsTask extends HelperAsyncTask<java.util.List<?>, Boolean, Boolean> {
         public interface Callback extends GenericErrorCallback {
+            /**
+             * @param postCount number of posts or pages fetched, less than POSTS_REQUEST_COUNT if there are no more
+             */
             public void onSuccess(int postCount);
         }
 
+        private static final int FAULT_METHOD_NOT_FOUND = -32601;
+        private static final String[] POST_MODIFIED_FIELDS = {"post_modified_gmt"};
+        private static final String[] POST_FIELDS = {"post_title", "post_date", "post_date_gmt", "post_modified_gmt",
+                "post_status", "post_format", "post_name", "post_author", "post_password", "post_excerpt",
+                "post_content", "post_parent", "link", "comment_status", "ping_status", "terms", "custom_fields"};
+        private static final String[] POST_STATUSES = {"publish", "private", "pending", "draft", "future"};
+        private static final Pattern MORE_TAG_PATTERN = Pattern.compile("\\s*<!--more(.*?)?-->\\s*");
+
         private Callback mCallback;
         private String mErrorMessage;
         private int mPostCount;
@@ -413,6 +411,9 @@ public class ApiHelper {
             mCallback = callback;
         }
 
+        /**
+         * @param params blog, true to fetch pages, number of posts already loaded (offset), true to load more
+         */
         @Override
         protected Boolean doInBackground(List<?>... params) {
             List<?> arguments = params[0];
@@ -422,41 +423,23 @@ public class ApiHelper {
                 return false;
 
             boolean isPage = (Boolean) arguments.get(1);
-            int recordCount = (Integer) arguments.get(2);
+            int offset = (Integer) arguments.get(2);
             boolean loadMore = (Boolean) arguments.get(3);
             XMLRPCClientInterface client = XMLRPCFactory.instantiate(blog.getUri(), blog.getHttpuser(),
                     blog.getHttppassword());
 
-            Object[] result;
-            Object[] xmlrpcParams = { blog.getRemoteBlogId(),
-                    blog.getUsername(),
-                    blog.getPassword(), recordCount };
             try {
-                result = (Object[]) client.call((isPage) ? "wp.getPages"
-                        : "metaWeblog.getRecentPosts", xmlrpcParams);
-                if (result != null && result.length > 0) {
-                    mPostCount = result.length;
-                    List<Map<?, ?>> postsList = new ArrayList<Map<?, ?>>();
-
-                    if (!loadMore) {
-                        WordPress.wpDB.deleteUploadedPosts(
-                                blog.getLocalTableBlogId(), isPage);
+                try {
+                    if (loadMore) {
+                        fetchPosts(client, blog, isPage, offset);
+                    } else {
+                        refreshPosts(client, blog, isPage);
                     }
-
-                    // If we're loading more posts, only save the posts at the end of the array.
-                    // NOTE: Switching to wp.getPosts wouldn't require janky solutions like this
-                    // since it allows for an offset parameter.
-                    int startPosition = 0;
-                    if (loadMore && result.length > PostsListFragment.POSTS_REQUEST_COUNT) {
-                        startPosition = result.length - PostsListFragment.POSTS_REQUEST_COUNT;
+                } catch (XMLRPCFault e) {
+                    if (e.getFaultCode() != FAULT_METHOD_NOT_FOUND) {
+                        throw e;
                     }
-
-                    for (int ctr = startPosition; ctr < result.length; ctr++) {
-                        Map<?, ?> postMap = (Map<?, ?>) result[ctr];
-                        postsList.add(postMap);
-                    }
-
-                    WordPress.wpDB.savePosts(postsList, blog.getLocalTableBlogId(), isPage, !loadMore);
+                    fetchRecentPosts(client, blog, isPage, loadMore ? offset : 0, loadMore);
                 }
                 return true;
             } catch (XMLRPCFault e) {
@@ -479,6 +462,203 @@ public class ApiHelper {
             return false;
         }
 
+        /**
+         * Fetch the first page, only download the posts that have been modified since the last sync
+         */
+        private void refreshPosts(XMLRPCClientInterface client, Blog blog, final boolean isPage)
+                throws XMLRPCException, IOException, XmlPullParserException {
+            Object[] result = (Object[]) client.call("wp.getPosts",
+                    getPostsParams(blog, isPage, 0, POST_MODIFIED_FIELDS));
+            final List<String> remotePostIds = new ArrayList<String>();
+            List<String> modifiedPostIds = new ArrayList<String>();
+            Map<String, Long> localModifiedDates =
+                    WordPress.wpDB.getUploadedPostsModifiedDates(blog.getLocalTableBlogId(), isPage);
+            if (result != null) {
+                for (Object postObject : result) {
+                    if (!(postObject instanceof Map)) {
+                        continue;
+                    }
+                    Map<?, ?> postMap = (Map<?, ?>) postObject;
+                    String postId = MapUtils.getMapStr(postMap, "post_id");
+                    Date modified = MapUtils.getMapDate(postMap, "post_modified_gmt");
+                    Long localModified = localModifiedDates.get(postId);
+                    remotePostIds.add(postId);
+                    if (localModified == null || modified == null || localModified != modified.getTime()) {
+                        modifiedPostIds.add(postId);
+                    }
+                }
+            }
+            mPostCount = remotePostIds.size();
+
+            // Only keep the first page, as we did when the whole list was downloaded
+            final int localBlogId = blog.getLocalTableBlogId();
+            DatabaseExecutor.writeAndWait(new Runnable() {
+                @Override
+                public void run() {
+                    WordPress.wpDB.deleteUploadedPostsExcept(localBlogId, isPage, remotePostIds);
+                }
+            });
+            if (modifiedPostIds.size() == 0) {
+                return;
+            }
+
+            List<Map<?, ?>> postsList = new ArrayList<Map<?, ?>>();
+            if (modifiedPostIds.size() == remotePostIds.size()) {
+                // Nothing to skip, fetch the whole page at once
+                result = (Object[]) client.call("wp.getPosts", getPostsParams(blog, isPage, 0, POST_FIELDS));
+                if (result != null) {
+                    for (Object postObject : result) {
+                        if (postObject instanceof Map) {
+                            postsList.add(toMetaWeblogPost((Map<?, ?>) postObject, isPage));
+                        }
+                    }
+                }
+            } else {
+                List<XMLRPCCall> calls = new ArrayList<XMLRPCCall>();
+                for (String postId : modifiedPostIds) {
+                    calls.add(new XMLRPCCall("wp.getPost", new Object[]{blog.getRemoteBlogId(), blog.getUsername(),
+                            blog.getPassword(), postId, POST_FIELDS}));
+                }
+                client.callBatch(calls);
+                for (XMLRPCCall call : calls) {
+                    if (!call.isSuccessful()) {
+                        // the post may have been deleted since the list was fetched: skip it, the next refresh
+                        // fetches it again if it's still there
+                        AppLog.w(T.POSTS, "Couldn't fetch post " + call.getParams()[3] + ": " + call.getError());
+                        continue;
+                    }
+                    Object postObject = call.getResult();
+                    if (postObject instanceof Map) {
+                        postsList.add(toMetaWeblogPost((Map<?, ?>) postObject, isPage));
+                    }
+                }
+            }
+            writePosts(postsList, localBlogId, isPage, true);
+        }
+
+        /**
+         * Fetch the next page, starting after the posts already loaded
+         */
+        private void fetchPosts(XMLRPCClientInterface client, Blog blog, boolean isPage, int offset)
+                throws XMLRPCException, IOException, XmlPullParserException {
+            Object[] result = (Object[]) client.call("wp.getPosts", getPostsParams(blog, isPage, offset, POST_FIELDS));
+            mPostCount = result != null ? result.length : 0;
+            if (mPostCount == 0) {
+                return;
+            }
+            List<Map<?, ?>> postsList = new ArrayList<Map<?, ?>>();
+            for (Object postObject : result) {
+                if (postObject instanceof Map) {
+                    postsList.add(toMetaWeblogPost((Map<?, ?>) postObject, isPage));
+                }
+            }
+            writePosts(postsList, blog.getLocalTableBlogId(), isPage, false);
+        }
+
+        /**
+         * Legacy sync: the recent posts are downloaded from the first one, and only the last page is saved
+         */
+        private void fetchRecentPosts(XMLRPCClientInterface client, Blog blog, final boolean isPage, int offset,
+                                      boolean loadMore) throws XMLRPCException, IOException, XmlPullParserException {
+            int recordCount = offset + PostsListFragment.POSTS_REQUEST_COUNT;
+            Object[] xmlrpcParams = { blog.getRemoteBlogId(),
+                    blog.getUsername(),
+                    blog.getPassword(), recordCount };
+            Object[] result = (Object[]) client.call((isPage) ? "wp.getPages"
+                    : "metaWeblog.getRecentPosts", xmlrpcParams);
+            if (result != null && result.length > 0) {
+                int startPosition = Math.min(offset, result.length);
+                mPostCount = result.length - startPosition;
+                List<Map<?, ?>> postsList = new ArrayList<Map<?, ?>>();
+
+                for (int ctr = startPosition; ctr < result.length; ctr++) {
+                    Map<?, ?> postMap = (Map<?, ?>) result[ctr];
+                    postsList.add(postMap);
+                }
+
+                final int localBlogId = blog.getLocalTableBlogId();
+                if (!loadMore) {
+                    DatabaseExecutor.writeAndWait(new Runnable() {
+                        @Override
+                        public void run() {
+                            WordPress.wpDB.deleteUploadedPosts(localBlogId, isPage);
+                        }
+                    });
+                }
+                writePosts(postsList, localBlogId, isPage, !loadMore);
+            }
+        }
+
+        private static Object[] getPostsParams(Blog blog, boolean isPage, int offset, String[] fields) {
+            Map<String, Object> filter = new HashMap<String, Object>();
+            filter.put("post_type", isPage ? "page" : "post");
+            filter.put("post_status", POST_STATUSES);
+            filter.put("number", PostsListFragment.POSTS_REQUEST_COUNT);
+            filter.put("offset", offset);
+            return new Object[]{blog.getRemoteBlogId(), blog.getUsername(), blog.getPassword(), filter, fields};
+        }
+
+        /**
+         * Convert a wp.getPost struct to the metaWeblog.getPost (or wp.getPage) struct saved by WordPressDB.savePosts
+         */
+        private static Map<String, Object> toMetaWeblogPost(Map<?, ?> post, boolean isPage) {
+            Map<String, Object> postMap = new HashMap<String, Object>();
+            postMap.put(isPage ? "page_id" : "postid", MapUtils.getMapStr(post, "post_id"));
+            postMap.put("title", MapUtils.getMapStr(post, "post_title"));
+            postMap.put("dateCreated", post.get("post_date"));
+            postMap.put("date_created_gmt", post.get("post_date_gmt"));
+            postMap.put("date_modified_gmt", post.get("post_modified_gmt"));
+            postMap.put("link", MapUtils.getMapStr(post, "link"));
+            postMap.put("permaLink", MapUtils.getMapStr(post, "link"));
+            postMap.put(isPage ? "page_status" : "post_status", MapUtils.getMapStr(post, "post_status"));
+            postMap.put(isPage ? "excerpt" : "mt_excerpt", MapUtils.getMapStr(post, "post_excerpt"));
+            postMap.put("wp_slug", MapUtils.getMapStr(post, "post_name"));
+            postMap.put("wp_password", MapUtils.getMapStr(post, "post_password"));
+            postMap.put("wp_author_id", MapUtils.getMapStr(post, "post_author"));
+            postMap.put("userid", MapUtils.getMapStr(post, "post_author"));
+            postMap.put("mt_allow_comments", "open".equals(MapUtils.getMapStr(post, "comment_status")) ? 1 : 0);
+            postMap.put("mt_allow_pings", "open".equals(MapUtils.getMapStr(post, "ping_status")) ? 1 : 0);
+            postMap.put("custom_fields", post.get("custom_fields"));
+
+            // metaWeblog splits the content at the more tag
+            String content = MapUtils.getMapStr(post, "post_content");
+            Matcher matcher = MORE_TAG_PATTERN.matcher(content);
+            if (matcher.find()) {
+                postMap.put("description", content.substring(0, matcher.start()));
+                postMap.put(isPage ? "text_more" : "mt_text_more", content.substring(matcher.end()));
+            } else {
+                postMap.put("description", content);
+                postMap.put(isPage ? "text_more" : "mt_text_more", "");
+            }
+
+            if (isPage) {
+                postMap.put("wp_page_parent_id", MapUtils.getMapStr(post, "post_parent"));
+            } else {
+                postMap.put("wp_post_format", MapUtils.getMapStr(post, "post_format"));
+                List<String> categories = new ArrayList<String>();
+                StringBuilder keywords = new StringBuilder();
+                Object terms = post.get("terms");
+                if (terms instanceof Object[]) {
+                    for (Object termObject : (Object[]) terms) {
+                        if (!(termObject instanceof Map)) {
+                            continue;
+                        }
+                        Map<?, ?> term = (Map<?, ?>) termObject;
+                        String taxonomy = MapUtils.getMapStr(term, "taxonomy");
+                        String name = MapUtils.getMapStr(term, "name");
+                        if ("category".equals(taxonomy)) {
+                            categories.add(name);
+                        } else if ("post_tag".equals(taxonomy)) {
+                            keywords.append(keywords.length() == 0 ? "" : ", ").append(name);
+                        }
+                    }
+                }
+                postMap.put("categories", categories.toArray());
+                postMap.put("mt_keywords", keywords.toString());
+            }
+            return postMap;
+        }
+
         @Override
         protected void onCancelled() {
             super.onCancelled();
@@ -548,7 +728,7 @@ public class ApiHelper {
                     List<Map<?, ?>> postsList = new ArrayList<Map<?, ?>>();
                     postsList.add(postMap);
 
-                    WordPress.wpDB.savePosts(postsList, blog.getLocalTableBlogId(), isPage, true);
+                    writePosts(postsList, blog.getLocalTableBlogId(), isPage, true);
                 }
 
                 return true;
@@ -600,7 +780,7 @@ public class ApiHelper {
                 return 0;
             }
 
-            String blogId = String.valueOf(blog.getLocalTableBlogId());
+            final String blogId = String.valueOf(blog.getLocalTableBlogId());
             XMLRPCClientInterface client = XMLRPCFactory.instantiate(blog.getUri(), blog.getHttpuser(),
                     blog.getHttppassword());
             Map<String, Object> filter = new HashMap<String, Object>();
@@ -643,19 +823,27 @@ public class ApiHelper {
                 return 0;
             }
 
-            Map<?, ?> resultMap;
-            // results returned, so mark everything existing to deleted
-            // since offset is 0, we are doing a full refresh
-            if (mOffset == 0) {
-                WordPress.wpDB.setMediaFilesMarkedForDeleted(blogId);
-            }
+            final List<MediaFile> mediaFiles = new ArrayList<MediaFile>();
             for (Object result : results) {
-                resultMap = (Map<?, ?>) result;
+                Map<?, ?> resultMap = (Map<?, ?>) result;
                 boolean isDotCom = (WordPress.getCurrentBlog() != null && WordPress.getCurrentBlog().isDotcomFlag());
-                MediaFile mediaFile = new MediaFile(blogId, resultMap, isDotCom);
-                WordPress.wpDB.saveMediaFile(mediaFile);
+                mediaFiles.add(new MediaFile(blogId, resultMap, isDotCom));
             }
-            WordPress.wpDB.deleteFilesMarkedForDeleted(blogId);
+            final boolean isFullRefresh = (mOffset == 0);
+            DatabaseExecutor.writeAndWait(new Runnable() {
+                @Override
+                public void run() {
+                    // results returned, so mark everything existing to deleted
+                    // since offset is 0, we are doing a full refresh
+                    if (isFullRefresh) {
+                        WordPress.wpDB.setMediaFilesMarkedForDeleted(blogId);
+                    }
+                    for (MediaFile mediaFile : mediaFiles) {
+                        WordPress.wpDB.saveMediaFile(mediaFile);
+                    }
+                    WordPress.wpDB.deleteFilesMarkedForDeleted(blogId);
+                }
+            });
             return results.length;
         }
 
@@ -863,7 +1051,7 @@ public class ApiHelper {
 
             Map<?, ?> resultMap;
             try {
-                resultMap = (HashMap<?, ?>) client.call("wp.uploadFile", apiParams, getTempFile(mContext));
+                resultMap = (HashMap<?, ?>) client.call("wp.uploadFile", apiParams);
             } catch (ClassCastException cce) {
                 setError(ErrorType.INVALID_RESULT, cce.getMessage(), cce);
                 return null;
@@ -887,17 +1075,6 @@ public class ApiHelper {
             return null;
         }
 
-        // Create a temp file for media upload
-        private File getTempFile(Context context) {
-            String tempFileName = "wp-" + System.currentTimeMillis();
-            try {
-                context.openFileOutput(tempFileName, Context.MODE_PRIVATE);
-            } catch (FileNotFoundException e) {
-                return null;
-            }
-            return context.getFileStreamPath(tempFileName);
-        }
-
         @Override
         protected void onPostExecute(String result) {
             if (mCallback != null) {
@@ -1027,134 +1204,4 @@ public class ApiHelper {
         }
 
     }
-
-    /**
-     * Discover the XML-RPC endpoint for the WordPress API associated with the specified blog URL.
-     *
-     * @param urlString URL of the blog to get the XML-RPC endpoint for.
-     * @return XML-RPC endpoint for the specified blog, or null if unable to discover endpoint.
-     */
-    public static String getXMLRPCUrl(String urlString) throws SSLHandshakeException {
-        Pattern xmlrpcLink = Pattern.compile("<api\\s*?name=\"WordPress\".*?apiLink=\"(.*?)\"",
-                Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
-
-        String html = getResponse(urlString);
-        if (html != null) {
-            Matcher matcher = xmlrpcLink.matcher(html);
-            if (matcher.find()) {
-                return matcher.group(1);
-            }
-        }
-        return null; // never found the rsd tag
-    }
-
-    /**
-     * Synchronous method to fetch the String content at the specified HTTP URL.
-     *
-     * @param stringUrl URL to fetch contents for.
-     * @return content of the resource, or null if URL was invalid or resource could not be retrieved.
-     */
-    public static String getResponse(final String stringUrl) throws SSLHandshakeException {
-        try {
-            URL url = new URL(stringUrl);
-            HttpURLConnection urlConnection = (HttpURLConnection) url.openConnection();
-            urlConnection.setInstanceFollowRedirects(true);
-            InputStream inputStream = urlConnection.getInputStream();
-            BufferedReader r = new BufferedReader(new InputStreamReader(inputStream));
-            StringBuilder sb = new StringBuilder();
-            String line;
-            while ((line = r.readLine()) != null) {
-                sb.append(line);
-            }
-            return sb.toString();
-        } catch (SSLHandshakeException e) {
-            throw e;
-        } catch (IOException e) {
-            AppLog.e(T.API, e);
-        }
-        return null;
-    }
-
-    /**
-     * Regex pattern for matching the RSD link found in most WordPress sites.
-     */
-    private static final Pattern rsdLink = Pattern.compile(
-            "<link\\s*?rel=\"EditURI\"\\s*?type=\"application/rsd\\+xml\"\\s*?title=\"RSD\"\\s*?href=\"(.*?)\"",
-            Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
-
-    /**
-     * Returns RSD URL based on regex match
-     * @param urlString
-     * @return String RSD url
-     */
-    public static String getRSDMetaTagHrefRegEx(String urlString)
-            throws SSLHandshakeException {
-        String html = ApiHelper.getResponse(urlString);
-        if (html != null) {
-            Matcher matcher = rsdLink.matcher(html);
-            if (matcher.find()) {
-                String href = matcher.group(1);
-                return href;
-            }
-        }
-        return null;
-    }
-
-    /**
-     * Returns RSD URL based on html tag search
-     * @param urlString
-     * @return String RSD url
-     */
-    public static String getRSDMetaTagHref(String urlString)
-            throws SSLHandshakeException {
-        // get the html code
-        String data = ApiHelper.getResponse(urlString);
-
-        // parse the html and get the attribute for xmlrpc endpoint
-        if (data != null) {
-            StringReader stringReader = new StringReader(data);
-            XmlPullParser parser = Xml.newPullParser();
-            try {
-                // auto-detect the encoding from the stream
-                parser.setInput(stringReader);
-                int eventType = parser.getEventType();
-                while (eventType != XmlPullParser.END_DOCUMENT) {
-                    String name = null;
-                    String rel = "";
-                    String type = "";
-                    String href = "";
-                    switch (eventType) {
-                    case XmlPullParser.START_TAG:
-                        name = parser.getName();
-                        if (name.equalsIgnoreCase("link")) {
-                            for (int i = 0; i < parser.getAttributeCount(); i++) {
-                                String attrName = parser.getAttributeName(i);
-                                String attrValue = parser.getAttributeValue(i);
-                                if (attrName.equals("rel")) {
-                                    rel = attrValue;
-                                } else if (attrName.equals("type"))
-                                    type = attrValue;
-                                else if (attrName.equals("href"))
-                                    href = attrValue;
-                            }
-
-                            if (rel.equals("EditURI") && type.equals("application/rsd+xml")) {
-                                return href;
-                            }
-                            // currentMessage.setLink(parser.nextText());
-                        }
-                        break;
-                    }
-                    eventType = parser.next();
-                }
-            } catch (XmlPullParserException e) {
-                AppLog.e(T.API, e);
-                return null;
-            } catch (IOException e) {
-                AppLog.e(T.API, e);
-                return null;
-            }
-        }
-        return null; // never found the rsd tag
-    }
 }
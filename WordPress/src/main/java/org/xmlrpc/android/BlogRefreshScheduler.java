@@ -0,0 +1,453 @@
+package org.xmlrpc.android;
+
+import android.os.AsyncTask;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+
+import org.wordpress.android.WordPress;
+import org.wordpress.android.models.Blog;
+import org.wordpress.android.models.BlogIdentifier;
+import org.wordpress.android.util.AppLog;
+import org.wordpress.android.util.AppLog.T;
+import org.xmlpull.v1.XmlPullParserException;
+import org.xmlrpc.android.ApiHelper.ErrorType;
+import org.xmlrpc.android.ApiHelper.GenericCallback;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Refreshes blog level information (options, post formats, user role, recent comments) of many blogs at once.
+ *
+ * - Blogs are refreshed concurrently, with at most MAX_CONCURRENT_REFRESHES_PER_HOST refreshes per host so a server
+ *   hosting many of the user's blogs isn't flooded.
+ * - High priority refreshes (usually the current blog) start before any waiting normal priority refresh.
+ * - A refresh requested while the same blog is waiting is merged with it, its callback is notified when that refresh
+ *   completes. If the blog is already being refreshed, a single follow-up refresh is queued for all the requests made
+ *   in the meantime, so their callbacks never get data fetched before they asked.
+ * - A batch of refreshes can be given a time budget: refreshes that haven't started when the budget runs out are
+ *   skipped.
+ *
+ * Callbacks and listeners are called on the main thread.
+ */
+public class BlogRefreshScheduler {
+    public enum Priority {HIGH, NORMAL}
+
+    public interface BatchListener {
+        /**
+         * @param refreshedCount number of blogs refreshed
+         * @param failedCount number of blogs that couldn't be refreshed
+         * @param skippedCount number of blogs skipped because the time budget ran out
+         * @param elapsedMs time between the request and the end of the last refresh
+         */
+        void onBatchDone(int refreshedCount, int failedCount, int skippedCount, long elapsedMs);
+    }
+
+    private static final int MAX_CONCURRENT_REFRESHES = 6;
+    private static final int MAX_CONCURRENT_REFRESHES_PER_HOST = 2;
+    private static final long KEEP_ALIVE_SECONDS = 30;
+
+    private static final Object sLock = new Object();
+    // waiting refreshes, in request order
+    private static final List<BlogRefresh> sPendingRefreshes = new ArrayList<BlogRefresh>();
+    // waiting and running refreshes, by blog
+    private static final Map<BlogIdentifier, BlogRefresh> sRefreshes = new HashMap<BlogIdentifier, BlogRefresh>();
+    private static final Map<String, Integer> sRunningRefreshesPerHost = new HashMap<String, Integer>();
+    private static int sRunningRefreshCount;
+    private static ThreadPoolExecutor sExecutor;
+    private static Handler sMainHandler;
+
+    private static long sCompletedRefreshCount;
+    private static long sTotalLatencyMs;
+
+    private BlogRefreshScheduler() {
+        throw new AssertionError();
+    }
+
+    /**
+     * Refresh a single blog
+     *
+     * @param callback notified when the refresh is done, may be null
+     */
+    public static void refreshBlog(Blog blog, Priority priority, GenericCallback callback) {
+        if (blog == null) {
+            return;
+        }
+        synchronized (sLock) {
+            enqueue(blog, priority, Long.MAX_VALUE, callback, null);
+            dispatch();
+        }
+    }
+
+    /**
+     * Refresh a list of blogs, the current blog first
+     *
+     * @param currentBlog blog refreshed with a high priority, may be null
+     * @param timeBudgetMs refreshes not started after this delay are skipped, 0 for no limit
+     * @param listener notified once all the blogs are refreshed or skipped, may be null
+     */
+    public static void refreshBlogs(List<Blog> blogs, Blog currentBlog, long timeBudgetMs, BatchListener listener) {
+        if (blogs == null) {
+            return;
+        }
+        long deadline = timeBudgetMs > 0 ? System.currentTimeMillis() + timeBudgetMs : Long.MAX_VALUE;
+        Batch batch = new Batch(listener);
+        synchronized (sLock) {
+            if (currentBlog != null) {
+                enqueue(currentBlog, Priority.HIGH, deadline, null, batch);
+            }
+            for (Blog blog : blogs) {
+                if (blog != null && (currentBlog == null || blog.getLocalTableBlogId()
+                        != currentBlog.getLocalTableBlogId())) {
+                    enqueue(blog, Priority.NORMAL, deadline, null, batch);
+                }
+            }
+            batch.mSubmitted = true;
+            if (batch.isDone()) {
+                batch.notifyListener();
+            }
+            dispatch();
+        }
+        if (deadline != Long.MAX_VALUE) {
+            // skip the refreshes still waiting when the budget runs out, without waiting for a slot to be freed
+            getMainHandler().postDelayed(new Runnable() {
+                @Override
+                public void run() {
+                    synchronized (sLock) {
+                        dispatch();
+                    }
+                }
+            }, timeBudgetMs);
+        }
+    }
+
+    /**
+     * Refresh all the visible blogs, the current blog first. Blogs are read from the database on a background thread.
+     */
+    public static void refreshVisibleBlogs(final Blog currentBlog, final long timeBudgetMs,
+                                           final BatchListener listener) {
+        AsyncTask.THREAD_POOL_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                List<Blog> blogs = new ArrayList<Blog>();
+                for (Map<String, Object> blogMap : WordPress.wpDB.getVisibleBlogs()) {
+                    Object localId = blogMap.get("id");
+                    if (localId instanceof Integer) {
+                        blogs.add(WordPress.wpDB.instantiateBlogByLocalId((Integer) localId));
+                    }
+                }
+                refreshBlogs(blogs, currentBlog, timeBudgetMs, listener);
+            }
+        });
+    }
+
+    /**
+     * @return number of blogs waiting to be refreshed
+     */
+    public static int getPendingRefreshCount() {
+        synchronized (sLock) {
+            return sPendingRefreshes.size();
+        }
+    }
+
+    /**
+     * @return average time (ms) between the request of a refresh and its end
+     */
+    public static long getAverageLatency() {
+        synchronized (sLock) {
+            return sCompletedRefreshCount == 0 ? 0 : sTotalLatencyMs / sCompletedRefreshCount;
+        }
+    }
+
+    private static void enqueue(Blog blog, Priority priority, long deadline, GenericCallback callback, Batch batch) {
+        BlogIdentifier blogIdentifier = new BlogIdentifier(blog.getUrl(), blog.getRemoteBlogId());
+        BlogRefresh runningRefresh = null;
+        BlogRefresh refresh = sRefreshes.get(blogIdentifier);
+        if (refresh != null && refresh.mStarted) {
+            // the running refresh may have fetched the blog before this request, it can only be merged with the
+            // refresh following it
+            runningRefresh = refresh;
+            refresh = runningRefresh.mFollowUp;
+        }
+        if (refresh == null) {
+            refresh = new BlogRefresh(blog, blogIdentifier, priority, deadline);
+            if (runningRefresh != null) {
+                AppLog.d(T.API, "Blog refresh running, another one will follow it: " + blog.getUrl());
+                runningRefresh.mFollowUp = refresh;
+            } else {
+                sRefreshes.put(blogIdentifier, refresh);
+                sPendingRefreshes.add(refresh);
+            }
+        } else {
+            AppLog.d(T.API, "Blog refresh already requested, merged with the previous request: " + blog.getUrl());
+            if (priority == Priority.HIGH) {
+                refresh.mPriority = Priority.HIGH;
+            }
+            refresh.mDeadline = Math.max(refresh.mDeadline, deadline);
+        }
+        if (callback != null) {
+            refresh.mCallbacks.add(callback);
+        }
+        if (batch != null) {
+            refresh.mBatches.add(batch);
+            batch.mRequestedCount++;
+        }
+    }
+
+    /**
+     * Start as many waiting refreshes as the limits allow, skip the ones past their deadline. Call with sLock held.
+     */
+    private static void dispatch() {
+        long now = System.currentTimeMillis();
+        for (int i = sPendingRefreshes.size() - 1; i >= 0; i--) {
+            BlogRefresh refresh = sPendingRefreshes.get(i);
+            if (refresh.mDeadline <= now) {
+                AppLog.w(T.API, "Blog refresh skipped, time budget exceeded: " + refresh.mBlog.getUrl());
+                sPendingRefreshes.remove(i);
+                sRefreshes.remove(refresh.mBlogIdentifier);
+                refresh.mSkipped = true;
+                onRefreshDone(refresh, false);
+            }
+        }
+
+        while (sRunningRefreshCount < MAX_CONCURRENT_REFRESHES) {
+            BlogRefresh next = null;
+            for (BlogRefresh refresh : sPendingRefreshes) {
+                if (getRunningRefreshCount(refresh.mHost) >= MAX_CONCURRENT_REFRESHES_PER_HOST) {
+                    continue;
+                }
+                if (refresh.mPriority == Priority.HIGH) {
+                    next = refresh;
+                    break;
+                }
+                if (next == null) {
+                    next = refresh;
+                }
+            }
+            if (next == null) {
+                return;
+            }
+            sPendingRefreshes.remove(next);
+            next.mStarted = true;
+            sRunningRefreshCount++;
+            sRunningRefreshesPerHost.put(next.mHost, getRunningRefreshCount(next.mHost) + 1);
+            getExecutor().execute(next);
+        }
+    }
+
+    private static int getRunningRefreshCount(String host) {
+        Integer count = sRunningRefreshesPerHost.get(host);
+        return count == null ? 0 : count;
+    }
+
+    private static void onRefreshFinished(final BlogRefresh refresh, final boolean success) {
+        synchronized (sLock) {
+            sRunningRefreshCount--;
+            int hostCount = getRunningRefreshCount(refresh.mHost) - 1;
+            if (hostCount > 0) {
+                sRunningRefreshesPerHost.put(refresh.mHost, hostCount);
+            } else {
+                sRunningRefreshesPerHost.remove(refresh.mHost);
+            }
+            if (refresh.mFollowUp != null) {
+                sRefreshes.put(refresh.mBlogIdentifier, refresh.mFollowUp);
+                sPendingRefreshes.add(refresh.mFollowUp);
+            } else {
+                sRefreshes.remove(refresh.mBlogIdentifier);
+            }
+
+            long latency = System.currentTimeMillis() - refresh.mRequestTime;
+            sCompletedRefreshCount++;
+            sTotalLatencyMs += latency;
+            AppLog.d(T.API, String.format(Locale.US, "Blog refresh %s in %d ms (%d ms waiting): %s",
+                    success ? "done" : "failed", latency, refresh.mStartTime - refresh.mRequestTime,
+                    refresh.mBlog.getUrl()));
+
+            onRefreshDone(refresh, success);
+            dispatch();
+        }
+    }
+
+    /**
+     * Notify the callbacks and the batches of a finished or skipped refresh. Call with sLock held.
+     */
+    private static void onRefreshDone(final BlogRefresh refresh, final boolean success) {
+        for (Batch batch : refresh.mBatches) {
+            if (refresh.mSkipped) {
+                batch.mSkippedCount++;
+            } else if (success) {
+                batch.mRefreshedCount++;
+                batch.mSequentialTimeMs += refresh.mEndTime - refresh.mStartTime;
+            } else {
+                batch.mFailedCount++;
+            }
+            if (batch.isDone()) {
+                batch.notifyListener();
+            }
+        }
+        if (refresh.mCallbacks.isEmpty()) {
+            return;
+        }
+        getMainHandler().post(new Runnable() {
+            @Override
+            public void run() {
+                for (GenericCallback callback : refresh.mCallbacks) {
+                    if (success) {
+                        callback.onSuccess();
+                    } else if (refresh.mSkipped) {
+                        callback.onFailure(ErrorType.TASK_CANCELLED, "Time budget exceeded", null);
+                    } else {
+                        callback.onFailure(refresh.mErrorType, refresh.mErrorMessage, refresh.mThrowable);
+                    }
+                }
+            }
+        });
+    }
+
+    private static synchronized Handler getMainHandler() {
+        if (sMainHandler == null) {
+            sMainHandler = new Handler(Looper.getMainLooper());
+        }
+        return sMainHandler;
+    }
+
+    private static synchronized ThreadPoolExecutor getExecutor() {
+        if (sExecutor == null) {
+            // dispatch() never runs more than MAX_CONCURRENT_REFRESHES refreshes, the queue stays empty
+            sExecutor = new ThreadPoolExecutor(MAX_CONCURRENT_REFRESHES, MAX_CONCURRENT_REFRESHES,
+                    KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                    new RefreshThreadFactory());
+            sExecutor.allowCoreThreadTimeOut(true);
+        }
+        return sExecutor;
+    }
+
+    /**
+     * Blogs refreshed by a single refreshBlogs() call
+     */
+    private static class Batch {
+        private final BatchListener mListener;
+        private final long mRequestTime = System.currentTimeMillis();
+        private boolean mSubmitted;
+        private int mRequestedCount;
+        private int mRefreshedCount;
+        private int mFailedCount;
+        private int mSkippedCount;
+        // sum of the refresh times, what refreshing the blogs one by one would have taken
+        private long mSequentialTimeMs;
+
+        Batch(BatchListener listener) {
+            mListener = listener;
+        }
+
+        boolean isDone() {
+            return mSubmitted && mRefreshedCount + mFailedCount + mSkippedCount == mRequestedCount;
+        }
+
+        void notifyListener() {
+            final long elapsedMs = System.currentTimeMillis() - mRequestTime;
+            AppLog.i(T.API, String.format(Locale.US,
+                    "%d blogs refreshed in %d ms (%d ms one by one), %d failed, %d skipped",
+                    mRefreshedCount, elapsedMs, mSequentialTimeMs, mFailedCount, mSkippedCount));
+            if (mListener == null) {
+                return;
+            }
+            final int refreshedCount = mRefreshedCount;
+            final int failedCount = mFailedCount;
+            final int skippedCount = mSkippedCount;
+            getMainHandler().post(new Runnable() {
+                @Override
+                public void run() {
+                    mListener.onBatchDone(refreshedCount, failedCount, skippedCount, elapsedMs);
+                }
+            });
+        }
+    }
+
+    /**
+     * Refresh of a single blog, see ApiHelper.refreshBlogContent()
+     */
+    private static class BlogRefresh implements Runnable {
+        private final Blog mBlog;
+        private final BlogIdentifier mBlogIdentifier;
+        private final String mHost;
+        private final long mRequestTime = System.currentTimeMillis();
+        private final List<GenericCallback> mCallbacks = new ArrayList<GenericCallback>();
+        private final List<Batch> mBatches = new ArrayList<Batch>();
+        private Priority mPriority;
+        private long mDeadline;
+        private boolean mStarted;
+        private boolean mSkipped;
+        // refresh of the same blog requested while this one was running, started when this one is done
+        private BlogRefresh mFollowUp;
+        private long mStartTime;
+        private long mEndTime;
+        private ErrorType mErrorType = ErrorType.NO_ERROR;
+        private String mErrorMessage;
+        private Throwable mThrowable;
+
+        BlogRefresh(Blog blog, BlogIdentifier blogIdentifier, Priority priority, long deadline) {
+            mBlog = blog;
+            mBlogIdentifier = blogIdentifier;
+            String host = blog.getUri() != null ? blog.getUri().getHost() : null;
+            mHost = host != null ? host.toLowerCase(Locale.US) : "";
+            mPriority = priority != null ? priority : Priority.NORMAL;
+            mDeadline = deadline;
+        }
+
+        @Override
+        public void run() {
+            mStartTime = System.currentTimeMillis();
+            boolean success = false;
+            try {
+                ApiHelper.refreshBlogContent(mBlog);
+                success = true;
+            } catch (ClassCastException e) {
+                setError(ErrorType.INVALID_RESULT, e.getMessage(), e);
+            } catch (XMLRPCException e) {
+                setError(ErrorType.NETWORK_XMLRPC, e.getMessage(), e);
+            } catch (IOException e) {
+                setError(ErrorType.NETWORK_XMLRPC, e.getMessage(), e);
+            } catch (XmlPullParserException e) {
+                setError(ErrorType.NETWORK_XMLRPC, e.getMessage(), e);
+            } catch (RuntimeException e) {
+                setError(ErrorType.UNKNOWN_ERROR, e.getMessage(), e);
+            } finally {
+                mEndTime = System.currentTimeMillis();
+                onRefreshFinished(this, success);
+            }
+        }
+
+        private void setError(ErrorType errorType, String errorMessage, Throwable throwable) {
+            mErrorMessage = errorMessage;
+            mErrorType = errorType;
+            mThrowable = throwable;
+            AppLog.e(T.API, mErrorType.name() + " - " + mErrorMessage, throwable);
+        }
+    }
+
+    private static class RefreshThreadFactory implements ThreadFactory {
+        private final AtomicInteger mThreadCount = new AtomicInteger(1);
+
+        @Override
+        public Thread newThread(final Runnable runnable) {
+            return new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                    runnable.run();
+                }
+            }, "Blog refresh #" + mThreadCount.getAndIncrement());
+        }
+    }
+}
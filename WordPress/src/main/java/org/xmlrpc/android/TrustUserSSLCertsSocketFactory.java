@@ -2,6 +2,7 @@ package org.xmlrpc.android;
 
 import android.annotation.SuppressLint;
 import android.net.SSLCertificateSocketFactory;
+import android.net.SSLSessionCache;
 import android.os.Build;
 
 import org.apache.http.conn.scheme.SocketFactory;
@@ -41,9 +42,16 @@ public class TrustUserSSLCertsSocketFactory extends SSLSocketFactory {
     private static final BrowserCompatHostnameVerifier mHostnameVerifier = new BrowserCompatHostnameVerifier();
 
     public TrustUserSSLCertsSocketFactory() throws IOException, GeneralSecurityException {
+        this(null);
+    }
+
+    /**
+     * @param sessionCache cache used to resume TLS sessions, may be null
+     */
+    public TrustUserSSLCertsSocketFactory(SSLSessionCache sessionCache) throws IOException, GeneralSecurityException {
         super(null);
         // No handshake timeout used
-        mFactory = (SSLCertificateSocketFactory) SSLCertificateSocketFactory.getDefault(0);
+        mFactory = (SSLCertificateSocketFactory) SSLCertificateSocketFactory.getDefault(0, sessionCache);
         TrustManager[] trustAllowedCerts;
         try {
             trustAllowedCerts = new TrustManager[]{
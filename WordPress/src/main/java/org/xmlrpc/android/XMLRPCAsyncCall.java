@@ -0,0 +1,118 @@
+package org.xmlrpc.android;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * An asynchronous XML-RPC call, queued on the {@link XMLRPCAsyncExecutor}.
+ *
+ * The call can be cancelled with {@link #cancel(boolean)}: a cancelled call never notifies its listener. Calls with
+ * a higher priority are started first, calls with the same priority are started in submission order.
+ */
+public class XMLRPCAsyncCall extends FutureTask<Object> implements Comparable<XMLRPCAsyncCall> {
+    public enum Priority {HIGH, NORMAL, LOW}
+
+    /**
+     * The client running the call: it aborts the HTTP request of a running call, and stops tracking the call once
+     * it's done
+     */
+    interface Owner {
+        void abort(XMLRPCAsyncCall call);
+        void onDone(XMLRPCAsyncCall call);
+    }
+
+    private final long mId;
+    private final String mMethodName;
+    private final Priority mPriority;
+    private final XMLRPCCallback mListener;
+    private final Owner mOwner;
+    private final long mSubmitTime;
+    private volatile long mStartTime;
+
+    XMLRPCAsyncCall(Callable<Object> callable, long id, String methodName, Priority priority,
+                    XMLRPCCallback listener, Owner owner) {
+        super(callable);
+        mId = id;
+        mMethodName = methodName;
+        mPriority = priority != null ? priority : Priority.NORMAL;
+        mListener = listener;
+        mOwner = owner;
+        mSubmitTime = System.currentTimeMillis();
+    }
+
+    /**
+     * @return unique id of this call, as passed to the XMLRPCCallback
+     */
+    public long getId() {
+        return mId;
+    }
+
+    public String getMethodName() {
+        return mMethodName;
+    }
+
+    public Priority getPriority() {
+        return mPriority;
+    }
+
+    @Override
+    public void run() {
+        mStartTime = System.currentTimeMillis();
+        super.run();
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        boolean cancelled = super.cancel(mayInterruptIfRunning);
+        if (cancelled && mayInterruptIfRunning && mStartTime != 0 && mOwner != null) {
+            // Blocking socket reads can't be interrupted, abort the request instead
+            mOwner.abort(this);
+        }
+        return cancelled;
+    }
+
+    @Override
+    protected void done() {
+        if (mOwner != null) {
+            mOwner.onDone(this);
+        }
+        if (isCancelled()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        XMLRPCAsyncExecutor.onCallDone(mStartTime - mSubmitTime, now - mSubmitTime);
+
+        if (mListener == null) {
+            return;
+        }
+        try {
+            mListener.onSuccess(mId, get());
+        } catch (CancellationException e) {
+            // Don't notify the listener, if the call has been canceled.
+        } catch (InterruptedException e) {
+            // Can't happen, the call is done
+            mListener.onFailure(mId, e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) {
+                mListener.onFailure(mId, (Exception) cause);
+            } else {
+                mListener.onFailure(mId, e);
+            }
+        }
+    }
+
+    @Override
+    public int compareTo(XMLRPCAsyncCall another) {
+        if (mPriority != another.mPriority) {
+            return mPriority.ordinal() < another.mPriority.ordinal() ? -1 : 1;
+        }
+        // ids are increasing, so the oldest call goes first
+        if (mId == another.mId) {
+            return 0;
+        }
+        return mId < another.mId ? -1 : 1;
+    }
+}
@@ -0,0 +1,107 @@
+package org.xmlrpc.android;
+
+import android.os.Process;
+
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Process wide executor running the asynchronous XML-RPC calls.
+ *
+ * A fixed number of background threads take the calls from a priority queue, so a burst of calls (bulk media or
+ * comment moderation for instance) doesn't spawn one thread per call, and doesn't delay a call the user is waiting
+ * for. Calls with the same priority run in submission order. Threads are stopped when idle.
+ *
+ * Queue depth and call latency are exposed for monitoring.
+ */
+public class XMLRPCAsyncExecutor {
+    private static final int MAX_THREADS = 4;
+    private static final long KEEP_ALIVE_SECONDS = 30;
+
+    private static final AtomicLong sNextCallId = new AtomicLong(1);
+    private static final AtomicLong sCompletedCalls = new AtomicLong();
+    private static final AtomicLong sTotalQueueTimeMs = new AtomicLong();
+    private static final AtomicLong sTotalLatencyMs = new AtomicLong();
+    private static ThreadPoolExecutor sExecutor;
+
+    private static synchronized ThreadPoolExecutor getExecutor() {
+        if (sExecutor == null) {
+            // The queue is unbounded so all MAX_THREADS threads are core threads
+            sExecutor = new ThreadPoolExecutor(MAX_THREADS, MAX_THREADS, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                    new PriorityBlockingQueue<Runnable>(), new XMLRPCThreadFactory());
+            sExecutor.allowCoreThreadTimeOut(true);
+        }
+        return sExecutor;
+    }
+
+    /**
+     * @return a new call id, unique for the whole process
+     */
+    static long nextCallId() {
+        return sNextCallId.getAndIncrement();
+    }
+
+    static void submit(XMLRPCAsyncCall call) {
+        // execute() and not submit(), the queue needs the comparable XMLRPCAsyncCall itself
+        getExecutor().execute(call);
+    }
+
+    static void onCallDone(long queueTimeMs, long latencyMs) {
+        sCompletedCalls.incrementAndGet();
+        sTotalQueueTimeMs.addAndGet(queueTimeMs);
+        sTotalLatencyMs.addAndGet(latencyMs);
+    }
+
+    /**
+     * @return number of calls waiting for a thread
+     */
+    public static int getQueueDepth() {
+        return getExecutor().getQueue().size();
+    }
+
+    /**
+     * @return number of calls currently running
+     */
+    public static int getActiveCallCount() {
+        return getExecutor().getActiveCount();
+    }
+
+    public static long getCompletedCallCount() {
+        return sCompletedCalls.get();
+    }
+
+    /**
+     * @return average time (ms) calls spent waiting in the queue before running
+     */
+    public static long getAverageQueueTime() {
+        long completedCalls = sCompletedCalls.get();
+        return completedCalls == 0 ? 0 : sTotalQueueTimeMs.get() / completedCalls;
+    }
+
+    /**
+     * @return average time (ms) between the submission of a call and its result
+     */
+    public static long getAverageLatency() {
+        long completedCalls = sCompletedCalls.get();
+        return completedCalls == 0 ? 0 : sTotalLatencyMs.get() / completedCalls;
+    }
+
+    private static class XMLRPCThreadFactory implements ThreadFactory {
+        private final AtomicInteger mThreadCount = new AtomicInteger(1);
+
+        @Override
+        public Thread newThread(final Runnable runnable) {
+            return new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                    runnable.run();
+                }
+            }, "XMLRPC async #" + mThreadCount.getAndIncrement());
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package org.xmlrpc.android;
+
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A single method call of a batch sent with {@link XMLRPCClientInterface#callBatch(java.util.List)}.
+ *
+ * Once the batch has been executed, each call holds either its own result or its own error: one failing call
+ * doesn't fail the others.
+ */
+public class XMLRPCCall {
+    private static final String KEY_METHOD_NAME = "methodName";
+    private static final String KEY_PARAMS = "params";
+
+    private final String mMethod;
+    private final Object[] mParams;
+    private Object mResult;
+    private Exception mError;
+    private boolean mIsDone;
+
+    public XMLRPCCall(String method, Object[] params) {
+        mMethod = method;
+        mParams = params;
+    }
+
+    public String getMethod() {
+        return mMethod;
+    }
+
+    public Object[] getParams() {
+        return mParams;
+    }
+
+    /**
+     * Returns the result of this call, or throws the error (usually an {@link XMLRPCFault}) the server returned for
+     * this call only.
+     */
+    public Object getResult() throws XMLRPCException, IOException, XmlPullParserException {
+        if (mError == null) {
+            return mResult;
+        }
+        if (mError instanceof XMLRPCException) {
+            throw (XMLRPCException) mError;
+        }
+        if (mError instanceof IOException) {
+            throw (IOException) mError;
+        }
+        if (mError instanceof XmlPullParserException) {
+            throw (XmlPullParserException) mError;
+        }
+        if (mError instanceof RuntimeException) {
+            throw (RuntimeException) mError;
+        }
+        throw new XMLRPCException(mError);
+    }
+
+    public Exception getError() {
+        return mError;
+    }
+
+    public boolean isSuccessful() {
+        return mIsDone && mError == null;
+    }
+
+    public void setResult(Object result) {
+        mResult = result;
+        mError = null;
+        mIsDone = true;
+    }
+
+    public void setError(Exception error) {
+        mResult = null;
+        mError = error;
+        mIsDone = true;
+    }
+
+    /**
+     * Struct representation of this call, as expected by system.multicall
+     */
+    Map<String, Object> toMulticallStruct() {
+        Map<String, Object> struct = new HashMap<String, Object>();
+        struct.put(KEY_METHOD_NAME, mMethod);
+        struct.put(KEY_PARAMS, mParams != null ? mParams : new Object[0]);
+        return struct;
+    }
+}
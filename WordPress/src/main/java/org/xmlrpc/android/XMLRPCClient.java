@@ -2,7 +2,6 @@ package org.xmlrpc.android;
 
 import android.content.Context;
 import android.text.TextUtils;
-import android.util.Xml;
 
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpResponse;
@@ -10,9 +9,8 @@ import org.apache.http.HttpStatus;
 import org.apache.http.auth.AuthScope;
 import org.apache.http.auth.UsernamePasswordCredentials;
 import org.apache.http.client.methods.HttpPost;
-import org.apache.http.conn.scheme.Scheme;
-import org.apache.http.entity.FileEntity;
-import org.apache.http.entity.StringEntity;
+import org.apache.http.conn.ClientConnectionManager;
+import org.apache.http.conn.params.ConnManagerParams;
 import org.apache.http.impl.client.BasicCredentialsProvider;
 import org.apache.http.impl.client.DefaultHttpClient;
 import org.apache.http.params.HttpConnectionParams;
@@ -28,25 +26,23 @@ import org.wordpress.android.util.StringUtils;
 import org.xmlpull.v1.XmlPullParser;
 import org.xmlpull.v1.XmlPullParserException;
 import org.xmlpull.v1.XmlPullParserFactory;
-import org.xmlpull.v1.XmlSerializer;
 
 import java.io.ByteArrayInputStream;
 import java.io.File;
-import java.io.FileWriter;
-import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
 import java.io.SequenceInputStream;
-import java.io.StringWriter;
 import java.net.URI;
 import java.net.URL;
-import java.security.GeneralSecurityException;
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.net.ssl.SSLHandshakeException;
 import javax.net.ssl.SSLPeerUnverifiedException;
@@ -62,26 +58,34 @@ import de.greenrobot.event.EventBus;
 public class XMLRPCClient implements XMLRPCClientInterface {
 
     public interface OnBytesUploadedListener {
-        public void onBytesUploaded(long uploadedBytes);
+        /**
+         * @param uploadedBytes bytes of the request body sent so far
+         * @param totalBytes length of the request body
+         */
+        public void onBytesUploaded(long uploadedBytes, long totalBytes);
     }
 
-    private static final String TAG_METHOD_CALL = "methodCall";
-    private static final String TAG_METHOD_NAME = "methodName";
     private static final String TAG_METHOD_RESPONSE = "methodResponse";
-    private static final String TAG_PARAMS = "params";
-    private static final String TAG_PARAM = "param";
     private static final String TAG_FAULT = "fault";
     private static final String TAG_FAULT_CODE = "faultCode";
     private static final String TAG_FAULT_STRING = "faultString";
     private static final int DEFAULT_CONNECTION_TIMEOUT = 30000;
     private static final int DEFAULT_SOCKET_TIMEOUT = 60000;
+    private static final String METHOD_MULTICALL = "system.multicall";
+
+    // Endpoints that refused system.multicall, batches sent to them are run one call at a time
+    private static final Set<String> sMulticallUnsupportedEndpoints =
+            Collections.synchronizedSet(new HashSet<String>());
 
-    private Map<Long,Caller> backgroundCalls = new HashMap<Long, Caller>();
+    private final Map<Long, XMLRPCAsyncCall> backgroundCalls = new ConcurrentHashMap<Long, XMLRPCAsyncCall>();
+    // the running async call and its HttpPost, guarded by mAsyncCallLock
+    private final Object mAsyncCallLock = new Object();
+    private XMLRPCAsyncCall mRunningAsyncCall;
+    private HttpPost mRunningAsyncPost;
 
     private DefaultHttpClient mClient;
     private OnBytesUploadedListener mOnBytesUploadedListener;
     private HttpPost mPostMethod;
-    private XmlSerializer mSerializer;
     private HttpParams mHttpParams;
     private LoggedInputStream mLoggedInputStream;
 
@@ -107,7 +111,6 @@ public class XMLRPCClient implements XMLRPCClientInterface {
         }
 
         mClient = instantiateClientForUri(uri, credentials);
-        mSerializer = Xml.newSerializer();
     }
 
     public String getResponse() {
@@ -117,46 +120,29 @@ public class XMLRPCClient implements XMLRPCClientInterface {
         return mLoggedInputStream.getResponseDocument();
     }
 
-    private class ConnectionClient extends DefaultHttpClient {
-        public ConnectionClient(int port) throws IOException, GeneralSecurityException {
-            super();
-            TrustUserSSLCertsSocketFactory tasslf = new TrustUserSSLCertsSocketFactory();
-            Scheme scheme = new Scheme("https", tasslf, port);
-            getConnectionManager().getSchemeRegistry().register(scheme);
-        }
-    }
-
     private DefaultHttpClient instantiateClientForUri(URI uri, UsernamePasswordCredentials usernamePasswordCredentials) {
-        DefaultHttpClient client = null;
         if (uri != null && uri.getHost() != null && uri.getHost().endsWith("wordpress.com")) {
             mIsWpcom = true;
         }
-        if (mIsWpcom || (uri == null || uri.getScheme() == null || uri.getScheme().equals("http"))) {
-            //wpcom blog or self-hosted blog on plain HTTP
-            client = new DefaultHttpClient();
-        } else {
-            int port = uri.getPort();
-            if (port == -1) {
-                port = 443;
-            }
 
-            try {
-                client = new ConnectionClient(port);
-            } catch (GeneralSecurityException e) {
-                AppLog.e(T.API, "Cannot create the DefaultHttpClient object with our TrustAllSSLSocketFactory", e);
-                client = null;
-            } catch (IOException e) {
-                AppLog.e(T.API, "Cannot create the DefaultHttpClient object with our TrustAllSSLSocketFactory", e);
-                client = null;
-            }
+        // wpcom blogs and self-hosted blogs on plain HTTP don't need the user trusted certificates
+        boolean trustUserCerts = !mIsWpcom && uri != null && uri.getScheme() != null
+                && !uri.getScheme().equals("http");
 
-            if (client == null) {
-                client = new DefaultHttpClient();
-            }
+        // Connections are pooled and kept alive across clients, see XMLRPCConnectionPool
+        DefaultHttpClient client;
+        if (uri != null) {
+            ClientConnectionManager connectionManager = XMLRPCConnectionPool.getConnectionManager(uri, trustUserCerts);
+            // null params: the client creates the same default params as new DefaultHttpClient()
+            client = new DefaultHttpClient(connectionManager, null);
+        } else {
+            client = new DefaultHttpClient();
         }
 
         HttpConnectionParams.setConnectionTimeout(client.getParams(), DEFAULT_CONNECTION_TIMEOUT);
         HttpConnectionParams.setSoTimeout(client.getParams(), DEFAULT_SOCKET_TIMEOUT);
+        // Don't wait forever for a pooled connection
+        ConnManagerParams.setTimeout(client.getParams(), DEFAULT_CONNECTION_TIMEOUT);
 
         // Setup HTTP Basic Auth if necessary
         if (usernamePasswordCredentials != null) {
@@ -225,8 +211,112 @@ public class XMLRPCClient implements XMLRPCClientInterface {
     }
 
 
-    public Object call(String method, Object[] params, File tempFile) throws XMLRPCException, IOException, XmlPullParserException {
-        return new Caller().callXMLRPC(method, params, tempFile);
+    /**
+     * Calls on the same client are run one at a time, since they share the same HttpPost
+     *
+     * @param tempFile not used anymore, media files are Base64 encoded while the request is sent
+     */
+    public synchronized Object call(String method, Object[] params, File tempFile) throws XMLRPCException, IOException, XmlPullParserException {
+        resetPostMethodIfAborted();
+        return new Caller().callXMLRPC(method, params, null);
+    }
+
+    /**
+     * Call a method and pass the response to the visitor while it's parsed, instead of deserializing the whole
+     * response first. Use it for responses that can be large, like wp.getComments or wp.getMediaLibrary.
+     *
+     * @param method name of method to call
+     * @param params parameters to pass to method (may be null if method has no parameters)
+     * @param visitor receives the response elements as they're parsed
+     */
+    public synchronized void callStreaming(String method, Object[] params, XMLRPCResponseVisitor visitor)
+            throws XMLRPCException, IOException, XmlPullParserException {
+        resetPostMethodIfAborted();
+        new Caller().callXMLRPC(method, params, visitor);
+    }
+
+    /**
+     * Send several method calls in a single system.multicall request. Each call gets its own result or its own
+     * fault, see {@link XMLRPCCall#getResult()}. If the server doesn't support system.multicall, the calls are sent
+     * one by one.
+     *
+     * @param calls calls to send, results are set on each of them
+     * @throws XMLRPCException if the batch request itself failed
+     */
+    public void callBatch(List<XMLRPCCall> calls) throws XMLRPCException, IOException, XmlPullParserException {
+        if (calls == null || calls.isEmpty()) {
+            return;
+        }
+
+        String endpoint = String.valueOf(mPostMethod.getURI());
+        if (calls.size() == 1 || sMulticallUnsupportedEndpoints.contains(endpoint)) {
+            callSequentially(calls);
+            return;
+        }
+
+        Object[] multicallParams = new Object[calls.size()];
+        for (int i = 0; i < calls.size(); i++) {
+            multicallParams[i] = calls.get(i).toMulticallStruct();
+        }
+
+        Object response;
+        try {
+            response = call(METHOD_MULTICALL, new Object[]{multicallParams});
+        } catch (XMLRPCFault e) {
+            // Faults of individual calls are returned inline, so a fault here means the server (or a security
+            // plugin) refused system.multicall itself
+            AppLog.w(T.API, "system.multicall failed on " + endpoint + ", sending calls one by one - " + e.getMessage());
+            sMulticallUnsupportedEndpoints.add(endpoint);
+            callSequentially(calls);
+            return;
+        }
+
+        if (!(response instanceof Object[]) || ((Object[]) response).length != calls.size()) {
+            throw new XMLRPCException("Invalid system.multicall response, expected " + calls.size() + " results");
+        }
+
+        // every call of the batch is sent with the same credentials, so a bad password makes all of them fault:
+        // post the login event once per response, not once per call
+        boolean isFaultEventPosted = false;
+        Object[] results = (Object[]) response;
+        for (int i = 0; i < results.length; i++) {
+            XMLRPCCall xmlrpcCall = calls.get(i);
+            setMulticallResult(xmlrpcCall, results[i]);
+            if (!isFaultEventPosted && xmlrpcCall.getError() instanceof XMLRPCFault) {
+                isFaultEventPosted = postFaultEvent((XMLRPCFault) xmlrpcCall.getError());
+            }
+        }
+    }
+
+    /**
+     * Each system.multicall result is either a one element array holding the call result, or a fault struct
+     */
+    private void setMulticallResult(XMLRPCCall call, Object result) {
+        if (result instanceof Object[] && ((Object[]) result).length == 1) {
+            call.setResult(((Object[]) result)[0]);
+        } else if (result instanceof Map) {
+            Map<?, ?> faultMap = (Map<?, ?>) result;
+            Object faultCode = faultMap.get(TAG_FAULT_CODE);
+            XMLRPCFault fault = new XMLRPCFault(StringUtils.notNullStr((String) faultMap.get(TAG_FAULT_STRING)),
+                    faultCode instanceof Integer ? (Integer) faultCode : 0);
+            call.setError(fault);
+        } else {
+            call.setError(new XMLRPCException("Invalid system.multicall result for " + call.getMethod()));
+        }
+    }
+
+    private void callSequentially(List<XMLRPCCall> calls) {
+        for (XMLRPCCall xmlrpcCall : calls) {
+            try {
+                xmlrpcCall.setResult(call(xmlrpcCall.getMethod(), xmlrpcCall.getParams()));
+            } catch (XMLRPCException e) {
+                xmlrpcCall.setError(e);
+            } catch (IOException e) {
+                xmlrpcCall.setError(e);
+            } catch (XmlPullParserException e) {
+                xmlrpcCall.setError(e);
+            }
+        }
     }
 
     /**
@@ -237,25 +327,120 @@ public class XMLRPCClient implements XMLRPCClientInterface {
      * @throws XMLRPCException
      */
     public long callAsync(XMLRPCCallback listener, String methodName, Object[] params) {
-        return callAsync(listener, methodName, params, null);
+        return callAsync(listener, methodName, params, XMLRPCAsyncCall.Priority.NORMAL);
     }
 
     /**
      * Asynchronous XMLRPC call
      *
-     * @param listener, XMLRPC methodName, XMLRPC parameters, File for large uploads
+     * @param listener, XMLRPC methodName, XMLRPC parameters, File for large uploads (not used anymore)
      * @return unique id of this async call
      * @throws XMLRPCException
      */
     public long callAsync(XMLRPCCallback listener, String methodName, Object[] params, File tempFile) {
-        long id = System.currentTimeMillis();
-        new Caller(listener, id, methodName, params, tempFile).start();
-        return id;
+        return callAsync(listener, methodName, params, XMLRPCAsyncCall.Priority.NORMAL);
+    }
+
+    /**
+     * Asynchronous XMLRPC call, queued on the shared XMLRPCAsyncExecutor
+     *
+     * @param listener, XMLRPC methodName, XMLRPC parameters, priority of the call: higher priority calls are started
+     *                  first, calls with the same priority are started in submission order
+     * @return unique id of this async call
+     */
+    public long callAsync(XMLRPCCallback listener, String methodName, Object[] params,
+                          XMLRPCAsyncCall.Priority priority) {
+        AsyncCaller asyncCaller = new AsyncCaller(methodName, params);
+        XMLRPCAsyncCall asyncCall = new XMLRPCAsyncCall(asyncCaller, XMLRPCAsyncExecutor.nextCallId(), methodName,
+                priority, listener, mAsyncCallOwner);
+        asyncCaller.mAsyncCall = asyncCall;
+        backgroundCalls.put(asyncCall.getId(), asyncCall);
+        XMLRPCAsyncExecutor.submit(asyncCall);
+        return asyncCall.getId();
+    }
+
+    /**
+     * Cancel an asynchronous call, its listener won't be notified
+     *
+     * @param id id returned by callAsync
+     * @return false if the call was already done
+     */
+    public boolean cancelAsync(long id) {
+        XMLRPCAsyncCall asyncCall = backgroundCalls.get(id);
+        return asyncCall != null && asyncCall.cancel(true);
+    }
+
+    private final XMLRPCAsyncCall.Owner mAsyncCallOwner = new XMLRPCAsyncCall.Owner() {
+        @Override
+        public void abort(XMLRPCAsyncCall call) {
+            // Only abort the request of that call, the next call may already be running with another HttpPost
+            synchronized (mAsyncCallLock) {
+                if (mRunningAsyncCall == call && mRunningAsyncPost != null) {
+                    mRunningAsyncPost.abort();
+                }
+            }
+        }
+
+        @Override
+        public void onDone(XMLRPCAsyncCall call) {
+            backgroundCalls.remove(call.getId());
+        }
+    };
+
+    /**
+     * Runs an asynchronous call on an XMLRPCAsyncExecutor thread
+     */
+    private class AsyncCaller implements Callable<Object> {
+        private final String mMethodName;
+        private final Object[] mParams;
+        private XMLRPCAsyncCall mAsyncCall;
+
+        AsyncCaller(String methodName, Object[] params) {
+            mMethodName = methodName;
+            mParams = params;
+        }
+
+        @Override
+        public Object call() throws Exception {
+            synchronized (XMLRPCClient.this) {
+                // The call may have been cancelled while it was waiting for the client, don't send it then
+                synchronized (mAsyncCallLock) {
+                    if (mAsyncCall.isCancelled()) {
+                        throw new CancellationException();
+                    }
+                    // Replace an HttpPost aborted by an earlier call. This is the last time it's replaced for
+                    // this call: a cancel from now on aborts the HttpPost recorded below.
+                    resetPostMethodIfAborted();
+                    mRunningAsyncCall = mAsyncCall;
+                    mRunningAsyncPost = mPostMethod;
+                }
+                try {
+                    // If the call is cancelled from now on, its HttpPost is aborted and the request fails
+                    return new Caller().callXMLRPC(mMethodName, mParams, null);
+                } finally {
+                    synchronized (mAsyncCallLock) {
+                        mRunningAsyncCall = null;
+                        mRunningAsyncPost = null;
+                    }
+                }
+            }
+        }
     }
 
-    @SuppressWarnings("unchecked")
     public static Object parseXMLRPCResponse(InputStream is, HttpEntity entity)
             throws XMLRPCException, IOException, XmlPullParserException, NumberFormatException {
+        return parseXMLRPCResponse(is, entity, null);
+    }
+
+    /**
+     * Parse an XML-RPC response document
+     *
+     * @param visitor if not null, the response is passed to the visitor while it's parsed and null is returned
+     * @return deserialized response, or null if a visitor is used
+     */
+    @SuppressWarnings("unchecked")
+    public static Object parseXMLRPCResponse(InputStream is, HttpEntity entity, XMLRPCResponseVisitor visitor)
+            throws XMLRPCException, IOException, XmlPullParserException, NumberFormatException {
         // setup pull parser
         XmlPullParser pullParser = XmlPullParserFactory.newInstance().newPullParser();
 
@@ -294,13 +479,18 @@ public class XMLRPCClient implements XMLRPCClientInterface {
 
         pullParser.nextTag(); // either TAG_PARAMS (<params>) or TAG_FAULT (<fault>)
         String tag = pullParser.getName();
-        if (tag.equals(TAG_PARAMS)) {
+        if (tag.equals(XMLRPCSerializer.TAG_PARAMS)) {
             // normal response
             pullParser.nextTag(); // TAG_PARAM (<param>)
-            pullParser.require(XmlPullParser.START_TAG, null, TAG_PARAM);
+            pullParser.require(XmlPullParser.START_TAG, null, XMLRPCSerializer.TAG_PARAM);
             pullParser.nextTag(); // TAG_VALUE (<value>)
             // no parser.require() here since its called in XMLRPCSerializer.deserialize() below
             // deserialize result
+            if (visitor != null) {
+                XMLRPCSerializer.deserialize(pullParser, visitor);
+                consumeHttpEntity(entity);
+                return null;
+            }
             Object obj = XMLRPCSerializer.deserialize(pullParser);
             consumeHttpEntity(entity);
             return obj;
@@ -335,148 +525,34 @@ public class XMLRPCClient implements XMLRPCClientInterface {
         }
     }
 
-    public void preparePostMethod(String method, Object[] params, File tempFile) throws IOException, XMLRPCException, IllegalArgumentException, IllegalStateException {
-        // prepare POST body
+    public void preparePostMethod(String method, Object[] params) throws IOException, XMLRPCException, IllegalArgumentException, IllegalStateException {
+        // prepare POST body, it's serialized directly into the connection when the request is executed
         if (method.equals("wp.uploadFile")) {
-            if (!tempFile.exists() && !tempFile.mkdirs()) {
-                throw new XMLRPCException("Path to file could not be created.");
-            }
-
-            FileWriter fileWriter = new FileWriter(tempFile);
-            mSerializer.setOutput(fileWriter);
-
-            mSerializer.startDocument(null, null);
-            mSerializer.startTag(null, TAG_METHOD_CALL);
-            // set method name
-            mSerializer.startTag(null, TAG_METHOD_NAME).text(method).endTag(null, TAG_METHOD_NAME);
-            if (params != null && params.length != 0) {
-                // set method params
-                mSerializer.startTag(null, TAG_PARAMS);
-                for (int i = 0; i < params.length; i++) {
-                    mSerializer.startTag(null, TAG_PARAM).startTag(null, XMLRPCSerializer.TAG_VALUE);
-                    XMLRPCSerializer.serialize(mSerializer, params[i]);
-                    mSerializer.endTag(null, XMLRPCSerializer.TAG_VALUE).endTag(null, TAG_PARAM);
-                }
-                mSerializer.endTag(null, TAG_PARAMS);
-            }
-            mSerializer.endTag(null, TAG_METHOD_CALL);
-            mSerializer.endDocument();
-
-            fileWriter.flush();
-            fileWriter.close();
-
-            FileEntity fEntity = new FileEntity(tempFile, "text/xml; charset=\"UTF-8\"") {
-                // Hook in a CountingOutputStream to keep track of bytes uploaded
-                @Override
-                public void writeTo(final OutputStream outstream) throws IOException {
-                    super.writeTo(new CountingOutputStream(outstream));
-                }
-            };
-
-            fEntity.setContentType("text/xml");
-            mPostMethod.setEntity(fEntity);
+            // Media files are Base64 encoded on the fly, with a known Content-Length to report the upload progress
+            mPostMethod.setEntity(new XMLRPCUploadEntity(method, params, mOnBytesUploadedListener));
         } else {
-            StringWriter bodyWriter = new StringWriter();
-            mSerializer.setOutput(bodyWriter);
-
-            mSerializer.startDocument(null, null);
-            mSerializer.startTag(null, TAG_METHOD_CALL);
-            // set method name
-            mSerializer.startTag(null, TAG_METHOD_NAME).text(method).endTag(null, TAG_METHOD_NAME);
-            if (params != null && params.length != 0) {
-                // set method params
-                mSerializer.startTag(null, TAG_PARAMS);
-                for (int i = 0; i < params.length; i++) {
-                    mSerializer.startTag(null, TAG_PARAM).startTag(null, XMLRPCSerializer.TAG_VALUE);
-                    if (method.equals("metaWeblog.editPost") || method.equals("metaWeblog.newPost")) {
-                        XMLRPCSerializer.serialize(mSerializer, params[i]);
-                    } else {
-                        XMLRPCSerializer.serialize(mSerializer, params[i]);
-                    }
-                    mSerializer.endTag(null, XMLRPCSerializer.TAG_VALUE).endTag(null, TAG_PARAM);
-                }
-                mSerializer.endTag(null, TAG_PARAMS);
-            }
-            mSerializer.endTag(null, TAG_METHOD_CALL);
-            mSerializer.endDocument();
-
-            HttpEntity entity = new StringEntity(bodyWriter.toString());
-            mPostMethod.setEntity(entity);
+            mPostMethod.setEntity(new XMLRPCRequestEntity(method, params));
         }
     }
 
     /**
-     * The Caller class is used to make asynchronous calls to the server.
-     * For synchronous calls the Thread function of this class isn't used.
+     * The Caller class is used to make synchronous calls to the server.
      */
-    private class Caller extends Thread {
-        private XMLRPCCallback listener;
-        private long threadId;
-        private String methodName;
-        private Object[] params;
-        private File tempFile;
-
-        /**
-         * Create a new Caller for asynchronous use.
-         *
-         * @param listener The listener to notice about the response or an error.
-         * @param threadId An id that will be send to the listener.
-         * @param methodName The method name to call.
-         * @param params The parameters of the call or null.
-         */
-        public Caller(XMLRPCCallback listener, long threadId, String methodName, Object[] params, File tempFile) {
-            this.listener = listener;
-            this.threadId = threadId;
-            this.methodName = methodName;
-            this.params = params;
-            this.tempFile = tempFile;
-        }
-
-        /**
-         * Create a new Caller for synchronous use.
-         * If the caller has been created with this constructor you cannot use the
-         * start method to start it as a thread. But you can call the call method
-         * on it for synchronous use.
-         */
-        public Caller() { }
-
-        /**
-         * The run method is invoked when the thread gets started.
-         * This will only work, if the Caller has been created with parameters.
-         * It execute the call method and notify the listener about the result.
-         */
-        @Override
-        public void run() {
-            if(listener == null)
-                return;
-
-            try {
-                backgroundCalls.put(threadId, this);
-                Object o = this.callXMLRPC(methodName, params, tempFile);
-                listener.onSuccess(threadId, o);
-            } catch(CancelException ex) {
-                // Don't notify the listener, if the call has been canceled.
-            } catch (Exception ex) {
-                listener.onFailure(threadId, ex);
-            } finally {
-                backgroundCalls.remove(threadId);
-            }
-
-        }
-
+    private class Caller {
         /**
          * Call method with optional parameters
          *
          * @param method name of method to call
          * @param params parameters to pass to method (may be null if method has no parameters)
-         * @return deserialized method return value
+         * @param visitor if not null, receives the response while it's parsed
+         * @return deserialized method return value, null if a visitor is used
          * @throws XMLRPCException
          */
-        private Object callXMLRPC(String method, Object[] params, File tempFile)
+        private Object callXMLRPC(String method, Object[] params, XMLRPCResponseVisitor visitor)
                 throws XMLRPCException, IOException, XmlPullParserException {
             mLoggedInputStream = null;
             try {
-                preparePostMethod(method, params, tempFile);
+                preparePostMethod(method, params);
 
                 // execute HTTP POST request
                 HttpResponse response = mClient.execute(mPostMethod);
@@ -494,7 +570,7 @@ public class XMLRPCClient implements XMLRPCClientInterface {
 
                 if (statusCode == HttpStatus.SC_OK) {
                     mLoggedInputStream = new LoggedInputStream(entity.getContent());
-                    return XMLRPCClient.parseXMLRPCResponse(mLoggedInputStream, entity);
+                    return XMLRPCClient.parseXMLRPCResponse(mLoggedInputStream, entity, visitor);
                 }
 
                 String statusLineReasonPhrase = StringUtils.notNullStr(response.getStatusLine().getReasonPhrase());
@@ -531,18 +607,7 @@ public class XMLRPCClient implements XMLRPCClientInterface {
                 if (mLoggedInputStream!=null) {
                     AppLog.w(T.API, "Response document received from the server: " + mLoggedInputStream.getResponseDocument());
                 }
-                // Detect login issues and broadcast a message if the error is known
-                switch (e.getFaultCode()) {
-                    case 403:
-                        EventBus.getDefault().post(new CoreEvents.InvalidCredentialsDetected());
-                        break;
-                    case 425:
-                        EventBus.getDefault().post(new CoreEvents.TwoFactorAuthenticationDetected());
-                        break;
-                    //TODO: Check the login limit here
-                    default:
-                        break;
-                }
+                postFaultEvent(e);
                 throw e;
             } catch (XmlPullParserException e) {
                 AppLog.e(T.API, "Error while parsing the XML-RPC response document received from the server.", e);
@@ -584,7 +649,6 @@ public class XMLRPCClient implements XMLRPCClientInterface {
             } catch (IOException e) {
                 throw e;
             } finally {
-                deleteTempFile(method, tempFile);
                 try {
                     if (mLoggedInputStream != null) {
                         mLoggedInputStream.close();
@@ -595,6 +659,25 @@ public class XMLRPCClient implements XMLRPCClientInterface {
         }
     }
 
+    /**
+     * Detect login issues and broadcast a message if the error is known
+     *
+     * @return true if an event was broadcasted
+     */
+    private boolean postFaultEvent(XMLRPCFault fault) {
+        switch (fault.getFaultCode()) {
+            case 403:
+                EventBus.getDefault().post(new CoreEvents.InvalidCredentialsDetected());
+                return true;
+            case 425:
+                EventBus.getDefault().post(new CoreEvents.TwoFactorAuthenticationDetected());
+                return true;
+            //TODO: Check the login limit here
+            default:
+                return false;
+        }
+    }
+
     /**
      * Detect login issues and broadcast a message if the error is known, App Activities should listen to these
      * broadcasted events and present user action to take
@@ -611,14 +694,6 @@ public class XMLRPCClient implements XMLRPCClientInterface {
         return false;
     }
 
-    private void deleteTempFile(String method, File tempFile) {
-        if (tempFile != null) {
-            if ((method.equals("wp.uploadFile"))){ //get rid of the temp file
-                tempFile.delete();
-            }
-        }
-    }
-
     private void addWPComAuthorizationHeaderIfNeeded() {
         Context ctx = WordPress.getContext();
         if (ctx == null) return;
@@ -645,42 +720,17 @@ public class XMLRPCClient implements XMLRPCClientInterface {
         return path.equals("/xmlrpc.php") && host.endsWith("wordpress.com") && protocol.equals("https");
     }
 
-    private class CancelException extends RuntimeException {
-        private static final long serialVersionUID = 1L;
-    }
-
-    private class CountingOutputStream extends FilterOutputStream {
-
-        private long mTotalBytes;
-
-        CountingOutputStream(final OutputStream out) {
-            super(out);
-        }
-
-        @Override
-        public void write(int b) throws IOException {
-            out.write(b);
-        }
-
-        @Override
-        public void write(byte[] b) throws IOException {
-            out.write(b);
-            mTotalBytes += b.length;
-
-            if (mOnBytesUploadedListener != null) {
-                mOnBytesUploadedListener.onBytesUploaded(mTotalBytes);
-            }
-        }
-
-        @Override
-        public void write(byte[] b, int off, int len) throws IOException {
-            out.write(b, off, len);
-            mTotalBytes += len;
-
-            if (mOnBytesUploadedListener != null) {
-                mOnBytesUploadedListener.onBytesUploaded(mTotalBytes);
-            }
+    /**
+     * An aborted HttpPost can't be executed again, replace it by a new one with the same headers
+     */
+    private void resetPostMethodIfAborted() {
+        if (!mPostMethod.isAborted()) {
+            return;
         }
+        HttpPost postMethod = new HttpPost(mPostMethod.getURI());
+        postMethod.setHeaders(mPostMethod.getAllHeaders());
+        postMethod.setParams(mPostMethod.getParams());
+        mPostMethod = postMethod;
     }
 
     public void setOnBytesUploadedListener(OnBytesUploadedListener listener) {
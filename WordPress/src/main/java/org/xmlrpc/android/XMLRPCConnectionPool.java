@@ -0,0 +1,138 @@
+package org.xmlrpc.android;
+
+import android.content.Context;
+import android.net.SSLSessionCache;
+
+import org.apache.http.conn.ClientConnectionManager;
+import org.apache.http.conn.params.ConnManagerParams;
+import org.apache.http.conn.params.ConnPerRouteBean;
+import org.apache.http.conn.scheme.PlainSocketFactory;
+import org.apache.http.conn.scheme.Scheme;
+import org.apache.http.conn.scheme.SchemeRegistry;
+import org.apache.http.conn.ssl.SSLSocketFactory;
+import org.apache.http.impl.conn.tsccm.ThreadSafeClientConnManager;
+import org.apache.http.params.BasicHttpParams;
+import org.apache.http.params.HttpParams;
+import org.wordpress.android.WordPress;
+import org.wordpress.android.util.AppLog;
+import org.wordpress.android.util.AppLog.T;
+
+import java.io.IOException;
+import java.net.URI;
+import java.security.GeneralSecurityException;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Process wide pool of keep-alive connections shared by all the XMLRPCClient instances.
+ *
+ * There's one thread safe connection manager per scheme, host, port and trust settings, so consecutive calls to
+ * the same blog reuse the same TCP connection, and new TLS connections resume the previous TLS session. Clients
+ * only share connections: credentials and headers are still set on each client.
+ *
+ * Idle connections are closed lazily, when a connection manager is requested.
+ */
+public class XMLRPCConnectionPool {
+    private static final int MAX_CONNECTIONS_PER_HOST = 4;
+    private static final long IDLE_CONNECTION_TIMEOUT_MS = 60 * 1000;
+    private static final long EVICTION_INTERVAL_MS = 30 * 1000;
+
+    private static final Map<String, ClientConnectionManager> sConnectionManagers =
+            new HashMap<String, ClientConnectionManager>();
+    private static SSLSessionCache sSSLSessionCache;
+    private static long sLastEvictionTime;
+
+    /**
+     * Returns the shared connection manager for this endpoint
+     *
+     * @param uri endpoint
+     * @param trustUserCerts true to accept the self-signed certificates trusted by the user on this endpoint
+     */
+    static synchronized ClientConnectionManager getConnectionManager(URI uri, boolean trustUserCerts) {
+        evictIdleConnectionsIfNeeded();
+
+        String key = getKey(uri, trustUserCerts);
+        ClientConnectionManager connectionManager = sConnectionManagers.get(key);
+        if (connectionManager == null) {
+            connectionManager = createConnectionManager(uri, trustUserCerts);
+            sConnectionManagers.put(key, connectionManager);
+        }
+        return connectionManager;
+    }
+
+    /**
+     * Drop all the pooled connection managers, so the next clients get new ones. Must be called when the trusted
+     * certificates change, since the socket factories are created with the trust store available at that time.
+     *
+     * The dropped managers aren't shut down: existing clients still use them, and their running calls must not
+     * fail. Only their idle connections are closed, the managers are shut down once garbage collected.
+     */
+    public static synchronized void reset() {
+        for (ClientConnectionManager connectionManager : sConnectionManagers.values()) {
+            connectionManager.closeIdleConnections(0, TimeUnit.MILLISECONDS);
+        }
+        sConnectionManagers.clear();
+    }
+
+    private static String getKey(URI uri, boolean trustUserCerts) {
+        String scheme = uri.getScheme() != null ? uri.getScheme().toLowerCase(Locale.US) : "http";
+        String host = uri.getHost() != null ? uri.getHost().toLowerCase(Locale.US) : "";
+        return scheme + "://" + host + ":" + getPort(uri) + (trustUserCerts ? "#user-trust" : "#default-trust");
+    }
+
+    private static int getPort(URI uri) {
+        if (uri.getPort() != -1) {
+            return uri.getPort();
+        }
+        return "https".equalsIgnoreCase(uri.getScheme()) ? 443 : 80;
+    }
+
+    private static ClientConnectionManager createConnectionManager(URI uri, boolean trustUserCerts) {
+        SchemeRegistry schemeRegistry = new SchemeRegistry();
+        schemeRegistry.register(new Scheme("http", PlainSocketFactory.getSocketFactory(), 80));
+
+        Scheme httpsScheme = null;
+        if (trustUserCerts) {
+            try {
+                TrustUserSSLCertsSocketFactory socketFactory = new TrustUserSSLCertsSocketFactory(getSSLSessionCache());
+                httpsScheme = new Scheme("https", socketFactory, getPort(uri));
+            } catch (GeneralSecurityException e) {
+                AppLog.e(T.API, "Cannot create the connection manager with our TrustAllSSLSocketFactory", e);
+            } catch (IOException e) {
+                AppLog.e(T.API, "Cannot create the connection manager with our TrustAllSSLSocketFactory", e);
+            }
+        }
+        if (httpsScheme == null) {
+            httpsScheme = new Scheme("https", SSLSocketFactory.getSocketFactory(), 443);
+        }
+        schemeRegistry.register(httpsScheme);
+
+        HttpParams params = new BasicHttpParams();
+        ConnManagerParams.setMaxTotalConnections(params, MAX_CONNECTIONS_PER_HOST);
+        ConnManagerParams.setMaxConnectionsPerRoute(params, new ConnPerRouteBean(MAX_CONNECTIONS_PER_HOST));
+        return new ThreadSafeClientConnManager(params, schemeRegistry);
+    }
+
+    private static SSLSessionCache getSSLSessionCache() {
+        if (sSSLSessionCache == null) {
+            Context context = WordPress.getContext();
+            if (context != null) {
+                sSSLSessionCache = new SSLSessionCache(context);
+            }
+        }
+        return sSSLSessionCache;
+    }
+
+    private static void evictIdleConnectionsIfNeeded() {
+        long now = System.currentTimeMillis();
+        if (now - sLastEvictionTime < EVICTION_INTERVAL_MS) {
+            return;
+        }
+        sLastEvictionTime = now;
+        for (ClientConnectionManager connectionManager : sConnectionManagers.values()) {
+            connectionManager.closeIdleConnections(IDLE_CONNECTION_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+}
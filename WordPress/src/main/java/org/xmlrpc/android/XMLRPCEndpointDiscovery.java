@@ -0,0 +1,364 @@
+package org.xmlrpc.android;
+
+import android.text.TextUtils;
+
+import org.wordpress.android.util.AppLog;
+import org.wordpress.android.util.AppLog.T;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import javax.net.ssl.SSLHandshakeException;
+
+/**
+ * Discovery of the XML-RPC endpoint of a self-hosted site.
+ *
+ * Documents are scanned tag by tag while they're downloaded: the home page is only read until its RSD link (or the
+ * end of its head) is found, and is never held in memory. Endpoints found are cached per site for a while, so
+ * signing in again to the same site doesn't fetch its home page again.
+ */
+public class XMLRPCEndpointDiscovery {
+    private static final long CACHE_TTL_MS = 30 * 60 * 1000;
+    private static final int CACHE_MAX_ENTRIES = 20;
+    private static final int MAX_TAG_LENGTH = 8 * 1024;
+    private static final int BUFFER_SIZE = 8 * 1024;
+    private static final String DEFAULT_CHARSET = "UTF-8";
+
+    private static final Map<String, CachedEndpoint> sCachedEndpoints =
+            new LinkedHashMap<String, CachedEndpoint>(CACHE_MAX_ENTRIES, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, CachedEndpoint> eldest) {
+                    return size() > CACHE_MAX_ENTRIES;
+                }
+            };
+
+    private static class CachedEndpoint {
+        final String mXmlrpcUrl;
+        final long mTimestamp;
+
+        CachedEndpoint(String xmlrpcUrl) {
+            mXmlrpcUrl = xmlrpcUrl;
+            mTimestamp = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * @return the XML-RPC endpoint found for this site less than CACHE_TTL_MS ago, or null
+     */
+    public static String getCachedXmlrpcUrl(String siteUrl) {
+        String key = getCacheKey(siteUrl);
+        if (key == null) {
+            return null;
+        }
+        synchronized (sCachedEndpoints) {
+            CachedEndpoint cachedEndpoint = sCachedEndpoints.get(key);
+            if (cachedEndpoint == null) {
+                return null;
+            }
+            if (System.currentTimeMillis() - cachedEndpoint.mTimestamp > CACHE_TTL_MS) {
+                sCachedEndpoints.remove(key);
+                return null;
+            }
+            return cachedEndpoint.mXmlrpcUrl;
+        }
+    }
+
+    public static void cacheXmlrpcUrl(String siteUrl, String xmlrpcUrl) {
+        String key = getCacheKey(siteUrl);
+        if (key == null || TextUtils.isEmpty(xmlrpcUrl)) {
+            return;
+        }
+        synchronized (sCachedEndpoints) {
+            sCachedEndpoints.put(key, new CachedEndpoint(xmlrpcUrl));
+        }
+    }
+
+    /**
+     * Forget the endpoint of this site, call it when the endpoint doesn't work anymore
+     */
+    public static void invalidate(String siteUrl) {
+        String key = getCacheKey(siteUrl);
+        if (key == null) {
+            return;
+        }
+        synchronized (sCachedEndpoints) {
+            sCachedEndpoints.remove(key);
+        }
+    }
+
+    private static String getCacheKey(String siteUrl) {
+        if (TextUtils.isEmpty(siteUrl)) {
+            return null;
+        }
+        String key = siteUrl.trim().toLowerCase(Locale.US);
+        while (key.endsWith("/")) {
+            key = key.substring(0, key.length() - 1);
+        }
+        return key;
+    }
+
+    /**
+     * Returns the RSD URL advertised by the EditURI link of a site's home page. The page is only read until the
+     * link or the end of the head is found.
+     *
+     * @param siteUrl URL of the home page
+     * @return RSD URL, or null if the page couldn't be fetched or doesn't advertise one
+     */
+    public static String getRsdUrl(String siteUrl) throws SSLHandshakeException {
+        HttpURLConnection urlConnection = null;
+        try {
+            urlConnection = openConnection(siteUrl);
+            TagScanner scanner = new TagScanner(getReader(urlConnection));
+            String tag;
+            while ((tag = scanner.nextTag()) != null) {
+                String name = getTagName(tag);
+                if (name.equals("link")) {
+                    Map<String, String> attributes = getAttributes(tag);
+                    String type = attributes.get("type");
+                    if ("EditURI".equalsIgnoreCase(attributes.get("rel"))
+                            && (type == null || type.equalsIgnoreCase("application/rsd+xml"))
+                            && !TextUtils.isEmpty(attributes.get("href"))) {
+                        return attributes.get("href");
+                    }
+                } else if (name.equals("/head") || name.equals("body")) {
+                    // the link must be in the head, don't download the rest of the page
+                    return null;
+                } else if (name.equals("script") || name.equals("style")) {
+                    if (!tag.endsWith("/")) {
+                        scanner.skipUntil("</" + name);
+                    }
+                }
+            }
+        } catch (SSLHandshakeException e) {
+            throw e;
+        } catch (IOException e) {
+            AppLog.e(T.API, e);
+        } finally {
+            if (urlConnection != null) {
+                urlConnection.disconnect();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the WordPress API link of an RSD document
+     *
+     * @param rsdUrl URL of the RSD document
+     * @return XML-RPC endpoint, or null if the document couldn't be fetched or doesn't list the WordPress API
+     */
+    public static String getXmlrpcUrl(String rsdUrl) throws SSLHandshakeException {
+        HttpURLConnection urlConnection = null;
+        try {
+            urlConnection = openConnection(rsdUrl);
+            TagScanner scanner = new TagScanner(getReader(urlConnection));
+            String tag;
+            while ((tag = scanner.nextTag()) != null) {
+                if (getTagName(tag).equals("api")) {
+                    Map<String, String> attributes = getAttributes(tag);
+                    if ("WordPress".equalsIgnoreCase(attributes.get("name"))
+                            && !TextUtils.isEmpty(attributes.get("apilink"))) {
+                        return attributes.get("apilink");
+                    }
+                }
+            }
+        } catch (SSLHandshakeException e) {
+            throw e;
+        } catch (IOException e) {
+            AppLog.e(T.API, e);
+        } finally {
+            if (urlConnection != null) {
+                urlConnection.disconnect();
+            }
+        }
+        return null;
+    }
+
+    private static HttpURLConnection openConnection(String stringUrl) throws IOException {
+        URL url = new URL(stringUrl);
+        HttpURLConnection urlConnection = (HttpURLConnection) url.openConnection();
+        urlConnection.setInstanceFollowRedirects(true);
+        return urlConnection;
+    }
+
+    private static Reader getReader(HttpURLConnection urlConnection) throws IOException {
+        InputStream inputStream = urlConnection.getInputStream();
+        String charset = DEFAULT_CHARSET;
+        String contentType = urlConnection.getContentType();
+        if (contentType != null) {
+            for (String param : contentType.split(";")) {
+                param = param.trim();
+                if (param.toLowerCase(Locale.US).startsWith("charset=")) {
+                    charset = param.substring("charset=".length()).replace("\"", "").trim();
+                }
+            }
+        }
+        try {
+            return new BufferedReader(new InputStreamReader(inputStream, charset), BUFFER_SIZE);
+        } catch (IOException e) {
+            // unsupported charset
+            return new BufferedReader(new InputStreamReader(inputStream, DEFAULT_CHARSET), BUFFER_SIZE);
+        }
+    }
+
+    /**
+     * @return lower case name of the tag, starting with '/' for end tags
+     */
+    private static String getTagName(String tag) {
+        int end = tag.startsWith("/") ? 1 : 0;
+        while (end < tag.length() && !Character.isWhitespace(tag.charAt(end)) && tag.charAt(end) != '/') {
+            end++;
+        }
+        return tag.substring(0, end).toLowerCase(Locale.US);
+    }
+
+    /**
+     * @return attributes of the tag, by lower case name
+     */
+    private static Map<String, String> getAttributes(String tag) {
+        Map<String, String> attributes = new HashMap<String, String>();
+        int length = tag.length();
+        int pos = getTagName(tag).length();
+        while (pos < length) {
+            // attribute name
+            while (pos < length && (Character.isWhitespace(tag.charAt(pos)) || tag.charAt(pos) == '/')) {
+                pos++;
+            }
+            int nameStart = pos;
+            while (pos < length && tag.charAt(pos) != '=' && !Character.isWhitespace(tag.charAt(pos))
+                    && tag.charAt(pos) != '/') {
+                pos++;
+            }
+            if (pos == nameStart) {
+                break;
+            }
+            String name = tag.substring(nameStart, pos).toLowerCase(Locale.US);
+            while (pos < length && Character.isWhitespace(tag.charAt(pos))) {
+                pos++;
+            }
+            if (pos >= length || tag.charAt(pos) != '=') {
+                // attribute without value
+                attributes.put(name, "");
+                continue;
+            }
+            pos++;
+            while (pos < length && Character.isWhitespace(tag.charAt(pos))) {
+                pos++;
+            }
+            // attribute value, quoted or not
+            String value;
+            if (pos < length && (tag.charAt(pos) == '"' || tag.charAt(pos) == '\'')) {
+                char quote = tag.charAt(pos++);
+                int valueEnd = tag.indexOf(quote, pos);
+                if (valueEnd == -1) {
+                    valueEnd = length;
+                }
+                value = tag.substring(pos, valueEnd);
+                pos = valueEnd + 1;
+            } else {
+                int valueStart = pos;
+                while (pos < length && !Character.isWhitespace(tag.charAt(pos))) {
+                    pos++;
+                }
+                value = tag.substring(valueStart, pos);
+            }
+            if (!attributes.containsKey(name)) {
+                attributes.put(name, value.replace("&amp;", "&"));
+            }
+        }
+        return attributes;
+    }
+
+    /**
+     * Reads the tags of an HTML or XML document one at a time, skipping text and comments
+     */
+    private static class TagScanner {
+        private final Reader mReader;
+        private final StringBuilder mTag = new StringBuilder();
+
+        TagScanner(Reader reader) {
+            mReader = reader;
+        }
+
+        /**
+         * @return content of the next tag, between '<' and '>', or null at the end of the document
+         */
+        String nextTag() throws IOException {
+            int c;
+            while ((c = mReader.read()) != -1) {
+                if (c != '<') {
+                    continue;
+                }
+                mTag.setLength(0);
+                char quote = 0;
+                boolean tooLong = false;
+                while ((c = mReader.read()) != -1) {
+                    if (quote != 0) {
+                        if (c == quote) {
+                            quote = 0;
+                        }
+                    } else if (c == '"' || c == '\'') {
+                        // only attribute values are quoted, "<p>don't</p>" isn't
+                        if (isAfterEqualSign()) {
+                            quote = (char) c;
+                        }
+                    } else if (c == '>') {
+                        break;
+                    }
+                    if (mTag.length() < MAX_TAG_LENGTH) {
+                        mTag.append((char) c);
+                    } else {
+                        tooLong = true;
+                    }
+                    if (mTag.length() == 3 && mTag.charAt(0) == '!' && mTag.charAt(1) == '-'
+                            && mTag.charAt(2) == '-') {
+                        skipUntil("-->");
+                        mTag.setLength(0);
+                        break;
+                    }
+                }
+                if (c == -1) {
+                    return null;
+                }
+                if (mTag.length() > 0 && !tooLong) {
+                    return mTag.toString();
+                }
+            }
+            return null;
+        }
+
+        private boolean isAfterEqualSign() {
+            for (int i = mTag.length() - 1; i >= 0; i--) {
+                if (!Character.isWhitespace(mTag.charAt(i))) {
+                    return mTag.charAt(i) == '=';
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Skip everything until the passed lower case string, included
+         */
+        void skipUntil(String end) throws IOException {
+            int matched = 0;
+            int c;
+            while (matched < end.length() && (c = mReader.read()) != -1) {
+                char lowerCase = Character.toLowerCase((char) c);
+                if (lowerCase == end.charAt(matched)) {
+                    matched++;
+                } else {
+                    matched = lowerCase == end.charAt(0) ? 1 : 0;
+                }
+            }
+        }
+    }
+}
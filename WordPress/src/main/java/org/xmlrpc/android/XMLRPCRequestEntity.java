@@ -0,0 +1,79 @@
+package org.xmlrpc.android;
+
+import android.util.Xml;
+
+import org.apache.http.entity.AbstractHttpEntity;
+import org.xmlpull.v1.XmlSerializer;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+/**
+ * HttpEntity that serializes an XML-RPC methodCall straight into the connection output stream when the request
+ * is sent, so the request body is never held in memory as a String.
+ *
+ * The length of the body isn't known before it's written, so it's sent with chunked transfer encoding. The entity
+ * is repeatable: the params are serialized again if the request has to be retried.
+ */
+class XMLRPCRequestEntity extends AbstractHttpEntity {
+    private static final int BUFFER_SIZE = 8192;
+
+    private final String mMethod;
+    private final Object[] mParams;
+
+    XMLRPCRequestEntity(String method, Object[] params) {
+        mMethod = method;
+        mParams = params;
+        setContentType("text/xml");
+        setChunked(true);
+    }
+
+    @Override
+    public boolean isRepeatable() {
+        return true;
+    }
+
+    @Override
+    public long getContentLength() {
+        return -1;
+    }
+
+    @Override
+    public boolean isStreaming() {
+        return false;
+    }
+
+    @Override
+    public InputStream getContent() throws IOException {
+        // Only used by code inspecting the entity (never by HttpClient when sending the request)
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        writeTo(outputStream);
+        return new ByteArrayInputStream(outputStream.toByteArray());
+    }
+
+    @Override
+    public void writeTo(OutputStream outstream) throws IOException {
+        if (outstream == null) {
+            throw new IllegalArgumentException("Output stream may not be null");
+        }
+        writeMethodCall(outstream, mMethod, mParams, true);
+    }
+
+    static void writeMethodCall(OutputStream outstream, String method, Object[] params, boolean writeMediaFiles)
+            throws IOException {
+        // The serializer escapes every non-ASCII character when writing to a Writer without a declared encoding,
+        // so the bytes on the wire are the same as the StringEntity body we used to send.
+        Writer writer = new BufferedWriter(new OutputStreamWriter(outstream, "UTF-8"), BUFFER_SIZE);
+        XmlSerializer serializer = Xml.newSerializer();
+        serializer.setOutput(writer);
+        XMLRPCSerializer.serializeMethodCall(serializer, method, params, writeMediaFiles);
+        // Don't close the writer, the output stream belongs to the connection
+        writer.flush();
+    }
+}
@@ -0,0 +1,46 @@
+package org.xmlrpc.android;
+
+import java.util.Map;
+
+/**
+ * Receives an XML-RPC response while it's parsed, see
+ * {@link XMLRPCClientInterface#callStreaming(String, Object[], XMLRPCResponseVisitor)}.
+ *
+ * If the response is an array, each element is passed to {@link #onArrayElement(int, Object)} as soon as it's
+ * parsed, then dropped: only one element is held in memory at a time. Struct responses are passed member by member
+ * to {@link #onStructMember(String, Object)}, any other response is passed to {@link #onValue(Object)}.
+ *
+ * Visitor methods are called on the thread making the call. Throw an XMLRPCException to stop the parsing.
+ */
+public abstract class XMLRPCResponseVisitor {
+    /**
+     * @param index position of the element in the response array
+     * @param element deserialized element (usually a Map)
+     */
+    public void onArrayElement(int index, Object element) throws XMLRPCException {
+    }
+
+    public void onStructMember(String name, Object value) throws XMLRPCException {
+    }
+
+    public void onValue(Object value) throws XMLRPCException {
+    }
+
+    /**
+     * Pass a response that has already been deserialized to this visitor
+     */
+    public void visit(Object response) throws XMLRPCException {
+        if (response instanceof Object[]) {
+            Object[] elements = (Object[]) response;
+            for (int i = 0; i < elements.length; i++) {
+                onArrayElement(i, elements[i]);
+            }
+        } else if (response instanceof Map) {
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) response).entrySet()) {
+                onStructMember(String.valueOf(entry.getKey()), entry.getValue());
+            }
+        } else {
+            onValue(response);
+        }
+    }
+}
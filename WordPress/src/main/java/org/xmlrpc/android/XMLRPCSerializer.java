@@ -1,25 +1,21 @@
 package org.xmlrpc.android;
 
-import android.text.TextUtils;
 import android.util.Base64;
-import android.util.Xml;
 
 import org.wordpress.android.util.helpers.MediaFile;
 import org.wordpress.android.util.AppLog;
 import org.wordpress.android.util.AppLog.T;
+import org.wordpress.android.util.Iso8601Utils;
 import org.wordpress.android.util.StringUtils;
 import org.xmlpull.v1.XmlPullParser;
 import org.xmlpull.v1.XmlPullParserException;
 import org.xmlpull.v1.XmlSerializer;
 
 import java.io.BufferedReader;
-import java.io.DataInputStream;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.StringReader;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Date;
@@ -28,9 +24,12 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.SimpleTimeZone;
 
 class XMLRPCSerializer {
+    static final String TAG_METHOD_CALL = "methodCall";
+    static final String TAG_METHOD_NAME = "methodName";
+    static final String TAG_PARAMS = "params";
+    static final String TAG_PARAM = "param";
     static final String TAG_NAME = "name";
     static final String TAG_MEMBER = "member";
     static final String TAG_VALUE = "value";
@@ -47,26 +46,56 @@ class XMLRPCSerializer {
     static final String TYPE_ARRAY = "array";
     static final String TYPE_STRUCT = "struct";
 
-    static SimpleDateFormat dateFormat = new SimpleDateFormat("yyyyMMdd'T'HH:mm:ss");
-    static Calendar cal = Calendar.getInstance(new SimpleTimeZone(0, "GMT"));
+    // Must be a multiple of 3, so a chunk never ends with Base64 padding
+    private static final int BASE64_CHUNK_SIZE = 3 * 4096;
 
-    private static final XmlSerializer serializeTester;
+    /**
+     * Write a complete XML-RPC methodCall document (method name and params) to the serializer. The serializer
+     * output must already be set.
+     */
+    static void serializeMethodCall(XmlSerializer serializer, String method, Object[] params) throws IOException {
+        serializeMethodCall(serializer, method, params, true);
+    }
 
-    static {
-        serializeTester = Xml.newSerializer();
-        try {
-            serializeTester.setOutput(new NullOutputStream(), "UTF-8");
-        } catch (IllegalArgumentException e) {
-            AppLog.e(AppLog.T.EDITOR, "IllegalArgumentException setting test serializer output stream", e );
-        } catch (IllegalStateException e) {
-            AppLog.e(AppLog.T.EDITOR, "IllegalStateException setting test serializer output stream", e );
-        } catch (IOException e) {
-            AppLog.e(AppLog.T.EDITOR, "IOException setting test serializer output stream", e );
+    /**
+     * Same as {@link #serializeMethodCall(XmlSerializer, String, Object[])}, but the content of the MediaFile params
+     * can be left out. Leaving it out only removes the Base64 text of the files: the rest of the document is the
+     * same, so it can be used to compute the length of the full document (see {@link #getBase64Length(long)}).
+     */
+    static void serializeMethodCall(XmlSerializer serializer, String method, Object[] params, boolean writeMediaFiles)
+            throws IOException {
+        serializer.startDocument(null, null);
+        serializer.startTag(null, TAG_METHOD_CALL);
+        // set method name
+        serializer.startTag(null, TAG_METHOD_NAME).text(method).endTag(null, TAG_METHOD_NAME);
+        if (params != null && params.length != 0) {
+            // set method params
+            serializer.startTag(null, TAG_PARAMS);
+            for (int i = 0; i < params.length; i++) {
+                serializer.startTag(null, TAG_PARAM).startTag(null, TAG_VALUE);
+                serialize(serializer, params[i], writeMediaFiles);
+                serializer.endTag(null, TAG_VALUE).endTag(null, TAG_PARAM);
+            }
+            serializer.endTag(null, TAG_PARAMS);
         }
+        serializer.endTag(null, TAG_METHOD_CALL);
+        serializer.endDocument();
     }
 
-    @SuppressWarnings("unchecked")
     static void serialize(XmlSerializer serializer, Object object) throws IOException {
+        serialize(serializer, object, true);
+    }
+
+    /**
+     * Length of the Base64 text written for a MediaFile of fileLength bytes
+     */
+    static long getBase64Length(long fileLength) {
+        return 4 * ((fileLength + 2) / 3);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void serialize(XmlSerializer serializer, Object object, boolean writeMediaFiles)
+            throws IOException {
         // check for scalar types:
         if (object instanceof Integer || object instanceof Short || object instanceof Byte) {
             serializer.startTag(null, TYPE_I4).text(object.toString()).endTag(null, TYPE_I4);
@@ -89,10 +118,8 @@ class XMLRPCSerializer {
             serializer.startTag(null, TYPE_STRING).text(makeValidInputString((String) object)).endTag(null, TYPE_STRING);
         } else
         if (object instanceof Date || object instanceof Calendar) {
-            Date date = (Date) object;
-            SimpleDateFormat dateFormat = new SimpleDateFormat("yyyyMMdd'T'HH:mm:ss");
-            dateFormat.setCalendar(cal);
-            String sDate = dateFormat.format(date);
+            Date date = object instanceof Calendar ? ((Calendar) object).getTime() : (Date) object;
+            String sDate = Iso8601Utils.formatXmlRpcDate(date);
             serializer.startTag(null, TYPE_DATE_TIME_ISO8601).text(sDate).endTag(null, TYPE_DATE_TIME_ISO8601);
         } else
         if (object instanceof byte[] ){
@@ -104,21 +131,15 @@ class XMLRPCSerializer {
                 throw new IOException("Out of memory");
             }
         }
-        else if( object instanceof MediaFile ) {
-            //convert media file binary to base64
-            serializer.startTag( null, "base64" );
-            MediaFile mediaFile = (MediaFile) object;
-            InputStream inStream = new DataInputStream(new FileInputStream(mediaFile.getFilePath()));
-            byte[] buffer = new byte[3600];//you must use a 24bit multiple
-            int length = -1;
-            String chunk = null;
-            while ((length = inStream.read(buffer)) > 0) {
-                chunk = Base64.encodeToString(buffer, 0, length, Base64.DEFAULT);
-                serializer.text(chunk);
+        else if (object instanceof MediaFile) {
+            serializer.startTag(null, TYPE_BASE64);
+            // Close the start tag even if there's no content, so the tag is always written the same way
+            serializer.text("");
+            if (writeMediaFiles) {
+                writeBase64(serializer, ((MediaFile) object).getFilePath());
             }
-            inStream.close();
-            serializer.endTag(null, "base64");
-        }else
+            serializer.endTag(null, TYPE_BASE64);
+        } else
         if (object instanceof List<?>) {
             serializer.startTag(null, TYPE_ARRAY).startTag(null, TAG_DATA);
             List<Object> list = (List<Object>) object;
@@ -126,7 +147,7 @@ class XMLRPCSerializer {
             while (iter.hasNext()) {
                 Object o = iter.next();
                 serializer.startTag(null, TAG_VALUE);
-                serialize(serializer, o);
+                serialize(serializer, o, writeMediaFiles);
                 serializer.endTag(null, TAG_VALUE);
             }
             serializer.endTag(null, TAG_DATA).endTag(null, TYPE_ARRAY);
@@ -137,7 +158,7 @@ class XMLRPCSerializer {
             for (int i=0; i<objects.length; i++) {
                 Object o = objects[i];
                 serializer.startTag(null, TAG_VALUE);
-                serialize(serializer, o);
+                serialize(serializer, o, writeMediaFiles);
                 serializer.endTag(null, TAG_VALUE);
             }
             serializer.endTag(null, TAG_DATA).endTag(null, TYPE_ARRAY);
@@ -154,7 +175,7 @@ class XMLRPCSerializer {
                 serializer.startTag(null, TAG_MEMBER);
                 serializer.startTag(null, TAG_NAME).text(key).endTag(null, TAG_NAME);
                 serializer.startTag(null, TAG_VALUE);
-                serialize(serializer, value);
+                serialize(serializer, value, writeMediaFiles);
                 serializer.endTag(null, TAG_VALUE);
                 serializer.endTag(null, TAG_MEMBER);
             }
@@ -164,36 +185,46 @@ class XMLRPCSerializer {
         }
     }
 
-    private static final String makeValidInputString(final String input) throws IOException {
-        if (TextUtils.isEmpty(input))
-            return "";
-
-        if (serializeTester == null)
-            return input;
-
+    /**
+     * Base64 encode the file straight into the serializer, one chunk at a time. The text is written without line
+     * breaks, so its length is exactly {@link #getBase64Length(long)}.
+     */
+    private static void writeBase64(XmlSerializer serializer, String filePath) throws IOException {
+        InputStream inStream = new FileInputStream(filePath);
         try {
-            // try to encode the string as-is, 99.9% of the time it's OK
-            serializeTester.text(input);
-            return input;
-        } catch (IllegalArgumentException e) {
-            // There are characters outside the XML unicode charset as specified by the XML 1.0 standard
-            // See http://www.w3.org/TR/2000/REC-xml-20001006#NT-Char
-            AppLog.e(AppLog.T.EDITOR, "There are characters outside the XML unicode charset as specified by the XML 1.0 standard", e );
+            byte[] buffer = new byte[BASE64_CHUNK_SIZE];
+            int length;
+            while ((length = readChunk(inStream, buffer)) > 0) {
+                serializer.text(Base64.encodeToString(buffer, 0, length, Base64.NO_WRAP));
+            }
+        } finally {
+            inStream.close();
         }
+    }
 
-        // We need to do the following things:
-        // 1. Replace surrogates with HTML Entity.
-        // 2. Replace emoji with their textual versions (if available on WP)
-        // 3. Try to serialize the resulting string.
-        // 4. If it fails again, strip characters that are not allowed in XML 1.0
-        final String noEmojiString = StringUtils.replaceUnicodeSurrogateBlocksWithHTMLEntities(input);
-        try {
-            serializeTester.text(noEmojiString);
-            return noEmojiString;
-        } catch (IllegalArgumentException e) {
-            AppLog.e(AppLog.T.EDITOR, "noEmojiString still contains characters outside the XML unicode charset as specified by the XML 1.0 standard", e );
-            return StringUtils.stripNonValidXMLCharacters(noEmojiString);
+    /**
+     * Fill the buffer unless the end of the stream is reached: only the last chunk of a file can be padded
+     */
+    private static int readChunk(InputStream inStream, byte[] buffer) throws IOException {
+        int total = 0;
+        while (total < buffer.length) {
+            int read = inStream.read(buffer, total, buffer.length - total);
+            if (read == -1) {
+                break;
+            }
+            total += read;
+        }
+        return total;
+    }
+
+    private static String makeValidInputString(final String input) {
+        // There may be characters outside the XML unicode charset as specified by the XML 1.0 standard
+        // See http://www.w3.org/TR/2000/REC-xml-20001006#NT-Char
+        final String validString = StringUtils.makeValidXMLText(input);
+        if (validString != input) {
+            AppLog.w(AppLog.T.EDITOR, "Replaced characters outside the XML unicode charset as specified by the XML 1.0 standard");
         }
+        return validString;
     }
 
     static Object deserialize(XmlPullParser parser) throws XmlPullParserException, IOException, NumberFormatException {
@@ -202,6 +233,71 @@ class XMLRPCSerializer {
         parser.nextTag();
         String typeNodeName = parser.getName();
 
+        Object obj = deserializeType(parser, typeNodeName);
+        parser.nextTag(); // TAG_VALUE (</value>)
+        parser.require(XmlPullParser.END_TAG, null, TAG_VALUE);
+        return obj;
+    }
+
+    /**
+     * Deserialize a value, and hand it to the visitor as it's parsed: if the value is an array or a struct, each
+     * element or member is passed to the visitor as soon as it's deserialized, so the whole array or struct is never
+     * held in memory.
+     */
+    static void deserialize(XmlPullParser parser, XMLRPCResponseVisitor visitor)
+            throws XmlPullParserException, IOException, NumberFormatException, XMLRPCException {
+        parser.require(XmlPullParser.START_TAG, null, TAG_VALUE);
+
+        parser.nextTag();
+        String typeNodeName = parser.getName();
+
+        if (typeNodeName.equals(TYPE_ARRAY)) {
+            parser.nextTag(); // TAG_DATA (<data>)
+            parser.require(XmlPullParser.START_TAG, null, TAG_DATA);
+
+            parser.nextTag();
+            int index = 0;
+            while (parser.getName().equals(TAG_VALUE)) {
+                visitor.onArrayElement(index++, deserialize(parser));
+                parser.nextTag();
+            }
+            parser.require(XmlPullParser.END_TAG, null, TAG_DATA);
+            parser.nextTag(); // TAG_ARRAY (</array>)
+            parser.require(XmlPullParser.END_TAG, null, TYPE_ARRAY);
+        } else
+        if (typeNodeName.equals(TYPE_STRUCT)) {
+            parser.nextTag();
+            while (parser.getName().equals(TAG_MEMBER)) {
+                String memberName = null;
+                Object memberValue = null;
+                while (true) {
+                    parser.nextTag();
+                    String name = parser.getName();
+                    if (name.equals(TAG_NAME)) {
+                        memberName = parser.nextText();
+                    } else
+                    if (name.equals(TAG_VALUE)) {
+                        memberValue = deserialize(parser);
+                    } else {
+                        break;
+                    }
+                }
+                if (memberName != null && memberValue != null) {
+                    visitor.onStructMember(memberName, memberValue);
+                }
+                parser.require(XmlPullParser.END_TAG, null, TAG_MEMBER);
+                parser.nextTag();
+            }
+            parser.require(XmlPullParser.END_TAG, null, TYPE_STRUCT);
+        } else {
+            visitor.onValue(deserializeType(parser, typeNodeName));
+        }
+        parser.nextTag(); // TAG_VALUE (</value>)
+        parser.require(XmlPullParser.END_TAG, null, TAG_VALUE);
+    }
+
+    private static Object deserializeType(XmlPullParser parser, String typeNodeName)
+            throws XmlPullParserException, IOException, NumberFormatException {
         Object obj;
         if (typeNodeName.equals(TYPE_INT) || typeNodeName.equals(TYPE_I4)) {
             String value = parser.nextText();
@@ -228,12 +324,12 @@ class XMLRPCSerializer {
             obj = parser.nextText();
         } else
         if (typeNodeName.equals(TYPE_DATE_TIME_ISO8601)) {
-            dateFormat.setCalendar(cal);
             String value = parser.nextText();
-            try {
-                obj = dateFormat.parseObject(value);
-            } catch (ParseException e) {
-                AppLog.e(T.API, e);
+            Date date = Iso8601Utils.parseXmlRpcDate(value);
+            if (date != null) {
+                obj = date;
+            } else {
+                AppLog.e(T.API, "Unparseable dateTime.iso8601 value: " + value);
                 obj = value;
             }
         } else
@@ -291,8 +387,6 @@ class XMLRPCSerializer {
         } else {
             throw new IOException("Cannot deserialize " + parser.getName());
         }
-        parser.nextTag(); // TAG_VALUE (</value>)
-        parser.require(XmlPullParser.END_TAG, null, TAG_VALUE);
         return obj;
     }
 }
@@ -0,0 +1,140 @@
+package org.xmlrpc.android;
+
+import org.apache.http.entity.AbstractHttpEntity;
+import org.wordpress.android.util.helpers.MediaFile;
+import org.xmlrpc.android.XMLRPCClient.OnBytesUploadedListener;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * HttpEntity for wp.uploadFile: the media files are Base64 encoded while the request is sent, so the request body
+ * is never written to a temporary file.
+ *
+ * The exact length of the body is computed up front (without reading the media files), so the request is sent with
+ * a Content-Length header and the upload progress can be reported against it.
+ */
+class XMLRPCUploadEntity extends AbstractHttpEntity {
+    private final String mMethod;
+    private final Object[] mParams;
+    private final long mContentLength;
+    private final OnBytesUploadedListener mOnBytesUploadedListener;
+
+    XMLRPCUploadEntity(String method, Object[] params, OnBytesUploadedListener listener) throws IOException {
+        mMethod = method;
+        mParams = params;
+        mOnBytesUploadedListener = listener;
+        mContentLength = computeContentLength(method, params);
+        setContentType("text/xml");
+    }
+
+    @Override
+    public boolean isRepeatable() {
+        return true;
+    }
+
+    @Override
+    public long getContentLength() {
+        return mContentLength;
+    }
+
+    @Override
+    public boolean isStreaming() {
+        return false;
+    }
+
+    @Override
+    public InputStream getContent() throws IOException {
+        // Only used by code inspecting the entity (never by HttpClient when sending the request)
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        writeTo(outputStream);
+        return new ByteArrayInputStream(outputStream.toByteArray());
+    }
+
+    @Override
+    public void writeTo(OutputStream outstream) throws IOException {
+        if (outstream == null) {
+            throw new IllegalArgumentException("Output stream may not be null");
+        }
+        CountingOutputStream countingOutputStream = new CountingOutputStream(outstream, mOnBytesUploadedListener,
+                mContentLength);
+        XMLRPCRequestEntity.writeMethodCall(countingOutputStream, mMethod, mParams, true);
+        if (countingOutputStream.getCount() != mContentLength) {
+            // A media file has been modified since the request was prepared
+            throw new IOException("Request body length mismatch, expected " + mContentLength + " bytes, wrote "
+                    + countingOutputStream.getCount());
+        }
+    }
+
+    private static long computeContentLength(String method, Object[] params) throws IOException {
+        CountingOutputStream countingOutputStream = new CountingOutputStream(new NullOutputStream(), null, -1);
+        XMLRPCRequestEntity.writeMethodCall(countingOutputStream, method, params, false);
+        return countingOutputStream.getCount() + getMediaFilesBase64Length(params);
+    }
+
+    private static long getMediaFilesBase64Length(Object object) throws IOException {
+        long length = 0;
+        if (object instanceof MediaFile) {
+            File file = new File(((MediaFile) object).getFilePath());
+            if (!file.isFile()) {
+                throw new IOException("Media file not found: " + file.getPath());
+            }
+            length += XMLRPCSerializer.getBase64Length(file.length());
+        } else if (object instanceof Object[]) {
+            for (Object element : (Object[]) object) {
+                length += getMediaFilesBase64Length(element);
+            }
+        } else if (object instanceof List<?>) {
+            for (Object element : (List<?>) object) {
+                length += getMediaFilesBase64Length(element);
+            }
+        } else if (object instanceof Map<?, ?>) {
+            for (Object value : ((Map<?, ?>) object).values()) {
+                length += getMediaFilesBase64Length(value);
+            }
+        }
+        return length;
+    }
+
+    private static class CountingOutputStream extends FilterOutputStream {
+        private final OnBytesUploadedListener mListener;
+        private final long mTotalBytes;
+        private long mCount;
+
+        CountingOutputStream(OutputStream out, OnBytesUploadedListener listener, long totalBytes) {
+            super(out);
+            mListener = listener;
+            mTotalBytes = totalBytes;
+        }
+
+        long getCount() {
+            return mCount;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            onBytesWritten(1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            onBytesWritten(len);
+        }
+
+        private void onBytesWritten(int count) {
+            mCount += count;
+            if (mListener != null) {
+                mListener.onBytesUploaded(mCount, mTotalBytes);
+            }
+        }
+    }
+}
@@ -230,10 +230,19 @@ public class RestClientUtils {
      */
     public Request<JSONObject> get(String path, Map<String, String> params, RetryPolicy retryPolicy, Listener listener,
                     ErrorListener errorListener) {
+        return get(path, params, retryPolicy, null, listener, errorListener);
+    }
+
+    /**
+     * Make GET request with params, the response body being read by the passed parser (if not null)
+     */
+    public Request<JSONObject> get(String path, Map<String, String> params, RetryPolicy retryPolicy,
+                                   RestRequest.BodyParser bodyParser, Listener listener, ErrorListener errorListener) {
         // turn params into querystring
 
         RestRequest request = mRestClient.makeRequest(Method.GET, mRestClient.getAbsoluteURL(path, params), null,
                                                       listener, errorListener);
+        request.setBodyParser(bodyParser);
         if (retryPolicy == null) {
             retryPolicy = new DefaultRetryPolicy(REST_TIMEOUT_MS, REST_MAX_RETRIES_GET, REST_BACKOFF_MULT);
         }
@@ -0,0 +1,131 @@
+package org.wordpress.android.util;
+
+import android.test.InstrumentationTestCase;
+
+import org.wordpress.android.util.AppLog.T;
+
+import java.text.DateFormat;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TimeZone;
+
+public class Iso8601UtilsTest extends InstrumentationTestCase {
+    private static final int BENCHMARK_ITERATIONS = 20000;
+
+    private DateFormat mIso8601Format;
+    private DateFormat mXmlRpcFormat;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mIso8601Format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ssZ", Locale.US);
+        mXmlRpcFormat = new SimpleDateFormat("yyyyMMdd'T'HH:mm:ss", Locale.US);
+        mXmlRpcFormat.setTimeZone(TimeZone.getTimeZone("GMT"));
+    }
+
+    public void testSameResultsAsSimpleDateFormat() throws ParseException {
+        Random random = new Random(42);
+        for (int i = 0; i < 5000; i++) {
+            // between 1900 and 2100, rounded to the second
+            Date date = new Date(((long) (random.nextDouble() * 6311433600000L) - 2208988800000L) / 1000 * 1000);
+
+            String iso8601 = mIso8601Format.format(date);
+            assertEquals(iso8601, Iso8601Utils.formatIso8601(date));
+            assertEquals(mIso8601Format.parse(iso8601), Iso8601Utils.parseIso8601(iso8601));
+
+            String xmlRpc = mXmlRpcFormat.format(date);
+            assertEquals(xmlRpc, Iso8601Utils.formatXmlRpcDate(date));
+            assertEquals(mXmlRpcFormat.parse(xmlRpc), Iso8601Utils.parseXmlRpcDate(xmlRpc));
+        }
+    }
+
+    public void testParseIso8601WithColonInOffset() {
+        Date date = Iso8601Utils.parseIso8601("2014-02-10T13:46:27+01:00");
+        assertEquals(Iso8601Utils.parseIso8601("2014-02-10T12:46:27+0000"), date);
+    }
+
+    public void testParseXmlRpcZeroDate() throws ParseException {
+        // drafts without a date are sent with a zero date
+        assertEquals(mXmlRpcFormat.parse("00000000T00:00:00"), Iso8601Utils.parseXmlRpcDate("00000000T00:00:00"));
+    }
+
+    public void testParseInvalidDatesReturnsNull() {
+        assertNull(Iso8601Utils.parseIso8601(null));
+        assertNull(Iso8601Utils.parseIso8601("not a date"));
+        assertNull(Iso8601Utils.parseXmlRpcDate(""));
+        assertNull(Iso8601Utils.parseXmlRpcDate("2014021"));
+    }
+
+    public void testFormatNullDate() {
+        assertEquals("", Iso8601Utils.formatIso8601(null));
+        assertEquals("", Iso8601Utils.formatXmlRpcDate(null));
+    }
+
+    /*
+     * compares the throughput of Iso8601Utils with the code it replaced: a new SimpleDateFormat for each
+     * serialized XML-RPC date, and a SimpleDateFormat per thread for the ISO 8601 dates
+     */
+    public void testBenchmark() throws ParseException {
+        String[] xmlRpcDates = new String[BENCHMARK_ITERATIONS];
+        String[] iso8601Dates = new String[BENCHMARK_ITERATIONS];
+        Date[] dates = new Date[BENCHMARK_ITERATIONS];
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < BENCHMARK_ITERATIONS; i++) {
+            dates[i] = new Date((now - i * 3600000L) / 1000 * 1000);
+            xmlRpcDates[i] = mXmlRpcFormat.format(dates[i]);
+            iso8601Dates[i] = mIso8601Format.format(dates[i]);
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < BENCHMARK_ITERATIONS; i++) {
+            DateFormat format = new SimpleDateFormat("yyyyMMdd'T'HH:mm:ss");
+            format.setTimeZone(TimeZone.getTimeZone("GMT"));
+            format.format(dates[i]);
+        }
+        long oldXmlRpcFormatTime = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < BENCHMARK_ITERATIONS; i++) {
+            Iso8601Utils.formatXmlRpcDate(dates[i]);
+        }
+        long newXmlRpcFormatTime = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < BENCHMARK_ITERATIONS; i++) {
+            mXmlRpcFormat.parse(xmlRpcDates[i]);
+        }
+        long oldXmlRpcParseTime = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < BENCHMARK_ITERATIONS; i++) {
+            Iso8601Utils.parseXmlRpcDate(xmlRpcDates[i]);
+        }
+        long newXmlRpcParseTime = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < BENCHMARK_ITERATIONS; i++) {
+            mIso8601Format.parse(iso8601Dates[i]);
+        }
+        long oldIso8601ParseTime = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < BENCHMARK_ITERATIONS; i++) {
+            Iso8601Utils.parseIso8601(iso8601Dates[i]);
+        }
+        long newIso8601ParseTime = System.nanoTime() - start;
+
+        logThroughput("XML-RPC format", oldXmlRpcFormatTime, newXmlRpcFormatTime);
+        logThroughput("XML-RPC parse", oldXmlRpcParseTime, newXmlRpcParseTime);
+        logThroughput("ISO 8601 parse", oldIso8601ParseTime, newIso8601ParseTime);
+    }
+
+    private void logThroughput(String name, long oldTimeNs, long newTimeNs) {
+        AppLog.i(T.TESTS, String.format(Locale.US, "%s: SimpleDateFormat %d/s, Iso8601Utils %d/s (x%.1f)", name,
+                BENCHMARK_ITERATIONS * 1000000000L / Math.max(oldTimeNs, 1),
+                BENCHMARK_ITERATIONS * 1000000000L / Math.max(newTimeNs, 1),
+                (double) oldTimeNs / Math.max(newTimeNs, 1)));
+    }
+}
@@ -0,0 +1,39 @@
+package org.wordpress.android.util;
+
+import android.test.InstrumentationTestCase;
+
+public class StringUtilsTest extends InstrumentationTestCase {
+    public void testMakeValidXMLTextReturnsValidInputItself() {
+        String text = "Hello <b>world</b> & caf\u00E9\t\n\r\uFFFD";
+        assertSame(text, StringUtils.makeValidXMLText(text));
+
+        // surrogate pairs are valid XML, they're only encoded when the text has to be rewritten
+        String emoji = "smile \uD83D\uDCA9";
+        assertSame(emoji, StringUtils.makeValidXMLText(emoji));
+    }
+
+    public void testMakeValidXMLTextWithNullOrEmptyInput() {
+        assertEquals("", StringUtils.makeValidXMLText(null));
+        assertEquals("", StringUtils.makeValidXMLText(""));
+    }
+
+    public void testMakeValidXMLTextEncodesSurrogatePairs() {
+        assertEquals("a&#x1f4a9;b", StringUtils.makeValidXMLText("a\uD83D\uDCA9b\u0000"));
+        assertEquals("&#x1f4a9;&#x1f4a9;", StringUtils.makeValidXMLText("\uD83D\uDCA9\u0001\uD83D\uDCA9"));
+
+        // known smilies are replaced with their text
+        assertEquals(":mrgreen:", StringUtils.makeValidXMLText("\uD83D\uDE00\u0002"));
+    }
+
+    public void testMakeValidXMLTextEncodesLoneSurrogates() {
+        assertEquals("a&#xd83d;b", StringUtils.makeValidXMLText("a\uD83Db"));
+        assertEquals("a&#xdca9;b", StringUtils.makeValidXMLText("a\uDCA9b"));
+        assertEquals("a&#xd83d;", StringUtils.makeValidXMLText("a\uD83D"));
+        assertEquals("&#xdca9;&#xd83d;", StringUtils.makeValidXMLText("\uDCA9\uD83D"));
+    }
+
+    public void testMakeValidXMLTextStripsDisallowedCharacters() {
+        assertEquals("abcdef", StringUtils.makeValidXMLText("a\u0000b\u0008c\u000Bd\u001Fe\uFFFEf\uFFFF"));
+        assertEquals("\ta\nb\r", StringUtils.makeValidXMLText("\ta\u000C\nb\r\u0007"));
+    }
+}
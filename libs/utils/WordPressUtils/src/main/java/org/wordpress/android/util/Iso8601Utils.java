@@ -0,0 +1,284 @@
+package org.wordpress.android.util;
+
+import java.text.DateFormat;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * Thread safe parsing and formatting of the ISO 8601 dates used by the WordPress APIs:
+ * - "yyyy-MM-dd'T'HH:mm:ssZ", used by the REST API (formatted in the local time zone)
+ * - "yyyyMMdd'T'HH:mm:ss", the XML-RPC dateTime.iso8601 type (always GMT)
+ *
+ * The usual values are converted with plain arithmetic, without creating a formatter or a Calendar for each call.
+ * Anything else (dates before the Gregorian calendar, out of range fields, other time zone notations...) is handed
+ * to a SimpleDateFormat kept per thread, so the results are always the same as SimpleDateFormat's.
+ */
+public class Iso8601Utils {
+    private static final long MILLIS_PER_SECOND = 1000;
+    private static final long MILLIS_PER_MINUTE = 60 * MILLIS_PER_SECOND;
+    private static final long MILLIS_PER_HOUR = 60 * MILLIS_PER_MINUTE;
+    private static final long MILLIS_PER_DAY = 24 * MILLIS_PER_HOUR;
+
+    // The arithmetic below uses the Gregorian calendar, java.util.GregorianCalendar switches to Julian before 1583
+    private static final int MIN_YEAR = 1583;
+    private static final int MAX_YEAR = 9999;
+
+    private static final int ISO8601_DATE_TIME_LENGTH = 19; // 2014-02-10T13:46:27
+    private static final int XMLRPC_DATE_TIME_LENGTH = 17; // 20140210T13:46:27
+
+    private static final ThreadLocal<DateFormat> ISO8601Format = new ThreadLocal<DateFormat>() {
+        @Override
+        protected DateFormat initialValue() {
+            return new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ssZ", Locale.US);
+        }
+    };
+
+    private static final ThreadLocal<DateFormat> XMLRPCFormat = new ThreadLocal<DateFormat>() {
+        @Override
+        protected DateFormat initialValue() {
+            DateFormat format = new SimpleDateFormat("yyyyMMdd'T'HH:mm:ss", Locale.US);
+            format.setTimeZone(TimeZone.getTimeZone("GMT"));
+            return format;
+        }
+    };
+
+    private Iso8601Utils() {
+        throw new AssertionError();
+    }
+
+    /*
+     * parses an ISO 8601 date such as "2014-02-10T13:46:27+00:00", returns null if the date can't be parsed
+     */
+    public static Date parseIso8601(final String strDate) {
+        if (strDate == null) {
+            return null;
+        }
+        long millis = parseDateTime(strDate, true);
+        if (millis != Long.MIN_VALUE) {
+            int offset = parseTimeZoneOffset(strDate, ISO8601_DATE_TIME_LENGTH);
+            if (offset != Integer.MIN_VALUE) {
+                return new Date(millis - offset);
+            }
+        }
+        try {
+            return ISO8601Format.get().parse(strDate);
+        } catch (ParseException e) {
+            return null;
+        }
+    }
+
+    /*
+     * formats a date as ISO 8601 in the local time zone, such as "2014-02-10T14:46:27+0100"
+     */
+    public static String formatIso8601(final Date date) {
+        if (date == null) {
+            return "";
+        }
+        long millis = date.getTime();
+        int offset = TimeZone.getDefault().getOffset(millis);
+        char[] buffer = new char[ISO8601_DATE_TIME_LENGTH + 5];
+        if (!formatDateTime(millis + offset, buffer, true)) {
+            return ISO8601Format.get().format(date);
+        }
+        int offsetMinutes = offset / (int) MILLIS_PER_MINUTE;
+        buffer[ISO8601_DATE_TIME_LENGTH] = offsetMinutes < 0 ? '-' : '+';
+        offsetMinutes = Math.abs(offsetMinutes);
+        putDigits(buffer, ISO8601_DATE_TIME_LENGTH + 1, offsetMinutes / 60, 2);
+        putDigits(buffer, ISO8601_DATE_TIME_LENGTH + 3, offsetMinutes % 60, 2);
+        return new String(buffer);
+    }
+
+    /*
+     * parses an XML-RPC dateTime.iso8601 value such as "20140210T13:46:27" (GMT), returns null if the date can't be
+     * parsed
+     */
+    public static Date parseXmlRpcDate(final String strDate) {
+        if (strDate == null) {
+            return null;
+        }
+        if (strDate.length() == XMLRPC_DATE_TIME_LENGTH) {
+            long millis = parseDateTime(strDate, false);
+            if (millis != Long.MIN_VALUE) {
+                return new Date(millis);
+            }
+        }
+        try {
+            return XMLRPCFormat.get().parse(strDate);
+        } catch (ParseException e) {
+            return null;
+        }
+    }
+
+    /*
+     * formats a date as an XML-RPC dateTime.iso8601 value (GMT)
+     */
+    public static String formatXmlRpcDate(final Date date) {
+        if (date == null) {
+            return "";
+        }
+        char[] buffer = new char[XMLRPC_DATE_TIME_LENGTH];
+        if (!formatDateTime(date.getTime(), buffer, false)) {
+            return XMLRPCFormat.get().format(date);
+        }
+        return new String(buffer);
+    }
+
+    /*
+     * parses the date and time at the start of the string as UTC, with or without the '-' date separators,
+     * returns Long.MIN_VALUE if it's not a date and time this class can convert by itself
+     */
+    private static long parseDateTime(String str, boolean withDateSeparators) {
+        int length = withDateSeparators ? ISO8601_DATE_TIME_LENGTH : XMLRPC_DATE_TIME_LENGTH;
+        if (str.length() < length) {
+            return Long.MIN_VALUE;
+        }
+        int pos = 0;
+        int year = parseDigits(str, pos, 4);
+        pos += 4;
+        if (withDateSeparators && str.charAt(pos++) != '-') {
+            return Long.MIN_VALUE;
+        }
+        int month = parseDigits(str, pos, 2);
+        pos += 2;
+        if (withDateSeparators && str.charAt(pos++) != '-') {
+            return Long.MIN_VALUE;
+        }
+        int day = parseDigits(str, pos, 2);
+        pos += 2;
+        if (str.charAt(pos++) != 'T') {
+            return Long.MIN_VALUE;
+        }
+        int hours = parseDigits(str, pos, 2);
+        pos += 2;
+        if (str.charAt(pos++) != ':') {
+            return Long.MIN_VALUE;
+        }
+        int minutes = parseDigits(str, pos, 2);
+        pos += 2;
+        if (str.charAt(pos++) != ':') {
+            return Long.MIN_VALUE;
+        }
+        int seconds = parseDigits(str, pos, 2);
+
+        if (year < MIN_YEAR || year > MAX_YEAR || month < 1 || month > 12 || day < 1 || day > 31
+                || hours < 0 || hours > 23 || minutes < 0 || minutes > 59 || seconds < 0 || seconds > 59) {
+            return Long.MIN_VALUE;
+        }
+        // days past the end of the month roll over to the next month, as with a lenient SimpleDateFormat
+        return daysFromCivil(year, month, day) * MILLIS_PER_DAY + hours * MILLIS_PER_HOUR
+                + minutes * MILLIS_PER_MINUTE + seconds * MILLIS_PER_SECOND;
+    }
+
+    /*
+     * parses a "+hh:mm" or "+hhmm" time zone offset ending the string, returns the offset in milliseconds or
+     * Integer.MIN_VALUE if there's no such offset
+     */
+    private static int parseTimeZoneOffset(String str, int pos) {
+        int length = str.length() - pos;
+        if (length != 5 && length != 6) {
+            return Integer.MIN_VALUE;
+        }
+        char sign = str.charAt(pos);
+        if (sign != '+' && sign != '-') {
+            return Integer.MIN_VALUE;
+        }
+        int hours = parseDigits(str, pos + 1, 2);
+        if (length == 6 && str.charAt(pos + 3) != ':') {
+            return Integer.MIN_VALUE;
+        }
+        int minutes = parseDigits(str, pos + length - 2, 2);
+        if (hours < 0 || hours > 23 || minutes < 0 || minutes > 59) {
+            return Integer.MIN_VALUE;
+        }
+        int offset = (int) (hours * MILLIS_PER_HOUR + minutes * MILLIS_PER_MINUTE);
+        return sign == '-' ? -offset : offset;
+    }
+
+    /*
+     * formats the UTC date and time, returns false if the year is out of the supported range
+     */
+    private static boolean formatDateTime(long millis, char[] buffer, boolean withDateSeparators) {
+        long days = floorDiv(millis, MILLIS_PER_DAY);
+        int millisOfDay = (int) (millis - days * MILLIS_PER_DAY);
+
+        // civil date from the number of days since 1970-01-01, see http://howardhinnant.github.io/date_algorithms.html
+        long z = days + 719468;
+        long era = floorDiv(z, 146097);
+        int dayOfEra = (int) (z - era * 146097);
+        int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        int shiftedMonth = (5 * dayOfYear + 2) / 153;
+        int day = dayOfYear - (153 * shiftedMonth + 2) / 5 + 1;
+        int month = shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9;
+        long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+        if (year < MIN_YEAR || year > MAX_YEAR) {
+            return false;
+        }
+
+        int pos = 0;
+        pos = putDigits(buffer, pos, (int) year, 4);
+        if (withDateSeparators) {
+            buffer[pos++] = '-';
+        }
+        pos = putDigits(buffer, pos, month, 2);
+        if (withDateSeparators) {
+            buffer[pos++] = '-';
+        }
+        pos = putDigits(buffer, pos, day, 2);
+        buffer[pos++] = 'T';
+        pos = putDigits(buffer, pos, (int) (millisOfDay / MILLIS_PER_HOUR), 2);
+        buffer[pos++] = ':';
+        pos = putDigits(buffer, pos, (int) (millisOfDay / MILLIS_PER_MINUTE % 60), 2);
+        buffer[pos++] = ':';
+        putDigits(buffer, pos, (int) (millisOfDay / MILLIS_PER_SECOND % 60), 2);
+        return true;
+    }
+
+    /*
+     * number of days between 1970-01-01 and the passed date of the proleptic Gregorian calendar
+     */
+    private static long daysFromCivil(int year, int month, int day) {
+        if (month <= 2) {
+            year--;
+        }
+        int era = (year >= 0 ? year : year - 399) / 400;
+        int yearOfEra = year - era * 400;
+        int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097L + dayOfEra - 719468;
+    }
+
+    private static long floorDiv(long x, long y) {
+        long quotient = x / y;
+        if ((x % y != 0) && ((x < 0) != (y < 0))) {
+            quotient--;
+        }
+        return quotient;
+    }
+
+    /*
+     * returns the value of count ASCII digits, or -1 if one of the characters isn't a digit
+     */
+    private static int parseDigits(String str, int start, int count) {
+        int value = 0;
+        for (int i = start; i < start + count; i++) {
+            char c = str.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    private static int putDigits(char[] buffer, int pos, int value, int count) {
+        for (int i = pos + count - 1; i >= pos; i--) {
+            buffer[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        return pos + count;
+    }
+}
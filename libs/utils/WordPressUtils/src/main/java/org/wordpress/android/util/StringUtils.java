@@ -260,6 +260,69 @@ public class StringUtils {
         return out.toString();
     }
 
+    /**
+     * Makes a String safe to send as XML 1.0 text, in a single pass.
+     *
+     * If every character is allowed by the XML 1.0 standard (surrogates must come in pairs), the input itself is
+     * returned. Otherwise all the surrogates are replaced the same way as in
+     * {@link #replaceUnicodeSurrogateBlocksWithHTMLEntities(String)}, and the characters that aren't allowed in XML
+     * are removed, as in {@link #stripNonValidXMLCharacters(String)}.
+     *
+     * @param in The String to send.
+     * @return The in String, or a sanitized copy of it. An empty String if the input is null or empty.
+     */
+    public static String makeValidXMLText(final String in) {
+        if (in == null) {
+            return "";
+        }
+        final int length = in.length();
+        int firstSurrogate = -1;
+        int firstInvalid = -1;
+        for (int i = 0; i < length; i++) {
+            final char current = in.charAt(i);
+            if (Character.isHighSurrogate(current) && i + 1 < length && Character.isLowSurrogate(in.charAt(i + 1))) {
+                if (firstSurrogate == -1) {
+                    firstSurrogate = i;
+                }
+                i++;
+            } else if (!isValidXMLChar(current)) {
+                firstInvalid = i;
+                break;
+            }
+        }
+        if (firstInvalid == -1) {
+            return in;
+        }
+
+        // everything before the first surrogate or invalid character is kept as is
+        int offset = firstSurrogate != -1 ? firstSurrogate : firstInvalid;
+        StringBuilder out = new StringBuilder(length + 16);
+        out.append(in, 0, offset);
+        while (offset < length) {
+            final char current = in.charAt(offset);
+            if (Character.isHighSurrogate(current) || Character.isLowSurrogate(current)) {
+                final int codepoint = in.codePointAt(offset);
+                final String smiley = EmoticonsUtils.wpSmiliesCodePointToText.get(codepoint);
+                if (smiley != null) {
+                    out.append(smiley);
+                } else {
+                    out.append("&#x").append(Integer.toHexString(codepoint)).append(';');
+                }
+                offset += Character.charCount(codepoint);
+            } else {
+                if (isValidXMLChar(current)) {
+                    out.append(current);
+                }
+                offset++;
+            }
+        }
+        return out.toString();
+    }
+
+    private static boolean isValidXMLChar(char c) {
+        return c == 0x9 || c == 0xA || c == 0xD || (c >= 0x20 && c <= 0xD7FF) || (c >= 0xE000 && c <= 0xFFFD);
+    }
+
     /*
      * simple wrapper for Integer.valueOf(string) so caller doesn't need to catch NumberFormatException
      */
@@ -1,5 +1,6 @@
 package com.wordpress.rest;
 
+import com.android.volley.Cache;
 import com.android.volley.NetworkResponse;
 import com.android.volley.ParseError;
 import com.android.volley.Request;
@@ -13,6 +14,10 @@ import org.json.JSONException;
 import java.util.Map;
 import java.util.HashMap;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
 import java.io.UnsupportedEncodingException;
 
 public class RestRequest extends Request<JSONObject> {
@@ -31,9 +36,22 @@ public class RestRequest extends Request<JSONObject> {
         public void onAuthFailed();
     }
 
+    /**
+     * Reads the body of a successful response instead of turning it into a JSONObject, for large responses that
+     * are better read as a stream. Called on the network thread, the listener then gets an empty JSONObject.
+     *
+     * The listener of a request with a body parser is called once: its response is cached for conditional requests
+     * only, and never delivered from the cache before the server has been asked. Otherwise a cached response past
+     * its soft TTL would be parsed and delivered, then parsed and delivered again once fetched.
+     */
+    public interface BodyParser {
+        public void parse(Reader body) throws IOException;
+    }
+
     private final com.android.volley.Response.Listener<JSONObject> mListener;
     private final Map<String, String> mParams;
     private final Map<String, String> mHeaders = new HashMap<String, String>(2);
+    private BodyParser mBodyParser;
 
     public RestRequest(int method, String url, Map<String, String> params,
                        com.android.volley.Response.Listener<JSONObject> listener,
@@ -59,6 +77,10 @@ public class RestRequest extends Request<JSONObject> {
         mHeaders.put(USER_AGENT_HEADER, userAgent);
     }
 
+    public void setBodyParser(BodyParser bodyParser) {
+        mBodyParser = bodyParser;
+    }
+
     public void setOnAuthFailedListener(OnAuthFailedListener onAuthFailedListener) {
         mOnAuthFailedListener = onAuthFailedListener;
     }
@@ -109,6 +131,9 @@ public class RestRequest extends Request<JSONObject> {
 
     @Override
     protected Response<JSONObject> parseNetworkResponse(NetworkResponse response) {
+        if (mBodyParser != null) {
+            return parseNetworkResponse(response, mBodyParser);
+        }
         try {
             String jsonString = new String(response.data, HttpHeaderParser.parseCharset(response.headers));
             return Response.success(new JSONObject(jsonString), HttpHeaderParser.parseCacheHeaders(response));
@@ -118,4 +143,24 @@ public class RestRequest extends Request<JSONObject> {
             return Response.error(new ParseError(je));
         }
     }
+
+    private static Response<JSONObject> parseNetworkResponse(NetworkResponse response, BodyParser bodyParser) {
+        try {
+            Reader body = new InputStreamReader(new ByteArrayInputStream(response.data),
+                    HttpHeaderParser.parseCharset(response.headers));
+            bodyParser.parse(body);
+            Cache.Entry cacheEntry = HttpHeaderParser.parseCacheHeaders(response);
+            if (cacheEntry != null) {
+                // expired right away, the next request revalidates it (ETag) before it's delivered
+                cacheEntry.softTtl = 0;
+                cacheEntry.ttl = 0;
+            }
+            return Response.success(new JSONObject(), cacheEntry);
+        } catch (IOException e) {
+            return Response.error(new ParseError(e));
+        } catch (RuntimeException e) {
+            // parsers report unexpected content with unchecked exceptions too
+            return Response.error(new ParseError(e));
+        }
+    }
 }